@@ -1,50 +1,241 @@
 package com.rey.jsonbatch.apachehttpclient;
 
 import com.jayway.jsonpath.spi.json.JsonProvider;
+import com.rey.jsonbatch.BudgetExceededException;
 import com.rey.jsonbatch.RequestDispatcher;
+import com.rey.jsonbatch.codec.BodyCodec;
+import com.rey.jsonbatch.codec.BodyCodecs;
+import com.rey.jsonbatch.io.CompressionStats;
+import com.rey.jsonbatch.io.ContentEncoding;
+import com.rey.jsonbatch.io.JsonWriter;
+import com.rey.jsonbatch.io.LimitedInputStream;
 import com.rey.jsonbatch.model.DispatchOptions;
 import com.rey.jsonbatch.model.Request;
 import com.rey.jsonbatch.model.Response;
 import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.HttpClient;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.client.methods.RequestBuilder;
-import org.apache.http.entity.StringEntity;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.BufferedReader;
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
-public class ApacheHttpClientRequestDispatcher implements RequestDispatcher {
+public class ApacheHttpClientRequestDispatcher implements RequestDispatcher, Closeable {
 
     private Logger logger = LoggerFactory.getLogger(ApacheHttpClientRequestDispatcher.class);
 
     private HttpClient httpClient;
 
+    private PoolingHttpClientConnectionManager connectionManager;
+
+    private boolean chunkedRequestBody = false;
+
+    private boolean acceptCompressedResponse = false;
+
+    private long requestCompressionThreshold = -1;
+
+    private String requestCompression = ContentEncoding.GZIP;
+
+    private CompressionStats compressionStats = new CompressionStats();
+
     public ApacheHttpClientRequestDispatcher(HttpClient httpClient) {
         this.httpClient = httpClient;
     }
 
+    ApacheHttpClientRequestDispatcher(HttpClient httpClient, PoolingHttpClientConnectionManager connectionManager) {
+        this.httpClient = httpClient;
+        this.connectionManager = connectionManager;
+    }
+
+    public static ApacheHttpClientRequestDispatcherBuilder builder() {
+        return new ApacheHttpClientRequestDispatcherBuilder();
+    }
+
+    public boolean isChunkedRequestBody() {
+        return chunkedRequestBody;
+    }
+
+    public void setChunkedRequestBody(boolean chunkedRequestBody) {
+        this.chunkedRequestBody = chunkedRequestBody;
+    }
+
+    public boolean isAcceptCompressedResponse() {
+        return acceptCompressedResponse;
+    }
+
+    public void setAcceptCompressedResponse(boolean acceptCompressedResponse) {
+        this.acceptCompressedResponse = acceptCompressedResponse;
+    }
+
+    public long getRequestCompressionThreshold() {
+        return requestCompressionThreshold;
+    }
+
+    public void setRequestCompressionThreshold(long requestCompressionThreshold) {
+        this.requestCompressionThreshold = requestCompressionThreshold;
+    }
+
+    public String getRequestCompression() {
+        return requestCompression;
+    }
+
+    public void setRequestCompression(String requestCompression) {
+        this.requestCompression = requestCompression;
+    }
+
+    public CompressionStats getCompressionStats() {
+        return compressionStats;
+    }
+
+    public PoolStats getTotalPoolStats() {
+        return connectionManager == null ? null : connectionManager.getTotalStats();
+    }
+
+    public Map<String, PoolStats> getPoolStats() {
+        Map<String, PoolStats> result = new LinkedHashMap<>();
+        if(connectionManager != null) {
+            for(HttpRoute route : connectionManager.getRoutes())
+                result.put(route.getTargetHost().toURI(), connectionManager.getStats(route));
+        }
+        return result;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if(connectionManager != null && httpClient instanceof Closeable)
+            ((Closeable)httpClient).close();
+    }
+
     @Override
     public Response dispatch(Request request, JsonProvider jsonProvider, DispatchOptions options) throws Exception {
+        return execute(buildHttpRequest(request, jsonProvider, options), jsonProvider, options);
+    }
+
+    @Override
+    public CompletableFuture<Response> dispatchAsync(Request request, JsonProvider jsonProvider, DispatchOptions options, Executor executor) {
+        CompletableFuture<Response> future = new CompletableFuture<>();
+        HttpUriRequest httpRequest;
+        try {
+            httpRequest = buildHttpRequest(request, jsonProvider, options);
+        }
+        catch (Exception ex) {
+            future.completeExceptionally(ex);
+            return future;
+        }
+        future.whenComplete((response, throwable) -> {
+            if(future.isCancelled()) {
+                logger.debug("Abort request {}: {}", request.getHttpMethod(), request.getUrl());
+                httpRequest.abort();
+            }
+        });
+        executor.execute(() -> {
+            if(future.isDone())
+                return;
+            try {
+                future.complete(execute(httpRequest, jsonProvider, options));
+            }
+            catch (Throwable ex) {
+                future.completeExceptionally(ex);
+            }
+        });
+        return future;
+    }
+
+    private HttpUriRequest buildHttpRequest(Request request, JsonProvider jsonProvider, DispatchOptions options) {
         RequestBuilder requestBuilder = RequestBuilder.create(request.getHttpMethod().toUpperCase());
         requestBuilder.setUri(request.getUrl());
         logger.debug("Request {}: {}", request.getHttpMethod(), request.getUrl());
         request.getHeaders().forEach((key, values) -> values.forEach(value -> requestBuilder.addHeader(key, value)));
+        BodyCodec codec = BodyCodecs.get(options.getFormat());
+        if(codec != null && requestBuilder.getFirstHeader(HttpHeaders.ACCEPT) == null)
+            requestBuilder.addHeader(HttpHeaders.ACCEPT, BodyCodecs.accept(codec));
         if(request.getBody() != null) {
-            String json = jsonProvider.toJson(request.getBody());
-            logger.debug("Request body: {}", json);
-            requestBuilder.setEntity(new StringEntity(json));
+            if(logger.isDebugEnabled())
+                logger.debug("Request body: {}", jsonProvider.toJson(request.getBody()));
+            requestBuilder.setEntity(codec == null ? buildEntity(request.getBody(), jsonProvider) : buildEntity(codec, request.getBody(), jsonProvider));
+        }
+        if(acceptCompressedResponse && requestBuilder.getFirstHeader(HttpHeaders.ACCEPT_ENCODING) == null)
+            requestBuilder.addHeader(HttpHeaders.ACCEPT_ENCODING, ContentEncoding.acceptEncoding());
+        if(options.getTimeout() != null || options.getConnectTimeout() != null) {
+            int timeout = options.getTimeout() == null ? -1 : options.getTimeout().intValue();
+            int connectTimeout = options.getConnectTimeout() == null ? timeout : options.getConnectTimeout().intValue();
+            if(timeout > 0 && connectTimeout > timeout)
+                connectTimeout = timeout;
+            requestBuilder.setConfig(RequestConfig.custom()
+                    .setConnectTimeout(connectTimeout)
+                    .setConnectionRequestTimeout(timeout)
+                    .setSocketTimeout(timeout)
+                    .build());
+        }
+        return requestBuilder.build();
+    }
+
+    private HttpEntity buildEntity(Object body, JsonProvider jsonProvider) {
+        if(requestCompressionThreshold < 0)
+            return new JsonEntity(jsonProvider, body, chunkedRequestBody ? -1 : JsonWriter.length(jsonProvider, body), null, compressionStats);
+        long length = JsonWriter.length(jsonProvider, body);
+        if(length > requestCompressionThreshold)
+            return new JsonEntity(jsonProvider, body, requestCompression, compressionStats);
+        return new JsonEntity(jsonProvider, body, chunkedRequestBody ? -1 : length, null, compressionStats);
+    }
+
+    // binary bodies are small enough to encode up front, which also gives the length for the compression threshold
+    private HttpEntity buildEntity(BodyCodec codec, Object body, JsonProvider jsonProvider) {
+        byte[] bytes = BodyCodecs.toBytes(codec, jsonProvider, body);
+        if(requestCompressionThreshold >= 0 && bytes.length > requestCompressionThreshold) {
+            byte[] compressedBytes = ContentEncoding.encode(requestCompression, bytes, 0, bytes.length);
+            compressionStats.recordRequest(bytes.length, compressedBytes.length, true);
+            ByteArrayEntity entity = new ByteArrayEntity(compressedBytes, ContentType.create(codec.getContentType()));
+            entity.setContentEncoding(requestCompression);
+            return entity;
+        }
+        compressionStats.recordRequest(bytes.length, bytes.length, false);
+        return new ByteArrayEntity(bytes, ContentType.create(codec.getContentType()));
+    }
+
+    private Response execute(HttpUriRequest httpRequest, JsonProvider jsonProvider, DispatchOptions options) throws Exception {
+        HttpResponse httpResponse = httpClient.execute(httpRequest);
+        try {
+            return buildResponse(httpResponse, jsonProvider, options);
+        }
+        catch (BudgetExceededException ex) {
+            // close the connection instead of draining the rest of the body
+            httpRequest.abort();
+            throw ex;
+        }
+        finally {
+            EntityUtils.consumeQuietly(httpResponse.getEntity());
+            if(httpResponse instanceof Closeable)
+                ((Closeable)httpResponse).close();
         }
-        HttpResponse httpResponse = httpClient.execute(requestBuilder.build());
+    }
+
+    private Response buildResponse(HttpResponse httpResponse, JsonProvider jsonProvider, DispatchOptions options) throws Exception {
         Response response = new Response();
         Map<String, List<String>> headerMap = new HashMap<>();
         for(Header header : httpResponse.getAllHeaders()) {
@@ -53,37 +244,77 @@ public class ApacheHttpClientRequestDispatcher implements RequestDispatcher {
 
         response.setStatus(httpResponse.getStatusLine().getStatusCode());
         response.setHeaders(headerMap);
-        Header contentEncodingHeader = httpResponse.getEntity().getContentEncoding();
-        String charsetName = contentEncodingHeader == null ? "UTF-8" : contentEncodingHeader.getValue();
+        HttpEntity entity = httpResponse.getEntity();
+        if(entity == null)
+            return response;
+        String charsetName = getCharset(entity).name();
+        Header contentEncodingHeader = entity.getContentEncoding();
+        LimitedInputStream content = new LimitedInputStream(compressionStats.decode(contentEncodingHeader == null ? null : contentEncodingHeader.getValue(), entity.getContent()),
+                options.getMaxResponseBytes());
 
-        if(options.getFailBackAsString())
-            try {
-                String bodyAsString = readString(httpResponse.getEntity().getContent(), charsetName);
-                response.setBody(bodyAsString);
+        Header contentTypeHeader = entity.getContentType();
+        BodyCodec codec = BodyCodecs.forContentType(contentTypeHeader == null ? null : contentTypeHeader.getValue());
+        try {
+            if(codec != null)
+                try {
+                    response.setBody(codec.read(jsonProvider, content));
+                }
+                catch (Exception ex) {
+                    logger.warn("Cannot parse response body as {}", codec.getFormat(), ex);
+                    if(!options.getIgnoreParsingError())
+                        throw ex;
+                }
+            else if(options.getFailBackAsString())
                 try {
-                    response.setBody(jsonProvider.parse(bodyAsString));
+                    String bodyAsString = readString(content, charsetName);
+                    response.setBody(bodyAsString);
+                    try {
+                        response.setBody(jsonProvider.parse(bodyAsString));
+                    }
+                    catch (Exception ex) {
+                        logger.warn("Cannot parse response body as JSON", ex);
+                    }
+                }
+                catch (Exception e) {
+                    logger.warn("Cannot parse response body as String", e);
+                    if(!options.getIgnoreParsingError())
+                        throw e;
+                }
+            else
+                try {
+                    response.setBody(jsonProvider.parse(content, charsetName));
                 }
                 catch (Exception ex) {
                     logger.warn("Cannot parse response body as JSON", ex);
+                    if(!options.getIgnoreParsingError())
+                        throw ex;
                 }
-            }
-            catch (Exception e) {
-                logger.warn("Cannot parse response body as String", e);
-                if(!options.getIgnoreParsingError())
-                    throw e;
-            }
-        else
-            try {
-                response.setBody(jsonProvider.parse(httpResponse.getEntity().getContent(), charsetName));
-            }
-            catch (Exception ex) {
-                logger.warn("Cannot parse response body as JSON", ex);
-                if(!options.getIgnoreParsingError())
-                    throw ex;
-            }
+        }
+        catch (Exception ex) {
+            if(!content.isExceeded())
+                throw ex;
+        }
+        // parsers may wrap or swallow the exception of the limited stream
+        if(content.isExceeded()) {
+            response.setBody(null);
+            throw new BudgetExceededException(BudgetExceededException.SCOPE_RESPONSE, options.getMaxResponseBytes(), content.getCount(), response);
+        }
+        response.setBodySize(content.getCount());
         return response;
     }
 
+    private Charset getCharset(HttpEntity entity) {
+        try {
+            ContentType contentType = ContentType.get(entity);
+            if(contentType != null && contentType.getCharset() != null)
+                return contentType.getCharset();
+        }
+        catch (Exception ex) {
+            logger.warn("Cannot read charset from content type", ex);
+        }
+        return StandardCharsets.UTF_8;
+    }
+
     private String readString(InputStream inputStream, String charset) throws IOException {
         StringBuilder builder = new StringBuilder();
         char[] buffer = new char[1024];
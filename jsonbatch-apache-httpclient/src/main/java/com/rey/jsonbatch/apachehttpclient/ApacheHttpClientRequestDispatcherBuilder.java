@@ -0,0 +1,148 @@
+package com.rey.jsonbatch.apachehttpclient;
+
+import com.rey.jsonbatch.io.ContentEncoding;
+import org.apache.http.HttpHost;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+public class ApacheHttpClientRequestDispatcherBuilder {
+
+    private int maxTotal = 200;
+    private int defaultMaxPerRoute = 20;
+    private Map<String, Integer> maxPerRoutes = new LinkedHashMap<>();
+    private long keepAlive = 30000;
+    private long maxIdleTime = 60000;
+    private long timeToLive = -1;
+    private int validateAfterInactivity = 2000;
+    private int connectTimeout = -1;
+    private int socketTimeout = -1;
+    private int connectionRequestTimeout = -1;
+    private boolean chunkedRequestBody = false;
+    private boolean acceptCompressedResponse = true;
+    private long requestCompressionThreshold = -1;
+    private String requestCompression = ContentEncoding.GZIP;
+
+    ApacheHttpClientRequestDispatcherBuilder() {
+    }
+
+    public ApacheHttpClientRequestDispatcherBuilder maxTotal(int maxTotal) {
+        this.maxTotal = maxTotal;
+        return this;
+    }
+
+    public ApacheHttpClientRequestDispatcherBuilder defaultMaxPerRoute(int defaultMaxPerRoute) {
+        this.defaultMaxPerRoute = defaultMaxPerRoute;
+        return this;
+    }
+
+    public ApacheHttpClientRequestDispatcherBuilder maxPerRoute(String url, int max) {
+        this.maxPerRoutes.put(url, max);
+        return this;
+    }
+
+    public ApacheHttpClientRequestDispatcherBuilder keepAlive(long keepAlive) {
+        this.keepAlive = keepAlive;
+        return this;
+    }
+
+    public ApacheHttpClientRequestDispatcherBuilder maxIdleTime(long maxIdleTime) {
+        this.maxIdleTime = maxIdleTime;
+        return this;
+    }
+
+    public ApacheHttpClientRequestDispatcherBuilder timeToLive(long timeToLive) {
+        this.timeToLive = timeToLive;
+        return this;
+    }
+
+    public ApacheHttpClientRequestDispatcherBuilder validateAfterInactivity(int validateAfterInactivity) {
+        this.validateAfterInactivity = validateAfterInactivity;
+        return this;
+    }
+
+    public ApacheHttpClientRequestDispatcherBuilder connectTimeout(int connectTimeout) {
+        this.connectTimeout = connectTimeout;
+        return this;
+    }
+
+    public ApacheHttpClientRequestDispatcherBuilder socketTimeout(int socketTimeout) {
+        this.socketTimeout = socketTimeout;
+        return this;
+    }
+
+    public ApacheHttpClientRequestDispatcherBuilder connectionRequestTimeout(int connectionRequestTimeout) {
+        this.connectionRequestTimeout = connectionRequestTimeout;
+        return this;
+    }
+
+    public ApacheHttpClientRequestDispatcherBuilder chunkedRequestBody(boolean chunkedRequestBody) {
+        this.chunkedRequestBody = chunkedRequestBody;
+        return this;
+    }
+
+    public ApacheHttpClientRequestDispatcherBuilder acceptCompressedResponse(boolean acceptCompressedResponse) {
+        this.acceptCompressedResponse = acceptCompressedResponse;
+        return this;
+    }
+
+    public ApacheHttpClientRequestDispatcherBuilder requestCompressionThreshold(long requestCompressionThreshold) {
+        this.requestCompressionThreshold = requestCompressionThreshold;
+        return this;
+    }
+
+    public ApacheHttpClientRequestDispatcherBuilder requestCompression(String requestCompression) {
+        this.requestCompression = requestCompression;
+        return this;
+    }
+
+    public ApacheHttpClientRequestDispatcher build() {
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(timeToLive, TimeUnit.MILLISECONDS);
+        connectionManager.setMaxTotal(maxTotal);
+        connectionManager.setDefaultMaxPerRoute(defaultMaxPerRoute);
+        connectionManager.setValidateAfterInactivity(validateAfterInactivity);
+        maxPerRoutes.forEach((url, max) -> connectionManager.setMaxPerRoute(toRoute(url), max));
+
+        ConnectionKeepAliveStrategy keepAliveStrategy = (response, context) -> {
+            long duration = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+            return duration > 0 ? duration : keepAlive;
+        };
+
+        HttpClientBuilder httpClientBuilder = HttpClientBuilder.create()
+                .setConnectionManager(connectionManager)
+                .setKeepAliveStrategy(keepAliveStrategy)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectTimeout(connectTimeout)
+                        .setSocketTimeout(socketTimeout)
+                        .setConnectionRequestTimeout(connectionRequestTimeout)
+                        .build())
+                .disableContentCompression()
+                .evictExpiredConnections();
+        if (maxIdleTime > 0)
+            httpClientBuilder.evictIdleConnections(maxIdleTime, TimeUnit.MILLISECONDS);
+
+        CloseableHttpClient httpClient = httpClientBuilder.build();
+        ApacheHttpClientRequestDispatcher requestDispatcher = new ApacheHttpClientRequestDispatcher(httpClient, connectionManager);
+        requestDispatcher.setChunkedRequestBody(chunkedRequestBody);
+        requestDispatcher.setAcceptCompressedResponse(acceptCompressedResponse);
+        requestDispatcher.setRequestCompressionThreshold(requestCompressionThreshold);
+        requestDispatcher.setRequestCompression(requestCompression);
+        return requestDispatcher;
+    }
+
+    private HttpRoute toRoute(String url) {
+        HttpHost host = HttpHost.create(url);
+        boolean isSecure = "https".equalsIgnoreCase(host.getSchemeName());
+        int port = host.getPort() > 0 ? host.getPort() : (isSecure ? 443 : 80);
+        return new HttpRoute(new HttpHost(host.getHostName(), port, host.getSchemeName()), null, isSecure);
+    }
+
+}
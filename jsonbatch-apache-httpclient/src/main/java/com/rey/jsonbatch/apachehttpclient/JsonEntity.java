@@ -0,0 +1,89 @@
+package com.rey.jsonbatch.apachehttpclient;
+
+import com.jayway.jsonpath.spi.json.JsonProvider;
+import com.rey.jsonbatch.io.CompressionStats;
+import com.rey.jsonbatch.io.ContentEncoding;
+import com.rey.jsonbatch.io.CountingOutputStream;
+import com.rey.jsonbatch.io.JsonWriter;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.util.Args;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.DeflaterOutputStream;
+
+public class JsonEntity extends AbstractHttpEntity {
+
+    private final JsonProvider jsonProvider;
+    private final Object body;
+    private final long contentLength;
+    private final String compression;
+    private final CompressionStats compressionStats;
+
+    public JsonEntity(JsonProvider jsonProvider, Object body, boolean chunked) {
+        // without chunking the tree is walked twice, once here to count bytes and once when writing
+        this(jsonProvider, body, chunked ? -1 : JsonWriter.length(jsonProvider, body), null, null);
+    }
+
+    public JsonEntity(JsonProvider jsonProvider, Object body, String compression, CompressionStats compressionStats) {
+        this(jsonProvider, body, -1, compression, compressionStats);
+    }
+
+    JsonEntity(JsonProvider jsonProvider, Object body, long contentLength, String compression, CompressionStats compressionStats) {
+        this.jsonProvider = jsonProvider;
+        this.body = body;
+        this.contentLength = contentLength;
+        this.compression = compression;
+        this.compressionStats = compressionStats;
+        setChunked(contentLength < 0);
+        setContentType(ContentType.APPLICATION_JSON.toString());
+        if(compression != null)
+            setContentEncoding(compression);
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return true;
+    }
+
+    @Override
+    public long getContentLength() {
+        return contentLength;
+    }
+
+    @Override
+    public InputStream getContent() {
+        byte[] bytes = JsonWriter.toBytes(jsonProvider, body);
+        if(compression != null)
+            bytes = ContentEncoding.encode(compression, bytes, 0, bytes.length);
+        return new ByteArrayInputStream(bytes);
+    }
+
+    @Override
+    public void writeTo(OutputStream outputStream) throws IOException {
+        Args.notNull(outputStream, "Output stream");
+        CountingOutputStream wireOutputStream = new CountingOutputStream(outputStream);
+        if(compression == null) {
+            JsonWriter.write(jsonProvider, body, wireOutputStream);
+            if(compressionStats != null)
+                compressionStats.recordRequest(wireOutputStream.getCount(), wireOutputStream.getCount(), false);
+            return;
+        }
+
+        DeflaterOutputStream compressedOutputStream = ContentEncoding.encode(compression, wireOutputStream);
+        CountingOutputStream bodyOutputStream = new CountingOutputStream(compressedOutputStream);
+        JsonWriter.write(jsonProvider, body, bodyOutputStream);
+        compressedOutputStream.finish();
+        if(compressionStats != null)
+            compressionStats.recordRequest(bodyOutputStream.getCount(), wireOutputStream.getCount(), true);
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return false;
+    }
+
+}
@@ -0,0 +1,197 @@
+package com.rey.jsonbatch.apachehttpclient;
+
+import com.jayway.jsonpath.spi.json.JacksonJsonProvider;
+import com.jayway.jsonpath.spi.json.JsonProvider;
+import com.jayway.jsonpath.spi.json.JsonSmartJsonProvider;
+import com.rey.jsonbatch.BudgetExceededException;
+import com.rey.jsonbatch.io.CompressionStats;
+import com.rey.jsonbatch.io.ContentEncoding;
+import com.rey.jsonbatch.model.DispatchOptions;
+import com.rey.jsonbatch.model.Request;
+import com.rey.jsonbatch.model.Response;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ApacheHttpClientRequestDispatcherTest {
+
+    private static final String LARGE_JSON = "{\"items\": [" + String.join(",", Collections.nCopies(200, "{\"id\": 1, \"name\": \"item\"}")) + "]}";
+
+    private HttpServer server;
+
+    private ApacheHttpClientRequestDispatcher dispatcher;
+
+    private JsonProvider jsonProvider = new JacksonJsonProvider();
+
+    private AtomicReference<String> receivedEncoding = new AtomicReference<>();
+
+    @Before
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/gzip", exchange -> {
+            String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+            byte[] body = LARGE_JSON.getBytes(StandardCharsets.UTF_8);
+            if(acceptEncoding != null && acceptEncoding.contains("gzip")) {
+                body = ContentEncoding.encode("gzip", body, 0, body.length);
+                exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+            }
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(body);
+            }
+        });
+        server.createContext("/latin1", exchange -> {
+            byte[] body = "{\"name\": \"café\"}".getBytes(StandardCharsets.ISO_8859_1);
+            exchange.getResponseHeaders().add("Content-Type", "application/json; charset=ISO-8859-1");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(body);
+            }
+        });
+        // fails on the first value, leaving most of the body unread
+        server.createContext("/invalid", exchange -> {
+            byte[] body = ("{\"id\": [}, \"items\": " + LARGE_JSON + "}").getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(body);
+            }
+        });
+        server.createContext("/echo", exchange -> {
+            receivedEncoding.set(exchange.getRequestHeaders().getFirst("Content-Encoding"));
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            try (InputStream inputStream = ContentEncoding.decode(receivedEncoding.get(), exchange.getRequestBody())) {
+                byte[] buffer = new byte[1024];
+                int count;
+                while ((count = inputStream.read(buffer)) > 0)
+                    body.write(buffer, 0, count);
+            }
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.size());
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(body.toByteArray());
+            }
+        });
+        server.start();
+        dispatcher = ApacheHttpClientRequestDispatcher.builder()
+                .requestCompressionThreshold(1024)
+                .build();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        dispatcher.close();
+        server.stop(0);
+    }
+
+    @Test
+    public void dispatch__compressedResponse() throws Exception {
+        Response response = dispatcher.dispatch(request("/gzip", null), jsonProvider, new DispatchOptions());
+        assertEquals(200, (int) response.getStatus());
+        assertEquals(200, ((java.util.List) ((Map) response.getBody()).get("items")).size());
+
+        CompressionStats stats = dispatcher.getCompressionStats();
+        assertEquals(1, stats.getCompressedResponseCount());
+        assertEquals(LARGE_JSON.length(), stats.getResponseBodyBytes());
+        assertTrue(stats.getResponseWireBytes() < stats.getResponseBodyBytes());
+    }
+
+    @Test
+    public void dispatch__responseOverBudget() throws Exception {
+        DispatchOptions options = new DispatchOptions();
+        options.setMaxResponseBytes(1024L);
+        try {
+            dispatcher.dispatch(request("/gzip", null), jsonProvider, options);
+            fail("Read response over budget");
+        }
+        catch (BudgetExceededException ex) {
+            assertEquals(1024L, ex.getLimit());
+            assertTrue(ex.getSize() > 1024L);
+            assertEquals(200, (int) ex.getResponse().getStatus());
+            assertNull(ex.getResponse().getBody());
+        }
+
+        options.setMaxResponseBytes((long) LARGE_JSON.length());
+        Response response = dispatcher.dispatch(request("/gzip", null), jsonProvider, options);
+        assertEquals(Long.valueOf(LARGE_JSON.length()), response.getBodySize());
+    }
+
+    @Test
+    public void dispatch__charsetFromContentType() throws Exception {
+        Response response = dispatcher.dispatch(request("/latin1", null), jsonProvider, new DispatchOptions());
+        assertEquals("café", ((Map) response.getBody()).get("name"));
+    }
+
+    @Test
+    public void dispatch__compressLargeRequestBody() throws Exception {
+        Object body = jsonProvider.parse(LARGE_JSON);
+        Response response = dispatcher.dispatch(request("/echo", body), jsonProvider, new DispatchOptions());
+        assertEquals("gzip", receivedEncoding.get());
+        assertEquals(body, response.getBody());
+
+        dispatcher.dispatch(request("/echo", Collections.singletonMap("id", 1)), jsonProvider, new DispatchOptions());
+        assertEquals(null, receivedEncoding.get());
+
+        CompressionStats stats = dispatcher.getCompressionStats();
+        assertEquals(2, stats.getRequestCount());
+        assertEquals(1, stats.getCompressedRequestCount());
+        assertTrue(stats.getRequestWireBytes() < stats.getRequestBodyBytes());
+    }
+
+    @Test
+    public void dispatch__invalidJsonReleasesPooledConnection() throws Exception {
+        try (ApacheHttpClientRequestDispatcher pooled = ApacheHttpClientRequestDispatcher.builder()
+                .maxTotal(1)
+                .defaultMaxPerRoute(1)
+                .connectionRequestTimeout(2000)
+                .build()) {
+            // json-smart neither reads to the end nor closes the stream when it fails, only the dispatcher releases the connection
+            DispatchOptions options = new DispatchOptions();
+            options.setIgnoreParsingError(true);
+            Response response = pooled.dispatch(request("/invalid", null), new JsonSmartJsonProvider(), options);
+            assertEquals(200, (int) response.getStatus());
+            assertNull(response.getBody());
+            assertEquals(0, pooled.getTotalPoolStats().getLeased());
+
+            options.setIgnoreParsingError(false);
+            try {
+                pooled.dispatch(request("/invalid", null), new JsonSmartJsonProvider(), options);
+                fail("Parsed invalid JSON");
+            }
+            catch (Exception ex) {
+                assertEquals(0, pooled.getTotalPoolStats().getLeased());
+            }
+
+            // with a leaked connection the only one in the pool is never returned and this request times out waiting for it
+            response = pooled.dispatch(request("/latin1", null), jsonProvider, new DispatchOptions());
+            assertEquals("café", ((Map) response.getBody()).get("name"));
+            assertEquals(0, pooled.getTotalPoolStats().getLeased());
+        }
+    }
+
+    private Request request(String path, Object body) {
+        Request request = new Request();
+        request.setHttpMethod(body == null ? "GET" : "POST");
+        request.setUrl("http://localhost:" + server.getAddress().getPort() + path);
+        request.setHeaders(Collections.emptyMap());
+        request.setBody(body);
+        return request;
+    }
+
+}
@@ -0,0 +1,51 @@
+package com.rey.jsonbatch.apachehttpclient;
+
+import com.jayway.jsonpath.spi.json.JacksonJsonProvider;
+import com.jayway.jsonpath.spi.json.JsonProvider;
+import org.apache.http.util.EntityUtils;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class JsonEntityTest {
+
+    private JsonProvider jsonProvider = new JacksonJsonProvider();
+
+    @Test
+    public void writeTo__contentLength() throws Exception {
+        JsonEntity entity = new JsonEntity(jsonProvider, buildBody(), false);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        entity.writeTo(outputStream);
+
+        String expected = "{\"name\":\"Zoë\",\"ids\":[1,2,3]}";
+        assertEquals(expected, new String(outputStream.toByteArray(), StandardCharsets.UTF_8));
+        assertEquals(expected.getBytes(StandardCharsets.UTF_8).length, entity.getContentLength());
+        assertFalse(entity.isChunked());
+        assertEquals("application/json; charset=UTF-8", entity.getContentType().getValue());
+    }
+
+    @Test
+    public void writeTo__chunked() throws Exception {
+        JsonEntity entity = new JsonEntity(jsonProvider, buildBody(), true);
+        assertTrue(entity.isChunked());
+        assertEquals(-1, entity.getContentLength());
+        assertTrue(entity.isRepeatable());
+        assertEquals("{\"name\":\"Zoë\",\"ids\":[1,2,3]}", EntityUtils.toString(entity));
+    }
+
+    private Map<String, Object> buildBody() {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("name", "Zoë");
+        body.put("ids", Arrays.asList(1, 2, 3));
+        return body;
+    }
+
+}
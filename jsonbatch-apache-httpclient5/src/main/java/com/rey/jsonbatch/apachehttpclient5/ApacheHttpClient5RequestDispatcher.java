@@ -0,0 +1,182 @@
+package com.rey.jsonbatch.apachehttpclient5;
+
+import com.jayway.jsonpath.spi.json.JsonProvider;
+import com.rey.jsonbatch.RequestDispatcher;
+import com.rey.jsonbatch.codec.BodyCodec;
+import com.rey.jsonbatch.codec.BodyCodecs;
+import com.rey.jsonbatch.io.CompressionStats;
+import com.rey.jsonbatch.io.ContentEncoding;
+import com.rey.jsonbatch.io.JsonWriter;
+import com.rey.jsonbatch.model.DispatchOptions;
+import com.rey.jsonbatch.model.Request;
+import com.rey.jsonbatch.model.Response;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.nio.AsyncRequestProducer;
+import org.apache.hc.core5.http.nio.entity.BasicAsyncEntityProducer;
+import org.apache.hc.core5.http.nio.support.AsyncRequestBuilder;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.util.Timeout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+
+public class ApacheHttpClient5RequestDispatcher implements RequestDispatcher, Closeable {
+
+    private Logger logger = LoggerFactory.getLogger(ApacheHttpClient5RequestDispatcher.class);
+
+    private CloseableHttpAsyncClient httpClient;
+
+    private boolean acceptCompressedResponse = true;
+
+    private long requestCompressionThreshold = -1;
+
+    private String requestCompression = ContentEncoding.GZIP;
+
+    private CompressionStats compressionStats = new CompressionStats();
+
+    public ApacheHttpClient5RequestDispatcher(CloseableHttpAsyncClient httpClient) {
+        this.httpClient = httpClient;
+        this.httpClient.start();
+    }
+
+    public static ApacheHttpClient5RequestDispatcherBuilder builder() {
+        return new ApacheHttpClient5RequestDispatcherBuilder();
+    }
+
+    public boolean isAcceptCompressedResponse() {
+        return acceptCompressedResponse;
+    }
+
+    public void setAcceptCompressedResponse(boolean acceptCompressedResponse) {
+        this.acceptCompressedResponse = acceptCompressedResponse;
+    }
+
+    public long getRequestCompressionThreshold() {
+        return requestCompressionThreshold;
+    }
+
+    public void setRequestCompressionThreshold(long requestCompressionThreshold) {
+        this.requestCompressionThreshold = requestCompressionThreshold;
+    }
+
+    public String getRequestCompression() {
+        return requestCompression;
+    }
+
+    public void setRequestCompression(String requestCompression) {
+        this.requestCompression = requestCompression;
+    }
+
+    public CompressionStats getCompressionStats() {
+        return compressionStats;
+    }
+
+    @Override
+    public Response dispatch(Request request, JsonProvider jsonProvider, DispatchOptions options) throws Exception {
+        try {
+            return dispatchAsync(request, jsonProvider, options, null).get();
+        }
+        catch (ExecutionException ex) {
+            if(ex.getCause() instanceof Exception)
+                throw (Exception)ex.getCause();
+            throw ex;
+        }
+    }
+
+    @Override
+    public CompletableFuture<Response> dispatchAsync(Request request, JsonProvider jsonProvider, DispatchOptions options, Executor executor) {
+        CompletableFuture<Response> future = new CompletableFuture<>();
+        AsyncRequestProducer requestProducer;
+        try {
+            requestProducer = buildRequestProducer(request, jsonProvider, options);
+        }
+        catch (Exception ex) {
+            future.completeExceptionally(ex);
+            return future;
+        }
+
+        HttpClientContext context = HttpClientContext.create();
+        if(options.getTimeout() != null || options.getConnectTimeout() != null)
+            context.setRequestConfig(buildRequestConfig(options));
+
+        Future<Response> httpFuture = httpClient.execute(requestProducer, new JsonResponseConsumer(jsonProvider, options, compressionStats), context, new FutureCallback<Response>() {
+            @Override
+            public void completed(Response response) {
+                future.complete(response);
+            }
+
+            @Override
+            public void failed(Exception ex) {
+                future.completeExceptionally(ex);
+            }
+
+            @Override
+            public void cancelled() {
+                future.cancel(false);
+            }
+        });
+        future.whenComplete((response, throwable) -> {
+            if(future.isCancelled() && !httpFuture.isDone()) {
+                logger.debug("Cancel request {}: {}", request.getHttpMethod(), request.getUrl());
+                httpFuture.cancel(true);
+            }
+        });
+        return future;
+    }
+
+    private AsyncRequestProducer buildRequestProducer(Request request, JsonProvider jsonProvider, DispatchOptions options) {
+        AsyncRequestBuilder requestBuilder = AsyncRequestBuilder.create(request.getHttpMethod().toUpperCase());
+        requestBuilder.setUri(request.getUrl());
+        logger.debug("Request {}: {}", request.getHttpMethod(), request.getUrl());
+        request.getHeaders().forEach((key, values) -> values.forEach(value -> requestBuilder.addHeader(key, value)));
+        BodyCodec codec = BodyCodecs.get(options.getFormat());
+        if(codec != null && requestBuilder.getFirstHeader(HttpHeaders.ACCEPT) == null)
+            requestBuilder.addHeader(HttpHeaders.ACCEPT, BodyCodecs.accept(codec));
+        if(request.getBody() != null) {
+            if(logger.isDebugEnabled())
+                logger.debug("Request body: {}", jsonProvider.toJson(request.getBody()));
+            byte[] body = codec == null ? JsonWriter.toBytes(jsonProvider, request.getBody()) : BodyCodecs.toBytes(codec, jsonProvider, request.getBody());
+            if(requestCompressionThreshold >= 0 && body.length > requestCompressionThreshold) {
+                byte[] compressedBody = ContentEncoding.encode(requestCompression, body, 0, body.length);
+                compressionStats.recordRequest(body.length, compressedBody.length, true);
+                requestBuilder.setHeader(HttpHeaders.CONTENT_ENCODING, requestCompression);
+                body = compressedBody;
+            }
+            else
+                compressionStats.recordRequest(body.length, body.length, false);
+            requestBuilder.setEntity(new BasicAsyncEntityProducer(body, codec == null ? ContentType.APPLICATION_JSON : ContentType.create(codec.getContentType())));
+        }
+        if(acceptCompressedResponse && requestBuilder.getFirstHeader(HttpHeaders.ACCEPT_ENCODING) == null)
+            requestBuilder.addHeader(HttpHeaders.ACCEPT_ENCODING, ContentEncoding.acceptEncoding());
+        return requestBuilder.build();
+    }
+
+    private RequestConfig buildRequestConfig(DispatchOptions options) {
+        RequestConfig.Builder builder = RequestConfig.custom();
+        if(options.getTimeout() != null) {
+            builder.setResponseTimeout(Timeout.ofMilliseconds(options.getTimeout()));
+            builder.setConnectionRequestTimeout(Timeout.ofMilliseconds(options.getTimeout()));
+        }
+        Long connectTimeout = options.getConnectTimeout() != null ? options.getConnectTimeout() : options.getTimeout();
+        if(options.getTimeout() != null && connectTimeout > options.getTimeout())
+            connectTimeout = options.getTimeout();
+        builder.setConnectTimeout(Timeout.ofMilliseconds(connectTimeout));
+        return builder.build();
+    }
+
+    @Override
+    public void close() {
+        httpClient.close(CloseMode.GRACEFUL);
+    }
+
+}
@@ -0,0 +1,109 @@
+package com.rey.jsonbatch.apachehttpclient5;
+
+import com.rey.jsonbatch.io.ContentEncoding;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClientBuilder;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClients;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManager;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManagerBuilder;
+import org.apache.hc.core5.http2.HttpVersionPolicy;
+import org.apache.hc.core5.reactor.IOReactorConfig;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+
+public class ApacheHttpClient5RequestDispatcherBuilder {
+
+    private int maxTotal = 1000;
+    private int maxPerRoute = 200;
+    private int ioThreads = Runtime.getRuntime().availableProcessors();
+    private HttpVersionPolicy versionPolicy = HttpVersionPolicy.NEGOTIATE;
+    private long maxIdleTime = 60000;
+    private long connectTimeout = 3000;
+    private long responseTimeout = -1;
+    private boolean acceptCompressedResponse = true;
+    private long requestCompressionThreshold = -1;
+    private String requestCompression = ContentEncoding.GZIP;
+
+    ApacheHttpClient5RequestDispatcherBuilder() {
+    }
+
+    public ApacheHttpClient5RequestDispatcherBuilder maxTotal(int maxTotal) {
+        this.maxTotal = maxTotal;
+        return this;
+    }
+
+    public ApacheHttpClient5RequestDispatcherBuilder maxPerRoute(int maxPerRoute) {
+        this.maxPerRoute = maxPerRoute;
+        return this;
+    }
+
+    public ApacheHttpClient5RequestDispatcherBuilder ioThreads(int ioThreads) {
+        this.ioThreads = ioThreads;
+        return this;
+    }
+
+    public ApacheHttpClient5RequestDispatcherBuilder versionPolicy(HttpVersionPolicy versionPolicy) {
+        this.versionPolicy = versionPolicy;
+        return this;
+    }
+
+    public ApacheHttpClient5RequestDispatcherBuilder maxIdleTime(long maxIdleTime) {
+        this.maxIdleTime = maxIdleTime;
+        return this;
+    }
+
+    public ApacheHttpClient5RequestDispatcherBuilder connectTimeout(long connectTimeout) {
+        this.connectTimeout = connectTimeout;
+        return this;
+    }
+
+    public ApacheHttpClient5RequestDispatcherBuilder responseTimeout(long responseTimeout) {
+        this.responseTimeout = responseTimeout;
+        return this;
+    }
+
+    public ApacheHttpClient5RequestDispatcherBuilder acceptCompressedResponse(boolean acceptCompressedResponse) {
+        this.acceptCompressedResponse = acceptCompressedResponse;
+        return this;
+    }
+
+    public ApacheHttpClient5RequestDispatcherBuilder requestCompressionThreshold(long requestCompressionThreshold) {
+        this.requestCompressionThreshold = requestCompressionThreshold;
+        return this;
+    }
+
+    public ApacheHttpClient5RequestDispatcherBuilder requestCompression(String requestCompression) {
+        this.requestCompression = requestCompression;
+        return this;
+    }
+
+    public ApacheHttpClient5RequestDispatcher build() {
+        PoolingAsyncClientConnectionManager connectionManager = PoolingAsyncClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxTotal)
+                .setMaxConnPerRoute(maxPerRoute)
+                .build();
+
+        RequestConfig.Builder requestConfig = RequestConfig.custom()
+                .setConnectTimeout(Timeout.ofMilliseconds(connectTimeout));
+        if (responseTimeout > 0)
+            requestConfig.setResponseTimeout(Timeout.ofMilliseconds(responseTimeout));
+
+        HttpAsyncClientBuilder httpClientBuilder = HttpAsyncClients.custom()
+                .setConnectionManager(connectionManager)
+                .setVersionPolicy(versionPolicy)
+                .setIOReactorConfig(IOReactorConfig.custom()
+                        .setIoThreadCount(ioThreads)
+                        .build())
+                .setDefaultRequestConfig(requestConfig.build())
+                .evictExpiredConnections();
+        if (maxIdleTime > 0)
+            httpClientBuilder.evictIdleConnections(TimeValue.ofMilliseconds(maxIdleTime));
+
+        ApacheHttpClient5RequestDispatcher requestDispatcher = new ApacheHttpClient5RequestDispatcher(httpClientBuilder.build());
+        requestDispatcher.setAcceptCompressedResponse(acceptCompressedResponse);
+        requestDispatcher.setRequestCompressionThreshold(requestCompressionThreshold);
+        requestDispatcher.setRequestCompression(requestCompression);
+        return requestDispatcher;
+    }
+
+}
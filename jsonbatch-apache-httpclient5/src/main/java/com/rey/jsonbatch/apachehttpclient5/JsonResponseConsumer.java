@@ -0,0 +1,206 @@
+package com.rey.jsonbatch.apachehttpclient5;
+
+import com.jayway.jsonpath.spi.json.JsonProvider;
+import com.rey.jsonbatch.BudgetExceededException;
+import com.rey.jsonbatch.codec.BodyCodec;
+import com.rey.jsonbatch.codec.BodyCodecs;
+import com.rey.jsonbatch.io.CompressionStats;
+import com.rey.jsonbatch.io.ContentEncoding;
+import com.rey.jsonbatch.model.DispatchOptions;
+import com.rey.jsonbatch.model.Response;
+import org.apache.hc.client5.http.async.methods.AbstractBinResponseConsumer;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpException;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class JsonResponseConsumer extends AbstractBinResponseConsumer<Response> {
+
+    private static final Logger logger = LoggerFactory.getLogger(JsonResponseConsumer.class);
+
+    private static final int CHUNK_SIZE = 8192;
+
+    private final JsonProvider jsonProvider;
+    private final DispatchOptions options;
+    private final CompressionStats compressionStats;
+
+    private Response response;
+    private Charset charset;
+    private String contentEncoding;
+    private BodyCodec codec;
+    private StreamingJsonParser parser;
+    private ByteArrayOutputStream rawBody;
+    private Exception parsingError;
+    private long length;
+    private final byte[] chunk = new byte[CHUNK_SIZE];
+
+    public JsonResponseConsumer(JsonProvider jsonProvider, DispatchOptions options) {
+        this(jsonProvider, options, new CompressionStats());
+    }
+
+    public JsonResponseConsumer(JsonProvider jsonProvider, DispatchOptions options, CompressionStats compressionStats) {
+        this.jsonProvider = jsonProvider;
+        this.options = options;
+        this.compressionStats = compressionStats;
+    }
+
+    @Override
+    public void informationResponse(HttpResponse response, HttpContext context) throws HttpException, IOException {
+    }
+
+    @Override
+    protected void start(HttpResponse httpResponse, ContentType contentType) throws HttpException, IOException {
+        response = new Response();
+        Map<String, List<String>> headerMap = new HashMap<>();
+        for (Header header : httpResponse.getHeaders()) {
+            headerMap.computeIfAbsent(header.getName(), key -> new ArrayList<>()).add(header.getValue());
+        }
+        response.setStatus(httpResponse.getCode());
+        response.setHeaders(headerMap);
+
+        charset = contentType == null || contentType.getCharset() == null ? StandardCharsets.UTF_8 : contentType.getCharset();
+        Header contentEncodingHeader = httpResponse.getFirstHeader(HttpHeaders.CONTENT_ENCODING);
+        if (contentEncodingHeader != null && !ContentEncoding.isIdentity(contentEncodingHeader.getValue()))
+            contentEncoding = contentEncodingHeader.getValue();
+        codec = contentType == null ? null : BodyCodecs.forContentType(contentType.getMimeType());
+        // compressed and binary bodies are collected as is and decoded in one pass once complete
+        if (StandardCharsets.UTF_8.equals(charset) && contentEncoding == null && codec == null)
+            parser = new StreamingJsonParser(jsonProvider);
+        if (parser == null || options.getFailBackAsString())
+            rawBody = new ByteArrayOutputStream();
+    }
+
+    @Override
+    protected int capacityIncrement() {
+        return CHUNK_SIZE;
+    }
+
+    @Override
+    protected void data(ByteBuffer src, boolean endOfStream) throws IOException {
+        while (src.hasRemaining()) {
+            int count = Math.min(src.remaining(), chunk.length);
+            src.get(chunk, 0, count);
+            length += count;
+            checkLimit(length);
+            if (rawBody != null)
+                rawBody.write(chunk, 0, count);
+            if (parser != null && parsingError == null) {
+                try {
+                    parser.feed(chunk, 0, count);
+                }
+                catch (IOException ex) {
+                    parsingError = ex;
+                }
+            }
+        }
+        // compressed bodies are decoded here, buildResult can't report the budget exception
+        if (endOfStream && contentEncoding != null && length > 0) {
+            try {
+                rawBody = decode(rawBody.toByteArray());
+            }
+            catch (BudgetExceededException ex) {
+                throw ex;
+            }
+            catch (IOException ex) {
+                logger.warn("Cannot decode response body with content encoding {}", contentEncoding, ex);
+                throw new IllegalStateException("Cannot decode response body with content encoding " + contentEncoding, ex);
+            }
+        }
+    }
+
+    private void checkLimit(long size) throws BudgetExceededException {
+        if (options.getMaxResponseBytes() != null && size > options.getMaxResponseBytes()) {
+            Response headers = new Response();
+            headers.setStatus(response.getStatus());
+            headers.setHeaders(response.getHeaders());
+            throw new BudgetExceededException(BudgetExceededException.SCOPE_RESPONSE, options.getMaxResponseBytes(), size, headers);
+        }
+    }
+
+    @Override
+    protected Response buildResult() {
+        if (length == 0)
+            return response;
+        if (contentEncoding == null) {
+            compressionStats.recordResponse(length, length, false);
+            response.setBodySize(length);
+        }
+        else
+            response.setBodySize((long) rawBody.size());
+        Object body = null;
+        if (parsingError == null) {
+            try {
+                if (parser != null)
+                    body = parser.finish();
+                else if (codec != null)
+                    body = codec.read(jsonProvider, new ByteArrayInputStream(rawBody.toByteArray()));
+                else
+                    body = jsonProvider.parse(new ByteArrayInputStream(rawBody.toByteArray()), charset.name());
+            }
+            catch (Exception ex) {
+                parsingError = ex;
+            }
+        }
+
+        if (parsingError == null)
+            response.setBody(body);
+        else if (codec != null) {
+            logger.warn("Cannot parse response body as {}", codec.getFormat(), parsingError);
+            if (!options.getIgnoreParsingError())
+                throw new IllegalStateException("Cannot parse response body as " + codec.getFormat(), parsingError);
+        }
+        else if (options.getFailBackAsString()) {
+            logger.warn("Cannot parse response body as JSON", parsingError);
+            response.setBody(new String(rawBody.toByteArray(), charset));
+        }
+        else {
+            logger.warn("Cannot parse response body as JSON", parsingError);
+            if (!options.getIgnoreParsingError())
+                throw new IllegalStateException("Cannot parse response body as JSON", parsingError);
+        }
+        return response;
+    }
+
+    private ByteArrayOutputStream decode(byte[] bytes) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(bytes.length * 4);
+        try (InputStream inputStream = compressionStats.decode(contentEncoding, new ByteArrayInputStream(bytes))) {
+            int count;
+            while ((count = inputStream.read(chunk)) != -1) {
+                outputStream.write(chunk, 0, count);
+                checkLimit(outputStream.size());
+            }
+        }
+        return outputStream;
+    }
+
+    @Override
+    public void releaseResources() {
+        if (parser != null) {
+            try {
+                parser.close();
+            }
+            catch (IOException ex) {
+                logger.trace("Cannot close parser", ex);
+            }
+        }
+        parser = null;
+        rawBody = null;
+    }
+
+}
@@ -0,0 +1,115 @@
+package com.rey.jsonbatch.apachehttpclient5;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.jayway.jsonpath.spi.json.JsonProvider;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+public class StreamingJsonParser {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final JsonProvider jsonProvider;
+    private final JsonParser parser;
+    private final ByteArrayFeeder feeder;
+
+    private final Deque<Container> stack = new ArrayDeque<>();
+    private Object result;
+    private boolean hasResult;
+
+    public StreamingJsonParser(JsonProvider jsonProvider) throws IOException {
+        this.jsonProvider = jsonProvider;
+        this.parser = JSON_FACTORY.createNonBlockingByteArrayParser();
+        this.feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+    }
+
+    public void feed(byte[] data, int offset, int length) throws IOException {
+        feeder.feedInput(data, offset, offset + length);
+        drain();
+    }
+
+    public Object finish() throws IOException {
+        feeder.endOfInput();
+        drain();
+        if (!stack.isEmpty())
+            throw new JsonParseException(parser, "Unexpected end of JSON input");
+        return result;
+    }
+
+    public boolean hasResult() {
+        return hasResult;
+    }
+
+    public void close() throws IOException {
+        parser.close();
+    }
+
+    private void drain() throws IOException {
+        JsonToken token;
+        while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+            switch (token) {
+                case START_OBJECT:
+                    stack.push(new Container(jsonProvider.createMap(), parser.getCurrentName()));
+                    break;
+                case START_ARRAY:
+                    stack.push(new Container(jsonProvider.createArray(), parser.getCurrentName()));
+                    break;
+                case END_OBJECT:
+                case END_ARRAY:
+                    Container container = stack.pop();
+                    addValue(container.key, container.value);
+                    break;
+                case FIELD_NAME:
+                    break;
+                case VALUE_STRING:
+                    addValue(parser.getCurrentName(), parser.getText());
+                    break;
+                case VALUE_NUMBER_INT:
+                case VALUE_NUMBER_FLOAT:
+                    addValue(parser.getCurrentName(), parser.getNumberValue());
+                    break;
+                case VALUE_TRUE:
+                    addValue(parser.getCurrentName(), Boolean.TRUE);
+                    break;
+                case VALUE_FALSE:
+                    addValue(parser.getCurrentName(), Boolean.FALSE);
+                    break;
+                case VALUE_NULL:
+                    addValue(parser.getCurrentName(), null);
+                    break;
+                default:
+                    throw new JsonParseException(parser, "Unsupported token: " + token);
+            }
+        }
+    }
+
+    private void addValue(String key, Object value) {
+        Container parent = stack.peek();
+        if (parent == null) {
+            result = value;
+            hasResult = true;
+        }
+        else if (jsonProvider.isArray(parent.value))
+            jsonProvider.setArrayIndex(parent.value, parent.size++, value);
+        else
+            jsonProvider.setProperty(parent.value, key, value);
+    }
+
+    private static class Container {
+        final Object value;
+        final String key;
+        int size;
+
+        Container(Object value, String key) {
+            this.value = value;
+            this.key = key;
+        }
+    }
+
+}
@@ -0,0 +1,132 @@
+package com.rey.jsonbatch.apachehttpclient5;
+
+import com.jayway.jsonpath.spi.json.JacksonJsonProvider;
+import com.jayway.jsonpath.spi.json.JsonProvider;
+import com.rey.jsonbatch.BudgetExceededException;
+import com.rey.jsonbatch.io.ContentEncoding;
+import com.rey.jsonbatch.model.DispatchOptions;
+import com.rey.jsonbatch.model.Request;
+import com.rey.jsonbatch.model.Response;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class ApacheHttpClient5RequestDispatcherTest {
+
+    private HttpServer server;
+
+    private ApacheHttpClient5RequestDispatcher dispatcher;
+
+    private JsonProvider jsonProvider = new JacksonJsonProvider();
+
+    @Before
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/json", exchange -> {
+            byte[] body = "{\"id\": 1, \"tags\": [\"a\", \"b\"]}".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(body);
+            }
+        });
+        server.createContext("/gzip", exchange -> {
+            byte[] body = "{\"id\": 2, \"name\": \"compressed\"}".getBytes(StandardCharsets.UTF_8);
+            if(exchange.getRequestHeaders().getFirst("Accept-Encoding").contains("gzip")) {
+                body = ContentEncoding.encode("gzip", body, 0, body.length);
+                exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+            }
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(body);
+            }
+        });
+        server.createContext("/text", exchange -> {
+            byte[] body = "not a json".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(500, body.length);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(body);
+            }
+        });
+        server.start();
+        dispatcher = ApacheHttpClient5RequestDispatcher.builder()
+                .ioThreads(1)
+                .build();
+    }
+
+    @After
+    public void tearDown() {
+        dispatcher.close();
+        server.stop(0);
+    }
+
+    @Test
+    public void dispatch__json() throws Exception {
+        Response response = dispatcher.dispatch(request("/json"), jsonProvider, new DispatchOptions());
+        assertEquals(200, (int) response.getStatus());
+        assertEquals(1, ((Map) response.getBody()).get("id"));
+    }
+
+    @Test
+    public void dispatch__compressedResponse() throws Exception {
+        Response response = dispatcher.dispatch(request("/gzip"), jsonProvider, new DispatchOptions());
+        assertEquals(200, (int) response.getStatus());
+        assertEquals("compressed", ((Map) response.getBody()).get("name"));
+        assertEquals(1, dispatcher.getCompressionStats().getCompressedResponseCount());
+        assertEquals(31, dispatcher.getCompressionStats().getResponseBodyBytes());
+    }
+
+    @Test
+    public void dispatch__responseOverBudget() throws Exception {
+        DispatchOptions options = new DispatchOptions();
+        options.setMaxResponseBytes(16L);
+        try {
+            dispatcher.dispatch(request("/json"), jsonProvider, options);
+            fail("Read response over budget");
+        }
+        catch (BudgetExceededException ex) {
+            assertEquals(16L, ex.getLimit());
+            assertEquals(200, (int) ex.getResponse().getStatus());
+            assertNull(ex.getResponse().getBody());
+        }
+
+        options.setMaxResponseBytes(1024L);
+        Response response = dispatcher.dispatch(request("/gzip"), jsonProvider, options);
+        assertEquals(Long.valueOf(31), response.getBodySize());
+    }
+
+    @Test
+    public void dispatch__failBackAsString() throws Exception {
+        DispatchOptions options = new DispatchOptions();
+        options.setFailBackAsString(true);
+        Response response = dispatcher.dispatch(request("/text"), jsonProvider, options);
+        assertEquals(500, (int) response.getStatus());
+        assertEquals("not a json", response.getBody());
+    }
+
+    @Test(expected = Exception.class)
+    public void dispatch__parsingError() throws Exception {
+        dispatcher.dispatch(request("/text"), jsonProvider, new DispatchOptions());
+    }
+
+    private Request request(String path) {
+        Request request = new Request();
+        request.setHttpMethod("GET");
+        request.setUrl("http://localhost:" + server.getAddress().getPort() + path);
+        request.setHeaders(Collections.emptyMap());
+        return request;
+    }
+
+}
@@ -0,0 +1,41 @@
+package com.rey.jsonbatch.apachehttpclient5;
+
+import com.jayway.jsonpath.spi.json.JacksonJsonProvider;
+import com.jayway.jsonpath.spi.json.JsonProvider;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+
+public class StreamingJsonParserTest {
+
+    private JsonProvider jsonProvider = new JacksonJsonProvider();
+
+    @Test
+    public void parse__byteByByte() throws Exception {
+        String json = "{\"a\": [1, 2.5, \"x\", {\"b\": null, \"c\": [true, false]}], \"d\": {}, \"e\": \"été\"}";
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        StreamingJsonParser parser = new StreamingJsonParser(jsonProvider);
+        for (int i = 0; i < bytes.length; i++)
+            parser.feed(bytes, i, 1);
+        assertEquals(jsonProvider.parse(json), parser.finish());
+    }
+
+    @Test
+    public void parse__scalar() throws Exception {
+        byte[] bytes = "123".getBytes(StandardCharsets.UTF_8);
+        StreamingJsonParser parser = new StreamingJsonParser(jsonProvider);
+        parser.feed(bytes, 0, bytes.length);
+        assertEquals(123, parser.finish());
+    }
+
+    @Test(expected = Exception.class)
+    public void parse__truncated() throws Exception {
+        byte[] bytes = "{\"a\": [1, 2".getBytes(StandardCharsets.UTF_8);
+        StreamingJsonParser parser = new StreamingJsonParser(jsonProvider);
+        parser.feed(bytes, 0, bytes.length);
+        parser.finish();
+    }
+
+}
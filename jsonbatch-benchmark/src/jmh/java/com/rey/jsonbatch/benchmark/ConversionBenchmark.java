@@ -0,0 +1,51 @@
+package com.rey.jsonbatch.benchmark;
+
+import com.jayway.jsonpath.Configuration;
+import com.jayway.jsonpath.DocumentContext;
+import com.jayway.jsonpath.JsonPath;
+import com.rey.jsonbatch.JsonBuilder;
+import com.rey.jsonbatch.convert.NumberMode;
+import com.rey.jsonbatch.function.Functions;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+// Casts a 100k item array with int[] and num[], run with -prof gc to see the allocation per item.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ConversionBenchmark {
+
+    @Param({"BIG", "COMPACT"})
+    public NumberMode numberMode;
+
+    private JsonBuilder jsonBuilder;
+    private DocumentContext context;
+
+    @Setup
+    public void setUp() {
+        jsonBuilder = new JsonBuilder(numberMode, Functions.basic());
+        StringBuilder builder = new StringBuilder("{\"values\": [");
+        for (int i = 0; i < 100000; i++)
+            builder.append(i == 0 ? "" : ",").append(i * 37L);
+        context = JsonPath.using(Configuration.builder().build()).parse(builder.append("]}").toString());
+    }
+
+    @Benchmark
+    public Object integers() {
+        return jsonBuilder.build("int[] $.values", context);
+    }
+
+    @Benchmark
+    public Object numbers() {
+        return jsonBuilder.build("num[] $.values", context);
+    }
+
+}
@@ -0,0 +1,101 @@
+package com.rey.jsonbatch.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jayway.jsonpath.Configuration;
+import com.jayway.jsonpath.spi.json.JacksonJsonProvider;
+import com.jayway.jsonpath.spi.mapper.JacksonMappingProvider;
+import com.rey.jsonbatch.BatchEngine;
+import com.rey.jsonbatch.JsonBuilder;
+import com.rey.jsonbatch.RequestDispatcher;
+import com.rey.jsonbatch.apachehttpclient.ApacheHttpClientRequestDispatcher;
+import com.rey.jsonbatch.concurrent.BatchExecutors;
+import com.rey.jsonbatch.function.Functions;
+import com.rey.jsonbatch.model.BatchTemplate;
+import com.rey.jsonbatch.model.Request;
+import com.rey.jsonbatch.netty.NettyRequestDispatcher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Runs the same chained batches against a local stub server with each dispatcher
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class DispatcherBenchmark {
+
+    @Param({"apache", "netty"})
+    public String dispatcherType;
+
+    @Param({"200"})
+    public int batches;
+
+    @Param({"3"})
+    public int chainLength;
+
+    @Param({"0", "5"})
+    public long serverDelayMillis;
+
+    @Param({"64"})
+    public int connections;
+
+    private StubHttpServer server;
+    private RequestDispatcher requestDispatcher;
+    private ExecutorService executor;
+    private BatchEngine batchEngine;
+    private BatchTemplate template;
+    private Request originalRequest;
+
+    @Setup
+    public void setUp() throws IOException {
+        server = new StubHttpServer(connections, serverDelayMillis);
+        if ("netty".equals(dispatcherType))
+            requestDispatcher = NettyRequestDispatcher.builder()
+                    .maxConnectionsPerHost(connections)
+                    .build();
+        else
+            requestDispatcher = ApacheHttpClientRequestDispatcher.builder()
+                    .maxTotal(connections)
+                    .defaultMaxPerRoute(connections)
+                    .build();
+
+        executor = BatchExecutors.platform(batches);
+        ObjectMapper objectMapper = new ObjectMapper();
+        Configuration conf = Configuration.builder()
+                .jsonProvider(new JacksonJsonProvider(objectMapper))
+                .mappingProvider(new JacksonMappingProvider(objectMapper))
+                .build();
+        batchEngine = new BatchEngine(conf, new JsonBuilder(Functions.basic()), requestDispatcher, executor);
+        template = Templates.chain(server.getBaseUrl(), chainLength);
+        originalRequest = Templates.originalRequest();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        executor.shutdownNow();
+        ((Closeable) requestDispatcher).close();
+        server.close();
+    }
+
+    @Benchmark
+    public void executeConcurrentBatches(Blackhole blackhole) {
+        CompletableFuture<?>[] futures = new CompletableFuture[batches];
+        for (int i = 0; i < batches; i++)
+            futures[i] = batchEngine.executeAsync(originalRequest, template);
+        CompletableFuture.allOf(futures).join();
+        blackhole.consume(futures);
+    }
+
+}
@@ -0,0 +1,83 @@
+package com.rey.jsonbatch.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jayway.jsonpath.Configuration;
+import com.jayway.jsonpath.spi.json.JacksonJsonProvider;
+import com.jayway.jsonpath.spi.mapper.JacksonMappingProvider;
+import com.rey.jsonbatch.BatchEngine;
+import com.rey.jsonbatch.JsonBuilder;
+import com.rey.jsonbatch.concurrent.BatchExecutors;
+import com.rey.jsonbatch.function.Functions;
+import com.rey.jsonbatch.model.BatchTemplate;
+import com.rey.jsonbatch.model.Request;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ExecutorBenchmark {
+
+    @Param({"platform", "virtual"})
+    public String executorType;
+
+    @Param({"1000", "5000"})
+    public int batches;
+
+    @Param({"200"})
+    public int platformThreads;
+
+    @Param({"20"})
+    public long dispatchDelayMillis;
+
+    @Param({"3"})
+    public int chainLength;
+
+    private ExecutorService executor;
+    private BatchEngine batchEngine;
+    private BatchTemplate template;
+    private Request originalRequest;
+
+    @Setup
+    public void setUp() {
+        if ("virtual".equals(executorType) && !BatchExecutors.isVirtualThreadSupported())
+            throw new IllegalStateException("Virtual threads require Java 21+, run with -PjmhJvm=<jdk21>/bin/java");
+        executor = "virtual".equals(executorType) ? BatchExecutors.virtual() : BatchExecutors.platform(platformThreads);
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        Configuration conf = Configuration.builder()
+                .jsonProvider(new JacksonJsonProvider(objectMapper))
+                .mappingProvider(new JacksonMappingProvider(objectMapper))
+                .build();
+        batchEngine = new BatchEngine(conf, new JsonBuilder(Functions.basic()), new SlowRequestDispatcher(dispatchDelayMillis), executor);
+        template = Templates.chain("http://localhost", chainLength);
+        originalRequest = Templates.originalRequest();
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public void executeConcurrentBatches(Blackhole blackhole) {
+        CompletableFuture<?>[] futures = new CompletableFuture[batches];
+        for (int i = 0; i < batches; i++)
+            futures[i] = batchEngine.executeAsync(originalRequest, template);
+        CompletableFuture.allOf(futures).join();
+        blackhole.consume(futures);
+    }
+
+}
@@ -0,0 +1,113 @@
+package com.rey.jsonbatch.benchmark;
+
+import com.jayway.jsonpath.Configuration;
+import com.jayway.jsonpath.JsonPath;
+import com.jayway.jsonpath.spi.json.JacksonJsonProvider;
+import com.jayway.jsonpath.spi.json.JsonProvider;
+import com.jayway.jsonpath.spi.json.JsonSmartJsonProvider;
+import com.rey.jsonbatch.json.CompactJsonProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.concurrent.TimeUnit;
+
+// Run with -PjmhInclude=JsonProviderBenchmark, the gc profiler reports bytes allocated per parse
+// and the retained benchmark prints the heap kept alive by one parsed response.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class JsonProviderBenchmark {
+
+    @Param({"compact", "json-smart", "jackson"})
+    public String provider;
+
+    @Param({"100"})
+    public int items;
+
+    private JsonProvider jsonProvider;
+    private Configuration configuration;
+    private JsonPath path;
+    private String json;
+    private Object document;
+
+    @Setup
+    public void setUp() {
+        jsonProvider = createProvider(provider);
+        configuration = Configuration.builder().jsonProvider(jsonProvider).build();
+        path = JsonPath.compile("$.items[?(@.active == true)].stock.count");
+        json = Templates.responseBody(items);
+        document = jsonProvider.parse(json);
+    }
+
+    @Benchmark
+    public Object parse() {
+        return jsonProvider.parse(json);
+    }
+
+    @Benchmark
+    public Object read() {
+        return path.read(document, configuration);
+    }
+
+    // what the engine does with the batch context after every response
+    @Benchmark
+    public Object copy() {
+        return jsonProvider.parse(jsonProvider.toJson(document));
+    }
+
+    @Benchmark
+    public Object retained(RetainedMemory retainedMemory) {
+        return retainedMemory.responses;
+    }
+
+    static JsonProvider createProvider(String provider) {
+        switch (provider) {
+            case "compact":
+                return new CompactJsonProvider();
+            case "json-smart":
+                return new JsonSmartJsonProvider();
+            case "jackson":
+                return new JacksonJsonProvider();
+            default:
+                throw new IllegalArgumentException("Unknown provider: " + provider);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class RetainedMemory {
+
+        private static final int SAMPLES = 2000;
+
+        private Object[] responses;
+
+        @Setup(Level.Trial)
+        public void measure(JsonProviderBenchmark benchmark) {
+            JsonProvider jsonProvider = createProvider(benchmark.provider);
+            jsonProvider.parse(benchmark.json);
+            responses = new Object[SAMPLES];
+            long before = usedHeap();
+            for (int i = 0; i < SAMPLES; i++)
+                responses[i] = jsonProvider.parse(benchmark.json);
+            long after = usedHeap();
+            System.out.println("Retained bytes per response [" + benchmark.provider + "]: " + (after - before) / SAMPLES);
+        }
+
+        private static long usedHeap() {
+            MemoryMXBean memoryMXBean = ManagementFactory.getMemoryMXBean();
+            for (int i = 0; i < 3; i++)
+                System.gc();
+            return memoryMXBean.getHeapMemoryUsage().getUsed();
+        }
+
+    }
+
+}
@@ -0,0 +1,49 @@
+package com.rey.jsonbatch.benchmark;
+
+import com.jayway.jsonpath.Configuration;
+import com.rey.jsonbatch.BatchEngine;
+import com.rey.jsonbatch.JsonBuilder;
+import com.rey.jsonbatch.function.Functions;
+import com.rey.jsonbatch.model.BatchTemplate;
+import com.rey.jsonbatch.model.Request;
+import com.rey.jsonbatch.model.Response;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+// Picks the last of many sibling requests by equality predicates on the same path.
+// Lists with less than 8 siblings are evaluated one predicate at a time, larger ones through the predicate index.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RoutingBenchmark {
+
+    @Param({"4", "40", "200"})
+    public int siblings;
+
+    private BatchEngine batchEngine;
+    private BatchTemplate template;
+    private Request originalRequest;
+
+    @Setup
+    public void setUp() {
+        batchEngine = new BatchEngine(Configuration.builder().build(), new JsonBuilder(Functions.basic()), new SlowRequestDispatcher(0));
+        template = Templates.routing("http://localhost", siblings);
+        originalRequest = Templates.originalRequest();
+        originalRequest.setBody(Collections.singletonMap("type", "type_" + (siblings - 1)));
+    }
+
+    @Benchmark
+    public Response route() throws Exception {
+        return batchEngine.execute(originalRequest, template);
+    }
+
+}
@@ -0,0 +1,50 @@
+package com.rey.jsonbatch.benchmark;
+
+import com.jayway.jsonpath.Configuration;
+import com.rey.jsonbatch.BatchEngine;
+import com.rey.jsonbatch.JsonBuilder;
+import com.rey.jsonbatch.TemplateCompiler;
+import com.rey.jsonbatch.function.Functions;
+import com.rey.jsonbatch.model.BatchTemplate;
+import com.rey.jsonbatch.model.Request;
+import com.rey.jsonbatch.model.Response;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+// One engine and one frozen template shared by all benchmark threads, run with -PjmhThreads=1..64 to see how it scales
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SharedEngineBenchmark {
+
+    @Param({"false", "true"})
+    public boolean compiled;
+
+    private BatchEngine batchEngine;
+    private BatchTemplate template;
+    private Request originalRequest;
+
+    @Setup
+    public void setUp() {
+        JsonBuilder jsonBuilder = new JsonBuilder(Functions.basic());
+        batchEngine = BatchEngine.builder(Configuration.builder().build(), jsonBuilder, new SlowRequestDispatcher(0))
+                .templateCompiler(compiled ? new TemplateCompiler(jsonBuilder) : null)
+                .build();
+        template = Templates.chain("http://localhost", 3).freeze();
+        originalRequest = Templates.originalRequest();
+    }
+
+    @Benchmark
+    public Response execute() throws Exception {
+        return batchEngine.execute(originalRequest, template);
+    }
+
+}
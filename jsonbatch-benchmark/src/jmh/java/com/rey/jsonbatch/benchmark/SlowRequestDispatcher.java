@@ -0,0 +1,34 @@
+package com.rey.jsonbatch.benchmark;
+
+import com.jayway.jsonpath.spi.json.JsonProvider;
+import com.rey.jsonbatch.RequestDispatcher;
+import com.rey.jsonbatch.model.DispatchOptions;
+import com.rey.jsonbatch.model.Request;
+import com.rey.jsonbatch.model.Response;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class SlowRequestDispatcher implements RequestDispatcher {
+
+    private final long delayMillis;
+
+    public SlowRequestDispatcher(long delayMillis) {
+        this.delayMillis = delayMillis;
+    }
+
+    @Override
+    public Response dispatch(Request request, JsonProvider jsonProvider, DispatchOptions options) throws Exception {
+        Thread.sleep(delayMillis);
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("id", 1);
+        body.put("url", request.getUrl());
+        Response response = new Response();
+        response.setStatus(200);
+        response.setHeaders(Collections.singletonMap("Content-Type", Collections.singletonList("application/json")));
+        response.setBody(body);
+        return response;
+    }
+
+}
@@ -0,0 +1,57 @@
+package com.rey.jsonbatch.benchmark;
+
+import com.jayway.jsonpath.Configuration;
+import com.jayway.jsonpath.DocumentContext;
+import com.jayway.jsonpath.JsonPath;
+import com.rey.jsonbatch.CompiledSchema;
+import com.rey.jsonbatch.JsonBuilder;
+import com.rey.jsonbatch.TemplateCompiler;
+import com.rey.jsonbatch.function.Functions;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Shapes a list response into a new body, with the JsonBuilder interpreter and with the compiled schema.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TemplateCompilerBenchmark {
+
+    @Param({"10", "100"})
+    public int items;
+
+    private JsonBuilder jsonBuilder;
+    private Map<String, Object> schema;
+    private CompiledSchema compiledSchema;
+    private DocumentContext context;
+
+    @Setup
+    public void setUp() {
+        Configuration conf = Configuration.builder().build();
+        jsonBuilder = new JsonBuilder(Functions.basic());
+        schema = Templates.shapingSchema();
+        compiledSchema = new TemplateCompiler(jsonBuilder).compile(schema);
+        if (compiledSchema.getInterpretedNodes() > 0)
+            throw new IllegalStateException("Schema is not fully compiled");
+        context = JsonPath.using(conf).parse("{\"responses\": [{\"status\": 200, \"body\": " + Templates.responseBody(items) + "}]}");
+    }
+
+    @Benchmark
+    public Object interpreted() {
+        return jsonBuilder.build(schema, context);
+    }
+
+    @Benchmark
+    public Object compiled() {
+        return compiledSchema.build(context);
+    }
+
+}
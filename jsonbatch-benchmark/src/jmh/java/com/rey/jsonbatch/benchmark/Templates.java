@@ -0,0 +1,116 @@
+package com.rey.jsonbatch.benchmark;
+
+import com.rey.jsonbatch.model.BatchTemplate;
+import com.rey.jsonbatch.model.Request;
+import com.rey.jsonbatch.model.RequestTemplate;
+import com.rey.jsonbatch.model.ResponseTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class Templates {
+
+    public static BatchTemplate chain(String baseUrl, int length) {
+        RequestTemplate first = null;
+        RequestTemplate last = null;
+        for (int i = 0; i < length; i++) {
+            RequestTemplate requestTemplate = new RequestTemplate();
+            requestTemplate.setHttpMethod("GET");
+            requestTemplate.setUrl(i == 0 ? baseUrl + "/items" : baseUrl + "/items/@{$.responses[" + (i - 1) + "].body.id}@");
+            requestTemplate.setHeaders(Collections.singletonMap("Accept", "str application/json"));
+            if (first == null)
+                first = requestTemplate;
+            else
+                last.setRequests(Collections.singletonList(requestTemplate));
+            last = requestTemplate;
+        }
+
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("ids", "int[] $.responses[*].body.id");
+        body.put("total", "int __sum(\"$.responses[*].body.id\")");
+        ResponseTemplate responseTemplate = new ResponseTemplate();
+        responseTemplate.setStatus("$.responses[0].status");
+        responseTemplate.setBody(body);
+
+        BatchTemplate template = new BatchTemplate();
+        template.setRequests(Collections.singletonList(first));
+        template.setResponses(Collections.singletonList(responseTemplate));
+        return template;
+    }
+
+    // a router that switches on the original body type, one sibling request per type
+    public static BatchTemplate routing(String baseUrl, int siblings) {
+        List<RequestTemplate> requestTemplates = new ArrayList<>();
+        for (int i = 0; i < siblings; i++) {
+            RequestTemplate requestTemplate = new RequestTemplate();
+            requestTemplate.setPredicate("__cmp(\"@{$.original.body.type}@ == type_" + i + "\")");
+            requestTemplate.setHttpMethod("GET");
+            requestTemplate.setUrl(baseUrl + "/types/" + i);
+            requestTemplates.add(requestTemplate);
+        }
+        ResponseTemplate responseTemplate = new ResponseTemplate();
+        responseTemplate.setStatus("$.responses[0].status");
+        responseTemplate.setBody("$.responses[0].body");
+
+        BatchTemplate template = new BatchTemplate();
+        template.setRequests(requestTemplates);
+        template.setResponses(Collections.singletonList(responseTemplate));
+        return template;
+    }
+
+    // a typical list response: an envelope with paging info and a page of small records
+    public static String responseBody(int items) {
+        StringBuilder builder = new StringBuilder("{\"page\": 1, \"total\": ").append(items).append(", \"items\": [");
+        for (int i = 0; i < items; i++) {
+            if (i > 0)
+                builder.append(", ");
+            builder.append("{\"id\": ").append(1000 + i)
+                    .append(", \"name\": \"item-").append(i).append('"')
+                    .append(", \"price\": ").append(i % 50).append(".25")
+                    .append(", \"active\": ").append(i % 3 != 0)
+                    .append(", \"tags\": [\"a\", \"b\"]")
+                    .append(", \"stock\": {\"warehouse\": ").append(i % 7).append(", \"count\": ").append(i * 3).append("}}");
+        }
+        return builder.append("]}").toString();
+    }
+
+    // reshapes responseBody(): renames and casts fields of every item, and adds some aggregates
+    public static Map<String, Object> shapingSchema() {
+        Map<String, Object> item = new LinkedHashMap<>();
+        item.put("__array_path", "$.responses[0].body.items[*]");
+        item.put("id", "int $.id");
+        item.put("title", "str $.name");
+        item.put("link", "https://example.com/items/@{$.id}@?name=@{$.name}@");
+        item.put("price", "num $.price");
+        item.put("available", "bool $.active");
+        item.put("labels", "str[] $.tags[*]");
+        item.put("warehouse", "int $.stock.warehouse");
+        item.put("in_stock", "__cmp(\"@{$.stock.count}@ > 0\")");
+
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("count", "int $.responses[0].body.total");
+        summary.put("page", "int $.responses[0].body.page");
+        summary.put("value", "num __sum(\"$.responses[0].body.items[*].price\")");
+        summary.put("max_stock", "int __max(\"$.responses[0].body.items[*].stock.count\")");
+        summary.put("status", "str $.responses[0].status");
+
+        Map<String, Object> schema = new LinkedHashMap<>();
+        schema.put("summary", summary);
+        schema.put("items", Collections.singletonList(item));
+        schema.put("ids", "int[] $.responses[0].body.items[*].id");
+        return schema;
+    }
+
+    public static Request originalRequest() {
+        Request request = new Request();
+        request.setHttpMethod("POST");
+        request.setUrl("http://localhost/batch");
+        request.setHeaders(Collections.emptyMap());
+        request.setBody(Collections.singletonMap("type", "benchmark"));
+        return request;
+    }
+
+}
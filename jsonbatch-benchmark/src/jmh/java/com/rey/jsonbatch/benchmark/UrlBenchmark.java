@@ -0,0 +1,51 @@
+package com.rey.jsonbatch.benchmark;
+
+import com.jayway.jsonpath.Configuration;
+import com.jayway.jsonpath.DocumentContext;
+import com.jayway.jsonpath.JsonPath;
+import com.rey.jsonbatch.CompiledSchema;
+import com.rey.jsonbatch.JsonBuilder;
+import com.rey.jsonbatch.TemplateCompiler;
+import com.rey.jsonbatch.function.Functions;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+// Builds a sub-request url with inline variables, with the JsonBuilder interpreter and with the compiled schema.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class UrlBenchmark {
+
+    private static final String URL = "https://api.example.com/users/@{$.responses[0].body.user.id}@/posts/@{$.responses[0].body.posts[0].id}@"
+            + "/comments?author=@{$.responses[0].body.user.name}@&page=@{$.original.body.page}@";
+
+    private JsonBuilder jsonBuilder;
+    private CompiledSchema compiledSchema;
+    private DocumentContext context;
+
+    @Setup
+    public void setUp() {
+        jsonBuilder = new JsonBuilder(Functions.basic());
+        compiledSchema = new TemplateCompiler(jsonBuilder).compile(URL);
+        context = JsonPath.using(Configuration.builder().build()).parse("{\"original\": {\"body\": {\"page\": 3}}, \"responses\": [{\"body\": "
+                + "{\"user\": {\"id\": 12345, \"name\": \"jane_doe\"}, \"posts\": [{\"id\": 987654}, {\"id\": 987655}]}}]}");
+    }
+
+    @Benchmark
+    public Object interpreted() {
+        return jsonBuilder.build(URL, context);
+    }
+
+    @Benchmark
+    public Object compiled() {
+        return compiledSchema.build(context);
+    }
+
+}
@@ -0,0 +1,14 @@
+package com.rey.jsonbatch.binary;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+
+public class CborBodyCodec extends JacksonBodyCodec {
+
+    public static final String FORMAT = "cbor";
+    public static final String CONTENT_TYPE = "application/cbor";
+
+    public CborBodyCodec() {
+        super(FORMAT, CONTENT_TYPE, new CBORFactory());
+    }
+
+}
@@ -0,0 +1,154 @@
+package com.rey.jsonbatch.binary;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.jayway.jsonpath.spi.json.JsonProvider;
+import com.rey.jsonbatch.codec.BodyCodec;
+import com.rey.jsonbatch.json.CompactJsonProvider;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Base64;
+
+// Streams between any Jackson binary dataformat and the engine's JsonProvider tree,
+// without going through an intermediate databind tree or JSON text.
+public class JacksonBodyCodec implements BodyCodec {
+
+    private final String format;
+    private final String contentType;
+    private final JsonFactory jsonFactory;
+
+    public JacksonBodyCodec(String format, String contentType, JsonFactory jsonFactory) {
+        this.format = format;
+        this.contentType = contentType;
+        this.jsonFactory = jsonFactory;
+    }
+
+    @Override
+    public String getFormat() {
+        return format;
+    }
+
+    @Override
+    public String getContentType() {
+        return contentType;
+    }
+
+    @Override
+    public void write(JsonProvider jsonProvider, Object body, OutputStream outputStream) throws IOException {
+        try (JsonGenerator generator = jsonFactory.createGenerator(outputStream)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            writeNode(generator, jsonProvider, body);
+        }
+    }
+
+    @Override
+    public Object read(JsonProvider jsonProvider, InputStream inputStream) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(inputStream)) {
+            JsonToken token = parser.nextToken();
+            if(token == null)
+                return null;
+            Object node = readNode(parser, token, jsonProvider);
+            if(jsonProvider instanceof CompactJsonProvider)
+                return ((CompactJsonProvider) jsonProvider).compact(node);
+            return node;
+        }
+    }
+
+    private void writeNode(JsonGenerator generator, JsonProvider jsonProvider, Object node) throws IOException {
+        if(jsonProvider.isMap(node)) {
+            generator.writeStartObject();
+            for(String key : jsonProvider.getPropertyKeys(node)) {
+                Object value = jsonProvider.getMapValue(node, key);
+                if(value == JsonProvider.UNDEFINED)
+                    continue;
+                generator.writeFieldName(key);
+                writeNode(generator, jsonProvider, value);
+            }
+            generator.writeEndObject();
+        }
+        else if(jsonProvider.isArray(node)) {
+            generator.writeStartArray();
+            for(Object item : jsonProvider.toIterable(node))
+                writeNode(generator, jsonProvider, item);
+            generator.writeEndArray();
+        }
+        else
+            writeValue(generator, jsonProvider.unwrap(node));
+    }
+
+    private void writeValue(JsonGenerator generator, Object value) throws IOException {
+        if(value == null)
+            generator.writeNull();
+        else if(value instanceof String)
+            generator.writeString((String) value);
+        else if(value instanceof Boolean)
+            generator.writeBoolean((Boolean) value);
+        else if(value instanceof Integer || value instanceof Short || value instanceof Byte)
+            generator.writeNumber(((Number) value).intValue());
+        else if(value instanceof Long)
+            generator.writeNumber((Long) value);
+        else if(value instanceof Double || value instanceof Float)
+            generator.writeNumber(((Number) value).doubleValue());
+        else if(value instanceof BigInteger)
+            generator.writeNumber((BigInteger) value);
+        else if(value instanceof BigDecimal)
+            generator.writeNumber((BigDecimal) value);
+        else
+            generator.writeString(value.toString());
+    }
+
+    private Object readNode(JsonParser parser, JsonToken token, JsonProvider jsonProvider) throws IOException {
+        // a truncated body ends without closing its objects and arrays
+        if(token == null)
+            throw new IOException("Unexpected end of " + format + " body");
+        switch (token) {
+            case START_OBJECT: {
+                Object object = jsonProvider.createMap();
+                for(token = parser.nextToken(); token == JsonToken.FIELD_NAME; token = parser.nextToken()) {
+                    String key = parser.getCurrentName();
+                    jsonProvider.setProperty(object, key, readNode(parser, parser.nextToken(), jsonProvider));
+                }
+                if(token == null)
+                    throw new IOException("Unexpected end of " + format + " body");
+                return object;
+            }
+            case START_ARRAY: {
+                Object array = jsonProvider.createArray();
+                int index = 0;
+                for(token = parser.nextToken(); token != JsonToken.END_ARRAY; token = parser.nextToken())
+                    jsonProvider.setArrayIndex(array, index++, readNode(parser, token, jsonProvider));
+                return array;
+            }
+            case VALUE_STRING:
+                return parser.getText();
+            case VALUE_NUMBER_INT:
+                return parser.getNumberValue();
+            case VALUE_NUMBER_FLOAT:
+                // keep the JSON providers' number types, binary formats may carry floats or big decimals.
+                // A float is widened through its decimal form like TypeConverter, so 0.1f stays 0.1
+                if(parser.getNumberType() == JsonParser.NumberType.BIG_DECIMAL)
+                    return parser.getDecimalValue();
+                if(parser.getNumberType() == JsonParser.NumberType.FLOAT)
+                    return Double.valueOf(Float.toString(parser.getFloatValue()));
+                return parser.getDoubleValue();
+            case VALUE_TRUE:
+                return Boolean.TRUE;
+            case VALUE_FALSE:
+                return Boolean.FALSE;
+            case VALUE_NULL:
+                return null;
+            case VALUE_EMBEDDED_OBJECT:
+                Object value = parser.getEmbeddedObject();
+                return value instanceof byte[] ? Base64.getEncoder().encodeToString((byte[]) value) : value;
+            default:
+                throw new IOException("Unexpected token " + token + " in " + format + " body");
+        }
+    }
+
+}
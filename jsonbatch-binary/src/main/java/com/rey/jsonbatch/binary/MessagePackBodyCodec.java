@@ -0,0 +1,14 @@
+package com.rey.jsonbatch.binary;
+
+import org.msgpack.jackson.dataformat.MessagePackFactory;
+
+public class MessagePackBodyCodec extends JacksonBodyCodec {
+
+    public static final String FORMAT = "msgpack";
+    public static final String CONTENT_TYPE = "application/x-msgpack";
+
+    public MessagePackBodyCodec() {
+        super(FORMAT, CONTENT_TYPE, new MessagePackFactory());
+    }
+
+}
@@ -0,0 +1,14 @@
+package com.rey.jsonbatch.binary;
+
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+public class SmileBodyCodec extends JacksonBodyCodec {
+
+    public static final String FORMAT = "smile";
+    public static final String CONTENT_TYPE = "application/x-jackson-smile";
+
+    public SmileBodyCodec() {
+        super(FORMAT, CONTENT_TYPE, new SmileFactory());
+    }
+
+}
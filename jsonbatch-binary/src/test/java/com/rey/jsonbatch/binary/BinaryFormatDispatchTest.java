@@ -0,0 +1,116 @@
+package com.rey.jsonbatch.binary;
+
+import com.jayway.jsonpath.Configuration;
+import com.jayway.jsonpath.spi.json.JacksonJsonProvider;
+import com.jayway.jsonpath.spi.json.JsonProvider;
+import com.rey.jsonbatch.BatchEngine;
+import com.rey.jsonbatch.JsonBuilder;
+import com.rey.jsonbatch.apachehttpclient.ApacheHttpClientRequestDispatcher;
+import com.rey.jsonbatch.codec.BodyCodec;
+import com.rey.jsonbatch.function.Functions;
+import com.rey.jsonbatch.model.BatchTemplate;
+import com.rey.jsonbatch.model.Request;
+import com.rey.jsonbatch.model.RequestTemplate;
+import com.rey.jsonbatch.model.Response;
+import com.rey.jsonbatch.model.ResponseTemplate;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BinaryFormatDispatchTest {
+
+    private HttpServer server;
+
+    private ApacheHttpClientRequestDispatcher dispatcher;
+
+    private JsonProvider jsonProvider = new JacksonJsonProvider();
+
+    private BodyCodec codec = new CborBodyCodec();
+
+    private AtomicReference<String> receivedContentType = new AtomicReference<>();
+
+    private AtomicReference<String> receivedAccept = new AtomicReference<>();
+
+    @Before
+    public void setUp() throws Exception {
+        // echoes the request body and doubles its amount, answering in CBOR when the client accepts it
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/orders", exchange -> {
+            receivedContentType.set(exchange.getRequestHeaders().getFirst("Content-Type"));
+            receivedAccept.set(exchange.getRequestHeaders().getFirst("Accept"));
+            Map<String, Object> order = (Map<String, Object>) codec.read(jsonProvider, exchange.getRequestBody());
+            Map<String, Object> result = new LinkedHashMap<>(order);
+            result.put("amount", ((Number) order.get("amount")).longValue() * 2);
+
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            codec.write(jsonProvider, result, body);
+            exchange.getResponseHeaders().add("Content-Type", codec.getContentType());
+            exchange.sendResponseHeaders(200, body.size());
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(body.toByteArray());
+            }
+        });
+        server.start();
+        dispatcher = ApacheHttpClientRequestDispatcher.builder().build();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        dispatcher.close();
+        server.stop(0);
+    }
+
+    @Test
+    public void execute__cborRequest() throws Exception {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("id", "str $.original.body.id");
+        body.put("amount", "int $.original.body.amount");
+        RequestTemplate requestTemplate = new RequestTemplate();
+        requestTemplate.setHttpMethod("POST");
+        requestTemplate.setUrl("http://localhost:" + server.getAddress().getPort() + "/orders");
+        requestTemplate.setBody(body);
+        requestTemplate.setFormat("cbor");
+
+        Map<String, Object> responseBody = new LinkedHashMap<>();
+        responseBody.put("id", "$.responses[0].body.id");
+        responseBody.put("amount", "int $.responses[0].body.amount");
+        ResponseTemplate responseTemplate = new ResponseTemplate();
+        responseTemplate.setBody(responseBody);
+
+        BatchTemplate template = new BatchTemplate();
+        template.setRequests(Collections.singletonList(requestTemplate));
+        template.setResponses(Collections.singletonList(responseTemplate));
+
+        Request original = new Request();
+        original.setHttpMethod("POST");
+        original.setUrl("http://localhost/batch");
+        original.setHeaders(Collections.emptyMap());
+        Map<String, Object> originalBody = new LinkedHashMap<>();
+        originalBody.put("id", "order-1");
+        originalBody.put("amount", 21);
+        original.setBody(originalBody);
+
+        BatchEngine batchEngine = new BatchEngine(Configuration.builder().jsonProvider(jsonProvider).build(),
+                new JsonBuilder(Functions.basic()), dispatcher);
+        Response response = batchEngine.execute(original, template);
+
+        assertEquals("application/cbor", receivedContentType.get());
+        assertTrue(receivedAccept.get().startsWith("application/cbor"));
+        assertEquals("order-1", ((Map) response.getBody()).get("id"));
+        assertEquals(BigInteger.valueOf(42), ((Map) response.getBody()).get("amount"));
+    }
+
+}
@@ -0,0 +1,152 @@
+package com.rey.jsonbatch.binary;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.jayway.jsonpath.spi.json.JacksonJsonNodeJsonProvider;
+import com.jayway.jsonpath.spi.json.JacksonJsonProvider;
+import com.jayway.jsonpath.spi.json.JsonProvider;
+import com.rey.jsonbatch.codec.BodyCodec;
+import com.rey.jsonbatch.codec.BodyCodecs;
+import com.rey.jsonbatch.json.CompactJsonProvider;
+import com.rey.jsonbatch.json.JsonObject;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class JacksonBodyCodecTest {
+
+    @Test
+    public void roundTrip__cbor() throws Exception {
+        assertRoundTrip(new CborBodyCodec());
+    }
+
+    @Test
+    public void roundTrip__smile() throws Exception {
+        assertRoundTrip(new SmileBodyCodec());
+    }
+
+    @Test
+    public void roundTrip__msgpack() throws Exception {
+        // MessagePack has no arbitrary precision numbers
+        Map<String, Object> data = buildData();
+        data.remove("big");
+        data.remove("total");
+        JsonProvider jsonProvider = new JacksonJsonProvider();
+        BodyCodec codec = new MessagePackBodyCodec();
+        byte[] bytes = BodyCodecs.toBytes(codec, jsonProvider, data);
+        assertEquals(data, codec.read(jsonProvider, new ByteArrayInputStream(bytes)));
+    }
+
+    @Test
+    public void read__compactProvider() throws Exception {
+        BodyCodec codec = new CborBodyCodec();
+        JsonProvider jsonProvider = new CompactJsonProvider();
+        byte[] bytes = BodyCodecs.toBytes(codec, new JacksonJsonProvider(), buildData());
+        Object body = codec.read(jsonProvider, new ByteArrayInputStream(bytes));
+        assertTrue(body instanceof JsonObject);
+        assertEquals(buildData(), body);
+    }
+
+    @Test
+    public void read__jsonNodeProvider() throws Exception {
+        BodyCodec codec = new SmileBodyCodec();
+        JsonProvider jsonProvider = new JacksonJsonNodeJsonProvider();
+        byte[] bytes = BodyCodecs.toBytes(codec, new JacksonJsonProvider(), buildData());
+        Object body = codec.read(jsonProvider, new ByteArrayInputStream(bytes));
+        assertTrue(body instanceof JsonNode);
+        assertEquals(new JacksonJsonProvider().toJson(buildData()), jsonProvider.toJson(body));
+    }
+
+    @Test
+    public void read__truncated() throws Exception {
+        BodyCodec codec = new CborBodyCodec();
+        JsonProvider jsonProvider = new JacksonJsonProvider();
+        byte[] bytes = BodyCodecs.toBytes(codec, jsonProvider, buildData());
+        for(int length : new int[]{bytes.length - 1, bytes.length / 2}) {
+            try {
+                codec.read(jsonProvider, new ByteArrayInputStream(Arrays.copyOf(bytes, length)));
+                fail("Read truncated body");
+            }
+            catch (IOException ex) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void read__float() throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (JsonGenerator generator = new CBORFactory().createGenerator(outputStream)) {
+            generator.writeStartArray();
+            generator.writeNumber(0.1f);
+            generator.writeEndArray();
+        }
+        Object body = new CborBodyCodec().read(new JacksonJsonProvider(), new ByteArrayInputStream(outputStream.toByteArray()));
+        assertEquals(Arrays.asList(0.1), body);
+    }
+
+    @Test
+    public void bodyCodecs__serviceLoader() {
+        assertTrue(BodyCodecs.get("CBOR") instanceof CborBodyCodec);
+        assertTrue(BodyCodecs.get("smile") instanceof SmileBodyCodec);
+        assertTrue(BodyCodecs.forContentType("application/x-msgpack; charset=UTF-8") instanceof MessagePackBodyCodec);
+        assertNull(BodyCodecs.get("json"));
+        assertNull(BodyCodecs.forContentType("application/json"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void bodyCodecs__unsupported() {
+        BodyCodecs.get("avro");
+    }
+
+    @Test
+    public void smallerThanJson() {
+        Map<String, Object> data = new LinkedHashMap<>();
+        Long[] values = new Long[500];
+        for(int i = 0; i < values.length; i++)
+            values[i] = 1000000L + i * 37;
+        data.put("values", Arrays.asList(values));
+        JsonProvider jsonProvider = new JacksonJsonProvider();
+        int jsonLength = jsonProvider.toJson(data).getBytes(StandardCharsets.UTF_8).length;
+        assertTrue(BodyCodecs.toBytes(new CborBodyCodec(), jsonProvider, data).length < jsonLength);
+        assertTrue(BodyCodecs.toBytes(new SmileBodyCodec(), jsonProvider, data).length < jsonLength);
+        assertTrue(BodyCodecs.toBytes(new MessagePackBodyCodec(), jsonProvider, data).length < jsonLength);
+    }
+
+    private void assertRoundTrip(BodyCodec codec) throws Exception {
+        JsonProvider jsonProvider = new JacksonJsonProvider();
+        byte[] bytes = BodyCodecs.toBytes(codec, jsonProvider, buildData());
+        assertEquals(buildData(), codec.read(jsonProvider, new ByteArrayInputStream(bytes)));
+    }
+
+    private Map<String, Object> buildData() {
+        Map<String, Object> nested = new LinkedHashMap<>();
+        nested.put("name", "Zoë");
+        nested.put("active", true);
+        nested.put("none", null);
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("id", 7);
+        data.put("long", 9876543210L);
+        data.put("big", new BigInteger("123456789012345678901234567890"));
+        data.put("price", 2.5);
+        data.put("total", new BigDecimal("12345678901234567890.125"));
+        data.put("tags", Arrays.asList("a", "b"));
+        data.put("nested", nested);
+        return data;
+    }
+
+}
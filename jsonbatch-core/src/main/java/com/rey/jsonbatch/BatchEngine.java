@@ -3,13 +3,17 @@ package com.rey.jsonbatch;
 import com.jayway.jsonpath.Configuration;
 import com.jayway.jsonpath.DocumentContext;
 import com.jayway.jsonpath.JsonPath;
+import com.rey.jsonbatch.concurrent.BatchExecutors;
 import com.rey.jsonbatch.function.MathUtils;
+import com.rey.jsonbatch.io.JsonWriter;
+import com.rey.jsonbatch.jfr.FlightEvents;
 import com.rey.jsonbatch.model.BatchTemplate;
 import com.rey.jsonbatch.model.DispatchOptions;
 import com.rey.jsonbatch.model.Request;
 import com.rey.jsonbatch.model.RequestTemplate;
 import com.rey.jsonbatch.model.Response;
 import com.rey.jsonbatch.model.ResponseTemplate;
+import com.rey.jsonbatch.model.TemplateExplanation;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -18,9 +22,17 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @SuppressWarnings("unchecked")
@@ -28,44 +40,191 @@ public class BatchEngine {
 
     private Logger logger = LoggerFactory.getLogger(BatchEngine.class);
 
-    private Configuration configuration;
-    private JsonBuilder jsonBuilder;
-    private RequestDispatcher requestDispatcher;
+    private final Configuration configuration;
+    private final JsonBuilder jsonBuilder;
+    private final RequestDispatcher requestDispatcher;
+    private final Executor executor;
+    private final Executor dispatchExecutor;
+    private final TemplateCompiler templateCompiler;
+    private final DispatchOptions defaultDispatchOptions;
+    private final BatchResultCache resultCache;
 
     private static final String KEY_ORIGINAL = "original";
     private static final String KEY_REQUESTS = "requests";
     private static final String KEY_RESPONSES = "responses";
 
+    private static final int MAX_PREDICATE_INDEXES = 1024;
+
+    public static final int STATUS_BUDGET_EXCEEDED = 502;
+
+    // used when the template has none, templates are never modified by the engine
+    private static final DispatchOptions DEFAULT_DISPATCH_OPTIONS = new DispatchOptions().freeze();
+
+    private final Map<List<?>, PredicateIndex<?>> predicateIndexes = Collections.synchronizedMap(new IdentityHashMap<>());
+
 
     public BatchEngine(Configuration configuration,
                        JsonBuilder jsonBuilder,
                        RequestDispatcher requestDispatcher) {
+        this(configuration, jsonBuilder, requestDispatcher, BatchExecutors.defaultExecutor());
+    }
+
+    public BatchEngine(Configuration configuration,
+                       JsonBuilder jsonBuilder,
+                       RequestDispatcher requestDispatcher,
+                       Executor executor) {
+        this(configuration, jsonBuilder, requestDispatcher, executor, BatchExecutors.defaultExecutor(), null, null, null);
+    }
+
+    // the configuration is fixed once built, so every execution of a shared engine behaves the same
+    BatchEngine(Configuration configuration,
+                JsonBuilder jsonBuilder,
+                RequestDispatcher requestDispatcher,
+                Executor executor,
+                Executor dispatchExecutor,
+                TemplateCompiler templateCompiler,
+                DispatchOptions defaultDispatchOptions,
+                BatchResultCache resultCache) {
         this.configuration = configuration;
         this.jsonBuilder = jsonBuilder;
         this.requestDispatcher = requestDispatcher;
+        this.executor = executor;
+        this.dispatchExecutor = dispatchExecutor;
+        this.templateCompiler = templateCompiler;
+        this.defaultDispatchOptions = defaultDispatchOptions == null ? DEFAULT_DISPATCH_OPTIONS : defaultDispatchOptions.copy().freeze();
+        this.resultCache = resultCache;
+    }
+
+    public static BatchEngineBuilder builder(Configuration configuration, JsonBuilder jsonBuilder, RequestDispatcher requestDispatcher) {
+        return new BatchEngineBuilder(configuration, jsonBuilder, requestDispatcher);
+    }
+
+    public TemplateCompiler getTemplateCompiler() {
+        return templateCompiler;
+    }
+
+    public DispatchOptions getDefaultDispatchOptions() {
+        return defaultDispatchOptions;
+    }
+
+    public BatchResultCache getResultCache() {
+        return resultCache;
+    }
+
+    // what the template can do at runtime without running it, for admission control and capacity planning
+    public TemplateExplanation explain(BatchTemplate template) {
+        return new TemplateAnalyzer(jsonBuilder).analyze(template);
+    }
+
+    public CompletableFuture<Response> executeAsync(Request originalRequest, BatchTemplate template) {
+        CompletableFuture<Response> future = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                try {
+                    future.complete(execute(originalRequest, template));
+                }
+                catch (Throwable ex) {
+                    future.completeExceptionally(ex);
+                }
+            });
+        }
+        catch (RejectedExecutionException ex) {
+            future.completeExceptionally(ex);
+        }
+        return future;
     }
 
     public Response execute(Request originalRequest, BatchTemplate template) throws Exception {
+        if(resultCache != null && template.getId() != null && template.getCache() != null && template.getCache().getTtl() != null)
+            return resultCache.get(configuration, originalRequest, template, () -> executeRecorded(originalRequest, template), executor);
+        return executeRecorded(originalRequest, template);
+    }
+
+    private Response executeRecorded(Request originalRequest, BatchTemplate template) throws Exception {
+        Object event = FlightEvents.beginBatch();
+        if(event == null)
+            return executeBatch(originalRequest, template);
+        Response response = null;
+        try {
+            response = executeBatch(originalRequest, template);
+            return response;
+        }
+        finally {
+            FlightEvents.endBatch(event, template.getId(), originalRequest.getHttpMethod(), originalRequest.getUrl(),
+                    response == null || response.getStatus() == null ? 0 : response.getStatus());
+        }
+    }
+
+    private Response executeBatch(Request originalRequest, BatchTemplate template) throws Exception {
         logger.info("Start executing batch with [{}] original request", originalRequest);
         Map<String, Object> batchResponse = new LinkedHashMap<>();
         batchResponse.put(KEY_ORIGINAL, originalRequest.toMap());
         batchResponse.put(KEY_REQUESTS, new ArrayList<>());
         batchResponse.put(KEY_RESPONSES, new ArrayList<>());
-        DocumentContext context = JsonPath.using(configuration).parse(configuration.jsonProvider().toJson(batchResponse));
-        if(template.getDispatchOptions() == null)
-            template.setDispatchOptions(new DispatchOptions());
+        DispatchOptions options = getDispatchOptions(template);
+        Object rebuildEvent = FlightEvents.beginContextRebuild();
+        String json = configuration.jsonProvider().toJson(batchResponse);
+        long bytes = batchBytes(json, options, rebuildEvent);
+        if(options.getMaxBatchBytes() != null && bytes > options.getMaxBatchBytes()) {
+            logger.warn("Original request exceeded [{}] bytes budget", options.getMaxBatchBytes());
+            FlightEvents.endContextRebuild(rebuildEvent, 0, bytes);
+            return buildBudgetExceededResponse(new BudgetExceededException(BudgetExceededException.SCOPE_BATCH, options.getMaxBatchBytes(), bytes), 0);
+        }
+        DocumentContext context = JsonPath.using(configuration).parse(json);
+        FlightEvents.endContextRebuild(rebuildEvent, 0, bytes);
+        long deadline = options.getBatchTimeout() == null ? 0 : System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(options.getBatchTimeout());
 
         RequestTemplate requestTemplate = chooseRequestTemplate(template.getRequests(), context);
         int count = 0;
         while(requestTemplate != null) {
             logger.info("Preparing request with [{}] index", count);
+            Object buildEvent = FlightEvents.beginRequestBuild();
             Request request = buildRequest(requestTemplate, context);
+            FlightEvents.endRequestBuild(buildEvent, count, request.getHttpMethod(), request.getUrl());
             logger.info("Dispatching request with [{}] index", count);
-            Response response = requestDispatcher.dispatch(request, configuration.jsonProvider(), template.getDispatchOptions());
+            Response response;
+            try {
+                response = dispatch(request, requestTemplate, options, deadline, count);
+                checkResponseSize(response, options);
+            }
+            catch (TimeoutException ex) {
+                logger.warn("Timeout when executing request with [{}] index", count);
+                if(!options.getReturnPartialOnTimeout())
+                    throw ex;
+                ((List)batchResponse.get(KEY_REQUESTS)).add(request.toMap());
+                response = new Response();
+                response.setStatus(504);
+                response.setBody(batchResponse);
+                logger.info("Done executing batch with [{}] original request", originalRequest);
+                return response;
+            }
+            catch (BudgetExceededException ex) {
+                logger.warn("Response of request with [{}] index exceeded [{}] bytes budget", count, ex.getLimit());
+                if(!isDropBody(options) || ex.getResponse() == null)
+                    return buildBudgetExceededResponse(ex, count);
+                response = withoutBody(ex.getResponse());
+            }
             logger.info("Received response with [{}] status", response.getStatus());
+            List<Object> responses = (List<Object>)batchResponse.get(KEY_RESPONSES);
             ((List)batchResponse.get(KEY_REQUESTS)).add(request.toMap());
-            ((List)batchResponse.get(KEY_RESPONSES)).add(response.toMap());
-            context = JsonPath.using(configuration).parse(configuration.jsonProvider().toJson(batchResponse));
+            responses.add(response.toMap());
+            rebuildEvent = FlightEvents.beginContextRebuild();
+            json = configuration.jsonProvider().toJson(batchResponse);
+            bytes = batchBytes(json, options, rebuildEvent);
+            if(options.getMaxBatchBytes() != null && bytes > options.getMaxBatchBytes()) {
+                logger.warn("Batch state exceeded [{}] bytes budget after request with [{}] index", options.getMaxBatchBytes(), count);
+                if(isDropBody(options) && response.getBody() != null) {
+                    responses.set(responses.size() - 1, withoutBody(response).toMap());
+                    json = configuration.jsonProvider().toJson(batchResponse);
+                    bytes = utf8Length(json);
+                }
+                if(bytes > options.getMaxBatchBytes()) {
+                    FlightEvents.endContextRebuild(rebuildEvent, responses.size(), bytes);
+                    return buildBudgetExceededResponse(new BudgetExceededException(BudgetExceededException.SCOPE_BATCH, options.getMaxBatchBytes(), bytes), count);
+                }
+            }
+            context = JsonPath.using(configuration).parse(json);
+            FlightEvents.endContextRebuild(rebuildEvent, responses.size(), bytes);
             logger.info("Done executing request with [{}] index", count);
 
             ResponseTemplate responseTemplate = chooseResponseTemplate(requestTemplate.getResponses(), context);
@@ -97,35 +256,207 @@ public class BatchEngine {
         return response;
     }
 
-    private RequestTemplate chooseRequestTemplate(List<RequestTemplate> requestTemplates, DocumentContext context) {
-        if(requestTemplates == null)
-            return null;
-        for(RequestTemplate requestTemplate : requestTemplates) {
-            if(requestTemplate.getPredicate() == null || MathUtils.toBoolean(jsonBuilder.build(requestTemplate.getPredicate(), context)))
-                return requestTemplate;
+    // fields the template leaves unset come from the engine's defaults, flags have their own defaults and are kept
+    private DispatchOptions getDispatchOptions(BatchTemplate template) {
+        DispatchOptions defaults = defaultDispatchOptions;
+        DispatchOptions options = template.getDispatchOptions();
+        if(options == null)
+            return defaults;
+        if(isSet(options.getTimeout(), defaults.getTimeout())
+                && isSet(options.getConnectTimeout(), defaults.getConnectTimeout())
+                && isSet(options.getBatchTimeout(), defaults.getBatchTimeout())
+                && isSet(options.getFormat(), defaults.getFormat())
+                && isSet(options.getMaxResponseBytes(), defaults.getMaxResponseBytes())
+                && isSet(options.getMaxBatchBytes(), defaults.getMaxBatchBytes())
+                && isSet(options.getBudgetExceededAction(), defaults.getBudgetExceededAction()))
+            return options;
+        options = options.copy();
+        if(options.getTimeout() == null)
+            options.setTimeout(defaults.getTimeout());
+        if(options.getConnectTimeout() == null)
+            options.setConnectTimeout(defaults.getConnectTimeout());
+        if(options.getBatchTimeout() == null)
+            options.setBatchTimeout(defaults.getBatchTimeout());
+        if(options.getFormat() == null)
+            options.setFormat(defaults.getFormat());
+        if(options.getMaxResponseBytes() == null)
+            options.setMaxResponseBytes(defaults.getMaxResponseBytes());
+        if(options.getMaxBatchBytes() == null)
+            options.setMaxBatchBytes(defaults.getMaxBatchBytes());
+        if(options.getBudgetExceededAction() == null)
+            options.setBudgetExceededAction(defaults.getBudgetExceededAction());
+        return options;
+    }
+
+    private static boolean isSet(Object value, Object defaultValue) {
+        return value != null || defaultValue == null;
+    }
+
+    // dispatchers that count the body stop reading at the limit, others are checked after the fact
+    private void checkResponseSize(Response response, DispatchOptions options) throws BudgetExceededException {
+        if(options.getMaxResponseBytes() == null || response.getBody() == null)
+            return;
+        long size = response.getBodySize() != null ? response.getBodySize() : JsonWriter.length(configuration.jsonProvider(), response.getBody());
+        if(size > options.getMaxResponseBytes())
+            throw new BudgetExceededException(BudgetExceededException.SCOPE_RESPONSE, options.getMaxResponseBytes(), size, response);
+    }
+
+    private boolean isDropBody(DispatchOptions options) {
+        return DispatchOptions.BUDGET_DROP_BODY.equals(options.getBudgetExceededAction());
+    }
+
+    private Response withoutBody(Response response) {
+        Response result = new Response();
+        result.setStatus(response.getStatus());
+        result.setHeaders(response.getHeaders());
+        return result;
+    }
+
+    // the batch state is dropped, only the budget that was exceeded is reported
+    private Response buildBudgetExceededResponse(BudgetExceededException ex, int index) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("error", "budget_exceeded");
+        body.put("scope", ex.getScope());
+        body.put("limit", ex.getLimit());
+        body.put("size", ex.getSize());
+        body.put("request_index", index);
+        Response response = new Response();
+        response.setStatus(STATUS_BUDGET_EXCEEDED);
+        response.setBody(body);
+        return response;
+    }
+
+    // only counted when there is a budget or a recorded event, -1 otherwise
+    private static long batchBytes(String json, DispatchOptions options, Object rebuildEvent) {
+        return options.getMaxBatchBytes() != null || rebuildEvent != null ? utf8Length(json) : -1;
+    }
+
+    private static long utf8Length(String value) {
+        long length = 0;
+        for(int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if(c < 0x80)
+                length++;
+            else if(c < 0x800)
+                length += 2;
+            else if(Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                length += 4;
+                i++;
+            }
+            else
+                length += 3;
+        }
+        return length;
+    }
+
+    private Response dispatch(Request request, RequestTemplate requestTemplate, DispatchOptions options, long deadline, int index) throws Exception {
+        Object event = FlightEvents.beginDispatch();
+        if(event == null)
+            return dispatch(request, requestTemplate, options, deadline);
+        Response response = null;
+        try {
+            response = dispatch(request, requestTemplate, options, deadline);
+            return response;
         }
-        return null;
+        finally {
+            FlightEvents.endDispatch(event, index, request.getHttpMethod(), request.getUrl(),
+                    response == null || response.getStatus() == null ? 0 : response.getStatus(),
+                    response == null || response.getBodySize() == null ? -1 : response.getBodySize());
+        }
+    }
+
+    private Response dispatch(Request request, RequestTemplate requestTemplate, DispatchOptions options, long deadline) throws Exception {
+        Long timeout = requestTemplate.getTimeout() != null ? requestTemplate.getTimeout() : options.getTimeout();
+        if(deadline > 0) {
+            long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if(remaining <= 0)
+                throw new TimeoutException("Batch deadline exceeded");
+            timeout = timeout == null ? remaining : Math.min(timeout, remaining);
+        }
+        DispatchOptions requestOptions = options;
+        if(requestTemplate.getFormat() != null) {
+            requestOptions = options.copy();
+            requestOptions.setFormat(requestTemplate.getFormat());
+        }
+        if(timeout == null)
+            return requestDispatcher.dispatch(request, configuration.jsonProvider(), requestOptions);
+
+        if(requestOptions == options)
+            requestOptions = options.copy();
+        requestOptions.setTimeout(timeout);
+        CompletableFuture<Response> future = requestDispatcher.dispatchAsync(request, configuration.jsonProvider(), requestOptions, dispatchExecutor);
+        try {
+            return future.get(timeout, TimeUnit.MILLISECONDS);
+        }
+        catch (TimeoutException ex) {
+            logger.warn("Cancel request after [{}] ms", timeout);
+            future.cancel(true);
+            throw ex;
+        }
+        catch (ExecutionException ex) {
+            if(ex.getCause() instanceof Exception)
+                throw (Exception)ex.getCause();
+            throw ex;
+        }
+    }
+
+    private RequestTemplate chooseRequestTemplate(List<RequestTemplate> requestTemplates, DocumentContext context) {
+        return chooseTemplate("request", requestTemplates, RequestTemplate::getPredicate, context);
     }
 
     private ResponseTemplate chooseResponseTemplate(List<ResponseTemplate> responseTemplates, DocumentContext context) {
-        if(responseTemplates == null)
+        return chooseTemplate("response", responseTemplates, ResponseTemplate::getPredicate, context);
+    }
+
+    private <T> T chooseTemplate(String kind, List<T> templates, Function<T, String> predicateGetter, DocumentContext context) {
+        if(templates == null)
             return null;
-        for(ResponseTemplate responseTemplate : responseTemplates) {
-            if(responseTemplate.getPredicate() == null || MathUtils.toBoolean(jsonBuilder.build(responseTemplate.getPredicate(), context)))
-                return responseTemplate;
+        Object event = FlightEvents.beginTemplateChoice();
+        boolean indexed = templates.size() >= PredicateIndex.MIN_SIBLINGS;
+        T result = null;
+        if(indexed)
+            result = getPredicateIndex(templates, predicateGetter).choose(context, predicate -> MathUtils.toBoolean(build(predicate, context)));
+        else {
+            for(T template : templates) {
+                String predicate = predicateGetter.apply(template);
+                if(predicate == null || MathUtils.toBoolean(build(predicate, context))) {
+                    result = template;
+                    break;
+                }
+            }
         }
-        return null;
+        if(event != null)
+            FlightEvents.endTemplateChoice(event, kind, templates.size(), templates.indexOf(result), indexed);
+        return result;
+    }
+
+    private Object build(Object schema, DocumentContext context) {
+        if(templateCompiler != null)
+            return templateCompiler.build(schema, context);
+        return jsonBuilder.build(schema, context);
+    }
+
+    private <T> PredicateIndex<T> getPredicateIndex(List<T> templates, Function<T, String> predicateGetter) {
+        PredicateIndex<T> index = (PredicateIndex<T>) predicateIndexes.get(templates);
+        if(index != null && index.isValidFor(templates, predicateGetter))
+            return index;
+        index = PredicateIndex.build(templates, predicateGetter);
+        // templates deserialized per call would pile up, start over instead of tracking usage
+        if(predicateIndexes.size() >= MAX_PREDICATE_INDEXES)
+            predicateIndexes.clear();
+        predicateIndexes.put(templates, index);
+        return index;
     }
 
     private Request buildRequest(RequestTemplate template, DocumentContext context) {
         Request request = new Request();
-        request.setHttpMethod(jsonBuilder.build(template.getHttpMethod(), context).toString());
-        request.setUrl(jsonBuilder.build(template.getUrl(), context).toString());
+        request.setHttpMethod(build(template.getHttpMethod(), context).toString());
+        request.setUrl(build(template.getUrl(), context).toString());
         if(template.getBody() != null) {
-            request.setBody(jsonBuilder.build(template.getBody(), context));
+            request.setBody(build(template.getBody(), context));
         }
         if(template.getHeaders() != null) {
-            request.setHeaders(buildHeaders((Map<String, Object>)jsonBuilder.build(template.getHeaders(), context)));
+            request.setHeaders(buildHeaders((Map<String, Object>)build(template.getHeaders(), context)));
         }
         else {
             request.setHeaders(new HashMap<>());
@@ -136,13 +467,13 @@ public class BatchEngine {
     private Response buildResponse(ResponseTemplate template, DocumentContext context) {
         Response response = new Response();
         if(template.getStatus() != null)
-            response.setStatus(MathUtils.toInteger(jsonBuilder.build(template.getStatus(), context)));
+            response.setStatus(MathUtils.toInteger(build(template.getStatus(), context)));
         else
             response.setStatus(200);
         if(template.getBody() != null)
-            response.setBody(jsonBuilder.build(template.getBody(), context));
+            response.setBody(build(template.getBody(), context));
         if(template.getHeaders() != null)
-            response.setHeaders(buildHeaders((Map<String, Object>)jsonBuilder.build(template.getHeaders(), context)));
+            response.setHeaders(buildHeaders((Map<String, Object>)build(template.getHeaders(), context)));
         return response;
     }
 
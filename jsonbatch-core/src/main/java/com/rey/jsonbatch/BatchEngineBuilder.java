@@ -0,0 +1,62 @@
+package com.rey.jsonbatch;
+
+import com.jayway.jsonpath.Configuration;
+import com.rey.jsonbatch.concurrent.BatchExecutors;
+import com.rey.jsonbatch.model.DispatchOptions;
+
+import java.util.concurrent.Executor;
+
+public class BatchEngineBuilder {
+
+    private final Configuration configuration;
+    private final JsonBuilder jsonBuilder;
+    private final RequestDispatcher requestDispatcher;
+    private Executor executor = BatchExecutors.defaultExecutor();
+    private Executor dispatchExecutor = BatchExecutors.defaultExecutor();
+    private TemplateCompiler templateCompiler;
+    private DispatchOptions defaultDispatchOptions;
+    private BatchResultCache resultCache;
+
+    BatchEngineBuilder(Configuration configuration, JsonBuilder jsonBuilder, RequestDispatcher requestDispatcher) {
+        this.configuration = configuration;
+        this.jsonBuilder = jsonBuilder;
+        this.requestDispatcher = requestDispatcher;
+    }
+
+    // runs executeAsync batches
+    public BatchEngineBuilder executor(Executor executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    // runs blocking dispatches that have a timeout while the batch thread waits. Must differ from a bounded executor,
+    // or dispatches queue behind the batches waiting for them
+    public BatchEngineBuilder dispatchExecutor(Executor dispatchExecutor) {
+        this.dispatchExecutor = dispatchExecutor;
+        return this;
+    }
+
+    // builds template expressions with compiled evaluators instead of the JsonBuilder interpreter
+    public BatchEngineBuilder templateCompiler(TemplateCompiler templateCompiler) {
+        this.templateCompiler = templateCompiler;
+        return this;
+    }
+
+    // used for templates without dispatch options, budget limits a template leaves unset also come from here
+    public BatchEngineBuilder defaultDispatchOptions(DispatchOptions defaultDispatchOptions) {
+        this.defaultDispatchOptions = defaultDispatchOptions;
+        return this;
+    }
+
+    // serves templates with cache options from this cache, other templates always run
+    public BatchEngineBuilder resultCache(BatchResultCache resultCache) {
+        this.resultCache = resultCache;
+        return this;
+    }
+
+    public BatchEngine build() {
+        return new BatchEngine(configuration, jsonBuilder, requestDispatcher, executor, dispatchExecutor,
+                templateCompiler, defaultDispatchOptions, resultCache);
+    }
+
+}
@@ -0,0 +1,388 @@
+package com.rey.jsonbatch;
+
+import com.jayway.jsonpath.Configuration;
+import com.jayway.jsonpath.JsonPath;
+import com.jayway.jsonpath.PathNotFoundException;
+import com.jayway.jsonpath.spi.json.JsonProvider;
+import com.rey.jsonbatch.json.CompactJsonProvider;
+import com.rey.jsonbatch.model.BatchTemplate;
+import com.rey.jsonbatch.model.CacheOptions;
+import com.rey.jsonbatch.model.Immutables;
+import com.rey.jsonbatch.model.Request;
+import com.rey.jsonbatch.model.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+// Final responses of templates with cache options, keyed by template id and a hash of the parts of the original request
+// the template reads. Bounded by entry count with LRU eviction. A stale entry is served while one execution refreshes it,
+// concurrent misses of one key wait for a single execution. Headers and bodies of the responses are read-only.
+public class BatchResultCache {
+
+    private Logger logger = LoggerFactory.getLogger(BatchResultCache.class);
+
+    private static final List<String> DEFAULT_KEY_PATHS = Arrays.asList("$.http_method", "$.url", "$.body");
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final int maxEntries;
+    private final LongSupplier clock;
+    private final LinkedHashMap<String, Entry> entries;
+    private final Map<String, CompletableFuture<Response>> loading = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder staleHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder coalescedMisses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+    private final LongAdder refreshFailures = new LongAdder();
+
+    public BatchResultCache(int maxEntries) {
+        this(maxEntries, () -> TimeUnit.NANOSECONDS.toMillis(System.nanoTime()));
+    }
+
+    BatchResultCache(int maxEntries, LongSupplier clock) {
+        if(maxEntries <= 0)
+            throw new IllegalArgumentException("Max entries must be positive but got: " + maxEntries);
+        this.maxEntries = maxEntries;
+        this.clock = clock;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if(size() <= BatchResultCache.this.maxEntries)
+                    return false;
+                evictions.increment();
+                return true;
+            }
+        };
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getStaleHits() {
+        return staleHits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    // misses that waited for the execution of an earlier one
+    public long getCoalescedMisses() {
+        return coalescedMisses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public long getRefreshes() {
+        return refreshes.sum();
+    }
+
+    public long getRefreshFailures() {
+        return refreshFailures.sum();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    // drops the results of one template, e.g. when the data behind it changed
+    public synchronized void invalidate(String templateId) {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while(iterator.hasNext()) {
+            if(templateId.equals(iterator.next().template.getId()))
+                iterator.remove();
+        }
+    }
+
+    Response get(Configuration configuration, Request originalRequest, BatchTemplate template,
+                 Callable<Response> loader, Executor executor) throws Exception {
+        CacheOptions options = template.getCache();
+        String key = buildKey(configuration, originalRequest, template);
+        long now = clock.getAsLong();
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+        }
+        // a reloaded template may build a different response for the same request
+        if(entry != null && entry.template == template) {
+            if(now < entry.freshUntil) {
+                hits.increment();
+                return copy(entry.response);
+            }
+            if(now < entry.staleUntil) {
+                staleHits.increment();
+                if(entry.refreshing.compareAndSet(false, true))
+                    refresh(configuration, key, entry, template, loader, executor);
+                return copy(entry.response);
+            }
+        }
+        CompletableFuture<Response> load = new CompletableFuture<>();
+        CompletableFuture<Response> running = loading.putIfAbsent(key, load);
+        if(running != null) {
+            coalescedMisses.increment();
+            return copy(await(running));
+        }
+        misses.increment();
+        try {
+            Response response = readOnlyCopy(configuration, loader.call());
+            store(key, template, options, response);
+            load.complete(response);
+            return copy(response);
+        }
+        catch (Exception ex) {
+            load.completeExceptionally(ex);
+            throw ex;
+        }
+        finally {
+            loading.remove(key, load);
+        }
+    }
+
+    private Response await(CompletableFuture<Response> running) throws Exception {
+        try {
+            return running.get();
+        }
+        catch (ExecutionException ex) {
+            if(ex.getCause() instanceof Exception)
+                throw (Exception) ex.getCause();
+            throw ex;
+        }
+    }
+
+    private void refresh(Configuration configuration, String key, Entry entry, BatchTemplate template, Callable<Response> loader, Executor executor) {
+        refreshes.increment();
+        try {
+            executor.execute(() -> {
+                try {
+                    Response response = loader.call();
+                    if(!store(key, template, template.getCache(), readOnlyCopy(configuration, response))) {
+                        refreshFailures.increment();
+                        logger.warn("Keep stale result of template [{}], refresh returned status [{}]", template.getId(), response.getStatus());
+                    }
+                }
+                catch (Exception ex) {
+                    refreshFailures.increment();
+                    logger.warn("Keep stale result of template [{}], refresh failed", template.getId(), ex);
+                }
+                finally {
+                    entry.refreshing.set(false);
+                }
+            });
+        }
+        catch (RuntimeException ex) {
+            refreshFailures.increment();
+            entry.refreshing.set(false);
+            logger.warn("Keep stale result of template [{}], refresh rejected", template.getId(), ex);
+        }
+    }
+
+    // only successful responses are kept, errors are retried by the next request
+    private boolean store(String key, BatchTemplate template, CacheOptions options, Response response) {
+        if(response == null || response.getStatus() == null || response.getStatus() < 200 || response.getStatus() >= 300)
+            return false;
+        long now = clock.getAsLong();
+        long freshUntil = now + options.getTtl();
+        Long staleWhileRevalidate = options.getStaleWhileRevalidate();
+        long staleUntil = staleWhileRevalidate == null ? freshUntil : freshUntil + staleWhileRevalidate;
+        Entry entry = new Entry(template, response, freshUntil, staleUntil);
+        synchronized (this) {
+            entries.put(key, entry);
+        }
+        return true;
+    }
+
+    // compact nodes are read-only already and smaller than a copy into maps and lists
+    @SuppressWarnings("unchecked")
+    private Response readOnlyCopy(Configuration configuration, Response response) {
+        if(response == null)
+            return null;
+        Response result = new Response();
+        result.setStatus(response.getStatus());
+        result.setHeaders((Map<String, List<String>>) Immutables.copyOf(response.getHeaders()));
+        if(configuration.jsonProvider() instanceof CompactJsonProvider)
+            result.setBody(((CompactJsonProvider) configuration.jsonProvider()).compact(response.getBody()));
+        else
+            result.setBody(Immutables.copyOf(response.getBody()));
+        result.setBodySize(response.getBodySize());
+        return result;
+    }
+
+    // every caller gets its own response around the shared read-only headers and body
+    private Response copy(Response response) {
+        if(response == null)
+            return null;
+        Response result = new Response();
+        result.setStatus(response.getStatus());
+        result.setHeaders(response.getHeaders());
+        result.setBody(response.getBody());
+        result.setBodySize(response.getBodySize());
+        return result;
+    }
+
+    String buildKey(Configuration configuration, Request originalRequest, BatchTemplate template) {
+        CacheOptions options = template.getCache();
+        JsonProvider jsonProvider = configuration.jsonProvider();
+        StringBuilder builder = new StringBuilder();
+        List<String> keyPaths = options.getKeyPaths() == null ? DEFAULT_KEY_PATHS : options.getKeyPaths();
+        if(!keyPaths.isEmpty()) {
+            Object document = jsonProvider.parse(jsonProvider.toJson(originalRequest.toMap()));
+            for(String path : keyPaths) {
+                builder.append(path).append('=');
+                appendCanonical(builder, read(configuration, document, path), jsonProvider);
+                builder.append('\n');
+            }
+        }
+        if(options.getKeyHeaders() != null) {
+            for(String name : options.getKeyHeaders()) {
+                builder.append(name.toLowerCase(Locale.ROOT)).append(':');
+                appendCanonical(builder, getHeader(originalRequest, name), jsonProvider);
+                builder.append('\n');
+            }
+        }
+        return template.getId() + '\n' + sha256(builder.toString());
+    }
+
+    private Object read(Configuration configuration, Object document, String path) {
+        try {
+            return JsonPath.using(configuration).parse(document).read(path);
+        }
+        catch (PathNotFoundException ex) {
+            return null;
+        }
+    }
+
+    private List<String> getHeader(Request originalRequest, String name) {
+        if(originalRequest.getHeaders() == null)
+            return null;
+        List<String> values = null;
+        for(Map.Entry<String, List<String>> header : originalRequest.getHeaders().entrySet()) {
+            if(header.getKey() != null && header.getKey().equalsIgnoreCase(name) && header.getValue() != null) {
+                if(values == null)
+                    values = new ArrayList<>();
+                values.addAll(header.getValue());
+            }
+        }
+        return values;
+    }
+
+    // object keys are sorted and numbers normalized, so {"a":1.0,"b":2} and {"b":2,"a":1} give the same key
+    private void appendCanonical(StringBuilder builder, Object value, JsonProvider jsonProvider) {
+        if(value instanceof Map || (!(value instanceof Collection) && jsonProvider.isMap(value))) {
+            Map<String, Object> sorted = new TreeMap<>();
+            for(String name : jsonProvider.getPropertyKeys(value))
+                sorted.put(name, jsonProvider.getMapValue(value, name));
+            builder.append('{');
+            boolean first = true;
+            for(Map.Entry<String, Object> entry : sorted.entrySet()) {
+                if(!first)
+                    builder.append(',');
+                first = false;
+                appendString(builder, entry.getKey());
+                builder.append(':');
+                appendCanonical(builder, entry.getValue(), jsonProvider);
+            }
+            builder.append('}');
+        }
+        else if(value instanceof Collection || jsonProvider.isArray(value)) {
+            builder.append('[');
+            int length = jsonProvider.length(value);
+            for(int i = 0; i < length; i++) {
+                if(i > 0)
+                    builder.append(',');
+                appendCanonical(builder, jsonProvider.getArrayIndex(value, i), jsonProvider);
+            }
+            builder.append(']');
+        }
+        else {
+            Object unwrapped = jsonProvider.unwrap(value);
+            if(unwrapped == null)
+                builder.append("null");
+            else if(unwrapped instanceof Number)
+                builder.append(new BigDecimal(unwrapped.toString()).stripTrailingZeros().toPlainString());
+            else if(unwrapped instanceof Boolean)
+                builder.append(unwrapped);
+            else
+                appendString(builder, unwrapped.toString());
+        }
+    }
+
+    private void appendString(StringBuilder builder, String value) {
+        builder.append('"');
+        for(int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if(c == '"' || c == '\\')
+                builder.append('\\');
+            builder.append(c);
+        }
+        builder.append('"');
+    }
+
+    private static String sha256(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+            char[] chars = new char[digest.length * 2];
+            for(int i = 0; i < digest.length; i++) {
+                chars[i * 2] = HEX[(digest[i] >> 4) & 0xF];
+                chars[i * 2 + 1] = HEX[digest[i] & 0xF];
+            }
+            return new String(chars);
+        }
+        catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 is not available", ex);
+        }
+    }
+
+    private static class Entry {
+
+        final BatchTemplate template;
+        final Response response;
+        final long freshUntil;
+        final long staleUntil;
+        final AtomicBoolean refreshing = new AtomicBoolean();
+
+        Entry(BatchTemplate template, Response response, long freshUntil, long staleUntil) {
+            this.template = template;
+            this.response = response;
+            this.freshUntil = freshUntil;
+            this.staleUntil = staleUntil;
+        }
+
+    }
+
+}
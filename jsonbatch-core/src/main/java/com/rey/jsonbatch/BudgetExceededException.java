@@ -0,0 +1,49 @@
+package com.rey.jsonbatch;
+
+import com.rey.jsonbatch.model.Response;
+
+import java.io.IOException;
+
+// Thrown when a response body or the batch state grows over its byte budget. Reading stops at the limit, so size is
+// the count when it was noticed, not the full size.
+public class BudgetExceededException extends IOException {
+
+    public static final String SCOPE_RESPONSE = "response";
+
+    public static final String SCOPE_BATCH = "batch";
+
+    private final String scope;
+    private final long limit;
+    private final long size;
+    private final Response response;
+
+    public BudgetExceededException(String scope, long limit, long size) {
+        this(scope, limit, size, null);
+    }
+
+    // response has the status and headers received before the body was dropped
+    public BudgetExceededException(String scope, long limit, long size, Response response) {
+        super("Exceeded " + scope + " budget of [" + limit + "] bytes with [" + size + "] bytes");
+        this.scope = scope;
+        this.limit = limit;
+        this.size = size;
+        this.response = response;
+    }
+
+    public String getScope() {
+        return scope;
+    }
+
+    public long getLimit() {
+        return limit;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public Response getResponse() {
+        return response;
+    }
+
+}
@@ -0,0 +1,141 @@
+package com.rey.jsonbatch;
+
+import com.jayway.jsonpath.Configuration;
+import com.jayway.jsonpath.DocumentContext;
+import com.jayway.jsonpath.JsonPath;
+import com.jayway.jsonpath.Option;
+import com.jayway.jsonpath.spi.json.JsonProvider;
+import com.rey.jsonbatch.JsonBuilder.Type;
+import com.rey.jsonbatch.convert.TypeConverter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// A json path compiled once. Paths made of properties and non-negative indexes ($.a.b[0]['c d']), with at most one
+// wildcard ($.items[*].id), are walked through the JsonProvider directly, without the per read evaluation state of JsonPath.
+// Other paths, and any step that doesn't find a value (missing key, wrong node type, index out of range), are read by
+// JsonPath so results and errors stay the same.
+final class CompiledPath {
+
+    private static final Pattern PATTERN_SEGMENT = Pattern.compile("\\.([\\w-]+)|\\[(\\d{1,9})]|\\['([^'\\\\]*)']|(\\[\\*]|\\.\\*)");
+
+    private static final Object WILDCARD = new Object();
+
+    private final JsonPath jsonPath;
+
+    // String keys, Integer indexes and the wildcard, null when the path can't be walked directly
+    private final Object[] segments;
+
+    private final int wildcard;
+
+    private CompiledPath(JsonPath jsonPath, Object[] segments) {
+        this.jsonPath = jsonPath;
+        this.segments = segments;
+        this.wildcard = segments == null ? -1 : Arrays.asList(segments).indexOf(WILDCARD);
+    }
+
+    static CompiledPath compile(String path) {
+        return new CompiledPath(JsonPath.compile(path), segmentsOf(path.trim()));
+    }
+
+    private static Object[] segmentsOf(String path) {
+        if (!path.startsWith("$"))
+            return null;
+        List<Object> segments = new ArrayList<>();
+        Matcher matcher = PATTERN_SEGMENT.matcher(path);
+        int position = 1;
+        while (position < path.length()) {
+            matcher.region(position, path.length());
+            if (!matcher.lookingAt())
+                return null;
+            if (matcher.group(4) != null) {
+                if (segments.contains(WILDCARD))
+                    return null;
+                segments.add(WILDCARD);
+            }
+            else if (matcher.group(2) != null)
+                segments.add(Integer.valueOf(matcher.group(2)));
+            else
+                segments.add(matcher.group(1) != null ? matcher.group(1) : matcher.group(3));
+            position = matcher.end();
+        }
+        return segments.toArray();
+    }
+
+    Object read(DocumentContext context) {
+        Configuration configuration = context.configuration();
+        if (segments == null || !isDirect(configuration))
+            return context.read(jsonPath);
+        JsonProvider jsonProvider = configuration.jsonProvider();
+        if (wildcard < 0) {
+            Object node = walk(jsonProvider, context.json(), 0, segments.length);
+            if (node == JsonProvider.UNDEFINED)
+                return context.read(jsonPath);
+            return node == null ? null : jsonProvider.unwrap(node);
+        }
+        Object array = walk(jsonProvider, context.json(), 0, wildcard);
+        if (!jsonProvider.isArray(array))
+            return context.read(jsonPath);
+        int length = jsonProvider.length(array);
+        Object result = jsonProvider.createArray();
+        for (int i = 0; i < length; i++) {
+            Object node = walk(jsonProvider, jsonProvider.getArrayIndex(array, i), wildcard + 1, segments.length);
+            if (node == JsonProvider.UNDEFINED)
+                return context.read(jsonPath);
+            jsonProvider.setArrayIndex(result, i, node);
+        }
+        return result;
+    }
+
+    // typed results are copied by the converter, so wildcard values are collected in a presized list instead of a json array
+    Object read(TypeConverter converter, Type type, DocumentContext context) {
+        Configuration configuration = context.configuration();
+        if (wildcard < 0 || type == null || !isDirect(configuration))
+            return converter.convert(type, read(context));
+        JsonProvider jsonProvider = configuration.jsonProvider();
+        Object array = walk(jsonProvider, context.json(), 0, wildcard);
+        if (!jsonProvider.isArray(array))
+            return converter.convert(type, context.read(jsonPath));
+        int length = jsonProvider.length(array);
+        List<Object> values = new ArrayList<>(length);
+        for (int i = 0; i < length; i++) {
+            Object node = walk(jsonProvider, jsonProvider.getArrayIndex(array, i), wildcard + 1, segments.length);
+            if (node == JsonProvider.UNDEFINED)
+                return converter.convert(type, context.read(jsonPath));
+            values.add(node);
+        }
+        return converter.convert(type, values);
+    }
+
+    // UNDEFINED when a step doesn't find a value
+    private Object walk(JsonProvider jsonProvider, Object node, int from, int to) {
+        for (int i = from; i < to; i++) {
+            Object segment = segments[i];
+            if (segment instanceof String) {
+                if (!jsonProvider.isMap(node))
+                    return JsonProvider.UNDEFINED;
+                node = jsonProvider.getMapValue(node, (String) segment);
+                if (node == JsonProvider.UNDEFINED)
+                    return node;
+            }
+            else {
+                int index = (Integer) segment;
+                if (!jsonProvider.isArray(node) || index >= jsonProvider.length(node))
+                    return JsonProvider.UNDEFINED;
+                node = jsonProvider.getArrayIndex(node, index);
+            }
+        }
+        return node;
+    }
+
+    // options that only change what happens to missing values are handled by the fallback
+    private static boolean isDirect(Configuration configuration) {
+        return !configuration.containsOption(Option.ALWAYS_RETURN_LIST)
+                && !configuration.containsOption(Option.AS_PATH_LIST)
+                && configuration.getEvaluationListeners().isEmpty();
+    }
+
+}
@@ -0,0 +1,39 @@
+package com.rey.jsonbatch;
+
+import com.jayway.jsonpath.DocumentContext;
+import com.jayway.jsonpath.spi.json.JsonProvider;
+import com.rey.jsonbatch.json.CompactJsonProvider;
+
+import java.lang.invoke.MethodHandle;
+
+// A schema compiled by TemplateCompiler, builds the same value as JsonBuilder.build(schema, context)
+public final class CompiledSchema {
+
+    private final Object schema;
+    private final MethodHandle handle;
+    private final int interpretedNodes;
+
+    CompiledSchema(Object schema, MethodHandle handle, int interpretedNodes) {
+        this.schema = schema;
+        this.handle = handle;
+        this.interpretedNodes = interpretedNodes;
+    }
+
+    public Object build(DocumentContext context) {
+        Object result = TemplateCompiler.call(handle, context);
+        JsonProvider jsonProvider = context.configuration().jsonProvider();
+        if (jsonProvider instanceof CompactJsonProvider)
+            return ((CompactJsonProvider) jsonProvider).compact(result);
+        return result;
+    }
+
+    public Object getSchema() {
+        return schema;
+    }
+
+    // number of nodes the compiler couldn't handle and left to the interpreter
+    public int getInterpretedNodes() {
+        return interpretedNodes;
+    }
+
+}
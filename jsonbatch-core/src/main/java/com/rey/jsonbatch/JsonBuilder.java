@@ -2,16 +2,20 @@ package com.rey.jsonbatch;
 
 import com.jayway.jsonpath.DocumentContext;
 import com.jayway.jsonpath.JsonPath;
+import com.jayway.jsonpath.spi.json.JsonProvider;
+import com.rey.jsonbatch.convert.NumberMode;
+import com.rey.jsonbatch.convert.Numbers;
+import com.rey.jsonbatch.convert.TypeConverter;
+import com.rey.jsonbatch.function.Expression;
 import com.rey.jsonbatch.function.Function;
-import com.rey.jsonbatch.function.MathUtils;
+import com.rey.jsonbatch.json.CompactJsonProvider;
+import com.rey.jsonbatch.jfr.FlightEvents;
 import com.rey.jsonbatch.parser.Parser;
 import com.rey.jsonbatch.parser.Token;
 import com.rey.jsonbatch.parser.TokenValue;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.math.BigDecimal;
-import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -19,8 +23,7 @@ import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -29,20 +32,46 @@ public class JsonBuilder {
 
     private Logger logger = LoggerFactory.getLogger(JsonBuilder.class);
 
-    private static final String PATTERN_INLINE_VARIABLE = "@\\{(((?!@\\{).)*)}@";
+    public static final String PATTERN_INLINE_VARIABLE = "@\\{(((?!@\\{).)*)}@";
 
-    private static final String KEY_ARRAY_PATH = "__array_path";
+    static final String KEY_ARRAY_PATH = "__array_path";
 
-    private Map<String, Function> functionMap = new HashMap<>();
+    private static final int MAX_CACHED_STRING_TEMPLATES = 10000;
 
-    private Parser parser = new Parser();
+    private static final int MAX_CACHED_NODES = 10000;
+
+    private final Map<String, Function> functionMap;
+
+    private final Parser parser = new Parser();
+
+    private final TypeConverter typeConverter;
+
+    private final Map<String, StringTemplate> stringTemplates = new ConcurrentHashMap<>();
+
+    // schema strings parsed once, like the string templates
+    private final Map<String, ParsedNode> parsedNodes = new ConcurrentHashMap<>();
 
     public JsonBuilder(Function... functions) {
+        this(NumberMode.BIG, functions);
+    }
+
+    public JsonBuilder(NumberMode numberMode, Function... functions) {
+        this.typeConverter = TypeConverter.of(numberMode);
+        Map<String, Function> functionMap = new HashMap<>();
         for (Function f : functions)
             functionMap.put(f.getName(), f);
+        this.functionMap = Collections.unmodifiableMap(functionMap);
     }
 
     public Object build(Object schema, DocumentContext context) {
+        Object result = buildValue(schema, context);
+        JsonProvider jsonProvider = context.configuration().jsonProvider();
+        if (jsonProvider instanceof CompactJsonProvider)
+            return ((CompactJsonProvider) jsonProvider).compact(result);
+        return result;
+    }
+
+    Object buildValue(Object schema, DocumentContext context) {
         logger.info("Build schema: {}", schema);
         if (schema instanceof String)
             return buildNode((String) schema, context);
@@ -55,32 +84,41 @@ public class JsonBuilder {
     }
 
     private Object buildNode(String schema, DocumentContext context) {
-        Type type = null;
-        List<TokenValue> tokenValues = null;
-        for (Type t : Type.values()) {
-            for (String value : t.values) {
-                if (schema.startsWith(value)) {
-                    type = t;
-                    tokenValues = parser.parse(schema.substring(value.length()).trim());
-                    break;
-                }
-            }
-        }
-        if (type == null)
-            tokenValues = parser.parse(schema.trim());
-
-        TokenValue firstToken = tokenValues.get(0);
+        ParsedNode node = parsedNode(schema);
+        TokenValue firstToken = node.tokenValues.get(0);
         if (firstToken.getToken() == Token.JSON_PATH)
-            return buildNodeFromJsonPath(type, context, firstToken.getValue());
+            return buildNodeFromJsonPath(node.type, context, node, 0);
         else if (firstToken.getToken() == Token.FUNC) {
-            return buildNodeFromFunction(type, tokenValues, context);
+            return buildNodeFromFunction(node.type, node, new int[1], context);
         }
 
-        return buildNodeFromRawData(type, firstToken.getValue(), context);
+        return buildNodeFromRawData(node.type, firstToken.getValue(), context);
+    }
+
+    private ParsedNode parsedNode(String schema) {
+        ParsedNode node = parsedNodes.get(schema);
+        if (node == null) {
+            Type type = null;
+            List<TokenValue> tokenValues = null;
+            for (Type t : Type.values()) {
+                String prefix = t.prefixOf(schema);
+                if (prefix != null) {
+                    type = t;
+                    tokenValues = parser.parse(schema.substring(prefix.length()).trim());
+                }
+            }
+            if (type == null)
+                tokenValues = parser.parse(schema.trim());
+            node = new ParsedNode(type, tokenValues);
+            if (parsedNodes.size() >= MAX_CACHED_NODES)
+                parsedNodes.clear();
+            parsedNodes.put(schema, node);
+        }
+        return node;
     }
 
     private Map buildObject(Map<String, Object> schema, DocumentContext context) {
-        Map<String, Object> result = new LinkedHashMap<>();
+        Map<String, Object> result = new LinkedHashMap<>(capacityFor(schema.size()));
         schema.forEach((key, childSchema) -> {
             if (isValidKey(key)) {
                 logger.info("Build for [{}] key with schema: {}", key, childSchema);
@@ -100,7 +138,7 @@ public class JsonBuilder {
         for (Object childSchema : (Iterable<Object>) schema) {
             logger.info("Build items with schema: {}", childSchema);
             if (childSchema instanceof String) {
-                Object item = build(childSchema, context);
+                Object item = buildValue(childSchema, context);
                 if (item instanceof Collection)
                     result.addAll((Collection) item);
                 else
@@ -113,7 +151,7 @@ public class JsonBuilder {
                 }
                 List<Object> items = context.read(arrayPath);
                 result.addAll(items.stream()
-                        .map(object -> build(childSchema, JsonPath.using(context.configuration()).parse(object)))
+                        .map(object -> buildValue(childSchema, JsonPath.using(context.configuration()).parse(object)))
                         .collect(Collectors.toList()));
             } else if(childSchema instanceof Collection) {
                 result.add(buildList((Collection)childSchema, context));
@@ -122,89 +160,87 @@ public class JsonBuilder {
         return result;
     }
 
-    private Object buildNodeFromJsonPath(Type type, DocumentContext context, String jsonPath) {
-        logger.trace("build Node with [{}] jsonPath to [{}] type", jsonPath, type);
-        Object object = context.read(jsonPath);
-        if (object == null)
-            return null;
-        if (type == null)
-            return object;
-        if (!type.isArray) {
-            if (object instanceof List) {
-                List list = (List) object;
-                object = list.isEmpty() ? null : list.get(0);
-            }
-            return castToType(object, type);
-        } else {
-            if (!(object instanceof List)) {
-                object = Collections.singleton(object);
-            }
-            return ((List) object).stream()
-                    .map(obj -> castToType(obj, type.elementType))
-                    .collect(Collectors.toList());
-        }
+    private Object buildNodeFromJsonPath(Type type, DocumentContext context, ParsedNode node, int index) {
+        logger.trace("build Node with [{}] jsonPath to [{}] type", node.tokenValues.get(index).getValue(), type);
+        return node.read(index, typeConverter, type, context);
     }
 
-    private Object buildNodeFromFunction(Type type, List<TokenValue> tokenValues, DocumentContext context) {
-        TokenValue tokenValue = tokenValues.remove(0);
-        final String funcName = tokenValue.getValue();
+    // position is the index of the function token, on return it's on the function's END_FUNC token
+    private Object buildNodeFromFunction(Type type, ParsedNode node, int[] position, DocumentContext context) {
+        List<TokenValue> tokenValues = node.tokenValues;
+        final String funcName = tokenValues.get(position[0]++).getValue();
         logger.trace("build Node with [{}] function to [{}] type", funcName, type);
         Function function = functionMap.get(funcName);
         if (function == null) {
             logger.error("Unsupported function: {}", funcName);
             throw new IllegalArgumentException("Not support function: " + funcName);
         }
+        Object event = FlightEvents.beginFunction();
+        if (event == null)
+            return applyFunction(function, type, node, position, context);
+        try {
+            return applyFunction(function, type, node, position, context);
+        }
+        finally {
+            FlightEvents.endFunction(event, funcName, false);
+        }
+    }
+
+    private Object applyFunction(Function function, Type type, ParsedNode node, int[] position, DocumentContext context) {
+        List<TokenValue> tokenValues = node.tokenValues;
+        Expression expression = expressionOf(function, tokenValues, position[0]);
+        if (expression != null) {
+            position[0]++;
+            return expression.evaluate(type, schema -> buildValue(schema, context));
+        }
         if (function.isReduceFunction()) {
             Function.Result result = null;
-            while (!tokenValues.isEmpty()) {
-                tokenValue = tokenValues.get(0);
-                Object argument = null;
-                if (tokenValue.getToken() == Token.JSON_PATH)
-                    argument = context.read(tokenValue.getValue());
-                else if (tokenValue.getToken() == Token.FUNC)
-                    argument = buildNodeFromFunction(null, tokenValues, context);
-                else if (tokenValue.getToken() == Token.RAW)
-                    argument = parseRawData(tokenValue.getValue(), context);
-                else if (tokenValue.getToken() == Token.END_FUNC)
-                    break;
-                tokenValues.remove(0);
+            while (position[0] < tokenValues.size() && tokenValues.get(position[0]).getToken() != Token.END_FUNC) {
+                Object argument = buildArgument(node, position, context);
+                position[0]++;
                 result = function.handle(type, argument, result);
-                if (result != null && result.isDone())
+                if (result != null && result.isDone()) {
+                    skipArguments(tokenValues, position);
                     return result.getValue();
+                }
             }
             return result == null ? null : result.getValue();
         } else {
             List<Object> arguments = new ArrayList<>();
-            while (!tokenValues.isEmpty()) {
-                tokenValue = tokenValues.get(0);
-                if (tokenValue.getToken() == Token.JSON_PATH)
-                    arguments.add(context.read(tokenValue.getValue()));
-                else if (tokenValue.getToken() == Token.FUNC)
-                    arguments.add(buildNodeFromFunction(null, tokenValues, context));
-                else if (tokenValue.getToken() == Token.RAW)
-                    arguments.add(parseRawData(tokenValue.getValue(), context));
-                else if (tokenValue.getToken() == Token.END_FUNC)
-                    break;
-                tokenValues.remove(0);
+            while (position[0] < tokenValues.size() && tokenValues.get(position[0]).getToken() != Token.END_FUNC) {
+                arguments.add(buildArgument(node, position, context));
+                position[0]++;
             }
             return function.invoke(type, arguments);
         }
     }
 
-    private Object parseRawData(String rawData, DocumentContext context) {
-        if (rawData.contains(".")) {
-            try {
-                return new BigDecimal(rawData);
-            } catch (NumberFormatException ex) {
-                logger.trace("Cannot parse [{}] as decimal", rawData);
-            }
-        } else {
-            try {
-                return new BigInteger(rawData);
-            } catch (NumberFormatException ex) {
-                logger.trace("Cannot parse [{}] as integer", rawData);
-            }
+    private Object buildArgument(ParsedNode node, int[] position, DocumentContext context) {
+        TokenValue tokenValue = node.tokenValues.get(position[0]);
+        if (tokenValue.getToken() == Token.JSON_PATH)
+            return node.read(position[0], context);
+        if (tokenValue.getToken() == Token.FUNC)
+            return buildNodeFromFunction(null, node, position, context);
+        return parseRawData(tokenValue.getValue(), context);
+    }
+
+    // moves to the END_FUNC token of the current function, past nested functions
+    private static void skipArguments(List<TokenValue> tokenValues, int[] position) {
+        int depth = 0;
+        while (position[0] < tokenValues.size()) {
+            Token token = tokenValues.get(position[0]).getToken();
+            if (token == Token.FUNC)
+                depth++;
+            else if (token == Token.END_FUNC && depth-- == 0)
+                return;
+            position[0]++;
         }
+    }
+
+    private Object parseRawData(String rawData, DocumentContext context) {
+        Object number = rawData.contains(".") ? Numbers.parseDecimal(rawData) : Numbers.parseInteger(rawData);
+        if (number != null)
+            return number;
         if (rawData.equalsIgnoreCase("true") || rawData.equalsIgnoreCase("false")) {
             return rawData.equalsIgnoreCase("true");
         }
@@ -221,62 +257,97 @@ public class JsonBuilder {
             case INTEGER:
             case NUMBER:
             case BOOLEAN:
-                return castToType(rawData, type);
+                return typeConverter.cast(rawData, type);
             default:
                 return context.configuration().jsonProvider().parse(rawData);
         }
     }
 
-    private Object castToType(Object object, Type type) {
-        switch (type) {
-            case STRING:
-                return object.toString();
-            case INTEGER: {
-                BigInteger result = MathUtils.toBigInteger(object);
-                if (result == null)
-                    throw new IllegalArgumentException("Cannot cast " + object.getClass() + " to integer");
-                return result;
-            }
-            case NUMBER: {
-                BigDecimal result = MathUtils.toBigDecimal(object);
-                if (result == null)
-                    throw new IllegalArgumentException("Cannot cast " + object.getClass() + " to number");
-                return result;
-            }
-            case BOOLEAN: {
-                Boolean result = MathUtils.toBoolean(object);
-                if (result == null)
-                    throw new IllegalArgumentException("Cannot cast " + object.getClass() + " to boolean");
-                return result;
-            }
-        }
-        return object;
+    private String buildStringFromRawData(String rawData, DocumentContext context) {
+        return stringTemplate(rawData).render(schema -> buildValue(schema, context));
     }
 
-    private String buildStringFromRawData(String rawData, DocumentContext context) {
-        Matcher matcher = Pattern.compile(PATTERN_INLINE_VARIABLE).matcher(rawData);
-        int startIndex = 0;
-        StringBuilder builder = new StringBuilder();
-        while (matcher.find()) {
-            int groupStart = matcher.start();
-            int groupEnd = matcher.end();
-            if (startIndex < groupStart) {
-                builder.append(rawData, startIndex, groupStart);
-            }
-            builder.append(build(matcher.group(1), context));
-            startIndex = groupEnd;
+    private StringTemplate stringTemplate(String rawData) {
+        StringTemplate template = stringTemplates.get(rawData);
+        if (template == null) {
+            if (stringTemplates.size() >= MAX_CACHED_STRING_TEMPLATES)
+                stringTemplates.clear();
+            template = StringTemplate.parse(rawData);
+            stringTemplates.put(rawData, template);
         }
+        return template;
+    }
+
+    public NumberMode getNumberMode() {
+        return typeConverter.getNumberMode();
+    }
+
+    TypeConverter getTypeConverter() {
+        return typeConverter;
+    }
 
-        if (startIndex < rawData.length())
-            builder.append(rawData, startIndex, rawData.length());
+    // a single string argument, like __cmp("@{$.a}@ > 1"), that the function can compile once
+    static Expression expressionOf(Function function, List<TokenValue> tokenValues, int position) {
+        if (tokenValues.size() < position + 2 || tokenValues.get(position).getToken() != Token.RAW
+                || tokenValues.get(position + 1).getToken() != Token.END_FUNC)
+            return null;
+        return function.expression(tokenValues.get(position).getValue());
+    }
 
-        return builder.toString();
+    Function getFunction(String name) {
+        return functionMap.get(name);
     }
 
-    private boolean isValidKey(String key) {
+    static boolean isValidKey(String key) {
         return !KEY_ARRAY_PATH.equals(key);
     }
 
+    // initial capacity of a hash map that holds size entries without resizing
+    static int capacityFor(int size) {
+        return (int) (size / 0.75f) + 1;
+    }
+
+    // the tokens of a schema string with the json paths among them compiled
+    private static final class ParsedNode {
+
+        private final Type type;
+        private final List<TokenValue> tokenValues;
+        private final CompiledPath[] paths;
+
+        ParsedNode(Type type, List<TokenValue> tokenValues) {
+            this.type = type;
+            this.tokenValues = Collections.unmodifiableList(new ArrayList<>(tokenValues));
+            this.paths = new CompiledPath[tokenValues.size()];
+            for (int i = 0; i < paths.length; i++) {
+                if (tokenValues.get(i).getToken() == Token.JSON_PATH)
+                    paths[i] = compile(tokenValues.get(i).getValue());
+            }
+        }
+
+        // invalid paths fail when they are read, like before
+        private static CompiledPath compile(String jsonPath) {
+            try {
+                return CompiledPath.compile(jsonPath);
+            }
+            catch (RuntimeException ex) {
+                return null;
+            }
+        }
+
+        Object read(int index, DocumentContext context) {
+            if (paths[index] == null)
+                return context.read(tokenValues.get(index).getValue());
+            return paths[index].read(context);
+        }
+
+        Object read(int index, TypeConverter converter, Type type, DocumentContext context) {
+            if (paths[index] == null)
+                return converter.convert(type, context.read(tokenValues.get(index).getValue()));
+            return paths[index].read(converter, type, context);
+        }
+
+    }
+
     public enum Type {
         STRING(null, "str ", "string "),
         INTEGER(null, "int ", "integer "),
@@ -299,6 +370,14 @@ public class JsonBuilder {
             this.values = values;
         }
 
+        String prefixOf(String schema) {
+            for (String value : values) {
+                if (schema.startsWith(value))
+                    return value;
+            }
+            return null;
+        }
+
         static Type from(String value) {
             return Stream.of(Type.values())
                     .filter(type -> Stream.of(type.values).anyMatch(v -> v.equalsIgnoreCase(value)))
@@ -0,0 +1,174 @@
+package com.rey.jsonbatch;
+
+import com.jayway.jsonpath.DocumentContext;
+import com.rey.jsonbatch.convert.Numbers;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Finds the first sibling template whose predicate is true without evaluating every predicate.
+// Consecutive predicates like __cmp("@{$.path}@ == literal") on the same path are grouped into segments:
+// the path is read once and the literal is looked up in a hash map, using the same number/boolean/string
+// coercion as CompareFunction. Other predicates, and segments whose value can't be matched safely, are evaluated in order.
+class PredicateIndex<T> {
+
+    static final int MIN_SIBLINGS = 8;
+
+    static final int MIN_SEGMENT = 4;
+
+    private static final Pattern PATTERN_EQUALITY = Pattern.compile("^__cmp\\(\\s*\"@\\{([^\"\\\\@{}]+)}@\\s*==([^\"\\\\@]*)\"\\s*\\)$");
+
+    private static final Pattern PATTERN_OPERATOR = Pattern.compile("[<>=!]");
+
+    private final Object[] templates;
+    private final String[] predicates;
+    private final Segment[] segments;
+
+    private PredicateIndex(Object[] templates, String[] predicates, Segment[] segments) {
+        this.templates = templates;
+        this.predicates = predicates;
+        this.segments = segments;
+    }
+
+    static <T> PredicateIndex<T> build(List<T> templates, Function<T, String> predicateGetter) {
+        int size = templates.size();
+        Object[] items = templates.toArray();
+        String[] predicates = new String[size];
+        String[] paths = new String[size];
+        String[] literals = new String[size];
+        for(int i = 0; i < size; i++) {
+            predicates[i] = predicateGetter.apply(templates.get(i));
+            if(predicates[i] == null)
+                continue;
+            Matcher matcher = PATTERN_EQUALITY.matcher(predicates[i].trim());
+            if(matcher.matches() && matcher.group(1).trim().startsWith("$")) {
+                paths[i] = matcher.group(1).trim();
+                literals[i] = matcher.group(2).trim();
+            }
+        }
+
+        Segment[] segments = new Segment[size];
+        int start = 0;
+        while(start < size) {
+            int end = start;
+            while(paths[start] != null && end < size && paths[start].equals(paths[end]))
+                end++;
+            if(end - start >= MIN_SEGMENT) {
+                segments[start] = new Segment(paths[start], start, end, literals);
+                start = end;
+            }
+            else
+                start = Math.max(start + 1, end);
+        }
+        return new PredicateIndex<>(items, predicates, segments);
+    }
+
+    // templates are plain POJOs, so make sure the list wasn't changed since the index was built
+    boolean isValidFor(List<T> templates, Function<T, String> predicateGetter) {
+        if(templates.size() != this.templates.length)
+            return false;
+        for(int i = 0; i < this.templates.length; i++) {
+            T template = templates.get(i);
+            if(template != this.templates[i] || predicateGetter.apply(template) != predicates[i])
+                return false;
+        }
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    T choose(DocumentContext context, Predicate<String> evaluator) {
+        int i = 0;
+        while(i < templates.length) {
+            Segment segment = segments[i];
+            if(segment != null) {
+                int index = segment.find(context);
+                if(index == Segment.UNKNOWN)
+                    index = evaluate(segment.start, segment.end, evaluator);
+                if(index >= 0)
+                    return (T) templates[index];
+                i = segment.end;
+            }
+            else {
+                if(predicates[i] == null || evaluator.test(predicates[i]))
+                    return (T) templates[i];
+                i++;
+            }
+        }
+        return null;
+    }
+
+    private int evaluate(int start, int end, Predicate<String> evaluator) {
+        for(int i = start; i < end; i++) {
+            if(evaluator.test(predicates[i]))
+                return i;
+        }
+        return Segment.NOT_FOUND;
+    }
+
+    private static class Segment {
+
+        static final int NOT_FOUND = -1;
+        static final int UNKNOWN = -2;
+
+        final String path;
+        final int start;
+        final int end;
+        final Map<BigDecimal, Integer> numbers = new HashMap<>();
+        final Map<Boolean, Integer> booleans = new HashMap<>();
+        final Map<String, Integer> strings = new HashMap<>();
+        final boolean numeric;
+
+        Segment(String path, int start, int end, String[] literals) {
+            this.path = path;
+            this.start = start;
+            this.end = end;
+            boolean numeric = true;
+            for(int i = start; i < end; i++) {
+                String literal = literals[i];
+                BigDecimal number = Numbers.parseDecimal(literal);
+                if(number == null)
+                    numeric = false;
+                else
+                    numbers.putIfAbsent(number.stripTrailingZeros(), i);
+                booleans.putIfAbsent(literal.equalsIgnoreCase("true"), i);
+                strings.putIfAbsent(literal, i);
+            }
+            // CompareFunction fails on a number compared with a non numeric literal, let it do so in order
+            this.numeric = numeric;
+        }
+
+        int find(DocumentContext context) {
+            Object value;
+            try {
+                value = context.read(path);
+            }
+            catch (RuntimeException ex) {
+                return UNKNOWN;
+            }
+            // same text the predicate would compare, an operator inside it would change how the expression splits
+            String left = String.valueOf(value).trim();
+            if(PATTERN_OPERATOR.matcher(left).find())
+                return UNKNOWN;
+            Integer index;
+            BigDecimal number = Numbers.parseDecimal(left);
+            if(number != null) {
+                if(!numeric)
+                    return UNKNOWN;
+                index = numbers.get(number.stripTrailingZeros());
+            }
+            else if(left.equalsIgnoreCase("true") || left.equalsIgnoreCase("false"))
+                index = booleans.get(left.equalsIgnoreCase("true"));
+            else
+                index = strings.get(left);
+            return index == null ? NOT_FOUND : index;
+        }
+
+    }
+
+}
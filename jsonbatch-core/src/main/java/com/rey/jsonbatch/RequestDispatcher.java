@@ -5,8 +5,48 @@ import com.rey.jsonbatch.model.DispatchOptions;
 import com.rey.jsonbatch.model.Request;
 import com.rey.jsonbatch.model.Response;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
 public interface RequestDispatcher {
 
     Response dispatch(Request request, JsonProvider jsonProvider, DispatchOptions options) throws Exception;
 
+    // Runs dispatch on the executor. Cancelling the future interrupts the thread running it, which aborts dispatchers
+    // blocked interruptibly. A blocking socket read isn't interruptible, it ends at the socket timeout from options.
+    default CompletableFuture<Response> dispatchAsync(Request request, JsonProvider jsonProvider, DispatchOptions options, Executor executor) {
+        CompletableFuture<Response> future = new CompletableFuture<>();
+        Thread[] runner = new Thread[1];
+        future.whenComplete((response, ex) -> {
+            if (future.isCancelled()) {
+                synchronized (runner) {
+                    if (runner[0] != null)
+                        runner[0].interrupt();
+                }
+            }
+        });
+        executor.execute(() -> {
+            synchronized (runner) {
+                if (future.isDone())
+                    return;
+                runner[0] = Thread.currentThread();
+            }
+            try {
+                future.complete(dispatch(request, jsonProvider, options));
+            }
+            catch (Throwable ex) {
+                future.completeExceptionally(ex);
+            }
+            finally {
+                synchronized (runner) {
+                    runner[0] = null;
+                }
+                // the interrupt was meant for this dispatch, not for the next task of the thread
+                if (future.isCancelled())
+                    Thread.interrupted();
+            }
+        });
+        return future;
+    }
+
 }
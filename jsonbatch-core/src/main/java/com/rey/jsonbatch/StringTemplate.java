@@ -0,0 +1,146 @@
+package com.rey.jsonbatch;
+
+import com.rey.jsonbatch.function.VariableResolver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// A string with @{...}@ variables parsed once into literal chunks and variable schemas, rendered with a straight append loop
+// into a builder sized from previous renders. Values of @url{...}@ variables are percent-encoded as UTF-8,
+// keeping only RFC 3986 unreserved characters, so they can be used as url path segments or query values.
+final class StringTemplate {
+
+    static final String PATTERN_VARIABLE = "@(url)?\\{(((?!@(url)?\\{).)*)}@";
+
+    private static final Pattern PATTERN = Pattern.compile(PATTERN_VARIABLE);
+
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private static final int DEFAULT_VALUE_LENGTH = 16;
+
+    private final String[] literals;
+    private final String[] schemas;
+    private final boolean[] encoded;
+    private final int literalLength;
+
+    // longest rendered string so far, a lost update only makes the next builder grow once
+    private int lengthHint;
+
+    private StringTemplate(String[] literals, String[] schemas, boolean[] encoded) {
+        this.literals = literals;
+        this.schemas = schemas;
+        this.encoded = encoded;
+        int length = 0;
+        for (String literal : literals)
+            length += literal.length();
+        this.literalLength = length;
+    }
+
+    static StringTemplate parse(String text) {
+        Matcher matcher = PATTERN.matcher(text);
+        List<String> literals = new ArrayList<>();
+        List<String> schemas = new ArrayList<>();
+        List<Boolean> encoded = new ArrayList<>();
+        int startIndex = 0;
+        while (matcher.find()) {
+            literals.add(text.substring(startIndex, matcher.start()));
+            schemas.add(matcher.group(2));
+            encoded.add(matcher.group(1) != null);
+            startIndex = matcher.end();
+        }
+        literals.add(text.substring(startIndex));
+        boolean[] flags = new boolean[encoded.size()];
+        for (int i = 0; i < flags.length; i++)
+            flags[i] = encoded.get(i);
+        return new StringTemplate(literals.toArray(new String[0]), schemas.toArray(new String[0]), flags);
+    }
+
+    boolean isConstant() {
+        return schemas.length == 0;
+    }
+
+    String[] getSchemas() {
+        return schemas.clone();
+    }
+
+    String render(VariableResolver resolver) {
+        if (isConstant())
+            return literals[0];
+        StringBuilder builder = new StringBuilder(capacity());
+        builder.append(literals[0]);
+        for (int i = 0; i < schemas.length; i++) {
+            append(builder, resolver.resolve(schemas[i]), encoded[i]);
+            builder.append(literals[i + 1]);
+        }
+        return finish(builder);
+    }
+
+    // values of the variables in order
+    String render(Object[] values) {
+        if (isConstant())
+            return literals[0];
+        StringBuilder builder = new StringBuilder(capacity());
+        builder.append(literals[0]);
+        for (int i = 0; i < schemas.length; i++) {
+            append(builder, values[i], encoded[i]);
+            builder.append(literals[i + 1]);
+        }
+        return finish(builder);
+    }
+
+    private int capacity() {
+        return Math.max(lengthHint, literalLength + schemas.length * DEFAULT_VALUE_LENGTH);
+    }
+
+    private String finish(StringBuilder builder) {
+        if (builder.length() > lengthHint)
+            lengthHint = builder.length();
+        return builder.toString();
+    }
+
+    private static void append(StringBuilder builder, Object value, boolean encoded) {
+        if (!encoded)
+            builder.append(value);
+        else
+            appendEncoded(builder, String.valueOf(value));
+    }
+
+    private static void appendEncoded(StringBuilder builder, String value) {
+        int i = 0;
+        while (i < value.length()) {
+            int codePoint = value.codePointAt(i);
+            i += Character.charCount(codePoint);
+            if (isUnreserved(codePoint))
+                builder.append((char) codePoint);
+            else if (codePoint < 0x80)
+                appendByte(builder, codePoint);
+            else if (codePoint < 0x800) {
+                appendByte(builder, 0xC0 | (codePoint >> 6));
+                appendByte(builder, 0x80 | (codePoint & 0x3F));
+            }
+            else if (codePoint < 0x10000) {
+                appendByte(builder, 0xE0 | (codePoint >> 12));
+                appendByte(builder, 0x80 | ((codePoint >> 6) & 0x3F));
+                appendByte(builder, 0x80 | (codePoint & 0x3F));
+            }
+            else {
+                appendByte(builder, 0xF0 | (codePoint >> 18));
+                appendByte(builder, 0x80 | ((codePoint >> 12) & 0x3F));
+                appendByte(builder, 0x80 | ((codePoint >> 6) & 0x3F));
+                appendByte(builder, 0x80 | (codePoint & 0x3F));
+            }
+        }
+    }
+
+    private static boolean isUnreserved(int c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                || c == '-' || c == '.' || c == '_' || c == '~';
+    }
+
+    private static void appendByte(StringBuilder builder, int value) {
+        builder.append('%').append(HEX[(value >> 4) & 0xF]).append(HEX[value & 0xF]);
+    }
+
+}
@@ -0,0 +1,212 @@
+package com.rey.jsonbatch;
+
+import com.rey.jsonbatch.JsonBuilder.Type;
+import com.rey.jsonbatch.model.BatchTemplate;
+import com.rey.jsonbatch.model.RequestTemplate;
+import com.rey.jsonbatch.model.ResponseTemplate;
+import com.rey.jsonbatch.model.TemplateExplanation;
+import com.rey.jsonbatch.parser.Parser;
+import com.rey.jsonbatch.parser.Token;
+import com.rey.jsonbatch.parser.TokenValue;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Walks a template without running it. The engine sends one request per level: it chooses the first request template
+// whose predicate matches, dispatches it, then either breaks with a matching response template or goes down to the
+// nested requests. So the worst case is the deepest chain, and its cost is the most expensive path from the top level
+// down to a break or final response, counting every sibling predicate as evaluated.
+@SuppressWarnings("unchecked")
+class TemplateAnalyzer {
+
+    // weights relative to reading a simple json path once
+    static final long REQUEST_COST = 100;
+    // the batch state is serialized and parsed again after each response, the more responses the bigger it is
+    static final long CONTEXT_COST_PER_RESPONSE = 10;
+    static final long PATH_COST = 1;
+    static final long WILDCARD_PATH_COST = 2;
+    static final long FILTER_PATH_COST = 5;
+    static final long DEEP_SCAN_PATH_COST = 10;
+    static final long FUNCTION_COST = 1;
+    // items assumed per __array_path, the real count is only known at runtime
+    static final long ARRAY_ITEMS = 10;
+
+    private static final Pattern PATTERN_BATCH_REFERENCE = Pattern.compile("^\\$\\.(responses|requests)(\\[([^]]*)])?");
+
+    private final JsonBuilder jsonBuilder;
+    private final Parser parser = new Parser();
+
+    TemplateAnalyzer(JsonBuilder jsonBuilder) {
+        this.jsonBuilder = jsonBuilder;
+    }
+
+    TemplateExplanation analyze(BatchTemplate template) {
+        TemplateExplanation explanation = new TemplateExplanation();
+        explanation.setTemplateId(template.getId());
+        long[] chain = analyzeLevel(template.getRequests(), "requests", 0,
+                Collections.newSetFromMap(new IdentityHashMap<>()), explanation);
+        explanation.setMaxRequests((int) chain[0]);
+        explanation.setMaxDepth((int) chain[0]);
+        // every chain ends with the final responses unless it breaks first
+        long finalCost = analyzeResponses(template.getResponses(), "responses", (int) chain[0], explanation);
+        explanation.setCost(chain[1] + finalCost);
+        return explanation;
+    }
+
+    // worst case of choosing one template of the level and running the chain below it, as {requests, cost}
+    private long[] analyzeLevel(List<RequestTemplate> templates, String location, int depth,
+                                Set<RequestTemplate> ancestors, TemplateExplanation explanation) {
+        if (templates == null || templates.isEmpty())
+            return new long[2];
+        long predicatesCost = 0;
+        long maxRequests = 0;
+        long maxCost = 0;
+        for (int i = 0; i < templates.size(); i++) {
+            RequestTemplate template = templates.get(i);
+            String templateLocation = location + "[" + i + "]";
+            if (!ancestors.add(template))
+                throw new IllegalArgumentException("Request template is nested in itself at " + templateLocation);
+            explanation.setRequestTemplates(explanation.getRequestTemplates() + 1);
+            predicatesCost += analyzeSchema(template.getPredicate(), templateLocation + ".predicate", depth, false, explanation);
+
+            long cost = REQUEST_COST + CONTEXT_COST_PER_RESPONSE * (depth + 1);
+            cost += analyzeSchema(template.getHttpMethod(), templateLocation + ".http_method", depth, false, explanation);
+            cost += analyzeSchema(template.getUrl(), templateLocation + ".url", depth, false, explanation);
+            cost += analyzeSchema(template.getHeaders(), templateLocation + ".headers", depth, false, explanation);
+            cost += analyzeSchema(template.getBody(), templateLocation + ".body", depth, false, explanation);
+            long breakCost = analyzeResponses(template.getResponses(), templateLocation + ".responses", depth + 1, explanation);
+            long[] next = analyzeLevel(template.getRequests(), templateLocation + ".requests", depth + 1, ancestors, explanation);
+            ancestors.remove(template);
+
+            maxRequests = Math.max(maxRequests, 1 + next[0]);
+            maxCost = Math.max(maxCost, cost + breakCost + next[1]);
+        }
+        return new long[]{maxRequests, predicatesCost + maxCost};
+    }
+
+    // all predicates plus the most expensive response to build
+    private long analyzeResponses(List<ResponseTemplate> templates, String location, int responses, TemplateExplanation explanation) {
+        if (templates == null)
+            return 0;
+        long predicatesCost = 0;
+        long maxCost = 0;
+        for (int i = 0; i < templates.size(); i++) {
+            ResponseTemplate template = templates.get(i);
+            String templateLocation = location + "[" + i + "]";
+            predicatesCost += analyzeSchema(template.getPredicate(), templateLocation + ".predicate", responses, false, explanation);
+            long cost = analyzeSchema(template.getStatus(), templateLocation + ".status", responses, false, explanation);
+            cost += analyzeSchema(template.getHeaders(), templateLocation + ".headers", responses, false, explanation);
+            cost += analyzeSchema(template.getBody(), templateLocation + ".body", responses, false, explanation);
+            maxCost = Math.max(maxCost, cost);
+        }
+        return predicatesCost + maxCost;
+    }
+
+    // responses is how many responses the batch state has when the schema is built,
+    // relative schemas are built against the items of an __array_path instead of the batch state
+    private long analyzeSchema(Object schema, String location, int responses, boolean relative, TemplateExplanation explanation) {
+        if (schema instanceof String)
+            return analyzeNode((String) schema, location, responses, relative, explanation);
+        long cost = 0;
+        if (schema instanceof Map) {
+            for (Map.Entry<String, Object> entry : ((Map<String, Object>) schema).entrySet()) {
+                if (JsonBuilder.isValidKey(entry.getKey()))
+                    cost += analyzeSchema(entry.getValue(), location + "." + entry.getKey(), responses, relative, explanation);
+            }
+        }
+        else if (schema instanceof Collection) {
+            int i = 0;
+            for (Object item : (Collection<Object>) schema) {
+                String itemLocation = location + "[" + i++ + "]";
+                if (item instanceof Map && ((Map) item).get(JsonBuilder.KEY_ARRAY_PATH) instanceof String) {
+                    cost += analyzePath((String) ((Map) item).get(JsonBuilder.KEY_ARRAY_PATH), itemLocation, responses, relative, explanation);
+                    cost += ARRAY_ITEMS * analyzeSchema(item, itemLocation, responses, true, explanation);
+                }
+                else
+                    cost += analyzeSchema(item, itemLocation, responses, relative, explanation);
+            }
+        }
+        return cost;
+    }
+
+    private long analyzeNode(String schema, String location, int responses, boolean relative, TemplateExplanation explanation) {
+        List<TokenValue> tokenValues;
+        try {
+            tokenValues = parser.parse(stripType(schema).trim());
+        }
+        catch (RuntimeException ex) {
+            explanation.getWarnings().add("Cannot parse schema at " + location + ": " + ex.getMessage());
+            return 0;
+        }
+        long cost = 0;
+        for (TokenValue tokenValue : tokenValues) {
+            if (tokenValue.getToken() == Token.JSON_PATH)
+                cost += analyzePath(tokenValue.getValue(), location, responses, relative, explanation);
+            else if (tokenValue.getToken() == Token.FUNC) {
+                String name = tokenValue.getValue();
+                if (jsonBuilder.getFunction(name) == null)
+                    explanation.getWarnings().add("Unknown function " + name + " at " + location);
+                explanation.getFunctions().merge(name, 1, Integer::sum);
+                cost += FUNCTION_COST;
+            }
+            // raw strings, expressions included, read their inline variables
+            else if (tokenValue.getToken() == Token.RAW) {
+                for (String variable : StringTemplate.parse(tokenValue.getValue()).getSchemas())
+                    cost += analyzeNode(variable, location, responses, relative, explanation);
+            }
+        }
+        return cost;
+    }
+
+    private long analyzePath(String path, String location, int responses, boolean relative, TemplateExplanation explanation) {
+        explanation.getPaths().add(path);
+        long cost = PATH_COST;
+        if (path.contains("[*]") || path.contains(".*"))
+            cost = WILDCARD_PATH_COST;
+        if (path.contains("[?("))
+            cost = FILTER_PATH_COST;
+        if (path.contains(".."))
+            cost = DEEP_SCAN_PATH_COST;
+        if (cost >= FILTER_PATH_COST)
+            explanation.getExpensivePaths().add(path);
+        if (relative)
+            return cost;
+
+        if (path.startsWith("$.."))
+            explanation.setAllResponses(true);
+        Matcher matcher = PATTERN_BATCH_REFERENCE.matcher(path);
+        if (matcher.find()) {
+            String index = matcher.group(3);
+            if (index == null || !index.trim().matches("\\d+")) {
+                if (matcher.group(1).equals("responses"))
+                    explanation.setAllResponses(true);
+            }
+            else {
+                int value = Integer.parseInt(index.trim());
+                if (matcher.group(1).equals("responses"))
+                    explanation.getResponseIndexes().add(value);
+                if (value >= responses)
+                    explanation.getWarnings().add(location + " reads " + path + " but only " + responses + " " + matcher.group(1) + " exist at that point");
+            }
+        }
+        return cost;
+    }
+
+    // same prefix matching as JsonBuilder
+    private static String stripType(String schema) {
+        String result = schema;
+        for (Type type : Type.values()) {
+            String prefix = type.prefixOf(schema);
+            if (prefix != null)
+                result = schema.substring(prefix.length());
+        }
+        return result;
+    }
+
+}
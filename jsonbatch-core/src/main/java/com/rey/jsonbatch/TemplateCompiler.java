@@ -0,0 +1,407 @@
+package com.rey.jsonbatch;
+
+import com.jayway.jsonpath.DocumentContext;
+import com.jayway.jsonpath.JsonPath;
+import com.rey.jsonbatch.JsonBuilder.Type;
+import com.rey.jsonbatch.convert.Numbers;
+import com.rey.jsonbatch.convert.TypeConverter;
+import com.rey.jsonbatch.function.Expression;
+import com.rey.jsonbatch.function.Function;
+import com.rey.jsonbatch.jfr.FlightEvents;
+import com.rey.jsonbatch.parser.Parser;
+import com.rey.jsonbatch.parser.Token;
+import com.rey.jsonbatch.parser.TokenValue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Compiles schemas into trees of MethodHandles, one (DocumentContext)Object handle per node.
+// Json paths are compiled once, constants are folded and children are bound with combinators,
+// so the JIT can inline a hot schema end to end instead of re-parsing it on every build.
+// Anything the compiler doesn't handle (including schemas that would fail) is delegated to the JsonBuilder interpreter.
+// Compiled schemas are cached by identity, templates must not be changed once they are used.
+@SuppressWarnings("unchecked")
+public class TemplateCompiler {
+
+    private Logger logger = LoggerFactory.getLogger(TemplateCompiler.class);
+
+    private static final MethodType BUILD_TYPE = MethodType.methodType(Object.class, DocumentContext.class);
+
+    // MethodHandles take at most 255 arguments, wider nodes evaluate their children in a loop
+    private static final int MAX_COMBINED_CHILDREN = 200;
+
+    private static final int MAX_CACHED_SCHEMAS = 10000;
+
+    private static final byte ITEM = 0;
+    private static final byte ITEMS = 1;
+    private static final byte ITEM_OR_ITEMS = 2;
+
+    private static final MethodHandle READ;
+    private static final MethodHandle READ_CONVERTED;
+    private static final MethodHandle INVOKE;
+    private static final MethodHandle EVALUATE;
+    private static final MethodHandle REDUCE;
+    private static final MethodHandle RENDER;
+    private static final MethodHandle NEW_OBJECT;
+    private static final MethodHandle NEW_LIST;
+    private static final MethodHandle MAP_ITEMS;
+    private static final MethodHandle PARSE;
+    private static final MethodHandle INTERPRET;
+    private static final MethodHandle EVALUATE_ALL;
+    private static final MethodHandle TRACE;
+
+    static {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        try {
+            READ = lookup.findVirtual(CompiledPath.class, "read", BUILD_TYPE);
+            READ_CONVERTED = lookup.findVirtual(CompiledPath.class, "read", MethodType.methodType(Object.class, TypeConverter.class, Type.class, DocumentContext.class));
+            INVOKE = lookup.findStatic(TemplateCompiler.class, "invoke", MethodType.methodType(Object.class, Function.class, Type.class, Object[].class));
+            EVALUATE = lookup.findStatic(TemplateCompiler.class, "evaluate", MethodType.methodType(Object.class, Expression.class, Type.class, Map.class, DocumentContext.class));
+            REDUCE = lookup.findStatic(TemplateCompiler.class, "reduce", MethodType.methodType(Object.class, Function.class, Type.class, MethodHandle[].class, DocumentContext.class));
+            RENDER = lookup.findStatic(TemplateCompiler.class, "render", MethodType.methodType(Object.class, StringTemplate.class, Object[].class));
+            NEW_OBJECT = lookup.findStatic(TemplateCompiler.class, "newObject", MethodType.methodType(Object.class, String[].class, Object[].class));
+            NEW_LIST = lookup.findStatic(TemplateCompiler.class, "newList", MethodType.methodType(Object.class, byte[].class, Object[].class));
+            MAP_ITEMS = lookup.findStatic(TemplateCompiler.class, "mapItems", MethodType.methodType(Object.class, CompiledPath.class, MethodHandle.class, DocumentContext.class));
+            PARSE = lookup.findStatic(TemplateCompiler.class, "parse", MethodType.methodType(Object.class, String.class, DocumentContext.class));
+            INTERPRET = lookup.findStatic(TemplateCompiler.class, "interpret", MethodType.methodType(Object.class, JsonBuilder.class, Object.class, DocumentContext.class));
+            EVALUATE_ALL = lookup.findStatic(TemplateCompiler.class, "evaluateAll", MethodType.methodType(Object[].class, MethodHandle[].class, DocumentContext.class));
+            TRACE = lookup.findStatic(TemplateCompiler.class, "trace", MethodType.methodType(Object.class, MethodHandle.class, String.class, DocumentContext.class));
+        }
+        catch (NoSuchMethodException | IllegalAccessException ex) {
+            throw new ExceptionInInitializerError(ex);
+        }
+    }
+
+    private static final Pattern PATTERN_INLINE_VARIABLE = Pattern.compile(JsonBuilder.PATTERN_INLINE_VARIABLE);
+
+    private final JsonBuilder jsonBuilder;
+
+    private final Parser parser = new Parser();
+
+    private final Map<SchemaKey, CompiledSchema> compiledSchemas = new ConcurrentHashMap<>();
+
+    public TemplateCompiler(JsonBuilder jsonBuilder) {
+        this.jsonBuilder = jsonBuilder;
+    }
+
+    public Object build(Object schema, DocumentContext context) {
+        CompiledSchema compiledSchema = compiledSchemas.get(new SchemaKey(schema));
+        if (compiledSchema == null) {
+            compiledSchema = compile(schema);
+            // templates created per call would pile up, start over instead of tracking usage
+            if (compiledSchemas.size() >= MAX_CACHED_SCHEMAS)
+                compiledSchemas.clear();
+            compiledSchemas.put(new SchemaKey(schema), compiledSchema);
+        }
+        return compiledSchema.build(context);
+    }
+
+    public CompiledSchema compile(Object schema) {
+        int[] interpreted = new int[1];
+        MethodHandle handle = compileValue(schema, interpreted);
+        if (interpreted[0] > 0)
+            logger.debug("Compiled schema with [{}] interpreted nodes: {}", interpreted[0], schema);
+        return new CompiledSchema(schema, handle, interpreted[0]);
+    }
+
+    private MethodHandle compileValue(Object schema, int[] interpreted) {
+        if (schema instanceof String)
+            return compileNode((String) schema, interpreted);
+        if (schema instanceof Map)
+            return compileObject((Map<String, Object>) schema, interpreted);
+        if (schema instanceof Collection)
+            return compileList((Collection<Object>) schema, interpreted);
+        return interpret(schema, interpreted);
+    }
+
+    private MethodHandle compileNode(String schema, int[] interpreted) {
+        try {
+            Type type = null;
+            List<TokenValue> tokenValues = null;
+            for (Type t : Type.values()) {
+                String prefix = t.prefixOf(schema);
+                if (prefix != null) {
+                    type = t;
+                    tokenValues = parser.parse(schema.substring(prefix.length()).trim());
+                }
+            }
+            if (type == null)
+                tokenValues = parser.parse(schema.trim());
+
+            TokenValue firstToken = tokenValues.get(0);
+            if (firstToken.getToken() == Token.JSON_PATH) {
+                CompiledPath path = CompiledPath.compile(firstToken.getValue());
+                if (type == null)
+                    return READ.bindTo(path);
+                return MethodHandles.insertArguments(READ_CONVERTED, 0, path, jsonBuilder.getTypeConverter(), type);
+            }
+            if (firstToken.getToken() == Token.FUNC)
+                return compileFunction(type, tokenValues, new int[1], interpreted);
+            return compileRawData(type, firstToken.getValue(), interpreted);
+        }
+        catch (RuntimeException ex) {
+            logger.debug("Cannot compile [{}] schema: {}", schema, ex.getMessage());
+            return interpret(schema, interpreted);
+        }
+    }
+
+    private MethodHandle compileFunction(Type type, List<TokenValue> tokenValues, int[] position, int[] interpreted) {
+        String funcName = tokenValues.get(position[0]++).getValue();
+        Function function = jsonBuilder.getFunction(funcName);
+        if (function == null)
+            throw new IllegalArgumentException("Not support function: " + funcName);
+        MethodHandle handle = compileInvocation(function, type, tokenValues, position, interpreted);
+        // without Flight Recorder support the compiled tree stays free of tracing wrappers
+        if (FlightEvents.isSupported())
+            return MethodHandles.insertArguments(TRACE, 0, handle, funcName);
+        return handle;
+    }
+
+    private MethodHandle compileInvocation(Function function, Type type, List<TokenValue> tokenValues, int[] position, int[] interpreted) {
+        Expression expression = JsonBuilder.expressionOf(function, tokenValues, position[0]);
+        if (expression != null) {
+            Matcher matcher = PATTERN_INLINE_VARIABLE.matcher(tokenValues.get(position[0]).getValue());
+            Map<String, MethodHandle> variables = new HashMap<>();
+            while (matcher.find()) {
+                if (!variables.containsKey(matcher.group(1)))
+                    variables.put(matcher.group(1), compileNode(matcher.group(1), interpreted));
+            }
+            position[0] += 2;
+            return MethodHandles.insertArguments(EVALUATE, 0, expression, type, variables);
+        }
+        List<MethodHandle> arguments = new ArrayList<>();
+        while (position[0] < tokenValues.size()) {
+            TokenValue tokenValue = tokenValues.get(position[0]);
+            if (tokenValue.getToken() == Token.END_FUNC) {
+                position[0]++;
+                break;
+            }
+            if (tokenValue.getToken() == Token.FUNC) {
+                arguments.add(compileFunction(null, tokenValues, position, interpreted));
+                continue;
+            }
+            if (tokenValue.getToken() == Token.JSON_PATH)
+                arguments.add(READ.bindTo(CompiledPath.compile(tokenValue.getValue())));
+            else if (tokenValue.getToken() == Token.RAW)
+                arguments.add(compileRawArgument(tokenValue.getValue(), interpreted));
+            position[0]++;
+        }
+        if (function.isReduceFunction())
+            return MethodHandles.insertArguments(REDUCE, 0, function, type, arguments.toArray(new MethodHandle[0]));
+        return combine(MethodHandles.insertArguments(INVOKE, 0, function, type), arguments);
+    }
+
+    private MethodHandle compileRawArgument(String rawData, int[] interpreted) {
+        Object number = rawData.contains(".") ? Numbers.parseDecimal(rawData) : Numbers.parseInteger(rawData);
+        if (number != null)
+            return constant(number);
+        if (rawData.equalsIgnoreCase("true") || rawData.equalsIgnoreCase("false"))
+            return constant(rawData.equalsIgnoreCase("true"));
+        return compileString(rawData, interpreted);
+    }
+
+    private MethodHandle compileRawData(Type type, String rawData, int[] interpreted) {
+        if (type == null)
+            return compileString(rawData, interpreted);
+        switch (type) {
+            case STRING:
+                return compileString(rawData, interpreted);
+            case INTEGER:
+            case NUMBER:
+            case BOOLEAN:
+                return constant(jsonBuilder.getTypeConverter().cast(rawData, type));
+            default:
+                // parsed on every build, callers may change the result
+                return MethodHandles.insertArguments(PARSE, 0, rawData);
+        }
+    }
+
+    private MethodHandle compileString(String rawData, int[] interpreted) {
+        StringTemplate template = StringTemplate.parse(rawData);
+        if (template.isConstant())
+            return constant(rawData);
+        List<MethodHandle> values = new ArrayList<>();
+        for (String schema : template.getSchemas())
+            values.add(compileNode(schema, interpreted));
+        return combine(MethodHandles.insertArguments(RENDER, 0, template), values);
+    }
+
+    private MethodHandle compileObject(Map<String, Object> schema, int[] interpreted) {
+        List<String> keys = new ArrayList<>();
+        List<MethodHandle> values = new ArrayList<>();
+        schema.forEach((key, childSchema) -> {
+            if (JsonBuilder.isValidKey(key) && (childSchema instanceof String || childSchema instanceof Map || childSchema instanceof Collection)) {
+                keys.add(key);
+                values.add(compileValue(childSchema, interpreted));
+            }
+        });
+        return combine(MethodHandles.insertArguments(NEW_OBJECT, 0, (Object) keys.toArray(new String[0])), values);
+    }
+
+    private MethodHandle compileList(Collection<Object> schema, int[] interpreted) {
+        List<MethodHandle> items = new ArrayList<>();
+        byte[] kinds = new byte[schema.size()];
+        try {
+            for (Object childSchema : schema) {
+                if (childSchema instanceof String) {
+                    kinds[items.size()] = ITEM_OR_ITEMS;
+                    items.add(compileNode((String) childSchema, interpreted));
+                } else if (childSchema instanceof Map) {
+                    String arrayPath = (String) ((Map) childSchema).get(JsonBuilder.KEY_ARRAY_PATH);
+                    if (arrayPath == null)
+                        throw new IllegalArgumentException("Missing array path in child schema");
+                    kinds[items.size()] = ITEMS;
+                    items.add(MethodHandles.insertArguments(MAP_ITEMS, 0, CompiledPath.compile(arrayPath), compileObject((Map) childSchema, interpreted)));
+                } else if (childSchema instanceof Collection) {
+                    kinds[items.size()] = ITEM;
+                    items.add(compileList((Collection) childSchema, interpreted));
+                }
+            }
+        }
+        catch (RuntimeException ex) {
+            logger.debug("Cannot compile list schema: {}", ex.getMessage());
+            return interpret(schema, interpreted);
+        }
+        return combine(MethodHandles.insertArguments(NEW_LIST, 0, (Object) Arrays.copyOf(kinds, items.size())), items);
+    }
+
+    private MethodHandle interpret(Object schema, int[] interpreted) {
+        interpreted[0]++;
+        return MethodHandles.insertArguments(INTERPRET, 0, jsonBuilder, schema);
+    }
+
+    // target takes the children values as an Object[], the result takes the context and evaluates every child with it
+    private static MethodHandle combine(MethodHandle target, List<MethodHandle> children) {
+        if (children.size() > MAX_COMBINED_CHILDREN)
+            return MethodHandles.filterArguments(target, 0,
+                    MethodHandles.insertArguments(EVALUATE_ALL, 0, (Object) children.toArray(new MethodHandle[0])));
+        MethodHandle collector = target.asCollector(Object[].class, children.size());
+        MethodHandle filtered = MethodHandles.filterArguments(collector, 0, children.toArray(new MethodHandle[0]));
+        return MethodHandles.permuteArguments(filtered, BUILD_TYPE, new int[children.size()]);
+    }
+
+    private static MethodHandle constant(Object value) {
+        return MethodHandles.dropArguments(MethodHandles.constant(Object.class, value), 0, DocumentContext.class);
+    }
+
+    static Object call(MethodHandle handle, DocumentContext context) {
+        try {
+            return (Object) handle.invokeExact(context);
+        }
+        catch (RuntimeException | Error ex) {
+            throw ex;
+        }
+        catch (Throwable ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static Object trace(MethodHandle handle, String function, DocumentContext context) {
+        Object event = FlightEvents.beginFunction();
+        if (event == null)
+            return call(handle, context);
+        try {
+            return call(handle, context);
+        }
+        finally {
+            FlightEvents.endFunction(event, function, true);
+        }
+    }
+
+    private static Object invoke(Function function, Type type, Object[] arguments) {
+        return function.invoke(type, new ArrayList<>(Arrays.asList(arguments)));
+    }
+
+    private static Object evaluate(Expression expression, Type type, Map<String, MethodHandle> variables, DocumentContext context) {
+        return expression.evaluate(type, schema -> call(variables.get(schema), context));
+    }
+
+    private static Object reduce(Function function, Type type, MethodHandle[] arguments, DocumentContext context) {
+        Function.Result result = null;
+        for (MethodHandle argument : arguments) {
+            result = function.handle(type, call(argument, context), result);
+            if (result != null && result.isDone())
+                return result.getValue();
+        }
+        return result == null ? null : result.getValue();
+    }
+
+    private static Object render(StringTemplate template, Object[] values) {
+        return template.render(values);
+    }
+
+    private static Object newObject(String[] keys, Object[] values) {
+        Map<String, Object> result = new LinkedHashMap<>(JsonBuilder.capacityFor(keys.length));
+        for (int i = 0; i < keys.length; i++)
+            result.put(keys[i], values[i]);
+        return result;
+    }
+
+    private static Object newList(byte[] kinds, Object[] values) {
+        List<Object> result = new ArrayList<>(kinds.length);
+        for (int i = 0; i < kinds.length; i++) {
+            if (kinds[i] == ITEMS || (kinds[i] == ITEM_OR_ITEMS && values[i] instanceof Collection))
+                result.addAll((Collection) values[i]);
+            else
+                result.add(values[i]);
+        }
+        return result;
+    }
+
+    private static Object mapItems(CompiledPath arrayPath, MethodHandle item, DocumentContext context) {
+        List<Object> items = (List<Object>) arrayPath.read(context);
+        List<Object> result = new ArrayList<>(items.size());
+        for (Object object : items)
+            result.add(call(item, JsonPath.using(context.configuration()).parse(object)));
+        return result;
+    }
+
+    private static Object parse(String rawData, DocumentContext context) {
+        return context.configuration().jsonProvider().parse(rawData);
+    }
+
+    private static Object interpret(JsonBuilder jsonBuilder, Object schema, DocumentContext context) {
+        return jsonBuilder.buildValue(schema, context);
+    }
+
+    private static Object[] evaluateAll(MethodHandle[] handles, DocumentContext context) {
+        Object[] values = new Object[handles.length];
+        for (int i = 0; i < handles.length; i++)
+            values[i] = call(handles[i], context);
+        return values;
+    }
+
+    private static final class SchemaKey {
+
+        private final Object schema;
+
+        SchemaKey(Object schema) {
+            this.schema = schema;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof SchemaKey && ((SchemaKey) o).schema == schema;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(schema);
+        }
+
+    }
+
+}
@@ -0,0 +1,21 @@
+package com.rey.jsonbatch.codec;
+
+import com.jayway.jsonpath.spi.json.JsonProvider;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+// Encodes request bodies and decodes response bodies in a non JSON wire format.
+// Decoded bodies must be trees of the given JsonProvider so templates can read them like JSON responses.
+public interface BodyCodec {
+
+    String getFormat();
+
+    String getContentType();
+
+    void write(JsonProvider jsonProvider, Object body, OutputStream outputStream) throws IOException;
+
+    Object read(JsonProvider jsonProvider, InputStream inputStream) throws IOException;
+
+}
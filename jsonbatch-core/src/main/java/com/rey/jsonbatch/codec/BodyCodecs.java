@@ -0,0 +1,80 @@
+package com.rey.jsonbatch.codec;
+
+import com.jayway.jsonpath.spi.json.JsonProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Registry of binary body codecs. Codecs on the classpath are discovered through
+// META-INF/services/com.rey.jsonbatch.codec.BodyCodec, others can be added with register().
+public final class BodyCodecs {
+
+    private static final Logger logger = LoggerFactory.getLogger(BodyCodecs.class);
+
+    public static final String JSON = "json";
+
+    private static final Map<String, BodyCodec> codecsByFormat = new ConcurrentHashMap<>();
+    private static final Map<String, BodyCodec> codecsByContentType = new ConcurrentHashMap<>();
+
+    static {
+        for(BodyCodec codec : ServiceLoader.load(BodyCodec.class, BodyCodecs.class.getClassLoader()))
+            register(codec);
+    }
+
+    private BodyCodecs() {
+    }
+
+    public static void register(BodyCodec codec) {
+        logger.debug("Register [{}] body codec for [{}] content type", codec.getFormat(), codec.getContentType());
+        codecsByFormat.put(codec.getFormat().toLowerCase(Locale.ROOT), codec);
+        codecsByContentType.put(codec.getContentType().toLowerCase(Locale.ROOT), codec);
+    }
+
+    public static boolean isJson(String format) {
+        return format == null || JSON.equalsIgnoreCase(format);
+    }
+
+    // returns null for JSON, which dispatchers handle natively
+    public static BodyCodec get(String format) {
+        if(isJson(format))
+            return null;
+        BodyCodec codec = codecsByFormat.get(format.toLowerCase(Locale.ROOT));
+        if(codec == null) {
+            logger.error("Unsupported body format: {}", format);
+            throw new IllegalArgumentException("Unsupported body format: " + format);
+        }
+        return codec;
+    }
+
+    // finds the codec for a response Content-Type header value, null when it is not a registered binary type
+    public static BodyCodec forContentType(String contentType) {
+        if(contentType == null || codecsByContentType.isEmpty())
+            return null;
+        int index = contentType.indexOf(';');
+        String mimeType = (index < 0 ? contentType : contentType.substring(0, index)).trim().toLowerCase(Locale.ROOT);
+        return codecsByContentType.get(mimeType);
+    }
+
+    // value for the Accept header when a binary format is requested, JSON stays acceptable as a fallback
+    public static String accept(BodyCodec codec) {
+        return codec.getContentType() + ", application/json;q=0.9";
+    }
+
+    public static byte[] toBytes(BodyCodec codec, JsonProvider jsonProvider, Object body) {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(1024);
+        try {
+            codec.write(jsonProvider, body, outputStream);
+        }
+        catch (IOException ex) {
+            throw new IllegalStateException("Cannot write " + codec.getFormat() + " body to memory", ex);
+        }
+        return outputStream.toByteArray();
+    }
+
+}
@@ -0,0 +1,51 @@
+package com.rey.jsonbatch.concurrent;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class BatchExecutors {
+
+    private static final Logger logger = LoggerFactory.getLogger(BatchExecutors.class);
+
+    private static final String THREAD_PREFIX = "jsonbatch-";
+
+    public static boolean isVirtualThreadSupported() {
+        return false;
+    }
+
+    public static ExecutorService platform() {
+        return Executors.newCachedThreadPool(threadFactory());
+    }
+
+    public static ExecutorService platform(int nThreads) {
+        return Executors.newFixedThreadPool(nThreads, threadFactory());
+    }
+
+    public static ExecutorService virtual() {
+        logger.warn("Virtual threads are not supported on this runtime, fall back to platform threads");
+        return platform();
+    }
+
+    public static ExecutorService defaultExecutor() {
+        return Holder.DEFAULT;
+    }
+
+    private static ThreadFactory threadFactory() {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, THREAD_PREFIX + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static class Holder {
+        static final ExecutorService DEFAULT = platform();
+    }
+
+}
@@ -0,0 +1,9 @@
+package com.rey.jsonbatch.convert;
+
+// Converts a value of one source class, returns null when the value cannot be represented in the target type
+@FunctionalInterface
+public interface Converter {
+
+    Object convert(Object value);
+
+}
@@ -0,0 +1,29 @@
+package com.rey.jsonbatch.convert;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+// Read-only list backed by a double[], elements are boxed only when read
+public final class DoubleList extends AbstractList<Object> implements RandomAccess {
+
+    private final double[] values;
+
+    DoubleList(double[] values) {
+        this.values = values;
+    }
+
+    public double getDouble(int index) {
+        return values[index];
+    }
+
+    @Override
+    public Object get(int index) {
+        return values[index];
+    }
+
+    @Override
+    public int size() {
+        return values.length;
+    }
+
+}
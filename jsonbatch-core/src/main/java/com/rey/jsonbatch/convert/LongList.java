@@ -0,0 +1,29 @@
+package com.rey.jsonbatch.convert;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+// Read-only list backed by a long[], elements are boxed only when read
+public final class LongList extends AbstractList<Object> implements RandomAccess {
+
+    private final long[] values;
+
+    LongList(long[] values) {
+        this.values = values;
+    }
+
+    public long getLong(int index) {
+        return values[index];
+    }
+
+    @Override
+    public Object get(int index) {
+        return values[index];
+    }
+
+    @Override
+    public int size() {
+        return values.length;
+    }
+
+}
@@ -0,0 +1,11 @@
+package com.rey.jsonbatch.convert;
+
+public enum NumberMode {
+
+    // int/num values are BigInteger/BigDecimal
+    BIG,
+
+    // int/num values are Long/Double when they fit, BigInteger/BigDecimal otherwise
+    COMPACT
+
+}
@@ -0,0 +1,97 @@
+package com.rey.jsonbatch.convert;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+// Parses numbers without using NumberFormatException for control flow: the text is validated first and null is returned for invalid text.
+public final class Numbers {
+
+    // any 18 digit number fits in a long
+    private static final int MAX_LONG_DIGITS = 18;
+
+    // BigDecimal fails on exponents beyond int range
+    private static final int MAX_EXPONENT_DIGITS = 9;
+
+    private Numbers() {
+    }
+
+    public static boolean isInteger(String value) {
+        int length = value.length();
+        int start = length > 0 && isSign(value.charAt(0)) ? 1 : 0;
+        if(start == length)
+            return false;
+        for(int i = start; i < length; i++) {
+            if(!isDigit(value.charAt(i)))
+                return false;
+        }
+        return true;
+    }
+
+    // same grammar as new BigDecimal(String)
+    public static boolean isDecimal(String value) {
+        int length = value.length();
+        int i = length > 0 && isSign(value.charAt(0)) ? 1 : 0;
+        int digits = 0;
+        while(i < length && isDigit(value.charAt(i))) {
+            i++;
+            digits++;
+        }
+        if(i < length && value.charAt(i) == '.') {
+            i++;
+            while(i < length && isDigit(value.charAt(i))) {
+                i++;
+                digits++;
+            }
+        }
+        if(digits == 0)
+            return false;
+        if(i < length && (value.charAt(i) == 'e' || value.charAt(i) == 'E')) {
+            i++;
+            if(i < length && isSign(value.charAt(i)))
+                i++;
+            int start = i;
+            while(i < length && isDigit(value.charAt(i)))
+                i++;
+            if(i == start || i - start > MAX_EXPONENT_DIGITS)
+                return false;
+        }
+        return i == length;
+    }
+
+    public static BigInteger parseInteger(String value) {
+        if(!isInteger(value))
+            return null;
+        if(digits(value) <= MAX_LONG_DIGITS)
+            return BigInteger.valueOf(Long.parseLong(value));
+        return new BigInteger(value);
+    }
+
+    public static BigDecimal parseDecimal(String value) {
+        if(!isDecimal(value))
+            return null;
+        return new BigDecimal(value);
+    }
+
+    // null when the text is not an integer or doesn't fit in a long
+    public static Long parseLong(String value) {
+        if(!isInteger(value))
+            return null;
+        if(digits(value) <= MAX_LONG_DIGITS)
+            return Long.parseLong(value);
+        BigInteger integer = new BigInteger(value);
+        return integer.bitLength() < Long.SIZE ? integer.longValue() : null;
+    }
+
+    private static int digits(String value) {
+        return isSign(value.charAt(0)) ? value.length() - 1 : value.length();
+    }
+
+    private static boolean isSign(char c) {
+        return c == '-' || c == '+';
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+}
@@ -0,0 +1,229 @@
+package com.rey.jsonbatch.convert;
+
+import com.rey.jsonbatch.JsonBuilder.Type;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Casts values to template types with converters looked up by the class of the value, built once per NumberMode.
+// Arrays are converted in one pass, in COMPACT mode int[]/num[] arrays are stored in a long[]/double[].
+public final class TypeConverter {
+
+    // doubles represent every integer up to 2^53 exactly
+    private static final long MAX_EXACT_DOUBLE = 1L << 53;
+
+    private static final TypeConverter BIG = new TypeConverter(NumberMode.BIG);
+
+    private static final TypeConverter COMPACT = new TypeConverter(NumberMode.COMPACT);
+
+    private final NumberMode numberMode;
+    private final Map<Class<?>, Converter> integers = new HashMap<>();
+    private final Map<Class<?>, Converter> numbers = new HashMap<>();
+    private final Map<Class<?>, Converter> booleans = new HashMap<>();
+
+    private TypeConverter(NumberMode numberMode) {
+        this.numberMode = numberMode;
+        if(numberMode == NumberMode.COMPACT) {
+            put(integers, value -> value, Long.class);
+            put(integers, value -> ((Number) value).longValue(), Integer.class, Short.class, Byte.class);
+            put(integers, value -> (long) Math.round((Float) value), Float.class);
+            put(integers, value -> Math.round((Double) value), Double.class);
+            put(integers, value -> compact((BigInteger) value), BigInteger.class);
+            put(integers, value -> compact(((BigDecimal) value).toBigInteger()), BigDecimal.class);
+            put(integers, value -> {
+                Long result = Numbers.parseLong((String) value);
+                return result != null ? result : Numbers.parseInteger((String) value);
+            }, String.class);
+
+            put(numbers, value -> value, Double.class);
+            put(numbers, value -> Float.isFinite((Float) value) ? Double.valueOf(value.toString()) : null, Float.class);
+            put(numbers, value -> compact(((Number) value).longValue()), Long.class, Integer.class, Short.class, Byte.class);
+            put(numbers, value -> ((BigInteger) value).bitLength() <= 53 ? (Object) ((BigInteger) value).doubleValue() : new BigDecimal((BigInteger) value), BigInteger.class);
+            put(numbers, value -> compact((BigDecimal) value), BigDecimal.class);
+            put(numbers, value -> {
+                BigDecimal result = Numbers.parseDecimal((String) value);
+                return result == null ? null : compact(result);
+            }, String.class);
+        }
+        else {
+            put(integers, value -> value, BigInteger.class);
+            put(integers, value -> BigInteger.valueOf(((Number) value).longValue()), Long.class, Integer.class, Short.class, Byte.class);
+            put(integers, value -> BigInteger.valueOf(Math.round((Float) value)), Float.class);
+            put(integers, value -> BigInteger.valueOf(Math.round((Double) value)), Double.class);
+            put(integers, value -> ((BigDecimal) value).toBigInteger(), BigDecimal.class);
+            put(integers, value -> Numbers.parseInteger((String) value), String.class);
+
+            put(numbers, value -> value, BigDecimal.class);
+            put(numbers, value -> new BigDecimal((BigInteger) value), BigInteger.class);
+            put(numbers, value -> BigDecimal.valueOf(((Number) value).longValue()), Long.class, Integer.class, Short.class, Byte.class);
+            // shortest decimal text of the float, not its exact binary value
+            put(numbers, value -> Float.isFinite((Float) value) ? new BigDecimal(value.toString()) : null, Float.class);
+            put(numbers, value -> Double.isFinite((Double) value) ? BigDecimal.valueOf((Double) value) : null, Double.class);
+            put(numbers, value -> Numbers.parseDecimal((String) value), String.class);
+        }
+
+        put(booleans, value -> value, Boolean.class);
+        put(booleans, value -> !value.equals(0), Integer.class);
+        put(booleans, value -> !value.equals(0L), Long.class);
+        put(booleans, value -> !value.equals(0F), Float.class);
+        put(booleans, value -> !value.equals(0D), Double.class);
+        put(booleans, value -> !value.equals(BigInteger.ZERO), BigInteger.class);
+        put(booleans, value -> !value.equals(BigDecimal.ZERO), BigDecimal.class);
+        put(booleans, value -> ((String) value).equalsIgnoreCase("true"), String.class);
+    }
+
+    public static TypeConverter of(NumberMode numberMode) {
+        return numberMode == NumberMode.COMPACT ? COMPACT : BIG;
+    }
+
+    public NumberMode getNumberMode() {
+        return numberMode;
+    }
+
+    // a json path result: the first item for single types, every item for array types
+    public Object convert(Type type, Object value) {
+        if(value == null)
+            return null;
+        if(type == null)
+            return value;
+        if(!type.isArray) {
+            if(value instanceof List) {
+                List list = (List) value;
+                value = list.isEmpty() ? null : list.get(0);
+            }
+            return cast(value, type);
+        }
+        return castAll(value instanceof List ? (List<?>) value : Collections.singletonList(value), type.elementType);
+    }
+
+    public Object cast(Object value, Type type) {
+        if(value == null)
+            return null;
+        switch (type) {
+            case STRING:
+                return value.toString();
+            case INTEGER:
+                return cast(value, converter(integers, value.getClass()), "integer");
+            case NUMBER:
+                return cast(value, converter(numbers, value.getClass()), "number");
+            case BOOLEAN:
+                return cast(value, converter(booleans, value.getClass()), "boolean");
+            default:
+                return value;
+        }
+    }
+
+    public List<Object> castAll(List<?> values, Type type) {
+        if(numberMode == NumberMode.COMPACT) {
+            List<Object> result = type == Type.INTEGER ? castToLongs(values) : type == Type.NUMBER ? castToDoubles(values) : null;
+            if(result != null)
+                return result;
+        }
+        Map<Class<?>, Converter> table = table(type);
+        String typeName = type.name().toLowerCase();
+        List<Object> result = new ArrayList<>(values.size());
+        Class<?> lastClass = null;
+        Converter converter = null;
+        for(Object value : values) {
+            if(table == null || value == null) {
+                result.add(cast(value, type));
+                continue;
+            }
+            // arrays are mostly of one class, skip the lookup while it doesn't change
+            if(value.getClass() != lastClass) {
+                lastClass = value.getClass();
+                converter = converter(table, lastClass);
+            }
+            result.add(cast(value, converter, typeName));
+        }
+        return result;
+    }
+
+    // null when an item doesn't fit in a long
+    private List<Object> castToLongs(List<?> values) {
+        long[] result = new long[values.size()];
+        int i = 0;
+        for(Object value : values) {
+            if(value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte)
+                result[i++] = ((Number) value).longValue();
+            else {
+                Object converted = cast(value, Type.INTEGER);
+                if(!(converted instanceof Long))
+                    return null;
+                result[i++] = (Long) converted;
+            }
+        }
+        return new LongList(result);
+    }
+
+    // null when an item doesn't fit in a double
+    private List<Object> castToDoubles(List<?> values) {
+        double[] result = new double[values.size()];
+        int i = 0;
+        for(Object value : values) {
+            if(value instanceof Double)
+                result[i++] = (Double) value;
+            else if((value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte)
+                    && Math.abs(((Number) value).longValue()) <= MAX_EXACT_DOUBLE)
+                result[i++] = ((Number) value).longValue();
+            else {
+                Object converted = cast(value, Type.NUMBER);
+                if(!(converted instanceof Double))
+                    return null;
+                result[i++] = (Double) converted;
+            }
+        }
+        return new DoubleList(result);
+    }
+
+    private Map<Class<?>, Converter> table(Type type) {
+        switch (type) {
+            case INTEGER:
+                return integers;
+            case NUMBER:
+                return numbers;
+            case BOOLEAN:
+                return booleans;
+            default:
+                return null;
+        }
+    }
+
+    private static Converter converter(Map<Class<?>, Converter> table, Class<?> clazz) {
+        return table.get(clazz);
+    }
+
+    private static Object cast(Object value, Converter converter, String typeName) {
+        Object result = converter == null ? null : converter.convert(value);
+        if(result == null)
+            throw new IllegalArgumentException("Cannot cast " + value.getClass() + " to " + typeName);
+        return result;
+    }
+
+    private static Object compact(BigInteger value) {
+        return value.bitLength() < Long.SIZE ? (Object) value.longValue() : value;
+    }
+
+    private static Object compact(long value) {
+        return Math.abs(value) <= MAX_EXACT_DOUBLE ? (Object) (double) value : BigDecimal.valueOf(value);
+    }
+
+    // a Double only when it reads back as the same decimal value
+    private static Object compact(BigDecimal value) {
+        double result = value.doubleValue();
+        if(Double.isFinite(result) && BigDecimal.valueOf(result).compareTo(value) == 0)
+            return result;
+        return value;
+    }
+
+    private static void put(Map<Class<?>, Converter> table, Converter converter, Class<?>... classes) {
+        for(Class<?> clazz : classes)
+            table.put(clazz, converter);
+    }
+
+}
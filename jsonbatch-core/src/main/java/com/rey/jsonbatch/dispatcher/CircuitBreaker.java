@@ -0,0 +1,132 @@
+package com.rey.jsonbatch.dispatcher;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+public class CircuitBreaker {
+
+    private static final Logger logger = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    private static final byte OUTCOME_FAILURE = 1;
+    private static final byte OUTCOME_SLOW = 2;
+
+    private final String name;
+    private final CircuitBreakerConfig config;
+
+    private final byte[] outcomes;
+    private int next;
+    private int count;
+    private int failureCount;
+    private int slowCount;
+
+    private State state = State.CLOSED;
+    private long openedAt;
+    private int halfOpenPermits;
+    private int halfOpenSuccesses;
+
+    public CircuitBreaker(String name, CircuitBreakerConfig config) {
+        this.name = name;
+        this.config = config;
+        this.outcomes = new byte[config.getWindowSize()];
+    }
+
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN) {
+            if (System.nanoTime() - openedAt < TimeUnit.MILLISECONDS.toNanos(config.getOpenDuration()))
+                return false;
+            transitionTo(State.HALF_OPEN);
+        }
+        if (state == State.HALF_OPEN) {
+            if (halfOpenPermits >= config.getHalfOpenCalls())
+                return false;
+            halfOpenPermits++;
+        }
+        return true;
+    }
+
+    public synchronized void release() {
+        if (state == State.HALF_OPEN && halfOpenPermits > 0)
+            halfOpenPermits--;
+    }
+
+    public synchronized void onSuccess(long durationMillis) {
+        boolean isSlow = durationMillis >= config.getSlowCallDuration();
+        if (state == State.HALF_OPEN) {
+            if (isSlow) {
+                transitionTo(State.OPEN);
+                return;
+            }
+            halfOpenSuccesses++;
+            if (halfOpenSuccesses >= config.getHalfOpenCalls())
+                transitionTo(State.CLOSED);
+            return;
+        }
+        record(isSlow ? OUTCOME_SLOW : 0);
+    }
+
+    public synchronized void onFailure(long durationMillis) {
+        if (state == State.HALF_OPEN) {
+            transitionTo(State.OPEN);
+            return;
+        }
+        record((byte)(OUTCOME_FAILURE | (durationMillis >= config.getSlowCallDuration() ? OUTCOME_SLOW : 0)));
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    private void record(byte outcome) {
+        if (state != State.CLOSED)
+            return;
+        if (count == outcomes.length) {
+            byte old = outcomes[next];
+            if ((old & OUTCOME_FAILURE) != 0)
+                failureCount--;
+            if ((old & OUTCOME_SLOW) != 0)
+                slowCount--;
+        }
+        else
+            count++;
+        outcomes[next] = outcome;
+        next = (next + 1) % outcomes.length;
+        if ((outcome & OUTCOME_FAILURE) != 0)
+            failureCount++;
+        if ((outcome & OUTCOME_SLOW) != 0)
+            slowCount++;
+
+        if (count < config.getMinimumCalls())
+            return;
+        if (failureCount * 100.0 / count >= config.getFailureRateThreshold()
+                || slowCount * 100.0 / count >= config.getSlowCallRateThreshold())
+            transitionTo(State.OPEN);
+    }
+
+    private void transitionTo(State newState) {
+        logger.info("Circuit breaker [{}] changes from {} to {}", name, state, newState);
+        state = newState;
+        halfOpenPermits = 0;
+        halfOpenSuccesses = 0;
+        if (newState == State.OPEN)
+            openedAt = System.nanoTime();
+        if (newState == State.CLOSED) {
+            next = 0;
+            count = 0;
+            failureCount = 0;
+            slowCount = 0;
+        }
+    }
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+}
@@ -0,0 +1,304 @@
+package com.rey.jsonbatch.dispatcher;
+
+import com.jayway.jsonpath.spi.json.JsonProvider;
+import com.rey.jsonbatch.RequestDispatcher;
+import com.rey.jsonbatch.model.DispatchOptions;
+import com.rey.jsonbatch.model.Request;
+import com.rey.jsonbatch.model.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class HedgingRequestDispatcher implements RequestDispatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(HedgingRequestDispatcher.class);
+
+    // hedge budget tokens are counted in hundredths of a percent, a hedge costs 100%
+    private static final long HEDGE_COST = 100 * 100;
+
+    private final RequestDispatcher delegate;
+    private final ScheduledExecutorService scheduler;
+    private final Executor executor;
+
+    private final LatencyTracker latencyTracker = new LatencyTracker(256);
+
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong hedgeCount = new AtomicLong();
+    private final AtomicLong hedgeWinCount = new AtomicLong();
+
+    private final Object budgetLock = new Object();
+    private long hedgeTokens;
+
+    private volatile long delay = 50;
+    private volatile Double percentile;
+    private volatile int minSamples = 20;
+    private volatile double budgetPercent = 10;
+    private volatile int budgetBurst = 10;
+    private volatile Set<String> hedgedMethods = new HashSet<>(Arrays.asList("GET", "HEAD", "OPTIONS"));
+
+    public HedgingRequestDispatcher(RequestDispatcher delegate, ScheduledExecutorService scheduler, Executor executor) {
+        this.delegate = delegate;
+        this.scheduler = scheduler;
+        this.executor = executor;
+    }
+
+    @Override
+    public Response dispatch(Request request, JsonProvider jsonProvider, DispatchOptions options) throws Exception {
+        try {
+            return dispatchAsync(request, jsonProvider, options, executor).get();
+        }
+        catch (ExecutionException ex) {
+            if (ex.getCause() instanceof Exception)
+                throw (Exception) ex.getCause();
+            throw ex;
+        }
+    }
+
+    @Override
+    public CompletableFuture<Response> dispatchAsync(Request request, JsonProvider jsonProvider, DispatchOptions options, Executor executor) {
+        if (!hedgedMethods.contains(request.getHttpMethod().toUpperCase()))
+            return delegate.dispatchAsync(request, jsonProvider, options, executor);
+
+        requestCount.incrementAndGet();
+        earnHedgeToken();
+        String endpoint = endpoint(request);
+        HedgedCall call = new HedgedCall(endpoint, hedgeDelay(endpoint));
+        call.launch(false, () -> delegate.dispatchAsync(request, jsonProvider, options, executor));
+        call.timer = scheduler.schedule(() -> call.hedge(() -> {
+            logger.debug("Hedge request {}: {}", request.getHttpMethod(), request.getUrl());
+            return delegate.dispatchAsync(request, jsonProvider, options, executor);
+        }), call.delay, TimeUnit.MILLISECONDS);
+        call.result.whenComplete((response, throwable) -> call.cancelAll());
+        return call.result;
+    }
+
+    // every request adds budgetPercent of a hedge, capped at budgetBurst hedges so a long healthy period
+    // can't pay for hedging every request once the backend slows down
+    private void earnHedgeToken() {
+        long earned = Math.round(budgetPercent * 100);
+        synchronized (budgetLock) {
+            hedgeTokens = Math.min(hedgeTokens + earned, budgetBurst * HEDGE_COST);
+        }
+    }
+
+    private boolean tryAcquireHedge() {
+        synchronized (budgetLock) {
+            if (hedgeTokens >= HEDGE_COST) {
+                hedgeTokens -= HEDGE_COST;
+                hedgeCount.incrementAndGet();
+                return true;
+            }
+        }
+        logger.debug("Hedge budget exhausted");
+        return false;
+    }
+
+    private long hedgeDelay(String endpoint) {
+        Double percentile = this.percentile;
+        if (percentile != null) {
+            Long observed = latencyTracker.percentile(endpoint, percentile, minSamples);
+            if (observed != null)
+                return observed;
+        }
+        return delay;
+    }
+
+    // method and scheme://host:port, paths are left out so templated ids like /posts/@{id}@ share one window
+    private String endpoint(Request request) {
+        String url = request.getUrl();
+        int start = url.indexOf("://");
+        start = start < 0 ? 0 : start + 3;
+        int end = start;
+        while (end < url.length() && url.charAt(end) != '/' && url.charAt(end) != '?' && url.charAt(end) != '#')
+            end++;
+        return request.getHttpMethod().toUpperCase() + " " + url.substring(0, end);
+    }
+
+    private boolean isSuccessful(Response response) {
+        return response != null && response.getStatus() != null && response.getStatus() < 500;
+    }
+
+    public long getDelay() {
+        return delay;
+    }
+
+    public void setDelay(long delay) {
+        this.delay = delay;
+    }
+
+    public Double getPercentile() {
+        return percentile;
+    }
+
+    public void setPercentile(Double percentile) {
+        this.percentile = percentile;
+    }
+
+    public int getMinSamples() {
+        return minSamples;
+    }
+
+    public void setMinSamples(int minSamples) {
+        this.minSamples = minSamples;
+    }
+
+    public double getBudgetPercent() {
+        return budgetPercent;
+    }
+
+    public void setBudgetPercent(double budgetPercent) {
+        this.budgetPercent = budgetPercent;
+    }
+
+    public int getBudgetBurst() {
+        return budgetBurst;
+    }
+
+    // hedges that unused budget can add up to
+    public void setBudgetBurst(int budgetBurst) {
+        this.budgetBurst = budgetBurst;
+    }
+
+    public Set<String> getHedgedMethods() {
+        return hedgedMethods;
+    }
+
+    public void setHedgedMethods(Set<String> hedgedMethods) {
+        this.hedgedMethods = hedgedMethods;
+    }
+
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    public long getHedgeCount() {
+        return hedgeCount.get();
+    }
+
+    public long getHedgeWinCount() {
+        return hedgeWinCount.get();
+    }
+
+    private interface Attempt {
+        CompletableFuture<Response> start();
+    }
+
+    private class HedgedCall {
+
+        final String endpoint;
+        final long delay;
+        final CompletableFuture<Response> result = new CompletableFuture<>();
+        final List<CompletableFuture<Response>> attempts = new ArrayList<>();
+        final AtomicBoolean isWon = new AtomicBoolean();
+        volatile ScheduledFuture<?> timer;
+
+        int pending;
+        boolean isHedgeClosed;
+        Response lastResponse;
+        Throwable lastError;
+
+        HedgedCall(String endpoint, long delay) {
+            this.endpoint = endpoint;
+            this.delay = delay;
+        }
+
+        void launch(boolean isHedge, Attempt attempt) {
+            long start = System.nanoTime();
+            CompletableFuture<Response> future;
+            synchronized (this) {
+                future = attempt.start();
+                attempts.add(future);
+                pending++;
+            }
+            future.whenComplete((response, throwable) -> onComplete(isHedge, start, response, throwable));
+        }
+
+        void hedge(Attempt attempt) {
+            synchronized (this) {
+                if (isHedgeClosed)
+                    return;
+                isHedgeClosed = true;
+                if (result.isDone())
+                    return;
+                if (tryAcquireHedge()) {
+                    launch(true, attempt);
+                    return;
+                }
+                if (pending > 0)
+                    return;
+            }
+            completeWithLastOutcome();
+        }
+
+        void onComplete(boolean isHedge, long start, Response response, Throwable throwable) {
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            // failures are sampled too, or the delay shrinks as the backend slows down. Attempts are only cancelled
+            // once one took longer than the hedge delay, so a cancelled attempt counts as at least that
+            if (throwable instanceof CancellationException)
+                elapsed = Math.max(elapsed, delay);
+            latencyTracker.record(endpoint, elapsed);
+            if (throwable == null && isSuccessful(response)) {
+                if (isWon.compareAndSet(false, true) && !result.isDone()) {
+                    if (isHedge)
+                        hedgeWinCount.incrementAndGet();
+                    result.complete(response);
+                }
+                return;
+            }
+            synchronized (this) {
+                pending--;
+                if (throwable == null)
+                    lastResponse = response;
+                else
+                    lastError = throwable;
+                if (pending > 0)
+                    return;
+                if (!isHedgeClosed) {
+                    ScheduledFuture<?> timer = this.timer;
+                    if (timer != null && !timer.cancel(false))
+                        return;
+                    isHedgeClosed = true;
+                }
+            }
+            completeWithLastOutcome();
+        }
+
+        void completeWithLastOutcome() {
+            if (lastResponse != null)
+                result.complete(lastResponse);
+            else
+                result.completeExceptionally(lastError);
+        }
+
+        void cancelAll() {
+            ScheduledFuture<?> timer = this.timer;
+            if (timer != null)
+                timer.cancel(false);
+            List<CompletableFuture<Response>> futures;
+            synchronized (this) {
+                isHedgeClosed = true;
+                futures = new ArrayList<>(attempts);
+            }
+            for (CompletableFuture<Response> future : futures) {
+                if (!future.isDone())
+                    future.cancel(true);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,80 @@
+package com.rey.jsonbatch.dispatcher;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Latency windows per key, the least recently used keys are dropped beyond maxKeys
+public class LatencyTracker {
+
+    private static final int DEFAULT_MAX_KEYS = 1024;
+
+    private final int windowSize;
+
+    private final Map<String, Window> windows;
+
+    public LatencyTracker(int windowSize) {
+        this(windowSize, DEFAULT_MAX_KEYS);
+    }
+
+    public LatencyTracker(int windowSize, int maxKeys) {
+        this.windowSize = windowSize;
+        this.windows = new LinkedHashMap<String, Window>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Window> eldest) {
+                return size() > maxKeys;
+            }
+        };
+    }
+
+    public void record(String key, long latencyMillis) {
+        Window window;
+        synchronized (windows) {
+            window = windows.computeIfAbsent(key, k -> new Window(windowSize));
+        }
+        window.add(latencyMillis);
+    }
+
+    public Long percentile(String key, double percentile, int minSamples) {
+        Window window;
+        synchronized (windows) {
+            window = windows.get(key);
+        }
+        return window == null ? null : window.percentile(percentile, minSamples);
+    }
+
+    public int size() {
+        synchronized (windows) {
+            return windows.size();
+        }
+    }
+
+    private static class Window {
+
+        private final long[] samples;
+        private int count;
+        private int next;
+
+        Window(int size) {
+            samples = new long[size];
+        }
+
+        synchronized void add(long value) {
+            samples[next] = value;
+            next = (next + 1) % samples.length;
+            if (count < samples.length)
+                count++;
+        }
+
+        synchronized Long percentile(double percentile, int minSamples) {
+            if (count == 0 || count < minSamples)
+                return null;
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percentile / 100 * count) - 1;
+            return sorted[Math.max(0, Math.min(index, count - 1))];
+        }
+
+    }
+
+}
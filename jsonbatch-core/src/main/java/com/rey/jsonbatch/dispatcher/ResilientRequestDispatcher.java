@@ -0,0 +1,217 @@
+package com.rey.jsonbatch.dispatcher;
+
+import com.jayway.jsonpath.spi.json.JsonProvider;
+import com.rey.jsonbatch.BudgetExceededException;
+import com.rey.jsonbatch.RequestDispatcher;
+import com.rey.jsonbatch.model.DispatchOptions;
+import com.rey.jsonbatch.model.Request;
+import com.rey.jsonbatch.model.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+public class ResilientRequestDispatcher implements RequestDispatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(ResilientRequestDispatcher.class);
+
+    public static final int STATUS_CIRCUIT_OPEN = 503;
+    public static final String HEADER_CIRCUIT_BREAKER = "X-Circuit-Breaker";
+
+    private final RequestDispatcher delegate;
+    private final ScheduledExecutorService scheduler;
+    private final Executor executor;
+    private final CircuitBreakerConfig circuitBreakerConfig;
+
+    private final Map<String, CircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
+
+    private volatile int maxRetries = 2;
+    private volatile long baseBackoff = 100;
+    private volatile long maxBackoff = 2000;
+    private volatile Set<String> retriedMethods = new HashSet<>(Arrays.asList("GET", "HEAD", "OPTIONS", "PUT", "DELETE"));
+    private volatile Set<Integer> retriedStatuses = new HashSet<>(Arrays.asList(502, 503, 504));
+
+    public ResilientRequestDispatcher(RequestDispatcher delegate,
+                                      ScheduledExecutorService scheduler,
+                                      Executor executor,
+                                      CircuitBreakerConfig circuitBreakerConfig) {
+        this.delegate = delegate;
+        this.scheduler = scheduler;
+        this.executor = executor;
+        this.circuitBreakerConfig = circuitBreakerConfig;
+    }
+
+    @Override
+    public Response dispatch(Request request, JsonProvider jsonProvider, DispatchOptions options) throws Exception {
+        try {
+            return dispatchAsync(request, jsonProvider, options, executor).get();
+        }
+        catch (ExecutionException ex) {
+            if (ex.getCause() instanceof Exception)
+                throw (Exception) ex.getCause();
+            throw ex;
+        }
+    }
+
+    @Override
+    public CompletableFuture<Response> dispatchAsync(Request request, JsonProvider jsonProvider, DispatchOptions options, Executor executor) {
+        CompletableFuture<Response> result = new CompletableFuture<>();
+        attempt(0, result, request, jsonProvider, options, executor);
+        return result;
+    }
+
+    private void attempt(int retry, CompletableFuture<Response> result, Request request, JsonProvider jsonProvider, DispatchOptions options, Executor executor) {
+        if (result.isDone())
+            return;
+        String host = host(request.getUrl());
+        CircuitBreaker circuitBreaker = getCircuitBreaker(host);
+        if (!circuitBreaker.tryAcquire()) {
+            logger.warn("Circuit breaker of [{}] host is open, fail fast", host);
+            result.complete(buildCircuitOpenResponse(host, jsonProvider));
+            return;
+        }
+
+        long start = System.nanoTime();
+        CompletableFuture<Response> future = delegate.dispatchAsync(request, jsonProvider, options, executor);
+        result.whenComplete((response, throwable) -> {
+            if (result.isCancelled())
+                future.cancel(true);
+        });
+        future.whenComplete((response, throwable) -> {
+            long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            if (throwable instanceof CancellationException) {
+                circuitBreaker.release();
+                return;
+            }
+            // an oversized body is still an answer from the host, and a retry would read it again
+            Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+            boolean isOverBudget = cause instanceof BudgetExceededException;
+            boolean isFailure = isOverBudget ? isFailure(((BudgetExceededException) cause).getResponse()) : throwable != null || isFailure(response);
+            if (isFailure)
+                circuitBreaker.onFailure(duration);
+            else
+                circuitBreaker.onSuccess(duration);
+
+            if (isFailure && !isOverBudget && isRetryable(request, response, throwable) && retry < maxRetries) {
+                long backoff = backoff(retry);
+                logger.warn("Retry request {}: {} after [{}] ms", request.getHttpMethod(), request.getUrl(), backoff);
+                scheduler.schedule(() -> attempt(retry + 1, result, request, jsonProvider, options, executor), backoff, TimeUnit.MILLISECONDS);
+                return;
+            }
+            if (throwable != null)
+                result.completeExceptionally(throwable);
+            else
+                result.complete(response);
+        });
+    }
+
+    private boolean isFailure(Response response) {
+        return response == null || response.getStatus() == null || response.getStatus() >= 500;
+    }
+
+    private boolean isRetryable(Request request, Response response, Throwable throwable) {
+        if (!retriedMethods.contains(request.getHttpMethod().toUpperCase()))
+            return false;
+        return throwable != null || (response != null && retriedStatuses.contains(response.getStatus()));
+    }
+
+    private long backoff(int retry) {
+        long ceiling = Math.min(maxBackoff, baseBackoff << Math.min(retry, 30));
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    private Response buildCircuitOpenResponse(String host, JsonProvider jsonProvider) {
+        Map<String, List<String>> headers = new LinkedHashMap<>();
+        headers.put(HEADER_CIRCUIT_BREAKER, Collections.singletonList("open"));
+        Object body;
+        if (jsonProvider != null) {
+            body = jsonProvider.createMap();
+            jsonProvider.setProperty(body, "error", "circuit_open");
+            jsonProvider.setProperty(body, "host", host);
+        }
+        else {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("error", "circuit_open");
+            map.put("host", host);
+            body = map;
+        }
+        Response response = new Response();
+        response.setStatus(STATUS_CIRCUIT_OPEN);
+        response.setHeaders(headers);
+        response.setBody(body);
+        return response;
+    }
+
+    private String host(String url) {
+        try {
+            URI uri = URI.create(url);
+            if (uri.getHost() != null)
+                return uri.getPort() < 0 ? uri.getHost() : uri.getHost() + ":" + uri.getPort();
+        }
+        catch (IllegalArgumentException ex) {
+            logger.trace("Cannot parse [{}] url", url);
+        }
+        return url;
+    }
+
+    public CircuitBreaker getCircuitBreaker(String host) {
+        return circuitBreakers.computeIfAbsent(host, key -> new CircuitBreaker(key, circuitBreakerConfig));
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    public void setMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+
+    public long getBaseBackoff() {
+        return baseBackoff;
+    }
+
+    public void setBaseBackoff(long baseBackoff) {
+        this.baseBackoff = baseBackoff;
+    }
+
+    public long getMaxBackoff() {
+        return maxBackoff;
+    }
+
+    public void setMaxBackoff(long maxBackoff) {
+        this.maxBackoff = maxBackoff;
+    }
+
+    public Set<String> getRetriedMethods() {
+        return retriedMethods;
+    }
+
+    public void setRetriedMethods(Set<String> retriedMethods) {
+        this.retriedMethods = retriedMethods;
+    }
+
+    public Set<Integer> getRetriedStatuses() {
+        return retriedStatuses;
+    }
+
+    public void setRetriedStatuses(Set<Integer> retriedStatuses) {
+        this.retriedStatuses = retriedStatuses;
+    }
+
+}
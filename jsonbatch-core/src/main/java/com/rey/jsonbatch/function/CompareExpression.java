@@ -0,0 +1,347 @@
+package com.rey.jsonbatch.function;
+
+import com.rey.jsonbatch.JsonBuilder;
+import com.rey.jsonbatch.JsonBuilder.Type;
+import com.rey.jsonbatch.convert.Numbers;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// A __cmp expression parsed once from its template text. Operands are compared on the values of their @{...}@ variables
+// with the same number/boolean/string coercion as CompareFunction, without formatting them into a string first.
+// Comparisons can be combined with &&, || and ! and grouped with parentheses. Text that doesn't parse that way is split
+// at its first operator like before, and an operator that only comes from a variable's value falls back to CompareFunction.invoke.
+final class CompareExpression implements Expression {
+
+    private static final Pattern PATTERN_INLINE_VARIABLE = Pattern.compile(JsonBuilder.PATTERN_INLINE_VARIABLE);
+
+    private static final String[] OPERATORS = {"<=", ">=", "==", "!=", ">", "<"};
+
+    private final CompareFunction function;
+    private final Node root;
+    private final Operand text;
+
+    private CompareExpression(CompareFunction function, Node root, Operand text) {
+        this.function = function;
+        this.root = root;
+        this.text = text;
+    }
+
+    static CompareExpression parse(String text, CompareFunction function) {
+        ExpressionParser parser = new ExpressionParser(text);
+        Node root = parser.parseAll();
+        if(root == null)
+            root = parser.parseFirstComparison();
+        return new CompareExpression(function, root, root == null ? parser.operand(0, text.length()) : null);
+    }
+
+    @Override
+    public Object evaluate(Type type, VariableResolver resolver) {
+        if(root != null)
+            return root.evaluate(resolver);
+        return function.invoke(type, new ArrayList<>(Collections.singletonList(String.valueOf(text.resolve(resolver)))));
+    }
+
+    // same value as parsing the text of the operand: BigDecimal, Boolean or the trimmed String
+    private static Object classify(Object value) {
+        if(value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte)
+            return BigDecimal.valueOf(((Number) value).longValue());
+        if(value instanceof BigDecimal)
+            return value;
+        if(value instanceof BigInteger)
+            return new BigDecimal((BigInteger) value);
+        if(value instanceof Double && Double.isFinite((Double) value))
+            return BigDecimal.valueOf((Double) value);
+        if(value instanceof Float && Float.isFinite((Float) value))
+            return new BigDecimal(value.toString());
+        if(value instanceof Boolean)
+            return value;
+        String text = text(value);
+        BigDecimal number = Numbers.parseDecimal(text);
+        if(number != null)
+            return number;
+        if(text.equalsIgnoreCase("true") || text.equalsIgnoreCase("false"))
+            return text.equalsIgnoreCase("true");
+        return text;
+    }
+
+    private static String text(Object value) {
+        return String.valueOf(value).trim();
+    }
+
+    private interface Node {
+
+        boolean evaluate(VariableResolver resolver);
+
+    }
+
+    private static final class Comparison implements Node {
+
+        private final Operand left;
+        private final String operator;
+        private final Operand right;
+
+        Comparison(Operand left, String operator, Operand right) {
+            this.left = left;
+            this.operator = operator;
+            this.right = right;
+        }
+
+        @Override
+        public boolean evaluate(VariableResolver resolver) {
+            Object leftRaw = left.resolve(resolver);
+            Object rightRaw = right.resolve(resolver);
+            Object leftValue = left.classify(leftRaw);
+            if(leftValue instanceof BigDecimal) {
+                Object rightValue = right.classify(rightRaw);
+                BigDecimal number = rightValue instanceof BigDecimal ? (BigDecimal) rightValue : new BigDecimal(text(rightRaw));
+                return CompareFunction.compare((BigDecimal) leftValue, number, operator);
+            }
+            if(leftValue instanceof Boolean)
+                return CompareFunction.compare((Boolean) leftValue, Boolean.TRUE.equals(right.classify(rightRaw)), operator);
+            return CompareFunction.compare((String) leftValue, text(rightRaw), operator);
+        }
+
+    }
+
+    private static final class And implements Node {
+
+        private final Node left;
+        private final Node right;
+
+        And(Node left, Node right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public boolean evaluate(VariableResolver resolver) {
+            return left.evaluate(resolver) && right.evaluate(resolver);
+        }
+
+    }
+
+    private static final class Or implements Node {
+
+        private final Node left;
+        private final Node right;
+
+        Or(Node left, Node right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public boolean evaluate(VariableResolver resolver) {
+            return left.evaluate(resolver) || right.evaluate(resolver);
+        }
+
+    }
+
+    private static final class Not implements Node {
+
+        private final Node node;
+
+        Not(Node node) {
+            this.node = node;
+        }
+
+        @Override
+        public boolean evaluate(VariableResolver resolver) {
+            return !node.evaluate(resolver);
+        }
+
+    }
+
+    // literal text, a single variable, or text mixing both which is built like an inline string
+    private static final class Operand {
+
+        private final String[] parts;
+        private final String[] variables;
+        private final Object value;
+
+        Operand(String[] parts, String[] variables) {
+            this.parts = parts;
+            this.variables = variables;
+            this.value = variables.length == 0 ? CompareExpression.classify(parts[0]) : null;
+        }
+
+        Object resolve(VariableResolver resolver) {
+            if(variables.length == 0)
+                return parts[0];
+            if(parts == null)
+                return resolver.resolve(variables[0]);
+            StringBuilder builder = new StringBuilder(parts[0]);
+            for(int i = 0; i < variables.length; i++)
+                builder.append(resolver.resolve(variables[i])).append(parts[i + 1]);
+            return builder.toString().trim();
+        }
+
+        Object classify(Object raw) {
+            return variables.length == 0 ? value : CompareExpression.classify(raw);
+        }
+
+    }
+
+    private static final class ExpressionParser {
+
+        private final String text;
+        private final List<int[]> spans = new ArrayList<>();
+        private final List<String> schemas = new ArrayList<>();
+        private int position;
+
+        ExpressionParser(String text) {
+            this.text = text;
+            Matcher matcher = PATTERN_INLINE_VARIABLE.matcher(text);
+            while(matcher.find()) {
+                spans.add(new int[] {matcher.start(), matcher.end()});
+                schemas.add(matcher.group(1));
+            }
+        }
+
+        // null when the text isn't made of comparisons only
+        Node parseAll() {
+            position = 0;
+            Node node = parseOr(0);
+            skipWhitespace();
+            return node != null && position == text.length() ? node : null;
+        }
+
+        Node parseFirstComparison() {
+            for(int i = 0; i < text.length(); i++) {
+                int end = variableEnd(i);
+                if(end >= 0) {
+                    i = end - 1;
+                    continue;
+                }
+                String operator = operatorAt(i);
+                if(operator != null)
+                    return new Comparison(operand(0, i), operator, operand(i + operator.length(), text.length()));
+            }
+            return null;
+        }
+
+        private Node parseOr(int depth) {
+            Node node = parseAnd(depth);
+            while(node != null && consume("||")) {
+                Node right = parseAnd(depth);
+                node = right == null ? null : new Or(node, right);
+            }
+            return node;
+        }
+
+        private Node parseAnd(int depth) {
+            Node node = parseUnary(depth);
+            while(node != null && consume("&&")) {
+                Node right = parseUnary(depth);
+                node = right == null ? null : new And(node, right);
+            }
+            return node;
+        }
+
+        private Node parseUnary(int depth) {
+            skipWhitespace();
+            if(!text.startsWith("!=", position) && consume("!")) {
+                Node node = parseUnary(depth);
+                return node == null ? null : new Not(node);
+            }
+            if(consume("(")) {
+                Node node = parseOr(depth + 1);
+                return node != null && consume(")") ? node : null;
+            }
+            return parseComparison(depth);
+        }
+
+        private Node parseComparison(int depth) {
+            int start = position;
+            int i = start;
+            String operator = null;
+            while(i < text.length() && operator == null) {
+                int end = variableEnd(i);
+                if(end >= 0)
+                    i = end;
+                else if(isLogical(i) || text.charAt(i) == '(' || text.charAt(i) == ')')
+                    return null;
+                else if((operator = operatorAt(i)) == null)
+                    i++;
+            }
+            if(operator == null)
+                return null;
+            Operand left = operand(start, i);
+            int rightStart = i + operator.length();
+            i = rightStart;
+            while(i < text.length()) {
+                int end = variableEnd(i);
+                if(end >= 0)
+                    i = end;
+                else if(isLogical(i) || (depth > 0 && text.charAt(i) == ')'))
+                    break;
+                else if(operatorAt(i) != null)
+                    return null;
+                else
+                    i++;
+            }
+            position = i;
+            return new Comparison(left, operator, operand(rightStart, i));
+        }
+
+        Operand operand(int start, int end) {
+            List<String> parts = new ArrayList<>();
+            List<String> variables = new ArrayList<>();
+            int index = start;
+            for(int i = 0; i < spans.size(); i++) {
+                int[] span = spans.get(i);
+                if(span[0] >= start && span[1] <= end) {
+                    parts.add(text.substring(index, span[0]));
+                    variables.add(schemas.get(i));
+                    index = span[1];
+                }
+            }
+            parts.add(text.substring(index, end));
+            if(variables.isEmpty())
+                return new Operand(new String[] {parts.get(0).trim()}, new String[0]);
+            boolean single = variables.size() == 1 && parts.get(0).trim().isEmpty() && parts.get(1).trim().isEmpty();
+            return new Operand(single ? null : parts.toArray(new String[0]), variables.toArray(new String[0]));
+        }
+
+        private int variableEnd(int index) {
+            for(int[] span : spans) {
+                if(span[0] == index)
+                    return span[1];
+            }
+            return -1;
+        }
+
+        private String operatorAt(int index) {
+            for(String operator : OPERATORS) {
+                if(text.startsWith(operator, index))
+                    return operator;
+            }
+            return null;
+        }
+
+        private boolean isLogical(int index) {
+            return text.startsWith("&&", index) || text.startsWith("||", index);
+        }
+
+        private boolean consume(String token) {
+            skipWhitespace();
+            if(!text.startsWith(token, position))
+                return false;
+            position += token.length();
+            return true;
+        }
+
+        private void skipWhitespace() {
+            while(position < text.length() && Character.isWhitespace(text.charAt(position)))
+                position++;
+        }
+
+    }
+
+}
@@ -1,11 +1,14 @@
 package com.rey.jsonbatch.function;
 
 import com.rey.jsonbatch.JsonBuilder.Type;
+import com.rey.jsonbatch.convert.Numbers;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.math.BigDecimal;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -15,6 +18,11 @@ public class CompareFunction extends Function {
     private Logger logger = LoggerFactory.getLogger(CompareFunction.class);
 
     private static final String PATTERN_COMPARISON = "(<=|>=|==|!=|>|<)";
+
+    private static final int MAX_CACHED_EXPRESSIONS = 10000;
+
+    private final Map<String, Expression> expressions = new ConcurrentHashMap<>();
+
     @Override
     public String getName() {
         return "cmp";
@@ -57,14 +65,24 @@ public class CompareFunction extends Function {
         return Boolean.FALSE;
     }
 
+    // parsed once per text, then operands are compared on the values of their variables
+    @Override
+    public Expression expression(String text) {
+        Expression expression = expressions.get(text);
+        if(expression == null) {
+            if(expressions.size() >= MAX_CACHED_EXPRESSIONS)
+                expressions.clear();
+            expression = CompareExpression.parse(text, this);
+            expressions.put(text, expression);
+        }
+        return expression;
+    }
+
     private <T> T parse(String rawData, Class<T> clazz) {
         if(clazz == null) {
-            try {
-                return (T)new BigDecimal(rawData);
-            }
-            catch (NumberFormatException ex) {
-                logger.trace("Cannot parse [{}] as decimal", rawData);
-            }
+            BigDecimal number = Numbers.parseDecimal(rawData);
+            if(number != null)
+                return (T)number;
             if(rawData.equalsIgnoreCase("true") || rawData.equalsIgnoreCase("false")) {
                 return (T) Boolean.valueOf(rawData.equalsIgnoreCase("true"));
             }
@@ -79,7 +97,7 @@ public class CompareFunction extends Function {
         return null;
     }
 
-    private Boolean compare(BigDecimal left, BigDecimal right, String comparison) {
+    static boolean compare(BigDecimal left, BigDecimal right, String comparison) {
         switch (comparison) {
             case "<=":
                 return left.compareTo(right) <= 0;
@@ -98,7 +116,7 @@ public class CompareFunction extends Function {
         }
     }
 
-    private Boolean compare(Boolean left, Boolean right, String comparison) {
+    static boolean compare(Boolean left, Boolean right, String comparison) {
         switch (comparison) {
             case "==":
                 return left.equals(right);
@@ -109,7 +127,7 @@ public class CompareFunction extends Function {
         }
     }
 
-    private Boolean compare(String left, String right, String comparison) {
+    static boolean compare(String left, String right, String comparison) {
         switch (comparison) {
             case "==":
                 return left.equals(right);
@@ -0,0 +1,10 @@
+package com.rey.jsonbatch.function;
+
+import com.rey.jsonbatch.JsonBuilder.Type;
+
+// The string argument of a function compiled once, its @{...}@ variables are resolved on each evaluation
+public interface Expression {
+
+    Object evaluate(Type type, VariableResolver resolver);
+
+}
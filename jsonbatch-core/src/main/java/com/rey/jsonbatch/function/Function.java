@@ -18,6 +18,11 @@ public abstract class Function {
         return null;
     }
 
+    // called instead of invoke() when the only argument is a string, null if the function has no compiled form of it
+    public Expression expression(String text) {
+        return null;
+    }
+
     public static class Result<T> {
 
         T value;
@@ -1,5 +1,7 @@
 package com.rey.jsonbatch.function;
 
+import com.rey.jsonbatch.convert.Numbers;
+
 import java.math.BigDecimal;
 import java.math.BigInteger;
 
@@ -26,12 +28,14 @@ public class MathUtils {
     public static BigInteger toBigInteger(Object value) {
         if(value instanceof BigInteger)
             return (BigInteger)value;
-        else if(value instanceof Integer || value instanceof Long || value instanceof String)
-            return new BigInteger(value.toString());
+        else if(value instanceof Integer || value instanceof Long)
+            return BigInteger.valueOf(((Number)value).longValue());
+        else if(value instanceof String)
+            return Numbers.parseInteger((String)value);
         else if(value instanceof Float)
-            return new BigInteger(String.valueOf(Math.round((float)value)));
+            return BigInteger.valueOf(Math.round((float)value));
         else if(value instanceof Double)
-            return new BigInteger(String.valueOf(Math.round((double)value)));
+            return BigInteger.valueOf(Math.round((double)value));
         else if(value instanceof BigDecimal)
             return ((BigDecimal)value).toBigInteger();
         return null;
@@ -40,8 +44,14 @@ public class MathUtils {
     public static BigDecimal toBigDecimal(Object value) {
         if(value instanceof BigDecimal)
             return (BigDecimal)value;
-        else if(value instanceof Float || value instanceof Double || value instanceof Integer || value instanceof Long || value instanceof String)
+        else if(value instanceof Integer || value instanceof Long)
+            return BigDecimal.valueOf(((Number)value).longValue());
+        else if(value instanceof Double && Double.isFinite((double)value))
+            return BigDecimal.valueOf((double)value);
+        else if(value instanceof Float && Float.isFinite((float)value))
             return new BigDecimal(value.toString());
+        else if(value instanceof String)
+            return Numbers.parseDecimal((String)value);
         return null;
     }
 
@@ -0,0 +1,9 @@
+package com.rey.jsonbatch.function;
+
+// Builds the value of an @{...}@ variable of an expression, as JsonBuilder would build the schema inside it
+@FunctionalInterface
+public interface VariableResolver {
+
+    Object resolve(String schema);
+
+}
@@ -0,0 +1,94 @@
+package com.rey.jsonbatch.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.LongAdder;
+
+public class CompressionStats {
+
+    private final LongAdder requestCount = new LongAdder();
+    private final LongAdder compressedRequestCount = new LongAdder();
+    private final LongAdder requestBodyBytes = new LongAdder();
+    private final LongAdder requestWireBytes = new LongAdder();
+
+    private final LongAdder responseCount = new LongAdder();
+    private final LongAdder compressedResponseCount = new LongAdder();
+    private final LongAdder responseBodyBytes = new LongAdder();
+    private final LongAdder responseWireBytes = new LongAdder();
+
+    public void recordRequest(long bodyBytes, long wireBytes, boolean compressed) {
+        requestCount.increment();
+        if(compressed)
+            compressedRequestCount.increment();
+        requestBodyBytes.add(bodyBytes);
+        requestWireBytes.add(wireBytes);
+    }
+
+    public void recordResponse(long bodyBytes, long wireBytes, boolean compressed) {
+        responseCount.increment();
+        if(compressed)
+            compressedResponseCount.increment();
+        responseBodyBytes.add(bodyBytes);
+        responseWireBytes.add(wireBytes);
+    }
+
+    // Decodes the response body and counts wire bytes and decoded bytes while it is read
+    public InputStream decode(String contentEncoding, InputStream inputStream) throws IOException {
+        responseCount.increment();
+        if(ContentEncoding.isIdentity(contentEncoding))
+            return new CountingInputStream(new CountingInputStream(inputStream, responseWireBytes), responseBodyBytes);
+        compressedResponseCount.increment();
+        return new CountingInputStream(ContentEncoding.decode(contentEncoding, new CountingInputStream(inputStream, responseWireBytes)), responseBodyBytes);
+    }
+
+    public long getRequestCount() {
+        return requestCount.sum();
+    }
+
+    public long getCompressedRequestCount() {
+        return compressedRequestCount.sum();
+    }
+
+    public long getRequestBodyBytes() {
+        return requestBodyBytes.sum();
+    }
+
+    public long getRequestWireBytes() {
+        return requestWireBytes.sum();
+    }
+
+    public long getResponseCount() {
+        return responseCount.sum();
+    }
+
+    public long getCompressedResponseCount() {
+        return compressedResponseCount.sum();
+    }
+
+    public long getResponseBodyBytes() {
+        return responseBodyBytes.sum();
+    }
+
+    public long getResponseWireBytes() {
+        return responseWireBytes.sum();
+    }
+
+    public long getSavedBytes() {
+        return getRequestBodyBytes() - getRequestWireBytes() + getResponseBodyBytes() - getResponseWireBytes();
+    }
+
+    @Override
+    public String toString() {
+        return "CompressionStats{" +
+                "requests=" + getRequestCount() +
+                ", compressedRequests=" + getCompressedRequestCount() +
+                ", requestBodyBytes=" + getRequestBodyBytes() +
+                ", requestWireBytes=" + getRequestWireBytes() +
+                ", responses=" + getResponseCount() +
+                ", compressedResponses=" + getCompressedResponseCount() +
+                ", responseBodyBytes=" + getResponseBodyBytes() +
+                ", responseWireBytes=" + getResponseWireBytes() +
+                '}';
+    }
+
+}
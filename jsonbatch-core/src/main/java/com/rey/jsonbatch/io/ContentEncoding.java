@@ -0,0 +1,178 @@
+package com.rey.jsonbatch.io;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Locale;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+public class ContentEncoding {
+
+    public static final String GZIP = "gzip";
+    public static final String DEFLATE = "deflate";
+    public static final String BROTLI = "br";
+    public static final String IDENTITY = "identity";
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private static final Logger logger = LoggerFactory.getLogger(ContentEncoding.class);
+
+    // brotli has no JDK decoder, it's enabled when org.brotli:dec is on the classpath
+    private static final Constructor<?> brotliConstructor = findBrotliConstructor();
+
+    private ContentEncoding() {
+    }
+
+    public static boolean isBrotliSupported() {
+        return brotliConstructor != null;
+    }
+
+    public static String acceptEncoding() {
+        return isBrotliSupported() ? GZIP + ", " + DEFLATE + ", " + BROTLI : GZIP + ", " + DEFLATE;
+    }
+
+    public static boolean isIdentity(String contentEncoding) {
+        return contentEncoding == null || contentEncoding.trim().isEmpty() || IDENTITY.equalsIgnoreCase(contentEncoding.trim());
+    }
+
+    public static InputStream decode(String contentEncoding, InputStream inputStream) throws IOException {
+        if(isIdentity(contentEncoding))
+            return inputStream;
+        // codings are listed in the order they were applied
+        String[] codings = contentEncoding.split(",");
+        InputStream result = inputStream;
+        for(int i = codings.length - 1; i >= 0; i--)
+            result = decodeSingle(codings[i].trim().toLowerCase(Locale.ROOT), result);
+        return result;
+    }
+
+    public static DeflaterOutputStream encode(String contentEncoding, OutputStream outputStream) throws IOException {
+        String coding = contentEncoding == null ? "" : contentEncoding.trim().toLowerCase(Locale.ROOT);
+        if(GZIP.equals(coding))
+            return new GZIPOutputStream(outputStream, BUFFER_SIZE);
+        if(DEFLATE.equals(coding))
+            return new DeflatingOutputStream(outputStream);
+        logger.error("Unsupported request content encoding: {}", contentEncoding);
+        throw new IllegalArgumentException("Unsupported request content encoding: " + contentEncoding);
+    }
+
+    public static byte[] encode(String contentEncoding, byte[] data, int offset, int length) {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(Math.max(length / 4, 64));
+        try {
+            DeflaterOutputStream deflaterOutputStream = encode(contentEncoding, outputStream);
+            deflaterOutputStream.write(data, offset, length);
+            deflaterOutputStream.close();
+        }
+        catch (IOException ex) {
+            throw new IllegalStateException("Cannot compress data in memory", ex);
+        }
+        return outputStream.toByteArray();
+    }
+
+    private static InputStream decodeSingle(String coding, InputStream inputStream) throws IOException {
+        switch (coding) {
+            case GZIP:
+            case "x-gzip":
+                return new GZIPInputStream(inputStream, BUFFER_SIZE);
+            case DEFLATE:
+                return inflate(inputStream);
+            case BROTLI:
+                if(brotliConstructor == null)
+                    throw new IOException("Brotli content encoding requires org.brotli:dec on the classpath");
+                return newBrotliInputStream(inputStream);
+            case IDENTITY:
+            case "":
+                return inputStream;
+            default:
+                throw new IOException("Unsupported content encoding: " + coding);
+        }
+    }
+
+    private static InputStream inflate(InputStream inputStream) throws IOException {
+        // servers send deflate both zlib wrapped (per spec) and raw, peek at the header to tell them apart
+        PushbackInputStream pushbackInputStream = new PushbackInputStream(inputStream, 2);
+        byte[] header = new byte[2];
+        int count = 0;
+        while(count < 2) {
+            int read = pushbackInputStream.read(header, count, 2 - count);
+            if(read < 0)
+                break;
+            count += read;
+        }
+        if(count > 0)
+            pushbackInputStream.unread(header, 0, count);
+        boolean zlib = count == 2 && (header[0] & 0x0F) == 8 && (((header[0] & 0xFF) << 8) | (header[1] & 0xFF)) % 31 == 0;
+        Inflater inflater = new Inflater(!zlib);
+        return new InflaterInputStream(pushbackInputStream, inflater, BUFFER_SIZE) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                }
+                finally {
+                    inflater.end();
+                }
+            }
+        };
+    }
+
+    private static InputStream newBrotliInputStream(InputStream inputStream) throws IOException {
+        try {
+            return (InputStream) brotliConstructor.newInstance(inputStream);
+        }
+        catch (InvocationTargetException ex) {
+            if(ex.getCause() instanceof IOException)
+                throw (IOException) ex.getCause();
+            throw new IOException("Cannot create brotli decoder", ex.getCause());
+        }
+        catch (ReflectiveOperationException ex) {
+            throw new IOException("Cannot create brotli decoder", ex);
+        }
+    }
+
+    private static Constructor<?> findBrotliConstructor() {
+        try {
+            return Class.forName("org.brotli.dec.BrotliInputStream").getConstructor(InputStream.class);
+        }
+        catch (ClassNotFoundException | NoSuchMethodException | LinkageError ex) {
+            return null;
+        }
+    }
+
+    private static class DeflatingOutputStream extends DeflaterOutputStream {
+
+        private boolean finished;
+
+        DeflatingOutputStream(OutputStream outputStream) {
+            super(outputStream, new Deflater(), BUFFER_SIZE);
+        }
+
+        // the deflater isn't the default one so the stream won't release its native memory by itself
+        @Override
+        public void finish() throws IOException {
+            if(finished)
+                return;
+            finished = true;
+            try {
+                super.finish();
+            }
+            finally {
+                def.end();
+            }
+        }
+
+    }
+
+}
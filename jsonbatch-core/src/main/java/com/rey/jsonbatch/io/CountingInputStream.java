@@ -0,0 +1,46 @@
+package com.rey.jsonbatch.io;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.LongAdder;
+
+class CountingInputStream extends FilterInputStream {
+
+    private final LongAdder counter;
+
+    CountingInputStream(InputStream inputStream, LongAdder counter) {
+        super(inputStream);
+        this.counter = counter;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if(b >= 0)
+            counter.increment();
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int count = super.read(b, off, len);
+        if(count > 0)
+            counter.add(count);
+        return count;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long count = super.skip(n);
+        if(count > 0)
+            counter.add(count);
+        return count;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+}
@@ -0,0 +1,49 @@
+package com.rey.jsonbatch.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+public class CountingOutputStream extends OutputStream {
+
+    private final OutputStream outputStream;
+    private long count;
+
+    public CountingOutputStream() {
+        this(null);
+    }
+
+    public CountingOutputStream(OutputStream outputStream) {
+        this.outputStream = outputStream;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if(outputStream != null)
+            outputStream.write(b);
+        count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if(outputStream != null)
+            outputStream.write(b, off, len);
+        count += len;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if(outputStream != null)
+            outputStream.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if(outputStream != null)
+            outputStream.close();
+    }
+
+}
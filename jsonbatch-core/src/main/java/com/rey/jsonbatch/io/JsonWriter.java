@@ -0,0 +1,223 @@
+package com.rey.jsonbatch.io;
+
+import com.jayway.jsonpath.spi.json.JsonProvider;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+public class JsonWriter {
+
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    private static final byte[] NULL = {'n', 'u', 'l', 'l'};
+    private static final byte[] TRUE = {'t', 'r', 'u', 'e'};
+    private static final byte[] FALSE = {'f', 'a', 'l', 's', 'e'};
+    private static final byte[] HEX = {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'};
+
+    private final JsonProvider jsonProvider;
+    private final OutputStream outputStream;
+    private final byte[] buffer;
+    private int position;
+
+    public JsonWriter(JsonProvider jsonProvider, OutputStream outputStream) {
+        this(jsonProvider, outputStream, DEFAULT_BUFFER_SIZE);
+    }
+
+    public JsonWriter(JsonProvider jsonProvider, OutputStream outputStream, int bufferSize) {
+        this.jsonProvider = jsonProvider;
+        this.outputStream = outputStream;
+        this.buffer = new byte[Math.max(bufferSize, 16)];
+    }
+
+    public static void write(JsonProvider jsonProvider, Object node, OutputStream outputStream) throws IOException {
+        JsonWriter writer = new JsonWriter(jsonProvider, outputStream);
+        writer.write(node);
+        writer.flush();
+    }
+
+    public static byte[] toBytes(JsonProvider jsonProvider, Object node) {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(DEFAULT_BUFFER_SIZE);
+        try {
+            write(jsonProvider, node, outputStream);
+        }
+        catch (IOException ex) {
+            throw new IllegalStateException("Cannot write JSON to memory", ex);
+        }
+        return outputStream.toByteArray();
+    }
+
+    public static long length(JsonProvider jsonProvider, Object node) {
+        CountingOutputStream outputStream = new CountingOutputStream();
+        try {
+            write(jsonProvider, node, outputStream);
+        }
+        catch (IOException ex) {
+            throw new IllegalStateException("Cannot count JSON length", ex);
+        }
+        return outputStream.getCount();
+    }
+
+    public void write(Object node) throws IOException {
+        if(jsonProvider.isMap(node))
+            writeObject(node);
+        else if(jsonProvider.isArray(node))
+            writeArray(node);
+        else
+            writeValue(jsonProvider.unwrap(node));
+    }
+
+    public void flush() throws IOException {
+        if(position > 0) {
+            outputStream.write(buffer, 0, position);
+            position = 0;
+        }
+        outputStream.flush();
+    }
+
+    private void writeObject(Object node) throws IOException {
+        writeByte('{');
+        boolean first = true;
+        for(String key : jsonProvider.getPropertyKeys(node)) {
+            Object value = jsonProvider.getMapValue(node, key);
+            if(value == JsonProvider.UNDEFINED)
+                continue;
+            if(!first)
+                writeByte(',');
+            first = false;
+            writeString(key);
+            writeByte(':');
+            write(value);
+        }
+        writeByte('}');
+    }
+
+    private void writeArray(Object node) throws IOException {
+        writeByte('[');
+        boolean first = true;
+        for(Object item : jsonProvider.toIterable(node)) {
+            if(!first)
+                writeByte(',');
+            first = false;
+            write(item);
+        }
+        writeByte(']');
+    }
+
+    private void writeValue(Object value) throws IOException {
+        if(value == null)
+            writeBytes(NULL);
+        else if(value instanceof String)
+            writeString((String) value);
+        else if(value instanceof Boolean)
+            writeBytes((Boolean) value ? TRUE : FALSE);
+        else if(value instanceof Number)
+            writeAscii(value.toString());
+        else if(value instanceof Character || value instanceof Enum)
+            writeString(value.toString());
+        else
+            writeRaw(jsonProvider.toJson(value));
+    }
+
+    private void writeString(String value) throws IOException {
+        writeByte('"');
+        int length = value.length();
+        for(int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if(c == '"' || c == '\\') {
+                writeByte('\\');
+                writeByte(c);
+            }
+            else if(c < 0x20)
+                writeControl(c);
+            else if(c < 0x80)
+                writeByte(c);
+            else if(Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1)))
+                writeCodePoint(Character.toCodePoint(c, value.charAt(++i)));
+            else if(Character.isSurrogate(c))
+                writeByte('?');
+            else
+                writeCodePoint(c);
+        }
+        writeByte('"');
+    }
+
+    private void writeControl(char c) throws IOException {
+        writeByte('\\');
+        switch (c) {
+            case '\b':
+                writeByte('b');
+                break;
+            case '\f':
+                writeByte('f');
+                break;
+            case '\n':
+                writeByte('n');
+                break;
+            case '\r':
+                writeByte('r');
+                break;
+            case '\t':
+                writeByte('t');
+                break;
+            default:
+                writeByte('u');
+                writeByte('0');
+                writeByte('0');
+                writeByte(HEX[c >> 4]);
+                writeByte(HEX[c & 0xF]);
+        }
+    }
+
+    private void writeCodePoint(int codePoint) throws IOException {
+        if(codePoint < 0x800) {
+            writeByte(0xC0 | (codePoint >> 6));
+            writeByte(0x80 | (codePoint & 0x3F));
+        }
+        else if(codePoint < 0x10000) {
+            writeByte(0xE0 | (codePoint >> 12));
+            writeByte(0x80 | ((codePoint >> 6) & 0x3F));
+            writeByte(0x80 | (codePoint & 0x3F));
+        }
+        else {
+            writeByte(0xF0 | (codePoint >> 18));
+            writeByte(0x80 | ((codePoint >> 12) & 0x3F));
+            writeByte(0x80 | ((codePoint >> 6) & 0x3F));
+            writeByte(0x80 | (codePoint & 0x3F));
+        }
+    }
+
+    private void writeAscii(String value) throws IOException {
+        for(int i = 0; i < value.length(); i++)
+            writeByte(value.charAt(i));
+    }
+
+    private void writeRaw(String json) throws IOException {
+        writeBytes(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void writeBytes(byte[] bytes) throws IOException {
+        if(bytes.length > buffer.length - position) {
+            flushBuffer();
+            if(bytes.length > buffer.length) {
+                outputStream.write(bytes);
+                return;
+            }
+        }
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        position += bytes.length;
+    }
+
+    private void writeByte(int b) throws IOException {
+        if(position == buffer.length)
+            flushBuffer();
+        buffer[position++] = (byte) b;
+    }
+
+    private void flushBuffer() throws IOException {
+        outputStream.write(buffer, 0, position);
+        position = 0;
+    }
+
+}
@@ -0,0 +1,76 @@
+package com.rey.jsonbatch.io;
+
+import com.rey.jsonbatch.BudgetExceededException;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+// Counts the bytes read and fails once they go over the limit. Parsers may wrap or swallow the exception, so callers
+// check isExceeded() after reading.
+public class LimitedInputStream extends FilterInputStream {
+
+    private final long limit;
+    private long count;
+
+    public LimitedInputStream(InputStream inputStream) {
+        this(inputStream, Long.MAX_VALUE);
+    }
+
+    public LimitedInputStream(InputStream inputStream, Long limit) {
+        super(inputStream);
+        this.limit = limit == null ? Long.MAX_VALUE : limit;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public boolean isExceeded() {
+        return count > limit;
+    }
+
+    @Override
+    public int read() throws IOException {
+        checkLimit();
+        int b = super.read();
+        if(b >= 0) {
+            count++;
+            checkLimit();
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        checkLimit();
+        int count = super.read(b, off, len);
+        if(count > 0) {
+            this.count += count;
+            checkLimit();
+        }
+        return count;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        checkLimit();
+        long count = super.skip(n);
+        if(count > 0) {
+            this.count += count;
+            checkLimit();
+        }
+        return count;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    private void checkLimit() throws BudgetExceededException {
+        if(count > limit)
+            throw new BudgetExceededException(BudgetExceededException.SCOPE_RESPONSE, limit, count);
+    }
+
+}
@@ -0,0 +1,60 @@
+package com.rey.jsonbatch.jfr;
+
+// Flight Recorder events of the engine. This build is a no-op for Java 8, the multi-release jar has a Java 11 build
+// under META-INF/versions/11 that records them. begin methods return null when the event isn't recorded, end methods
+// ignore a null event, so callers pay nothing when recording is off.
+public final class FlightEvents {
+
+    private FlightEvents() {
+    }
+
+    public static boolean isSupported() {
+        return false;
+    }
+
+    public static Object beginBatch() {
+        return null;
+    }
+
+    public static void endBatch(Object event, String templateId, String method, String url, int status) {
+    }
+
+    public static Object beginTemplateChoice() {
+        return null;
+    }
+
+    // kind is request or response, index is -1 when no template matched
+    public static void endTemplateChoice(Object event, String kind, int candidates, int index, boolean indexed) {
+    }
+
+    public static Object beginRequestBuild() {
+        return null;
+    }
+
+    public static void endRequestBuild(Object event, int index, String method, String url) {
+    }
+
+    public static Object beginDispatch() {
+        return null;
+    }
+
+    // responseBytes is -1 when the dispatcher doesn't count the body
+    public static void endDispatch(Object event, int index, String method, String url, int status, long responseBytes) {
+    }
+
+    public static Object beginContextRebuild() {
+        return null;
+    }
+
+    // bytes is the UTF-8 size of the rebuilt batch state
+    public static void endContextRebuild(Object event, int responses, long bytes) {
+    }
+
+    public static Object beginFunction() {
+        return null;
+    }
+
+    public static void endFunction(Object event, String function, boolean compiled) {
+    }
+
+}
@@ -0,0 +1,325 @@
+package com.rey.jsonbatch.json;
+
+import com.jayway.jsonpath.InvalidJsonException;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+
+// Single use recursive descent parser. Values of all open containers share one stack,
+// a container copies its own slice into right-sized arrays when it closes.
+final class CompactJsonParser {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    // longest literals that always fit in a long / round trip through a double
+    private static final int MAX_LONG_DIGITS = 18;
+    private static final int MAX_DOUBLE_DIGITS = 15;
+
+    private final KeyPool keyPool;
+    private final Reader reader;
+    private char[] buffer;
+    private int position;
+    private int limit;
+    private long offset;
+
+    private Object[] values = new Object[32];
+    private long[] numbers = new long[32];
+    private String[] keys = new String[32];
+    private int top;
+
+    private final StringBuilder text = new StringBuilder();
+
+    CompactJsonParser(KeyPool keyPool, String json) {
+        this.keyPool = keyPool;
+        this.reader = null;
+        this.buffer = json.toCharArray();
+        this.limit = buffer.length;
+    }
+
+    CompactJsonParser(KeyPool keyPool, Reader reader) {
+        this.keyPool = keyPool;
+        this.reader = reader;
+        this.buffer = new char[BUFFER_SIZE];
+    }
+
+    Object parse() throws IOException {
+        readValue(nextNonWhitespace());
+        int c = nextNonWhitespace();
+        if(c != -1)
+            throw unexpected(c);
+        return NumberSlots.get(values, numbers, 0);
+    }
+
+    private void readValue(int c) throws IOException {
+        switch (c) {
+            case '{':
+                readObject();
+                break;
+            case '[':
+                readArray();
+                break;
+            case '"':
+                push(readString());
+                break;
+            case 't':
+                expect("rue");
+                push(Boolean.TRUE);
+                break;
+            case 'f':
+                expect("alse");
+                push(Boolean.FALSE);
+                break;
+            case 'n':
+                expect("ull");
+                push(null);
+                break;
+            default:
+                if(c == '-' || (c >= '0' && c <= '9'))
+                    readNumber(c);
+                else
+                    throw unexpected(c);
+        }
+    }
+
+    private void readObject() throws IOException {
+        int mark = top;
+        int c = nextNonWhitespace();
+        if(c != '}') {
+            while (true) {
+                if(c != '"')
+                    throw unexpected(c);
+                String key = keyPool.intern(readString());
+                c = nextNonWhitespace();
+                if(c != ':')
+                    throw unexpected(c);
+                readValue(nextNonWhitespace());
+                keys[top - 1] = key;
+                c = nextNonWhitespace();
+                if(c == '}')
+                    break;
+                if(c != ',')
+                    throw unexpected(c);
+                c = nextNonWhitespace();
+            }
+        }
+        JsonObject object = top == mark ? JsonObject.EMPTY
+                : JsonObject.create(Arrays.copyOfRange(keys, mark, top), Arrays.copyOfRange(values, mark, top), copyNumbers(mark));
+        top = mark;
+        push(object);
+    }
+
+    private void readArray() throws IOException {
+        int mark = top;
+        int c = nextNonWhitespace();
+        if(c != ']') {
+            while (true) {
+                readValue(c);
+                c = nextNonWhitespace();
+                if(c == ']')
+                    break;
+                if(c != ',')
+                    throw unexpected(c);
+                c = nextNonWhitespace();
+            }
+        }
+        JsonArray array = top == mark ? JsonArray.EMPTY : new JsonArray(Arrays.copyOfRange(values, mark, top), copyNumbers(mark));
+        top = mark;
+        push(array);
+    }
+
+    private long[] copyNumbers(int mark) {
+        for(int i = mark; i < top; i++) {
+            if(NumberSlots.isMarker(values[i]))
+                return Arrays.copyOfRange(numbers, mark, top);
+        }
+        return null;
+    }
+
+    private String readString() throws IOException {
+        // fast path: the whole string is in the buffer and has no escapes
+        for(int i = position; i < limit; i++) {
+            char c = buffer[i];
+            if(c == '"') {
+                String value = new String(buffer, position, i - position);
+                position = i + 1;
+                return value;
+            }
+            if(c == '\\')
+                break;
+        }
+
+        text.setLength(0);
+        while (true) {
+            int c = read();
+            if(c == -1)
+                throw endOfInput();
+            if(c == '"')
+                return text.toString();
+            if(c == '\\')
+                readEscape();
+            else
+                text.append((char) c);
+        }
+    }
+
+    private void readEscape() throws IOException {
+        int c = read();
+        switch (c) {
+            case '"':
+            case '\\':
+            case '/':
+                text.append((char) c);
+                break;
+            case 'b':
+                text.append('\b');
+                break;
+            case 'f':
+                text.append('\f');
+                break;
+            case 'n':
+                text.append('\n');
+                break;
+            case 'r':
+                text.append('\r');
+                break;
+            case 't':
+                text.append('\t');
+                break;
+            case 'u':
+                int value = 0;
+                for(int i = 0; i < 4; i++) {
+                    int digit = Character.digit(read(), 16);
+                    if(digit < 0)
+                        throw new InvalidJsonException("Invalid unicode escape at position " + (offset + position));
+                    value = (value << 4) | digit;
+                }
+                text.append((char) value);
+                break;
+            default:
+                throw c == -1 ? endOfInput() : unexpected(c);
+        }
+    }
+
+    private void readNumber(int first) throws IOException {
+        text.setLength(0);
+        text.append((char) first);
+        boolean decimal = false;
+        int digits = first == '-' ? 0 : 1;
+        while (true) {
+            int c = peek();
+            if(c >= '0' && c <= '9')
+                digits++;
+            else if(c == '.' || c == 'e' || c == 'E' || c == '+' || c == '-')
+                decimal = true;
+            else
+                break;
+            text.append((char) c);
+            position++;
+        }
+
+        String value = text.toString();
+        try {
+            if(!decimal) {
+                if(digits == 0)
+                    throw unexpected(peek());
+                if(digits <= MAX_LONG_DIGITS)
+                    pushLong(Long.parseLong(value));
+                else {
+                    BigInteger integer = new BigInteger(value);
+                    if(integer.bitLength() < Long.SIZE)
+                        pushLong(integer.longValue());
+                    else
+                        push(integer);
+                }
+            }
+            else if(digits <= MAX_DOUBLE_DIGITS)
+                pushDouble(Double.parseDouble(value));
+            else
+                push(new BigDecimal(value));
+        }
+        catch (NumberFormatException ex) {
+            throw new InvalidJsonException("Invalid number " + value + " at position " + (offset + position));
+        }
+    }
+
+    private void push(Object value) {
+        ensureCapacity();
+        values[top++] = value;
+    }
+
+    private void pushLong(long value) {
+        ensureCapacity();
+        numbers[top] = value;
+        values[top++] = NumberSlots.LONG;
+    }
+
+    private void pushDouble(double value) {
+        ensureCapacity();
+        numbers[top] = Double.doubleToRawLongBits(value);
+        values[top++] = NumberSlots.DOUBLE;
+    }
+
+    private void ensureCapacity() {
+        if(top == values.length) {
+            int capacity = values.length * 2;
+            values = Arrays.copyOf(values, capacity);
+            numbers = Arrays.copyOf(numbers, capacity);
+            keys = Arrays.copyOf(keys, capacity);
+        }
+    }
+
+    private void expect(String literal) throws IOException {
+        for(int i = 0; i < literal.length(); i++) {
+            int c = read();
+            if(c != literal.charAt(i))
+                throw c == -1 ? endOfInput() : unexpected(c);
+        }
+    }
+
+    private int nextNonWhitespace() throws IOException {
+        while (true) {
+            int c = read();
+            if(c != ' ' && c != '\n' && c != '\r' && c != '\t')
+                return c;
+        }
+    }
+
+    private int read() throws IOException {
+        if(position == limit && !fill())
+            return -1;
+        return buffer[position++];
+    }
+
+    private int peek() throws IOException {
+        if(position == limit && !fill())
+            return -1;
+        return buffer[position];
+    }
+
+    private boolean fill() throws IOException {
+        if(reader == null)
+            return false;
+        offset += limit;
+        position = 0;
+        limit = 0;
+        int count = reader.read(buffer, 0, buffer.length);
+        if(count <= 0)
+            return false;
+        limit = count;
+        return true;
+    }
+
+    private InvalidJsonException unexpected(int c) {
+        if(c == -1)
+            return endOfInput();
+        return new InvalidJsonException("Unexpected character '" + (char) c + "' at position " + (offset + position - 1));
+    }
+
+    private InvalidJsonException endOfInput() {
+        return new InvalidJsonException("Unexpected end of JSON input");
+    }
+
+}
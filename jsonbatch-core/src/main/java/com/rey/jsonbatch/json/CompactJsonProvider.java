@@ -0,0 +1,122 @@
+package com.rey.jsonbatch.json;
+
+import com.jayway.jsonpath.InvalidJsonException;
+import com.jayway.jsonpath.spi.json.AbstractJsonProvider;
+import com.rey.jsonbatch.io.JsonWriter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class CompactJsonProvider extends AbstractJsonProvider {
+
+    private static final int DEFAULT_MAX_POOLED_KEYS = 10000;
+
+    private final KeyPool keyPool;
+
+    public CompactJsonProvider() {
+        this(DEFAULT_MAX_POOLED_KEYS);
+    }
+
+    public CompactJsonProvider(int maxPooledKeys) {
+        this.keyPool = new KeyPool(maxPooledKeys);
+    }
+
+    @Override
+    public Object parse(String json) throws InvalidJsonException {
+        try {
+            return new CompactJsonParser(keyPool, json).parse();
+        }
+        catch (IOException ex) {
+            throw new InvalidJsonException(ex);
+        }
+    }
+
+    @Override
+    public Object parse(InputStream jsonStream, String charset) throws InvalidJsonException {
+        Charset decoder = charset == null ? StandardCharsets.UTF_8 : Charset.forName(charset);
+        try (Reader reader = new InputStreamReader(jsonStream, decoder)) {
+            return new CompactJsonParser(keyPool, reader).parse();
+        }
+        catch (IOException ex) {
+            throw new InvalidJsonException(ex);
+        }
+    }
+
+    @Override
+    public String toJson(Object obj) {
+        // JsonWriter hands values it does not know back to toJson, write them as plain strings
+        if(obj != null && !isMap(obj) && !isArray(obj) && !(obj instanceof String) && !(obj instanceof Number) && !(obj instanceof Boolean))
+            obj = obj.toString();
+        return new String(JsonWriter.toBytes(this, obj), StandardCharsets.UTF_8);
+    }
+
+    // JsonPath collects multi-valued results into these, compact() turns them into immutable nodes
+    @Override
+    public Object createArray() {
+        return new ArrayList<>();
+    }
+
+    @Override
+    public Object createMap() {
+        return new LinkedHashMap<>();
+    }
+
+    @Override
+    public Object getMapValue(Object obj, String key) {
+        if(obj instanceof JsonObject)
+            return ((JsonObject) obj).getOrDefault(key, UNDEFINED);
+        return super.getMapValue(obj, key);
+    }
+
+    @Override
+    public Collection<String> getPropertyKeys(Object obj) {
+        if(obj instanceof JsonObject)
+            return ((JsonObject) obj).keyList();
+        return super.getPropertyKeys(obj);
+    }
+
+    // converts Map/Collection trees (e.g. built by JsonBuilder) into compact nodes, existing nodes are shared as is
+    public Object compact(Object value) {
+        if(value instanceof JsonObject || value instanceof JsonArray)
+            return value;
+        if(value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            if(map.isEmpty())
+                return JsonObject.EMPTY;
+            String[] keys = new String[map.size()];
+            Object[] values = new Object[map.size()];
+            long[] numbers = null;
+            int i = 0;
+            for(Map.Entry<?, ?> entry : map.entrySet()) {
+                keys[i] = keyPool.intern(String.valueOf(entry.getKey()));
+                numbers = NumberSlots.store(values, numbers, i++, compact(entry.getValue()));
+            }
+            return JsonObject.create(keys, values, numbers);
+        }
+        if(value instanceof Collection) {
+            Collection<?> collection = (Collection<?>) value;
+            if(collection.isEmpty())
+                return JsonArray.EMPTY;
+            Object[] values = new Object[collection.size()];
+            long[] numbers = null;
+            int i = 0;
+            for(Object item : collection)
+                numbers = NumberSlots.store(values, numbers, i++, compact(item));
+            return new JsonArray(values, numbers);
+        }
+        return value;
+    }
+
+    int getPooledKeyCount() {
+        return keyPool.size();
+    }
+
+}
@@ -0,0 +1,30 @@
+package com.rey.jsonbatch.json;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+public final class JsonArray extends AbstractList<Object> implements RandomAccess {
+
+    static final JsonArray EMPTY = new JsonArray(new Object[0], null);
+
+    private final Object[] values;
+    private final long[] numbers;
+
+    JsonArray(Object[] values, long[] numbers) {
+        this.values = values;
+        this.numbers = numbers;
+    }
+
+    @Override
+    public Object get(int index) {
+        if(index < 0 || index >= values.length)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + values.length);
+        return NumberSlots.get(values, numbers, index);
+    }
+
+    @Override
+    public int size() {
+        return values.length;
+    }
+
+}
@@ -0,0 +1,156 @@
+package com.rey.jsonbatch.json;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+public final class JsonObject extends AbstractMap<String, Object> {
+
+    static final JsonObject EMPTY = new JsonObject(new String[0], new Object[0], null, null);
+
+    // objects up to this size are searched linearly, bigger ones get an open addressing index
+    private static final int LINEAR_SCAN_LIMIT = 8;
+
+    private final String[] keys;
+    private final Object[] values;
+    private final long[] numbers;
+    private final int[] index;
+
+    private JsonObject(String[] keys, Object[] values, long[] numbers, int[] index) {
+        this.keys = keys;
+        this.values = values;
+        this.numbers = numbers;
+        this.index = index;
+    }
+
+    // takes ownership of the arrays, a duplicated key keeps its first position and its last value
+    static JsonObject create(String[] keys, Object[] values, long[] numbers) {
+        int size = keys.length;
+        int[] index = size > LINEAR_SCAN_LIMIT ? new int[tableSize(size)] : null;
+        int count = 0;
+        for(int i = 0; i < size; i++) {
+            int position = index == null ? indexOf(keys, count, keys[i]) : lookup(index, keys, keys[i]);
+            if(position < 0) {
+                position = count++;
+                keys[position] = keys[i];
+                if(index != null)
+                    insert(index, keys[position], position);
+            }
+            values[position] = values[i];
+            if(numbers != null)
+                numbers[position] = numbers[i];
+        }
+        if(count < size) {
+            keys = Arrays.copyOf(keys, count);
+            values = Arrays.copyOf(values, count);
+            numbers = numbers == null ? null : Arrays.copyOf(numbers, count);
+        }
+        return new JsonObject(keys, values, numbers, index);
+    }
+
+    @Override
+    public Object get(Object key) {
+        int position = indexOf(key);
+        return position < 0 ? null : NumberSlots.get(values, numbers, position);
+    }
+
+    @Override
+    public Object getOrDefault(Object key, Object defaultValue) {
+        int position = indexOf(key);
+        return position < 0 ? defaultValue : NumberSlots.get(values, numbers, position);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return indexOf(key) >= 0;
+    }
+
+    @Override
+    public int size() {
+        return keys.length;
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        return new AbstractSet<Entry<String, Object>>() {
+            @Override
+            public Iterator<Entry<String, Object>> iterator() {
+                return new Iterator<Entry<String, Object>>() {
+                    private int position;
+
+                    @Override
+                    public boolean hasNext() {
+                        return position < keys.length;
+                    }
+
+                    @Override
+                    public Entry<String, Object> next() {
+                        if(position >= keys.length)
+                            throw new NoSuchElementException();
+                        Entry<String, Object> entry = new SimpleImmutableEntry<>(keys[position], NumberSlots.get(values, numbers, position));
+                        position++;
+                        return entry;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return keys.length;
+            }
+        };
+    }
+
+    List<String> keyList() {
+        return Collections.unmodifiableList(Arrays.asList(keys));
+    }
+
+    private int indexOf(Object key) {
+        if(!(key instanceof String))
+            return -1;
+        return index == null ? indexOf(keys, keys.length, (String) key) : lookup(index, keys, (String) key);
+    }
+
+    private static int indexOf(String[] keys, int count, String key) {
+        // keys are usually interned, so the reference check hits first
+        for(int i = 0; i < count; i++) {
+            if(keys[i] == key || keys[i].equals(key))
+                return i;
+        }
+        return -1;
+    }
+
+    private static int tableSize(int size) {
+        return Integer.highestOneBit(size * 2 - 1) << 1;
+    }
+
+    private static int slot(String key, int mask) {
+        int hash = key.hashCode();
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    // index slots hold position + 1, 0 marks an empty slot
+    private static int lookup(int[] index, String[] keys, String key) {
+        int mask = index.length - 1;
+        for(int slot = slot(key, mask); index[slot] != 0; slot = (slot + 1) & mask) {
+            String candidate = keys[index[slot] - 1];
+            if(candidate == key || candidate.equals(key))
+                return index[slot] - 1;
+        }
+        return -1;
+    }
+
+    private static void insert(int[] index, String key, int position) {
+        int mask = index.length - 1;
+        int slot = slot(key, mask);
+        while(index[slot] != 0)
+            slot = (slot + 1) & mask;
+        index[slot] = position + 1;
+    }
+
+}
@@ -0,0 +1,34 @@
+package com.rey.jsonbatch.json;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+// Shares property name instances across every document parsed by a provider.
+// Bounded so that documents with dynamic keys (ids, timestamps) cannot grow it forever.
+final class KeyPool {
+
+    private static final int MAX_KEY_LENGTH = 64;
+
+    private final ConcurrentHashMap<String, String> keys = new ConcurrentHashMap<>();
+    private final int maxSize;
+
+    KeyPool(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    String intern(String key) {
+        if(key.length() > MAX_KEY_LENGTH)
+            return key;
+        String existing = keys.get(key);
+        if(existing != null)
+            return existing;
+        if(keys.size() >= maxSize)
+            return key;
+        existing = keys.putIfAbsent(key, key);
+        return existing == null ? key : existing;
+    }
+
+    int size() {
+        return keys.size();
+    }
+
+}
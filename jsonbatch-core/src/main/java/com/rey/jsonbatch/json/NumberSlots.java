@@ -0,0 +1,77 @@
+package com.rey.jsonbatch.json;
+
+// Nodes keep integral and floating point numbers as raw bits in a long[] next to the value slots,
+// the value slot only holds a shared marker so no Integer/Long/Double is retained per number.
+final class NumberSlots {
+
+    static final Object LONG = new Marker("long");
+    static final Object DOUBLE = new Marker("double");
+
+    private NumberSlots() {
+    }
+
+    static boolean isPrimitive(Object value) {
+        return value instanceof Integer || value instanceof Long || value instanceof Double
+                || value instanceof Short || value instanceof Byte || value instanceof Float;
+    }
+
+    static boolean isMarker(Object value) {
+        return value == LONG || value == DOUBLE;
+    }
+
+    // stores the value at the given index, allocating the number array on first use
+    static long[] store(Object[] values, long[] numbers, int index, Object value) {
+        if(!isPrimitive(value)) {
+            values[index] = value;
+            return numbers;
+        }
+        if(numbers == null)
+            numbers = new long[values.length];
+        if(value instanceof Double) {
+            values[index] = DOUBLE;
+            numbers[index] = Double.doubleToRawLongBits((Double) value);
+        }
+        else if(value instanceof Float) {
+            // widened through its decimal form like TypeConverter, so 0.1f stays 0.1 instead of 0.10000000149011612
+            values[index] = DOUBLE;
+            numbers[index] = Double.doubleToRawLongBits(Double.parseDouble(value.toString()));
+        }
+        else {
+            values[index] = LONG;
+            numbers[index] = ((Number) value).longValue();
+        }
+        return numbers;
+    }
+
+    static Object get(Object[] values, long[] numbers, int index) {
+        Object value = values[index];
+        if(value == LONG)
+            return box(numbers[index]);
+        if(value == DOUBLE)
+            return Double.longBitsToDouble(numbers[index]);
+        return value;
+    }
+
+    // same boxing as the Jackson and json-smart providers: Integer when it fits, Long otherwise
+    static Object box(long value) {
+        if(value == (int) value)
+            return Integer.valueOf((int) value);
+        return Long.valueOf(value);
+    }
+
+    private static final class Marker {
+
+        private final String name;
+
+        Marker(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+
+    }
+
+}
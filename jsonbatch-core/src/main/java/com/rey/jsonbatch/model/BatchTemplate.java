@@ -4,17 +4,33 @@ import java.util.List;
 
 public class BatchTemplate {
 
+    private String id;
+
     private List<RequestTemplate> requests;
 
     private List<ResponseTemplate> responses;
 
     private DispatchOptions dispatchOptions;
 
+    private CacheOptions cache;
+
+    private boolean frozen;
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        Immutables.checkNotFrozen(frozen);
+        this.id = id;
+    }
+
     public List<RequestTemplate> getRequests() {
         return requests;
     }
 
     public void setRequests(List<RequestTemplate> requests) {
+        Immutables.checkNotFrozen(frozen);
         this.requests = requests;
     }
 
@@ -23,6 +39,7 @@ public class BatchTemplate {
     }
 
     public void setResponses(List<ResponseTemplate> responses) {
+        Immutables.checkNotFrozen(frozen);
         this.responses = responses;
     }
 
@@ -31,6 +48,35 @@ public class BatchTemplate {
     }
 
     public void setDispatchOptions(DispatchOptions dispatchOptions) {
+        Immutables.checkNotFrozen(frozen);
         this.dispatchOptions = dispatchOptions;
     }
+
+    public CacheOptions getCache() {
+        return cache;
+    }
+
+    public void setCache(CacheOptions cache) {
+        Immutables.checkNotFrozen(frozen);
+        this.cache = cache;
+    }
+
+    // makes this template and everything it holds read-only, so one instance can serve concurrent executions
+    public BatchTemplate freeze() {
+        if(frozen)
+            return this;
+        requests = Immutables.freezeAll(requests, RequestTemplate::freeze);
+        responses = Immutables.freezeAll(responses, ResponseTemplate::freeze);
+        if(dispatchOptions != null)
+            dispatchOptions.freeze();
+        if(cache != null)
+            cache.freeze();
+        frozen = true;
+        return this;
+    }
+
+    public boolean isFrozen() {
+        return frozen;
+    }
+
 }
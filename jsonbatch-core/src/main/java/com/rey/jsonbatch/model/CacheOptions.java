@@ -0,0 +1,76 @@
+package com.rey.jsonbatch.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Opt-in caching of the final response of read-only templates, used when the engine has a BatchResultCache
+public class CacheOptions {
+
+    // milliseconds a result is served without running the batch again
+    private Long ttl;
+
+    // milliseconds after ttl a result is still served while one execution refreshes it
+    private Long staleWhileRevalidate;
+
+    // json paths of the original request (http_method, url, headers, body) that make up the key,
+    // method, url and body when not set
+    private List<String> keyPaths;
+
+    // headers of the original request that make up the key, case insensitive
+    private List<String> keyHeaders;
+
+    private boolean frozen;
+
+    public Long getTtl() {
+        return ttl;
+    }
+
+    public void setTtl(Long ttl) {
+        Immutables.checkNotFrozen(frozen);
+        this.ttl = ttl;
+    }
+
+    public Long getStaleWhileRevalidate() {
+        return staleWhileRevalidate;
+    }
+
+    public void setStaleWhileRevalidate(Long staleWhileRevalidate) {
+        Immutables.checkNotFrozen(frozen);
+        this.staleWhileRevalidate = staleWhileRevalidate;
+    }
+
+    public List<String> getKeyPaths() {
+        return keyPaths;
+    }
+
+    public void setKeyPaths(List<String> keyPaths) {
+        Immutables.checkNotFrozen(frozen);
+        this.keyPaths = keyPaths;
+    }
+
+    public List<String> getKeyHeaders() {
+        return keyHeaders;
+    }
+
+    public void setKeyHeaders(List<String> keyHeaders) {
+        Immutables.checkNotFrozen(frozen);
+        this.keyHeaders = keyHeaders;
+    }
+
+    public CacheOptions freeze() {
+        if(frozen)
+            return this;
+        if(keyPaths != null)
+            keyPaths = Collections.unmodifiableList(new ArrayList<>(keyPaths));
+        if(keyHeaders != null)
+            keyHeaders = Collections.unmodifiableList(new ArrayList<>(keyHeaders));
+        frozen = true;
+        return this;
+    }
+
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+}
@@ -2,15 +2,41 @@ package com.rey.jsonbatch.model;
 
 public class DispatchOptions {
 
+    public static final String BUDGET_ABORT = "abort";
+
+    public static final String BUDGET_DROP_BODY = "drop_body";
+
     private Boolean failBackAsString = false;
 
     private Boolean ignoreParsingError = false;
 
+    private Long timeout;
+
+    private Long connectTimeout;
+
+    private Long batchTimeout;
+
+    private Boolean returnPartialOnTimeout = false;
+
+    private String format;
+
+    // bytes of a single response body, after content decoding
+    private Long maxResponseBytes;
+
+    // bytes of the serialized batch state: original request, requests and responses so far
+    private Long maxBatchBytes;
+
+    // what happens when a budget is exceeded, abort by default
+    private String budgetExceededAction;
+
+    private boolean frozen;
+
     public Boolean getFailBackAsString() {
         return failBackAsString;
     }
 
     public void setFailBackAsString(Boolean failBackAsString) {
+        Immutables.checkNotFrozen(frozen);
         this.failBackAsString = failBackAsString;
     }
 
@@ -19,7 +45,107 @@ public class DispatchOptions {
     }
 
     public void setIgnoreParsingError(Boolean ignoreParsingError) {
+        Immutables.checkNotFrozen(frozen);
         this.ignoreParsingError = ignoreParsingError;
     }
 
+    public Long getTimeout() {
+        return timeout;
+    }
+
+    public void setTimeout(Long timeout) {
+        Immutables.checkNotFrozen(frozen);
+        this.timeout = timeout;
+    }
+
+    public Long getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public void setConnectTimeout(Long connectTimeout) {
+        Immutables.checkNotFrozen(frozen);
+        this.connectTimeout = connectTimeout;
+    }
+
+    public Long getBatchTimeout() {
+        return batchTimeout;
+    }
+
+    public void setBatchTimeout(Long batchTimeout) {
+        Immutables.checkNotFrozen(frozen);
+        this.batchTimeout = batchTimeout;
+    }
+
+    public Boolean getReturnPartialOnTimeout() {
+        return returnPartialOnTimeout;
+    }
+
+    public void setReturnPartialOnTimeout(Boolean returnPartialOnTimeout) {
+        Immutables.checkNotFrozen(frozen);
+        this.returnPartialOnTimeout = returnPartialOnTimeout;
+    }
+
+    public String getFormat() {
+        return format;
+    }
+
+    public void setFormat(String format) {
+        Immutables.checkNotFrozen(frozen);
+        this.format = format;
+    }
+
+    public Long getMaxResponseBytes() {
+        return maxResponseBytes;
+    }
+
+    public void setMaxResponseBytes(Long maxResponseBytes) {
+        Immutables.checkNotFrozen(frozen);
+        this.maxResponseBytes = maxResponseBytes;
+    }
+
+    public Long getMaxBatchBytes() {
+        return maxBatchBytes;
+    }
+
+    public void setMaxBatchBytes(Long maxBatchBytes) {
+        Immutables.checkNotFrozen(frozen);
+        this.maxBatchBytes = maxBatchBytes;
+    }
+
+    public String getBudgetExceededAction() {
+        return budgetExceededAction;
+    }
+
+    public void setBudgetExceededAction(String budgetExceededAction) {
+        Immutables.checkNotFrozen(frozen);
+        if(budgetExceededAction != null && !BUDGET_ABORT.equals(budgetExceededAction) && !BUDGET_DROP_BODY.equals(budgetExceededAction))
+            throw new IllegalArgumentException("Unsupported budget exceeded action: " + budgetExceededAction);
+        this.budgetExceededAction = budgetExceededAction;
+    }
+
+    public DispatchOptions copy() {
+        DispatchOptions options = new DispatchOptions();
+        options.failBackAsString = failBackAsString;
+        options.ignoreParsingError = ignoreParsingError;
+        options.timeout = timeout;
+        options.connectTimeout = connectTimeout;
+        options.batchTimeout = batchTimeout;
+        options.returnPartialOnTimeout = returnPartialOnTimeout;
+        options.format = format;
+        options.maxResponseBytes = maxResponseBytes;
+        options.maxBatchBytes = maxBatchBytes;
+        options.budgetExceededAction = budgetExceededAction;
+        return options;
+    }
+
+    // copy() of frozen options can be modified again
+    public DispatchOptions freeze() {
+        frozen = true;
+        return this;
+    }
+
+    public boolean isFrozen() {
+        return frozen;
+    }
+
 }
@@ -0,0 +1,46 @@
+package com.rey.jsonbatch.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+// Read-only copies of the values held by frozen templates and cached results
+public final class Immutables {
+
+    private Immutables() {
+    }
+
+    static void checkNotFrozen(boolean frozen) {
+        if(frozen)
+            throw new IllegalStateException("Cannot modify a frozen template");
+    }
+
+    static <T> List<T> freezeAll(List<T> templates, Consumer<T> freezer) {
+        if(templates == null)
+            return null;
+        List<T> copy = new ArrayList<>(templates);
+        copy.forEach(freezer);
+        return Collections.unmodifiableList(copy);
+    }
+
+    // deep copy of a header or body schema, maps keep their key order
+    public static Object copyOf(Object value) {
+        if(value instanceof Map) {
+            Map<Object, Object> copy = new LinkedHashMap<>();
+            ((Map<?, ?>) value).forEach((key, item) -> copy.put(key, copyOf(item)));
+            return Collections.unmodifiableMap(copy);
+        }
+        if(value instanceof Collection) {
+            List<Object> copy = new ArrayList<>(((Collection<?>) value).size());
+            for(Object item : (Collection<?>) value)
+                copy.add(copyOf(item));
+            return Collections.unmodifiableList(copy);
+        }
+        return value;
+    }
+
+}
@@ -14,15 +14,22 @@ public class RequestTemplate {
 
     private Object body;
 
+    private Long timeout;
+
+    private String format;
+
     private List<RequestTemplate> requests;
 
     private List<ResponseTemplate> responses;
 
+    private boolean frozen;
+
     public String getPredicate() {
         return predicate;
     }
 
     public void setPredicate(String predicate) {
+        Immutables.checkNotFrozen(frozen);
         this.predicate = predicate;
     }
 
@@ -31,6 +38,7 @@ public class RequestTemplate {
     }
 
     public void setHttpMethod(String httpMethod) {
+        Immutables.checkNotFrozen(frozen);
         this.httpMethod = httpMethod;
     }
 
@@ -39,6 +47,7 @@ public class RequestTemplate {
     }
 
     public void setUrl(String url) {
+        Immutables.checkNotFrozen(frozen);
         this.url = url;
     }
 
@@ -47,6 +56,7 @@ public class RequestTemplate {
     }
 
     public void setHeaders(Object headers) {
+        Immutables.checkNotFrozen(frozen);
         this.headers = headers;
     }
 
@@ -55,14 +65,34 @@ public class RequestTemplate {
     }
 
     public void setBody(Object body) {
+        Immutables.checkNotFrozen(frozen);
         this.body = body;
     }
 
+    public Long getTimeout() {
+        return timeout;
+    }
+
+    public void setTimeout(Long timeout) {
+        Immutables.checkNotFrozen(frozen);
+        this.timeout = timeout;
+    }
+
+    public String getFormat() {
+        return format;
+    }
+
+    public void setFormat(String format) {
+        Immutables.checkNotFrozen(frozen);
+        this.format = format;
+    }
+
     public List<RequestTemplate> getRequests() {
         return requests;
     }
 
     public void setRequests(List<RequestTemplate> requests) {
+        Immutables.checkNotFrozen(frozen);
         this.requests = requests;
     }
 
@@ -71,6 +101,23 @@ public class RequestTemplate {
     }
 
     public void setResponses(List<ResponseTemplate> responses) {
+        Immutables.checkNotFrozen(frozen);
         this.responses = responses;
     }
+
+    public RequestTemplate freeze() {
+        if(frozen)
+            return this;
+        headers = Immutables.copyOf(headers);
+        body = Immutables.copyOf(body);
+        requests = Immutables.freezeAll(requests, RequestTemplate::freeze);
+        responses = Immutables.freezeAll(responses, ResponseTemplate::freeze);
+        frozen = true;
+        return this;
+    }
+
+    public boolean isFrozen() {
+        return frozen;
+    }
+
 }
@@ -12,6 +12,9 @@ public class Response {
 
     private Object body;
 
+    // bytes of the body as received after content decoding, null when the dispatcher doesn't count them
+    private Long bodySize;
+
     public Integer getStatus() {
         return status;
     }
@@ -36,6 +39,14 @@ public class Response {
         this.body = body;
     }
 
+    public Long getBodySize() {
+        return bodySize;
+    }
+
+    public void setBodySize(Long bodySize) {
+        this.bodySize = bodySize;
+    }
+
     public Map<String, Object> toMap() {
         Map<String, Object> map = new LinkedHashMap<>();
         map.put("status", status);
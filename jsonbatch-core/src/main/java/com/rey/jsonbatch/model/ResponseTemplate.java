@@ -10,11 +10,14 @@ public class ResponseTemplate {
 
     private Object body;
 
+    private boolean frozen;
+
     public String getPredicate() {
         return predicate;
     }
 
     public void setPredicate(String predicate) {
+        Immutables.checkNotFrozen(frozen);
         this.predicate = predicate;
     }
 
@@ -23,6 +26,7 @@ public class ResponseTemplate {
     }
 
     public void setStatus(String status) {
+        Immutables.checkNotFrozen(frozen);
         this.status = status;
     }
 
@@ -31,6 +35,7 @@ public class ResponseTemplate {
     }
 
     public void setHeaders(Object headers) {
+        Immutables.checkNotFrozen(frozen);
         this.headers = headers;
     }
 
@@ -39,6 +44,21 @@ public class ResponseTemplate {
     }
 
     public void setBody(Object body) {
+        Immutables.checkNotFrozen(frozen);
         this.body = body;
     }
+
+    public ResponseTemplate freeze() {
+        if(frozen)
+            return this;
+        headers = Immutables.copyOf(headers);
+        body = Immutables.copyOf(body);
+        frozen = true;
+        return this;
+    }
+
+    public boolean isFrozen() {
+        return frozen;
+    }
+
 }
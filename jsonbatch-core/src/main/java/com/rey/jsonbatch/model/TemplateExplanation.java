@@ -0,0 +1,147 @@
+package com.rey.jsonbatch.model;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+public class TemplateExplanation {
+
+    private String templateId;
+
+    // request templates in the whole tree, whatever the predicates choose
+    private int requestTemplates;
+
+    // a batch sends at most one request per level, so this is also the deepest chain of nested requests
+    private int maxRequests;
+
+    private int maxDepth;
+
+    // N of every $.responses[N] read by the template
+    private SortedSet<Integer> responseIndexes = new TreeSet<>();
+
+    // true when a path reads $.responses[*] or scans the responses
+    private boolean allResponses;
+
+    private SortedSet<String> paths = new TreeSet<>();
+
+    // deep scans and filters, they walk the whole batch state
+    private SortedSet<String> expensivePaths = new TreeSet<>();
+
+    // function name to the number of places calling it
+    private SortedMap<String, Integer> functions = new TreeMap<>();
+
+    private List<String> warnings = new ArrayList<>();
+
+    // relative cost of the most expensive path through the template, see BatchEngine.explain
+    private long cost;
+
+    public String getTemplateId() {
+        return templateId;
+    }
+
+    public void setTemplateId(String templateId) {
+        this.templateId = templateId;
+    }
+
+    public int getRequestTemplates() {
+        return requestTemplates;
+    }
+
+    public void setRequestTemplates(int requestTemplates) {
+        this.requestTemplates = requestTemplates;
+    }
+
+    public int getMaxRequests() {
+        return maxRequests;
+    }
+
+    public void setMaxRequests(int maxRequests) {
+        this.maxRequests = maxRequests;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public void setMaxDepth(int maxDepth) {
+        this.maxDepth = maxDepth;
+    }
+
+    public SortedSet<Integer> getResponseIndexes() {
+        return responseIndexes;
+    }
+
+    public void setResponseIndexes(SortedSet<Integer> responseIndexes) {
+        this.responseIndexes = responseIndexes;
+    }
+
+    public boolean isAllResponses() {
+        return allResponses;
+    }
+
+    public void setAllResponses(boolean allResponses) {
+        this.allResponses = allResponses;
+    }
+
+    public SortedSet<String> getPaths() {
+        return paths;
+    }
+
+    public void setPaths(SortedSet<String> paths) {
+        this.paths = paths;
+    }
+
+    public SortedSet<String> getExpensivePaths() {
+        return expensivePaths;
+    }
+
+    public void setExpensivePaths(SortedSet<String> expensivePaths) {
+        this.expensivePaths = expensivePaths;
+    }
+
+    public SortedMap<String, Integer> getFunctions() {
+        return functions;
+    }
+
+    public void setFunctions(SortedMap<String, Integer> functions) {
+        this.functions = functions;
+    }
+
+    public List<String> getWarnings() {
+        return warnings;
+    }
+
+    public void setWarnings(List<String> warnings) {
+        this.warnings = warnings;
+    }
+
+    public long getCost() {
+        return cost;
+    }
+
+    public void setCost(long cost) {
+        this.cost = cost;
+    }
+
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("template_id", templateId);
+        map.put("request_templates", requestTemplates);
+        map.put("max_requests", maxRequests);
+        map.put("max_depth", maxDepth);
+        map.put("response_indexes", new ArrayList<>(responseIndexes));
+        map.put("all_responses", allResponses);
+        map.put("paths", new ArrayList<>(paths));
+        map.put("expensive_paths", new ArrayList<>(expensivePaths));
+        map.put("functions", new LinkedHashMap<>(functions));
+        map.put("warnings", new ArrayList<>(warnings));
+        map.put("cost", cost);
+        return map;
+    }
+
+}
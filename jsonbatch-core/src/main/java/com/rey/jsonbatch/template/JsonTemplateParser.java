@@ -0,0 +1,157 @@
+package com.rey.jsonbatch.template;
+
+import com.jayway.jsonpath.InvalidJsonException;
+import com.jayway.jsonpath.spi.json.JsonProvider;
+import com.rey.jsonbatch.model.BatchTemplate;
+import com.rey.jsonbatch.model.CacheOptions;
+import com.rey.jsonbatch.model.DispatchOptions;
+import com.rey.jsonbatch.model.RequestTemplate;
+import com.rey.jsonbatch.model.ResponseTemplate;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+// Reads the snake_case template format with the engine's JsonProvider, so no mapping library is needed.
+// Unknown keys are ignored.
+@SuppressWarnings("unchecked")
+public class JsonTemplateParser implements TemplateParser {
+
+    private final JsonProvider jsonProvider;
+
+    public JsonTemplateParser(JsonProvider jsonProvider) {
+        this.jsonProvider = jsonProvider;
+    }
+
+    @Override
+    public BatchTemplate parse(String content) throws IOException {
+        Object root;
+        try {
+            root = jsonProvider.parse(content);
+        }
+        catch (InvalidJsonException ex) {
+            throw new IOException("Invalid template JSON", ex);
+        }
+        if(!(root instanceof Map))
+            throw new IOException("Template must be a JSON object");
+        Map<String, Object> values = (Map<String, Object>) root;
+        BatchTemplate template = new BatchTemplate();
+        template.setId(getString(values, "id"));
+        template.setRequests(readRequests(values.get("requests")));
+        template.setResponses(readResponses(values.get("responses")));
+        if(values.get("dispatch_options") instanceof Map)
+            template.setDispatchOptions(readDispatchOptions((Map<String, Object>) values.get("dispatch_options")));
+        if(values.get("cache") instanceof Map)
+            template.setCache(readCache((Map<String, Object>) values.get("cache")));
+        return template;
+    }
+
+    private List<RequestTemplate> readRequests(Object value) throws IOException {
+        if(value == null)
+            return null;
+        List<RequestTemplate> requests = new ArrayList<>();
+        for(Object item : asList(value, "requests")) {
+            Map<String, Object> values = asMap(item, "request");
+            RequestTemplate request = new RequestTemplate();
+            request.setPredicate(getString(values, "predicate"));
+            request.setHttpMethod(getString(values, "http_method"));
+            request.setUrl(getString(values, "url"));
+            request.setHeaders(values.get("headers"));
+            request.setBody(values.get("body"));
+            request.setTimeout(getLong(values, "timeout"));
+            request.setFormat(getString(values, "format"));
+            request.setRequests(readRequests(values.get("requests")));
+            request.setResponses(readResponses(values.get("responses")));
+            requests.add(request);
+        }
+        return requests;
+    }
+
+    private List<ResponseTemplate> readResponses(Object value) throws IOException {
+        if(value == null)
+            return null;
+        List<ResponseTemplate> responses = new ArrayList<>();
+        for(Object item : asList(value, "responses")) {
+            Map<String, Object> values = asMap(item, "response");
+            ResponseTemplate response = new ResponseTemplate();
+            response.setPredicate(getString(values, "predicate"));
+            response.setStatus(getString(values, "status"));
+            response.setHeaders(values.get("headers"));
+            response.setBody(values.get("body"));
+            responses.add(response);
+        }
+        return responses;
+    }
+
+    private DispatchOptions readDispatchOptions(Map<String, Object> values) {
+        DispatchOptions options = new DispatchOptions();
+        if(values.get("fail_back_as_string") != null)
+            options.setFailBackAsString(getBoolean(values, "fail_back_as_string"));
+        if(values.get("ignore_parsing_error") != null)
+            options.setIgnoreParsingError(getBoolean(values, "ignore_parsing_error"));
+        options.setTimeout(getLong(values, "timeout"));
+        options.setConnectTimeout(getLong(values, "connect_timeout"));
+        options.setBatchTimeout(getLong(values, "batch_timeout"));
+        if(values.get("return_partial_on_timeout") != null)
+            options.setReturnPartialOnTimeout(getBoolean(values, "return_partial_on_timeout"));
+        options.setFormat(getString(values, "format"));
+        options.setMaxResponseBytes(getLong(values, "max_response_bytes"));
+        options.setMaxBatchBytes(getLong(values, "max_batch_bytes"));
+        options.setBudgetExceededAction(getString(values, "budget_exceeded_action"));
+        return options;
+    }
+
+    private CacheOptions readCache(Map<String, Object> values) throws IOException {
+        CacheOptions cache = new CacheOptions();
+        cache.setTtl(getLong(values, "ttl"));
+        cache.setStaleWhileRevalidate(getLong(values, "stale_while_revalidate"));
+        cache.setKeyPaths(getStrings(values, "key_paths"));
+        cache.setKeyHeaders(getStrings(values, "key_headers"));
+        return cache;
+    }
+
+    private Iterable<Object> asList(Object value, String name) throws IOException {
+        if(!(value instanceof List))
+            throw new IOException("Expected array for [" + name + "] but got: " + value);
+        return (List<Object>) value;
+    }
+
+    private Map<String, Object> asMap(Object value, String name) throws IOException {
+        if(!(value instanceof Map))
+            throw new IOException("Expected object for [" + name + "] but got: " + value);
+        return (Map<String, Object>) value;
+    }
+
+    private String getString(Map<String, Object> values, String key) {
+        Object value = values.get(key);
+        return value == null ? null : value.toString();
+    }
+
+    private List<String> getStrings(Map<String, Object> values, String key) throws IOException {
+        Object value = values.get(key);
+        if(value == null)
+            return null;
+        List<String> strings = new ArrayList<>();
+        for(Object item : asList(value, key))
+            strings.add(item.toString());
+        return strings;
+    }
+
+    private Long getLong(Map<String, Object> values, String key) {
+        Object value = values.get(key);
+        if(value == null)
+            return null;
+        if(value instanceof Number)
+            return ((Number) value).longValue();
+        return Long.valueOf(value.toString());
+    }
+
+    private Boolean getBoolean(Map<String, Object> values, String key) {
+        Object value = values.get(key);
+        if(value instanceof Boolean)
+            return (Boolean) value;
+        return Boolean.valueOf(value.toString());
+    }
+
+}
@@ -0,0 +1,12 @@
+package com.rey.jsonbatch.template;
+
+import com.rey.jsonbatch.model.BatchTemplate;
+
+import java.io.IOException;
+
+// Turns template file content into a BatchTemplate, e.g. content -> objectMapper.readValue(content, BatchTemplate.class)
+public interface TemplateParser {
+
+    BatchTemplate parse(String content) throws IOException;
+
+}
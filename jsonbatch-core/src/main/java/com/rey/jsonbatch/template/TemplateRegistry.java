@@ -0,0 +1,353 @@
+package com.rey.jsonbatch.template;
+
+import com.jayway.jsonpath.Configuration;
+import com.rey.jsonbatch.codec.BodyCodecs;
+import com.rey.jsonbatch.model.BatchTemplate;
+import com.rey.jsonbatch.model.RequestTemplate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystemAlreadyExistsException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// Loads templates from directories or the classpath and keeps the parsed & validated form of each one, keyed by its content hash.
+// Template ids are file paths relative to the loaded directory, without the .json extension.
+// Changed files replace the old version atomically: executions that already hold a template keep using it,
+// and lookups never wait for a reload.
+public class TemplateRegistry implements Closeable {
+
+    private Logger logger = LoggerFactory.getLogger(TemplateRegistry.class);
+
+    private static final String EXTENSION = ".json";
+
+    private final TemplateParser templateParser;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private final List<Path> directories = new CopyOnWriteArrayList<>();
+
+    private final Map<WatchKey, Path[]> watchedDirectories = new ConcurrentHashMap<>();
+
+    private WatchService watchService;
+
+    private Thread watcher;
+
+    public TemplateRegistry(Configuration configuration) {
+        this(new JsonTemplateParser(configuration.jsonProvider()));
+    }
+
+    public TemplateRegistry(TemplateParser templateParser) {
+        this.templateParser = templateParser;
+    }
+
+    public BatchTemplate get(String id) {
+        Entry entry = entries.get(id);
+        return entry == null ? null : entry.template;
+    }
+
+    public String getContentHash(String id) {
+        Entry entry = entries.get(id);
+        return entry == null ? null : entry.hash;
+    }
+
+    public Set<String> getIds() {
+        return Collections.unmodifiableSet(entries.keySet());
+    }
+
+    public BatchTemplate register(String id, String content) throws IOException {
+        return update(id, content, null);
+    }
+
+    public void remove(String id) {
+        if(entries.remove(id) != null)
+            logger.info("Removed [{}] template", id);
+    }
+
+    public void loadDirectory(Path directory) throws IOException {
+        if(!Files.isDirectory(directory)) {
+            logger.error("Template directory not found: {}", directory);
+            throw new IllegalArgumentException("Template directory not found: " + directory);
+        }
+        Path root = directory.toAbsolutePath().normalize();
+        // watch before reading, so changes made while loading aren't missed
+        if(!directories.contains(root))
+            directories.add(root);
+        synchronized (this) {
+            if(watchService != null)
+                registerTree(root, root);
+        }
+        for(Path file : listTemplates(root))
+            loadFile(root, file);
+    }
+
+    // loads every template under a classpath location, from directories or jars
+    public void loadClasspath(String location) throws IOException {
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader() != null ? Thread.currentThread().getContextClassLoader() : TemplateRegistry.class.getClassLoader();
+        Enumeration<URL> urls = classLoader.getResources(location);
+        if(!urls.hasMoreElements()) {
+            logger.error("Template location not found in classpath: {}", location);
+            throw new IllegalArgumentException("Template location not found in classpath: " + location);
+        }
+        while(urls.hasMoreElements()) {
+            URI uri;
+            try {
+                uri = urls.nextElement().toURI();
+            }
+            catch (URISyntaxException ex) {
+                throw new IOException("Invalid classpath location: " + location, ex);
+            }
+            if(!"jar".equals(uri.getScheme())) {
+                loadTree(Paths.get(uri));
+                continue;
+            }
+            FileSystem fileSystem;
+            try {
+                fileSystem = FileSystems.newFileSystem(uri, Collections.emptyMap());
+            }
+            catch (FileSystemAlreadyExistsException ex) {
+                loadTree(FileSystems.getFileSystem(uri).provider().getPath(uri));
+                continue;
+            }
+            try {
+                loadTree(fileSystem.provider().getPath(uri));
+            }
+            finally {
+                fileSystem.close();
+            }
+        }
+    }
+
+    // re-reads all loaded directories, only templates whose content changed are parsed again
+    public synchronized void reload() {
+        for(Path directory : directories) {
+            List<Path> files;
+            try {
+                files = listTemplates(directory);
+            }
+            catch (IOException ex) {
+                logger.error("Cannot reload templates in [{}] directory", directory, ex);
+                continue;
+            }
+            for(Path file : files)
+                reloadFile(directory, file);
+            entries.entrySet().removeIf(e -> e.getValue().source != null
+                    && e.getValue().source.startsWith(directory)
+                    && !files.contains(e.getValue().source));
+        }
+    }
+
+    // starts a daemon thread that reloads templates of loaded directories when their files change
+    public synchronized void watch() throws IOException {
+        if(watchService != null)
+            return;
+        watchService = FileSystems.getDefault().newWatchService();
+        for(Path directory : directories)
+            registerTree(directory, directory);
+        watcher = new Thread(this::processEvents, "jsonbatch-template-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+        // picks up changes made between loading the directories and watching them
+        reload();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if(watchService == null)
+            return;
+        watcher.interrupt();
+        watchService.close();
+        watchService = null;
+        watcher = null;
+        watchedDirectories.clear();
+    }
+
+    private void loadTree(Path root) throws IOException {
+        for(Path file : listTemplates(root))
+            loadFile(root, file);
+    }
+
+    private List<Path> listTemplates(Path directory) throws IOException {
+        try (Stream<Path> stream = Files.walk(directory)) {
+            return stream.filter(path -> Files.isRegularFile(path) && path.toString().endsWith(EXTENSION))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private void loadFile(Path root, Path file) throws IOException {
+        String content = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+        update(toId(root, file), content, "file".equals(file.toUri().getScheme()) ? file : null);
+    }
+
+    private void reloadFile(Path root, Path file) {
+        try {
+            loadFile(root, file);
+        }
+        catch (Exception ex) {
+            // keep serving the previous version, the next change will retry
+            logger.error("Cannot reload template from [{}] file", file, ex);
+        }
+    }
+
+    private synchronized BatchTemplate update(String id, String content, Path source) throws IOException {
+        String hash = hash(content);
+        Entry current = entries.get(id);
+        if(current != null && current.hash.equals(hash))
+            return current.template;
+        BatchTemplate template = templateParser.parse(content);
+        prepare(id, template);
+        entries.put(id, new Entry(hash, template, source));
+        logger.info("Loaded [{}] template with [{}] hash", id, hash);
+        return template;
+    }
+
+    private void prepare(String id, BatchTemplate template) {
+        if(template.getId() == null)
+            template.setId(id);
+        // templates without dispatch options use the engine's defaults
+        if(template.getDispatchOptions() != null)
+            BodyCodecs.get(template.getDispatchOptions().getFormat());
+        validate(id, template.getRequests());
+        // registered templates are shared by every execution
+        template.freeze();
+    }
+
+    private void validate(String id, List<RequestTemplate> requestTemplates) {
+        if(requestTemplates == null)
+            return;
+        for(RequestTemplate requestTemplate : requestTemplates) {
+            if(requestTemplate.getHttpMethod() == null || requestTemplate.getUrl() == null) {
+                logger.error("Missing http_method or url in [{}] template", id);
+                throw new IllegalArgumentException("Missing http_method or url in template: " + id);
+            }
+            BodyCodecs.get(requestTemplate.getFormat());
+            validate(id, requestTemplate.getRequests());
+        }
+    }
+
+    private void registerTree(Path root, Path directory) throws IOException {
+        try (Stream<Path> stream = Files.walk(directory)) {
+            for(Path path : (Iterable<Path>) stream.filter(Files::isDirectory)::iterator) {
+                WatchKey key = path.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+                watchedDirectories.put(key, new Path[]{root, path});
+            }
+        }
+    }
+
+    private void processEvents() {
+        WatchService service = watchService;
+        while(!Thread.currentThread().isInterrupted()) {
+            WatchKey key;
+            try {
+                key = service.take();
+            }
+            catch (InterruptedException | ClosedWatchServiceException ex) {
+                return;
+            }
+            Path[] watched = watchedDirectories.get(key);
+            if(watched != null) {
+                for(WatchEvent<?> event : key.pollEvents())
+                    processEvent(watched[0], watched[1], event);
+            }
+            if(!key.reset())
+                watchedDirectories.remove(key);
+        }
+    }
+
+    private void processEvent(Path root, Path directory, WatchEvent<?> event) {
+        if(event.kind() == StandardWatchEventKinds.OVERFLOW) {
+            reload();
+            return;
+        }
+        Path path = directory.resolve((Path) event.context());
+        if(event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path)) {
+            try {
+                synchronized (this) {
+                    if(watchService != null)
+                        registerTree(root, path);
+                }
+                for(Path file : listTemplates(path))
+                    reloadFile(root, file);
+            }
+            catch (IOException ex) {
+                logger.error("Cannot watch [{}] directory", path, ex);
+            }
+        }
+        else if(event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+            // a deleted or renamed directory only sends this event, not one per file in it
+            if(path.toString().endsWith(EXTENSION))
+                remove(toId(root, path));
+            removeUnder(path);
+        }
+        else if(path.toString().endsWith(EXTENSION) && Files.isRegularFile(path))
+            reloadFile(root, path);
+    }
+
+    private void removeUnder(Path directory) {
+        entries.entrySet().removeIf(e -> {
+            if(e.getValue().source == null || !e.getValue().source.startsWith(directory) || e.getValue().source.equals(directory))
+                return false;
+            logger.info("Removed [{}] template", e.getKey());
+            return true;
+        });
+    }
+
+    private String toId(Path root, Path file) {
+        String relative = root.relativize(file).toString().replace(file.getFileSystem().getSeparator(), "/");
+        return relative.substring(0, relative.length() - EXTENSION.length());
+    }
+
+    private static String hash(String content) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(content.getBytes(StandardCharsets.UTF_8));
+            StringBuilder builder = new StringBuilder(digest.length * 2);
+            for(byte b : digest)
+                builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            return builder.toString();
+        }
+        catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 is not available", ex);
+        }
+    }
+
+    private static class Entry {
+
+        private final String hash;
+        private final BatchTemplate template;
+        private final Path source;
+
+        Entry(String hash, BatchTemplate template, Path source) {
+            this.hash = hash;
+            this.template = template;
+            this.source = source;
+        }
+
+    }
+
+}
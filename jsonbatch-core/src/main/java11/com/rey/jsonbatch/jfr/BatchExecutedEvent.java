@@ -0,0 +1,28 @@
+package com.rey.jsonbatch.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.rey.jsonbatch.BatchExecuted")
+@Label("Batch Executed")
+@Category("JsonBatch")
+@Description("BatchEngine.execute() of one original request")
+class BatchExecutedEvent extends Event {
+
+    @Label("Template Id")
+    String templateId;
+
+    @Label("Method")
+    String method;
+
+    @Label("URL")
+    String url;
+
+    @Label("Status")
+    @Description("Status of the batch response, 0 when the batch threw")
+    int status;
+
+}
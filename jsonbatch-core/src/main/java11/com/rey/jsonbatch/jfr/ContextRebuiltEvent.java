@@ -0,0 +1,23 @@
+package com.rey.jsonbatch.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.rey.jsonbatch.ContextRebuilt")
+@Label("Context Rebuilt")
+@Category("JsonBatch")
+@Description("Batch state serialized and parsed again for the JSON paths")
+class ContextRebuiltEvent extends Event {
+
+    @Label("Responses")
+    int responses;
+
+    @Label("Size")
+    @DataAmount
+    long bytes;
+
+}
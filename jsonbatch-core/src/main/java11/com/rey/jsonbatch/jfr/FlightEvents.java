@@ -0,0 +1,123 @@
+package com.rey.jsonbatch.jfr;
+
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+
+// Java 11+ build of FlightEvents, events are only created while a recording has them enabled
+public final class FlightEvents {
+
+    private static final EventType BATCH = EventType.getEventType(BatchExecutedEvent.class);
+    private static final EventType TEMPLATE_CHOICE = EventType.getEventType(TemplateChosenEvent.class);
+    private static final EventType REQUEST_BUILD = EventType.getEventType(RequestBuiltEvent.class);
+    private static final EventType DISPATCH = EventType.getEventType(RequestDispatchedEvent.class);
+    private static final EventType CONTEXT_REBUILD = EventType.getEventType(ContextRebuiltEvent.class);
+    private static final EventType FUNCTION = EventType.getEventType(FunctionInvokedEvent.class);
+
+    private FlightEvents() {
+    }
+
+    public static boolean isSupported() {
+        return true;
+    }
+
+    public static Object beginBatch() {
+        return BATCH.isEnabled() ? begin(new BatchExecutedEvent()) : null;
+    }
+
+    public static void endBatch(Object event, String templateId, String method, String url, int status) {
+        BatchExecutedEvent batchEvent = (BatchExecutedEvent) end(event);
+        if (batchEvent == null)
+            return;
+        batchEvent.templateId = templateId;
+        batchEvent.method = method;
+        batchEvent.url = url;
+        batchEvent.status = status;
+        batchEvent.commit();
+    }
+
+    public static Object beginTemplateChoice() {
+        return TEMPLATE_CHOICE.isEnabled() ? begin(new TemplateChosenEvent()) : null;
+    }
+
+    public static void endTemplateChoice(Object event, String kind, int candidates, int index, boolean indexed) {
+        TemplateChosenEvent choiceEvent = (TemplateChosenEvent) end(event);
+        if (choiceEvent == null)
+            return;
+        choiceEvent.kind = kind;
+        choiceEvent.candidates = candidates;
+        choiceEvent.index = index;
+        choiceEvent.indexed = indexed;
+        choiceEvent.commit();
+    }
+
+    public static Object beginRequestBuild() {
+        return REQUEST_BUILD.isEnabled() ? begin(new RequestBuiltEvent()) : null;
+    }
+
+    public static void endRequestBuild(Object event, int index, String method, String url) {
+        RequestBuiltEvent buildEvent = (RequestBuiltEvent) end(event);
+        if (buildEvent == null)
+            return;
+        buildEvent.index = index;
+        buildEvent.method = method;
+        buildEvent.url = url;
+        buildEvent.commit();
+    }
+
+    public static Object beginDispatch() {
+        return DISPATCH.isEnabled() ? begin(new RequestDispatchedEvent()) : null;
+    }
+
+    public static void endDispatch(Object event, int index, String method, String url, int status, long responseBytes) {
+        RequestDispatchedEvent dispatchEvent = (RequestDispatchedEvent) end(event);
+        if (dispatchEvent == null)
+            return;
+        dispatchEvent.index = index;
+        dispatchEvent.method = method;
+        dispatchEvent.url = url;
+        dispatchEvent.status = status;
+        dispatchEvent.responseBytes = responseBytes;
+        dispatchEvent.commit();
+    }
+
+    public static Object beginContextRebuild() {
+        return CONTEXT_REBUILD.isEnabled() ? begin(new ContextRebuiltEvent()) : null;
+    }
+
+    public static void endContextRebuild(Object event, int responses, long bytes) {
+        ContextRebuiltEvent rebuildEvent = (ContextRebuiltEvent) end(event);
+        if (rebuildEvent == null)
+            return;
+        rebuildEvent.responses = responses;
+        rebuildEvent.bytes = bytes;
+        rebuildEvent.commit();
+    }
+
+    public static Object beginFunction() {
+        return FUNCTION.isEnabled() ? begin(new FunctionInvokedEvent()) : null;
+    }
+
+    public static void endFunction(Object event, String function, boolean compiled) {
+        FunctionInvokedEvent functionEvent = (FunctionInvokedEvent) end(event);
+        if (functionEvent == null)
+            return;
+        functionEvent.function = function;
+        functionEvent.compiled = compiled;
+        functionEvent.commit();
+    }
+
+    private static Event begin(Event event) {
+        event.begin();
+        return event;
+    }
+
+    // null when the event is below its threshold, fields are only filled for events that are committed
+    private static Event end(Object event) {
+        if (event == null)
+            return null;
+        Event jfrEvent = (Event) event;
+        jfrEvent.end();
+        return jfrEvent.shouldCommit() ? jfrEvent : null;
+    }
+
+}
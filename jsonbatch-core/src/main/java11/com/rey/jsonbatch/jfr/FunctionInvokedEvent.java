@@ -0,0 +1,25 @@
+package com.rey.jsonbatch.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.rey.jsonbatch.FunctionInvoked")
+@Label("Function Invoked")
+@Category("JsonBatch")
+@Description("Template function evaluated with its arguments")
+// the most frequent event, a stack trace per function call would cost more than the call
+@StackTrace(false)
+class FunctionInvokedEvent extends Event {
+
+    @Label("Function")
+    String function;
+
+    @Label("Compiled")
+    @Description("Evaluated by the TemplateCompiler instead of the JsonBuilder interpreter")
+    boolean compiled;
+
+}
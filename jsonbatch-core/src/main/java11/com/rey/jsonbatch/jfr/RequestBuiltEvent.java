@@ -0,0 +1,24 @@
+package com.rey.jsonbatch.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.rey.jsonbatch.RequestBuilt")
+@Label("Request Built")
+@Category("JsonBatch")
+@Description("Request built from its template")
+class RequestBuiltEvent extends Event {
+
+    @Label("Index")
+    int index;
+
+    @Label("Method")
+    String method;
+
+    @Label("URL")
+    String url;
+
+}
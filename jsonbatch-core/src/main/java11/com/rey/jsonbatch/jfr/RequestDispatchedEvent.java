@@ -0,0 +1,34 @@
+package com.rey.jsonbatch.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.rey.jsonbatch.RequestDispatched")
+@Label("Request Dispatched")
+@Category("JsonBatch")
+@Description("Request sent by the RequestDispatcher until its response is parsed")
+class RequestDispatchedEvent extends Event {
+
+    @Label("Index")
+    int index;
+
+    @Label("Method")
+    String method;
+
+    @Label("URL")
+    String url;
+
+    @Label("Status")
+    @Description("0 when the request failed")
+    int status;
+
+    @Label("Response Size")
+    @Description("Decoded body bytes, -1 when the dispatcher doesn't count them")
+    @DataAmount
+    long responseBytes;
+
+}
@@ -0,0 +1,30 @@
+package com.rey.jsonbatch.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.rey.jsonbatch.TemplateChosen")
+@Label("Template Chosen")
+@Category("JsonBatch")
+@Description("Predicates evaluated to choose the next request or response template")
+class TemplateChosenEvent extends Event {
+
+    @Label("Kind")
+    @Description("request or response")
+    String kind;
+
+    @Label("Candidates")
+    int candidates;
+
+    @Label("Index")
+    @Description("Index of the chosen template, -1 when none matched")
+    int index;
+
+    @Label("Indexed")
+    @Description("Predicates were matched with a hash lookup")
+    boolean indexed;
+
+}
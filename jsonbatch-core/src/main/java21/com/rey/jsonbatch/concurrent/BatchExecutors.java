@@ -0,0 +1,45 @@
+package com.rey.jsonbatch.concurrent;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class BatchExecutors {
+
+    private static final String THREAD_PREFIX = "jsonbatch-";
+
+    public static boolean isVirtualThreadSupported() {
+        return true;
+    }
+
+    public static ExecutorService platform() {
+        return Executors.newCachedThreadPool(threadFactory());
+    }
+
+    public static ExecutorService platform(int nThreads) {
+        return Executors.newFixedThreadPool(nThreads, threadFactory());
+    }
+
+    public static ExecutorService virtual() {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(THREAD_PREFIX + "virtual-", 0).factory());
+    }
+
+    public static ExecutorService defaultExecutor() {
+        return Holder.DEFAULT;
+    }
+
+    private static ThreadFactory threadFactory() {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, THREAD_PREFIX + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static class Holder {
+        static final ExecutorService DEFAULT = virtual();
+    }
+
+}
@@ -0,0 +1,176 @@
+package com.rey.jsonbatch;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jayway.jsonpath.Configuration;
+import com.jayway.jsonpath.spi.json.JacksonJsonProvider;
+import com.jayway.jsonpath.spi.mapper.JacksonMappingProvider;
+import com.rey.jsonbatch.function.Functions;
+import com.rey.jsonbatch.model.BatchTemplate;
+import com.rey.jsonbatch.model.DispatchOptions;
+import com.rey.jsonbatch.model.Request;
+import com.rey.jsonbatch.model.Response;
+import com.rey.jsonbatch.template.JsonTemplateParser;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+@SuppressWarnings("unchecked")
+public class BatchEngineBudgetTest {
+
+    private Configuration conf;
+
+    private BatchEngine batchEngine;
+
+    private RequestDispatcher requestDispatcher;
+
+    private JsonTemplateParser parser;
+
+    @Before
+    public void setUp() {
+        ObjectMapper objectMapper = new ObjectMapper();
+        conf = Configuration.builder()
+                .jsonProvider(new JacksonJsonProvider(objectMapper))
+                .mappingProvider(new JacksonMappingProvider(objectMapper))
+                .build();
+        parser = new JsonTemplateParser(conf.jsonProvider());
+        requestDispatcher = (request, jsonProvider, options) -> {
+            Response response = new Response();
+            response.setStatus(200);
+            response.setHeaders(Collections.singletonMap("X-Url", Collections.singletonList(request.getUrl())));
+            if(request.getUrl().endsWith("/big")) {
+                List<Object> items = new ArrayList<>();
+                for(int i = 0; i < 200; i++)
+                    items.add(Collections.singletonMap("id", i));
+                response.setBody(items);
+            }
+            else if(request.getUrl().endsWith("/counted")) {
+                Response headers = new Response();
+                headers.setStatus(206);
+                headers.setHeaders(response.getHeaders());
+                throw new BudgetExceededException(BudgetExceededException.SCOPE_RESPONSE, options.getMaxResponseBytes(), 2048, headers);
+            }
+            else
+                response.setBody(Collections.singletonMap("id", 1));
+            return response;
+        };
+        batchEngine = new BatchEngine(conf, new JsonBuilder(Functions.basic()), requestDispatcher);
+    }
+
+    @Test
+    public void execute__abortOnLargeResponse() throws Exception {
+        Response response = batchEngine.execute(request(), template("/big", "/small", "\"max_response_bytes\": 1024"));
+        assertBudgetExceeded(response, BudgetExceededException.SCOPE_RESPONSE, 1024, 0);
+    }
+
+    @Test
+    public void execute__dropLargeResponseBody() throws Exception {
+        Response response = batchEngine.execute(request(), template("/big", "/small",
+                "\"max_response_bytes\": 1024, \"budget_exceeded_action\": \"drop_body\""));
+        Map<String, Object> body = (Map<String, Object>) response.getBody();
+        assertEquals(200, (int) response.getStatus());
+        assertNull(body.get("first"));
+        assertEquals(1, body.get("second"));
+        assertEquals("https://localhost/big", body.get("url"));
+    }
+
+    @Test
+    public void execute__dropBodyCountedByDispatcher() throws Exception {
+        Response response = batchEngine.execute(request(), template("/counted", "/small",
+                "\"max_response_bytes\": 1024, \"budget_exceeded_action\": \"drop_body\""));
+        assertEquals(206, (int) response.getStatus());
+        assertNull(((Map<String, Object>) response.getBody()).get("first"));
+    }
+
+    @Test
+    public void execute__abortOnBatchSize() throws Exception {
+        Response response = batchEngine.execute(request(), template("/small", "/big", "\"max_batch_bytes\": 1024"));
+        Map<String, Object> body = assertBudgetExceeded(response, BudgetExceededException.SCOPE_BATCH, 1024, 1);
+        assertEquals(true, (long) body.get("size") > 1024);
+    }
+
+    @Test
+    public void execute__dropBodyOverBatchBudget() throws Exception {
+        Response response = batchEngine.execute(request(), template("/big", "/small",
+                "\"max_batch_bytes\": 1024, \"budget_exceeded_action\": \"drop_body\""));
+        assertEquals(200, (int) response.getStatus());
+        assertEquals(1, ((Map<String, Object>) response.getBody()).get("second"));
+    }
+
+    @Test
+    public void execute__engineDefaults() throws Exception {
+        DispatchOptions defaults = new DispatchOptions();
+        defaults.setMaxResponseBytes(1024L);
+        batchEngine = BatchEngine.builder(conf, new JsonBuilder(Functions.basic()), requestDispatcher)
+                .defaultDispatchOptions(defaults)
+                .build();
+        BatchTemplate template = template("/big", "/small", "\"timeout\": 1000");
+
+        assertBudgetExceeded(batchEngine.execute(request(), template), BudgetExceededException.SCOPE_RESPONSE, 1024, 0);
+        assertBudgetExceeded(batchEngine.execute(request(), template("/big", "/small", null)), BudgetExceededException.SCOPE_RESPONSE, 1024, 0);
+        assertNull(template.getDispatchOptions().getMaxResponseBytes());
+
+        Response response = batchEngine.execute(request(), template("/big", "/small", "\"max_response_bytes\": 4096"));
+        assertEquals(200, (int) response.getStatus());
+    }
+
+    @Test
+    public void execute__engineDefaultsFillUnsetOptions() throws Exception {
+        List<DispatchOptions> dispatched = new ArrayList<>();
+        RequestDispatcher dispatcher = requestDispatcher;
+        DispatchOptions defaults = new DispatchOptions();
+        defaults.setTimeout(5000L);
+        defaults.setBatchTimeout(20000L);
+        defaults.setFormat("json");
+        batchEngine = BatchEngine.builder(conf, new JsonBuilder(Functions.basic()), (request, jsonProvider, options) -> {
+                    dispatched.add(options);
+                    return dispatcher.dispatch(request, jsonProvider, options);
+                })
+                .defaultDispatchOptions(defaults)
+                .build();
+        BatchTemplate template = template("/small", "/small", "\"max_response_bytes\": 1024, \"timeout\": 1000");
+
+        assertEquals(200, (int) batchEngine.execute(request(), template).getStatus());
+        assertEquals(2, dispatched.size());
+        for(DispatchOptions options : dispatched) {
+            assertEquals(1000L, (long) options.getTimeout());
+            assertEquals(20000L, (long) options.getBatchTimeout());
+            assertEquals("json", options.getFormat());
+            assertEquals(1024L, (long) options.getMaxResponseBytes());
+        }
+        assertNull(template.getDispatchOptions().getBatchTimeout());
+    }
+
+    private Map<String, Object> assertBudgetExceeded(Response response, String scope, long limit, int index) {
+        Map<String, Object> body = (Map<String, Object>) response.getBody();
+        assertEquals(BatchEngine.STATUS_BUDGET_EXCEEDED, (int) response.getStatus());
+        assertEquals("budget_exceeded", body.get("error"));
+        assertEquals(scope, body.get("scope"));
+        assertEquals(limit, body.get("limit"));
+        assertEquals(index, body.get("request_index"));
+        return body;
+    }
+
+    private BatchTemplate template(String first, String second, String dispatchOptions) throws Exception {
+        return parser.parse("{\"requests\": [{\"http_method\": \"GET\", \"url\": \"https://localhost" + first + "\"," +
+                "\"requests\": [{\"http_method\": \"GET\", \"url\": \"https://localhost" + second + "\"}]}]," +
+                "\"responses\": [{\"status\": \"$.responses[0].status\", \"body\": {\"first\": \"$.responses[0].body\"," +
+                "\"second\": \"$.responses[1].body.id\", \"url\": \"$.responses[0].headers.X-Url[0]\"}}]" +
+                (dispatchOptions == null ? "" : ", \"dispatch_options\": {" + dispatchOptions + "}") + "}");
+    }
+
+    private Request request() {
+        Request request = new Request();
+        request.setHttpMethod("GET");
+        request.setUrl("https://localhost/batch");
+        request.setHeaders(Collections.emptyMap());
+        return request;
+    }
+
+}
@@ -0,0 +1,263 @@
+package com.rey.jsonbatch;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jayway.jsonpath.Configuration;
+import com.jayway.jsonpath.spi.json.JacksonJsonProvider;
+import com.jayway.jsonpath.spi.mapper.JacksonMappingProvider;
+import com.rey.jsonbatch.concurrent.BatchExecutors;
+import com.rey.jsonbatch.function.Functions;
+import com.rey.jsonbatch.model.BatchTemplate;
+import com.rey.jsonbatch.model.DispatchOptions;
+import com.rey.jsonbatch.model.Request;
+import com.rey.jsonbatch.model.RequestTemplate;
+import com.rey.jsonbatch.model.Response;
+import com.rey.jsonbatch.model.ResponseTemplate;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+// One engine and one template shared by all threads, every response is checked against its own request
+@SuppressWarnings("unchecked")
+public class BatchEngineConcurrencyTest {
+
+    private static final int THREADS = 16;
+
+    private static final int BATCHES_PER_THREAD = 64;
+
+    private Configuration conf;
+
+    private JsonBuilder jsonBuilder;
+
+    private RequestDispatcher requestDispatcher;
+
+    @Before
+    public void setUp() {
+        ObjectMapper objectMapper = new ObjectMapper();
+        conf = Configuration.builder()
+                .jsonProvider(new JacksonJsonProvider(objectMapper))
+                .mappingProvider(new JacksonMappingProvider(objectMapper))
+                .build();
+        jsonBuilder = new JsonBuilder(Functions.basic());
+        requestDispatcher = (request, jsonProvider, options) -> {
+            Map<String, Object> body = new LinkedHashMap<>((Map<String, Object>) request.getBody());
+            body.put("url", request.getUrl());
+            Response response = new Response();
+            response.setStatus(200);
+            response.setBody(body);
+            return response;
+        };
+    }
+
+    @Test
+    public void execute__sharedEngine() throws Exception {
+        BatchEngine batchEngine = new BatchEngine(conf, jsonBuilder, requestDispatcher);
+        stress(batchEngine, template().freeze());
+    }
+
+    @Test
+    public void execute__sharedCompiledEngine() throws Exception {
+        BatchEngine batchEngine = BatchEngine.builder(conf, jsonBuilder, requestDispatcher)
+                .templateCompiler(new TemplateCompiler(jsonBuilder))
+                .build();
+        stress(batchEngine, template().freeze());
+    }
+
+    @Test
+    public void executeAsync__timeoutOnBoundedExecutor() throws Exception {
+        ExecutorService executor = BatchExecutors.platform(1);
+        try {
+            BatchEngine batchEngine = new BatchEngine(conf, jsonBuilder, requestDispatcher, executor);
+            BatchTemplate template = template();
+            DispatchOptions options = new DispatchOptions();
+            options.setTimeout(5000L);
+            template.setDispatchOptions(options);
+            template.freeze();
+            List<CompletableFuture<Response>> futures = new ArrayList<>();
+            for (int i = 0; i < 4; i++)
+                futures.add(batchEngine.executeAsync(request(i), template));
+            for (int i = 0; i < 4; i++)
+                check(futures.get(i).get(10, TimeUnit.SECONDS), i);
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void executeAsync__rejected() throws Exception {
+        ExecutorService executor = BatchExecutors.platform(1);
+        executor.shutdown();
+        BatchEngine batchEngine = new BatchEngine(conf, jsonBuilder, requestDispatcher, executor);
+        CompletableFuture<Response> future = batchEngine.executeAsync(request(1), template());
+        try {
+            future.get();
+            fail("Expected rejection");
+        }
+        catch (ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof RejectedExecutionException);
+        }
+    }
+
+    @Test
+    public void execute__timeoutInterruptsDispatch() throws Exception {
+        CountDownLatch interrupted = new CountDownLatch(1);
+        RequestDispatcher slowDispatcher = (request, jsonProvider, options) -> {
+            try {
+                Thread.sleep(10000);
+            }
+            catch (InterruptedException ex) {
+                interrupted.countDown();
+                throw ex;
+            }
+            return null;
+        };
+        BatchEngine batchEngine = new BatchEngine(conf, jsonBuilder, slowDispatcher);
+        BatchTemplate template = template();
+        DispatchOptions options = new DispatchOptions();
+        options.setTimeout(50L);
+        template.setDispatchOptions(options);
+        try {
+            batchEngine.execute(request(1), template);
+            fail("Expected timeout");
+        }
+        catch (TimeoutException ex) {
+            // expected
+        }
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void execute__templateNotModified() throws Exception {
+        BatchEngine batchEngine = new BatchEngine(conf, jsonBuilder, requestDispatcher);
+        BatchTemplate template = template();
+        check(batchEngine.execute(request(1), template), 1);
+        assertNull(template.getDispatchOptions());
+    }
+
+    @Test
+    public void freeze__rejectsChanges() {
+        BatchTemplate template = template();
+        DispatchOptions options = new DispatchOptions();
+        template.setDispatchOptions(options);
+        template.freeze();
+        RequestTemplate requestTemplate = template.getRequests().get(0);
+
+        assertTrue(template.isFrozen() && requestTemplate.isFrozen() && options.isFrozen());
+        assertTrue(requestTemplate.getResponses().get(0).isFrozen());
+        assertRejected(() -> template.setId("id"));
+        assertRejected(() -> template.getRequests().add(new RequestTemplate()));
+        assertRejected(() -> requestTemplate.setUrl("https://localhost"));
+        assertRejected(() -> ((Map<String, Object>) requestTemplate.getBody()).put("key", "value"));
+        assertRejected(() -> options.setTimeout(1L));
+
+        DispatchOptions copy = options.copy();
+        copy.setTimeout(1L);
+        assertEquals(Long.valueOf(1L), copy.getTimeout());
+    }
+
+    // correctness only, throughput across thread counts is measured by SharedEngineBenchmark
+    private void stress(BatchEngine batchEngine, BatchTemplate template) throws Exception {
+        ExecutorService executorService = Executors.newFixedThreadPool(THREADS);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                int offset = t * BATCHES_PER_THREAD;
+                futures.add(executorService.submit(() -> {
+                    start.await();
+                    for (int i = offset; i < offset + BATCHES_PER_THREAD; i++)
+                        check(batchEngine.execute(request(i), template), i);
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures)
+                future.get(60, TimeUnit.SECONDS);
+        }
+        finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    private BatchTemplate template() {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("id", "int $.original.body.id");
+        body.put("total", "int __sum(\"$.original.body.values[*]\")");
+        body.put("tags", Arrays.asList("str $.original.body.name", "constant"));
+        RequestTemplate requestTemplate = new RequestTemplate();
+        requestTemplate.setHttpMethod("POST");
+        requestTemplate.setUrl("https://localhost/items/@{$.original.body.id}@?name=@url{$.original.body.name}@");
+        requestTemplate.setBody(body);
+
+        Map<String, Object> responseBody = new LinkedHashMap<>();
+        responseBody.put("id", "int $.responses[0].body.id");
+        responseBody.put("total", "int $.responses[0].body.total");
+        responseBody.put("url", "str $.responses[0].body.url");
+        ResponseTemplate odd = new ResponseTemplate();
+        odd.setPredicate("__cmp(\"@{$.responses[0].body.id}@ == @{$.original.body.odd}@\")");
+        odd.setStatus("201");
+        odd.setBody(responseBody);
+        ResponseTemplate even = new ResponseTemplate();
+        even.setStatus("$.responses[0].status");
+        even.setBody(responseBody);
+        requestTemplate.setResponses(Arrays.asList(odd, even));
+
+        BatchTemplate template = new BatchTemplate();
+        template.setRequests(Collections.singletonList(requestTemplate));
+        return template;
+    }
+
+    private Request request(int id) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("id", id);
+        body.put("odd", id % 2 == 1 ? id : -1);
+        body.put("name", "item " + id);
+        body.put("values", Arrays.asList(id, 1, 2));
+        Request request = new Request();
+        request.setHttpMethod("POST");
+        request.setUrl("https://localhost/batch");
+        request.setHeaders(Collections.emptyMap());
+        request.setBody(body);
+        return request;
+    }
+
+    private void check(Response response, int id) {
+        Map<String, Object> body = (Map<String, Object>) response.getBody();
+        assertEquals(id % 2 == 1 ? 201 : 200, response.getStatus().intValue());
+        assertEquals(BigInteger.valueOf(id), body.get("id"));
+        assertEquals(BigInteger.valueOf(id + 3), body.get("total"));
+        assertEquals("https://localhost/items/" + id + "?name=item%20" + id, body.get("url"));
+    }
+
+    private void assertRejected(Runnable runnable) {
+        try {
+            runnable.run();
+            fail("Modified frozen template");
+        }
+        catch (IllegalStateException | UnsupportedOperationException ex) {
+            // expected
+        }
+    }
+
+}
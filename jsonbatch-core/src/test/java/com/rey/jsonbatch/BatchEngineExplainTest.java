@@ -0,0 +1,109 @@
+package com.rey.jsonbatch;
+
+import com.jayway.jsonpath.Configuration;
+import com.rey.jsonbatch.function.Functions;
+import com.rey.jsonbatch.model.BatchTemplate;
+import com.rey.jsonbatch.model.RequestTemplate;
+import com.rey.jsonbatch.model.TemplateExplanation;
+import com.rey.jsonbatch.template.JsonTemplateParser;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BatchEngineExplainTest {
+
+    private Configuration conf = Configuration.builder().build();
+
+    private BatchEngine batchEngine = new BatchEngine(conf, new JsonBuilder(Functions.basic()), (request, jsonProvider, options) -> null);
+
+    @Test
+    public void explain__chain() throws Exception {
+        TemplateExplanation explanation = batchEngine.explain(parse("{" +
+                "\"id\": \"orders\"," +
+                "\"requests\": [{" +
+                "  \"http_method\": \"GET\"," +
+                "  \"url\": \"str https://a/@{$.original.body.id}@\"," +
+                "  \"responses\": [{\"predicate\": \"__cmp(\\\"@{$.responses[0].status}@ >= 500\\\")\", \"status\": \"$.responses[0].status\"}]," +
+                "  \"requests\": [" +
+                "    {\"predicate\": \"__cmp(\\\"@{$.responses[0].body.type}@ == a\\\")\", \"http_method\": \"GET\", \"url\": \"str https://b\"," +
+                "     \"requests\": [{\"http_method\": \"GET\", \"url\": \"str https://c/@{$.responses[1].body..id}@\"}]}," +
+                "    {\"http_method\": \"POST\", \"url\": \"str https://d\", \"body\": {\"ids\": \"int[] $.responses[0].body.items[*].id\"}}" +
+                "  ]" +
+                "}]," +
+                "\"responses\": [{\"status\": \"int 200\", \"body\": {\"all\": \"$.responses[*].status\", \"last\": \"$.responses[2].body\"}}]" +
+                "}"));
+
+        assertEquals("orders", explanation.getTemplateId());
+        assertEquals(4, explanation.getRequestTemplates());
+        assertEquals(3, explanation.getMaxRequests());
+        assertEquals(3, explanation.getMaxDepth());
+        assertEquals(Arrays.asList(0, 1, 2), Arrays.asList(explanation.getResponseIndexes().toArray()));
+        assertTrue(explanation.isAllResponses());
+        assertTrue(explanation.getPaths().contains("$.original.body.id"));
+        assertEquals(Collections.singleton("$.responses[1].body..id"), explanation.getExpensivePaths());
+        assertEquals(Collections.singletonMap("cmp", 2), explanation.getFunctions());
+        assertEquals(Collections.emptyList(), explanation.getWarnings());
+        // level 0: 110 request + 1 url + 3 break response, level 1: 2 predicate + 120 request,
+        // level 2: 130 request + 10 deep scan, final response: 3
+        assertEquals(379, explanation.getCost());
+    }
+
+    @Test
+    public void explain__warnings() throws Exception {
+        TemplateExplanation explanation = batchEngine.explain(parse("{" +
+                "\"requests\": [{" +
+                "  \"http_method\": \"GET\"," +
+                "  \"url\": \"str https://a/@{$.responses[0].body.id}@\"," +
+                "  \"body\": \"__unknown($.original.body)\"" +
+                "}]," +
+                "\"responses\": [{\"body\": \"$.responses[3].body\"}]" +
+                "}"));
+
+        assertEquals(1, explanation.getMaxRequests());
+        assertEquals(3, explanation.getWarnings().size());
+        assertTrue(explanation.getWarnings().get(0).startsWith("requests[0].url reads $.responses[0].body.id"));
+        assertTrue(explanation.getWarnings().get(1).startsWith("Unknown function unknown at requests[0].body"));
+        assertTrue(explanation.getWarnings().get(2).startsWith("responses[0].body reads $.responses[3].body"));
+    }
+
+    @Test
+    public void explain__arrayPathAndMap() throws Exception {
+        TemplateExplanation explanation = batchEngine.explain(parse("{" +
+                "\"requests\": [{\"http_method\": \"GET\", \"url\": \"str https://a\"}]," +
+                "\"responses\": [{\"body\": [{\"__array_path\": \"$.responses[0].body[?(@.active)]\", \"id\": \"$.responses[9]\"}]}]" +
+                "}"));
+
+        // paths of an __array_path item are relative to the item
+        assertEquals(Collections.singleton(0), explanation.getResponseIndexes());
+        assertFalse(explanation.isAllResponses());
+        assertEquals(Collections.singleton("$.responses[0].body[?(@.active)]"), explanation.getExpensivePaths());
+        assertEquals(Collections.emptyList(), explanation.getWarnings());
+        assertEquals(110 + 5 + 10, explanation.getCost());
+
+        Map<String, Object> map = explanation.toMap();
+        assertEquals(1, map.get("max_requests"));
+        assertEquals(125L, map.get("cost"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void explain__cycle() {
+        RequestTemplate requestTemplate = new RequestTemplate();
+        requestTemplate.setHttpMethod("GET");
+        requestTemplate.setUrl("str https://a");
+        requestTemplate.setRequests(Collections.singletonList(requestTemplate));
+        BatchTemplate template = new BatchTemplate();
+        template.setRequests(Collections.singletonList(requestTemplate));
+        batchEngine.explain(template);
+    }
+
+    private BatchTemplate parse(String json) throws Exception {
+        return new JsonTemplateParser(conf.jsonProvider()).parse(json);
+    }
+
+}
@@ -11,9 +11,13 @@ import com.rey.jsonbatch.model.BatchTemplate
 import com.rey.jsonbatch.model.DispatchOptions
 import com.rey.jsonbatch.model.Request
 import com.rey.jsonbatch.model.Response
+import org.junit.Assert.assertEquals
 import org.junit.Before
 import org.junit.Test
+import java.util.concurrent.Executor
 import org.mockito.ArgumentMatchers.any
+import org.mockito.Mockito.doAnswer
+import org.mockito.Mockito.doCallRealMethod
 import org.mockito.Mockito.doReturn
 import org.mockito.Mockito.mock
 
@@ -166,4 +170,94 @@ class BatchEngineTest {
         println(objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(finalResponse))
     }
     
+    @Test
+    fun testExecuteAsync() {
+        val template = """
+            {
+                "requests": [
+                    {
+                        "http_method": "GET",
+                        "url": "https://localhost.com/@{$.original.body.key_1}@",
+                        "headers": null,
+                        "body": null
+                    }
+                ],
+                "responses": [
+                    {
+                        "status": "$.responses[0].status",
+                        "body": {
+                            "keys": "str[] $.responses[0].body[*].key"
+                        }
+                    }
+                ]
+            }
+        """.trimIndent()
+        val original_request = """
+            {
+                "headers": null,
+                "body": {
+                    "key_1": "abc"
+                }
+            }
+        """.trimIndent()
+        val response = """
+            {
+                "status": 201,
+                "headers": null,
+                "body": [
+                    {
+                        "key": "a",
+                        "value": 1
+                    }
+                ]
+            }
+        """.trimIndent()
+        val batchTemplate = objectMapper.readValue(template, BatchTemplate::class.java)
+        val originalRequest = objectMapper.readValue(original_request, Request::class.java)
+        val firstResponse = objectMapper.readValue(response, Response::class.java)
+
+        doReturn(firstResponse).`when`(requestDispatcherMock).dispatch(any(Request::class.java), any(JsonProvider::class.java), any(DispatchOptions::class.java));
+        val finalResponse = batchEngine.executeAsync(originalRequest, batchTemplate).get()
+        assertEquals(201, finalResponse.status)
+        println(objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(finalResponse))
+    }
+
+    @Test
+    fun testBatchTimeout_returnPartial() {
+        val template = """
+            {
+                "requests": [
+                    {
+                        "http_method": "GET",
+                        "url": "https://localhost.com",
+                        "headers": null,
+                        "body": null
+                    }
+                ],
+                "responses": null,
+                "dispatch_options": {
+                    "batch_timeout": 100,
+                    "return_partial_on_timeout": true
+                }
+            }
+        """.trimIndent()
+        val original_request = """
+            {
+                "headers": null,
+                "body": null
+            }
+        """.trimIndent()
+        val batchTemplate = objectMapper.readValue(template, BatchTemplate::class.java)
+        val originalRequest = objectMapper.readValue(original_request, Request::class.java)
+
+        doAnswer {
+            Thread.sleep(1000)
+            Response()
+        }.`when`(requestDispatcherMock).dispatch(any(Request::class.java), any(JsonProvider::class.java), any(DispatchOptions::class.java));
+        doCallRealMethod().`when`(requestDispatcherMock).dispatchAsync(any(Request::class.java), any(JsonProvider::class.java), any(DispatchOptions::class.java), any(Executor::class.java));
+        val finalResponse = batchEngine.execute(originalRequest, batchTemplate)
+        assertEquals(504, finalResponse.status)
+        println(objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(finalResponse))
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,237 @@
+package com.rey.jsonbatch;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jayway.jsonpath.Configuration;
+import com.jayway.jsonpath.spi.json.JacksonJsonProvider;
+import com.jayway.jsonpath.spi.mapper.JacksonMappingProvider;
+import com.rey.jsonbatch.function.Functions;
+import com.rey.jsonbatch.model.BatchTemplate;
+import com.rey.jsonbatch.model.Request;
+import com.rey.jsonbatch.model.Response;
+import com.rey.jsonbatch.template.JsonTemplateParser;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@SuppressWarnings("unchecked")
+public class BatchResultCacheTest {
+
+    private JsonTemplateParser parser;
+
+    private BatchEngine batchEngine;
+
+    private BatchResultCache cache;
+
+    private AtomicLong clock = new AtomicLong();
+
+    private AtomicInteger dispatched = new AtomicInteger();
+
+    private volatile int status = 200;
+
+    // set to hold dispatches until released
+    private volatile CountDownLatch started;
+    private volatile CountDownLatch release;
+
+    @Before
+    public void setUp() {
+        ObjectMapper objectMapper = new ObjectMapper();
+        Configuration conf = Configuration.builder()
+                .jsonProvider(new JacksonJsonProvider(objectMapper))
+                .mappingProvider(new JacksonMappingProvider(objectMapper))
+                .build();
+        parser = new JsonTemplateParser(conf.jsonProvider());
+        RequestDispatcher requestDispatcher = (request, jsonProvider, options) -> {
+            if(release != null) {
+                started.countDown();
+                release.await();
+            }
+            Response response = new Response();
+            response.setStatus(status);
+            response.setBody(Collections.singletonMap("count", dispatched.incrementAndGet()));
+            return response;
+        };
+        // refreshes run on the calling thread so the test sees them finished
+        cache = new BatchResultCache(2, clock::get);
+        batchEngine = BatchEngine.builder(conf, new JsonBuilder(Functions.basic()), requestDispatcher)
+                .executor(Runnable::run)
+                .resultCache(cache)
+                .build();
+    }
+
+    @Test
+    public void execute__hitByKeyPaths() throws Exception {
+        BatchTemplate template = template("items", "\"ttl\": 1000, \"key_paths\": [\"$.body.id\"]");
+        assertEquals(1, count(batchEngine.execute(request("{\"id\": 1, \"page\": 1}", null), template)));
+        assertEquals(1, count(batchEngine.execute(request("{\"page\": 2, \"id\": 1.0}", null), template)));
+        assertEquals(2, count(batchEngine.execute(request("{\"id\": 2}", null), template)));
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+
+        // templates without cache options always run
+        BatchTemplate uncached = template("other", null);
+        assertEquals(3, count(batchEngine.execute(request("{\"id\": 1}", null), uncached)));
+        assertEquals(4, count(batchEngine.execute(request("{\"id\": 1}", null), uncached)));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void execute__hitByKeyHeaders() throws Exception {
+        BatchTemplate template = template("items", "\"ttl\": 1000, \"key_paths\": [], \"key_headers\": [\"X-Tenant\"]");
+        assertEquals(1, count(batchEngine.execute(request("{\"id\": 1}", "a"), template)));
+        assertEquals(1, count(batchEngine.execute(request("{\"id\": 2}", "a"), template)));
+        assertEquals(2, count(batchEngine.execute(request("{\"id\": 1}", "b"), template)));
+        assertEquals(3, count(batchEngine.execute(request("{\"id\": 1}", null), template)));
+    }
+
+    @Test
+    public void execute__staleWhileRevalidate() throws Exception {
+        BatchTemplate template = template("items", "\"ttl\": 1000, \"stale_while_revalidate\": 500");
+        Request request = request("{\"id\": 1}", null);
+        assertEquals(1, count(batchEngine.execute(request, template)));
+
+        // stale result is served and refreshed in the background
+        clock.set(1200);
+        assertEquals(1, count(batchEngine.execute(request, template)));
+        assertEquals(1, cache.getStaleHits());
+        assertEquals(1, cache.getRefreshes());
+        assertEquals(2, count(batchEngine.execute(request, template)));
+        assertEquals(1, cache.getHits());
+
+        // a failed refresh keeps the stale result
+        clock.set(2300);
+        status = 500;
+        assertEquals(2, count(batchEngine.execute(request, template)));
+        assertEquals(1, cache.getRefreshFailures());
+        assertEquals(2, count(batchEngine.execute(request, template)));
+
+        // past the stale window the batch runs again and errors are not cached
+        clock.set(3000);
+        Response response = batchEngine.execute(request, template);
+        assertEquals(500, (int) response.getStatus());
+        assertEquals(5, count(response));
+        assertEquals(6, count(batchEngine.execute(request, template)));
+    }
+
+    @Test
+    public void execute__evictsLeastRecentlyUsed() throws Exception {
+        BatchTemplate template = template("items", "\"ttl\": 1000");
+        batchEngine.execute(request("{\"id\": 1}", null), template);
+        batchEngine.execute(request("{\"id\": 2}", null), template);
+        batchEngine.execute(request("{\"id\": 1}", null), template);
+        batchEngine.execute(request("{\"id\": 3}", null), template);
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictions());
+        assertEquals(1, count(batchEngine.execute(request("{\"id\": 1}", null), template)));
+        assertEquals(4, count(batchEngine.execute(request("{\"id\": 2}", null), template)));
+
+        // a reloaded template doesn't see results of the old one
+        assertEquals(5, count(batchEngine.execute(request("{\"id\": 2}", null), template("items", "\"ttl\": 1000"))));
+        cache.invalidate("items");
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void execute__readOnlyResults() throws Exception {
+        BatchTemplate template = template("items", "\"ttl\": 1000");
+        Request request = request("{\"id\": 1}", null);
+        Response miss = batchEngine.execute(request, template);
+        Response hit = batchEngine.execute(request, template);
+        for(Response response : Arrays.asList(miss, hit)) {
+            try {
+                ((Map<String, Object>) response.getBody()).put("count", 0);
+                fail("Cached body was modified");
+            }
+            catch (UnsupportedOperationException ex) {
+                // expected
+            }
+        }
+
+        // responses are not shared, only their content
+        hit.setStatus(500);
+        Response next = batchEngine.execute(request, template);
+        assertEquals(200, (int) next.getStatus());
+        assertEquals(1, count(next));
+    }
+
+    @Test
+    public void execute__coalescesMisses() throws Exception {
+        BatchTemplate template = template("items", "\"ttl\": 1000");
+        Request request = request("{\"id\": 1}", null);
+        started = new CountDownLatch(1);
+        release = new CountDownLatch(1);
+        ExecutorService executorService = Executors.newFixedThreadPool(2);
+        try {
+            Future<Response> first = executorService.submit(() -> batchEngine.execute(request, template));
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            Future<Response> second = executorService.submit(() -> batchEngine.execute(request, template));
+            while(cache.getCoalescedMisses() == 0)
+                Thread.sleep(1);
+            release.countDown();
+
+            assertEquals(1, count(first.get(10, TimeUnit.SECONDS)));
+            assertEquals(1, count(second.get(10, TimeUnit.SECONDS)));
+            assertNotSame(first.get(), second.get());
+            assertEquals(1, dispatched.get());
+            assertEquals(1, cache.getMisses());
+            assertEquals(1, cache.getCoalescedMisses());
+        }
+        finally {
+            release.countDown();
+            executorService.shutdownNow();
+        }
+    }
+
+    @Test
+    public void parse__readsCacheOptions() throws Exception {
+        BatchTemplate template = template("items", "\"ttl\": 1000, \"stale_while_revalidate\": 500, " +
+                "\"key_paths\": [\"$.body.id\"], \"key_headers\": [\"X-Tenant\"]").freeze();
+        assertEquals(1000L, (long) template.getCache().getTtl());
+        assertEquals(500L, (long) template.getCache().getStaleWhileRevalidate());
+        assertEquals(Collections.singletonList("$.body.id"), template.getCache().getKeyPaths());
+        assertEquals(Collections.singletonList("X-Tenant"), template.getCache().getKeyHeaders());
+        assertTrue(template.getCache().isFrozen());
+    }
+
+    private int count(Response response) {
+        return (int) ((Map<String, Object>) response.getBody()).get("count");
+    }
+
+    private BatchTemplate template(String id, String cacheOptions) throws Exception {
+        BatchTemplate template = parser.parse("{\"requests\": [{\"http_method\": \"GET\", \"url\": \"https://localhost/items\"}]," +
+                "\"responses\": [{\"status\": \"$.responses[0].status\", \"body\": {\"count\": \"$.responses[0].body.count\"}}]" +
+                (cacheOptions == null ? "" : ", \"cache\": {" + cacheOptions + "}") + "}");
+        template.setId(id);
+        return template;
+    }
+
+    private Request request(String body, String tenant) throws Exception {
+        Request request = new Request();
+        request.setHttpMethod("POST");
+        request.setUrl("https://localhost/batch");
+        Map<String, List<String>> headers = new LinkedHashMap<>();
+        headers.put("Content-Type", Arrays.asList("application/json"));
+        if(tenant != null)
+            headers.put("x-tenant", Collections.singletonList(tenant));
+        request.setHeaders(headers);
+        request.setBody(new ObjectMapper().readValue(body, Object.class));
+        return request;
+    }
+
+}
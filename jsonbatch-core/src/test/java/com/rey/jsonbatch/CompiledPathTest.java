@@ -0,0 +1,101 @@
+package com.rey.jsonbatch;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jayway.jsonpath.Configuration;
+import com.jayway.jsonpath.DocumentContext;
+import com.jayway.jsonpath.JsonPath;
+import com.jayway.jsonpath.Option;
+import com.jayway.jsonpath.spi.json.JacksonJsonProvider;
+import com.rey.jsonbatch.JsonBuilder.Type;
+import com.rey.jsonbatch.convert.NumberMode;
+import com.rey.jsonbatch.convert.TypeConverter;
+import com.rey.jsonbatch.json.CompactJsonProvider;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+
+public class CompiledPathTest {
+
+    private static final String DATA = "{\"name\": \"batch\", \"empty\": null, \"total\": 2.5, \"odd key\": 1," +
+            "\"items\": [{\"id\": 1, \"tags\": [\"a\", \"b\"], \"stock\": {\"count\": 3}}, {\"id\": 2, \"tags\": [], \"stock\": {\"count\": null}}," +
+            "{\"id\": 3, \"stock\": {}}], \"matrix\": [[1, 2], [3, 4]], \"labels\": {\"x\": 1, \"y\": 2}}";
+
+    private static final String[] PATHS = {
+            "$",
+            "$.name",
+            "$.empty",
+            "$.total",
+            "$['odd key']",
+            "$.items",
+            "$.items[0].id",
+            "$.items[1].stock.count",
+            "$.items[0].tags[1]",
+            "$.items[5].id",
+            "$.items[2].tags",
+            "$.items[2].stock.count",
+            "$.items[2].tags[0]",
+            "$.missing",
+            "$.missing.deeper",
+            "$.empty.deeper",
+            "$.name.deeper",
+            "$.name[0]",
+            "$.items.id",
+            "$.items[*].id",
+            "$.items[*].stock.count",
+            "$.items[*].tags",
+            "$.items[*].tags[0]",
+            "$.items[0].tags[*]",
+            "$.items.*.id",
+            "$.matrix[*][1]",
+            "$.matrix[1][*]",
+            "$.labels[*]",
+            "$.name[*]",
+            "$.missing[*]",
+            "$.items[-1].id",
+            "$.items[0,1].id",
+            "$..id",
+            "$.items[?(@.id > 1)].id",
+            "$.items.length()",
+    };
+
+    private static final Type[] TYPES = {Type.STRING, Type.INTEGER, Type.STRING_ARRAY, Type.NUMBER_ARRAY};
+
+    @Test
+    public void read__sameAsJsonPath() {
+        List<Configuration> configurations = Arrays.asList(
+                Configuration.builder().build(),
+                Configuration.builder().jsonProvider(new JacksonJsonProvider(new ObjectMapper())).build(),
+                Configuration.builder().jsonProvider(new CompactJsonProvider()).build(),
+                Configuration.builder().options(Option.DEFAULT_PATH_LEAF_TO_NULL).build(),
+                Configuration.builder().options(Option.SUPPRESS_EXCEPTIONS).build(),
+                Configuration.builder().options(Option.REQUIRE_PROPERTIES).build(),
+                Configuration.builder().options(Option.ALWAYS_RETURN_LIST).build(),
+                Configuration.builder().options(Option.AS_PATH_LIST).build());
+        TypeConverter converter = TypeConverter.of(NumberMode.BIG);
+        for (Configuration conf : configurations) {
+            DocumentContext context = JsonPath.using(conf).parse(DATA);
+            for (String path : PATHS) {
+                String message = path + " with " + conf.jsonProvider().getClass().getSimpleName() + " " + conf.getOptions();
+                CompiledPath compiledPath = CompiledPath.compile(path);
+                assertEquals(message, read(() -> context.read(path)), read(() -> compiledPath.read(context)));
+                for (Type type : TYPES)
+                    assertEquals(message + " to " + type, read(() -> converter.convert(type, context.read(path))),
+                            read(() -> compiledPath.read(converter, type, context)));
+            }
+        }
+    }
+
+    private Object read(Supplier<Object> reader) {
+        try {
+            return reader.get();
+        }
+        catch (RuntimeException ex) {
+            return ex.getClass();
+        }
+    }
+
+}
@@ -0,0 +1,169 @@
+package com.rey.jsonbatch;
+
+import com.jayway.jsonpath.Configuration;
+import com.jayway.jsonpath.DocumentContext;
+import com.jayway.jsonpath.JsonPath;
+import com.rey.jsonbatch.function.Functions;
+import com.rey.jsonbatch.function.MathUtils;
+import com.rey.jsonbatch.model.RequestTemplate;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PredicateIndexTest {
+
+    private Configuration configuration = Configuration.builder().build();
+
+    private JsonBuilder jsonBuilder = new JsonBuilder(Functions.basic());
+
+    @Test
+    public void choose__stringEquality() {
+        List<RequestTemplate> templates = new ArrayList<>();
+        for(int i = 0; i < 40; i++)
+            templates.add(template("__cmp(\"@{$.original.body.type}@ == type_" + i + "\")"));
+        templates.add(template(null));
+        PredicateIndex<RequestTemplate> index = PredicateIndex.build(templates, RequestTemplate::getPredicate);
+
+        AtomicInteger evaluations = new AtomicInteger();
+        DocumentContext context = context("{\"original\": {\"body\": {\"type\": \"type_27\"}}}");
+        assertSame(templates.get(27), index.choose(context, predicate -> {
+            evaluations.incrementAndGet();
+            return evaluate(predicate, context);
+        }));
+        assertEquals(0, evaluations.get());
+        assertSame(templates.get(40), index.choose(context("{\"original\": {\"body\": {\"type\": \"other\"}}}"), predicate -> {
+            fail("Predicate evaluated: " + predicate);
+            return false;
+        }));
+    }
+
+    @Test
+    public void choose__sameAsLinear() {
+        List<RequestTemplate> templates = Arrays.asList(
+                template("__cmp(\"@{$.status}@ == 200\")"),
+                template("__cmp(\"@{$.status}@ == 201\")"),
+                template("__cmp(\"@{$.status}@ == 200.0\")"),
+                template("__cmp(\"@{$.status}@ == 404\")"),
+                template("__cmp(\"@{$.status}@ == 500\")"),
+                template("__cmp(\"@{$.flag}@ > 1\")"),
+                template("__cmp(\"@{ $.flag }@==true\")"),
+                template("__cmp(\"@{$.flag}@ == false\")"),
+                template("__cmp(\"@{$.flag}@ == TRUE\")"),
+                template("__cmp(\"@{$.flag}@ == abc\")"),
+                template("__cmp(\"@{$.name}@ == a b\")"),
+                template("__cmp(\"@{$.name}@ == b\")"),
+                template("__cmp(\"@{$.name}@ == 2\")"),
+                template("__cmp(\"@{$.name}@ == a b\")"),
+                template("__cmp(\"@{$.name}@ == c\")"),
+                template("__cmp(\"@{$.name}@ == null\")"),
+                template("__cmp(\"@{$.name}@ == a=b\")"));
+        PredicateIndex<RequestTemplate> index = PredicateIndex.build(templates, RequestTemplate::getPredicate);
+
+        String[] documents = {
+                "{\"status\": 200, \"flag\": true, \"name\": \"x\"}",
+                "{\"status\": 200.00, \"flag\": true, \"name\": \"x\"}",
+                "{\"status\": \"404\", \"flag\": true, \"name\": \"x\"}",
+                "{\"status\": 302, \"flag\": \"True\", \"name\": \"x\"}",
+                "{\"status\": 302, \"flag\": \"no\", \"name\": \"x\"}",
+                "{\"status\": 302, \"flag\": 0, \"name\": \"a b\"}",
+                "{\"status\": \"ok\", \"flag\": \"no\", \"name\": \"c\"}",
+                "{\"status\": \"ok\", \"flag\": \"no\", \"name\": null}",
+                "{\"status\": \"ok\", \"flag\": \"no\", \"name\": \"a=b\"}",
+                "{\"status\": \"ok\", \"flag\": \"no\", \"name\": \"d\"}",
+                "{\"status\": \"ok\", \"flag\": \"no\", \"name\": 2}",
+        };
+        for(String document : documents) {
+            DocumentContext context = context(document);
+            Predicate<String> evaluator = predicate -> evaluate(predicate, context);
+            assertEquals(document, chooseLinear(templates, evaluator), call(() -> index.choose(context, evaluator)));
+        }
+    }
+
+    @Test
+    public void choose__numberWithTextLiteral() {
+        List<RequestTemplate> templates = new ArrayList<>();
+        templates.add(template("__cmp(\"@{$.status}@ == abc\")"));
+        for(int i = 0; i < 8; i++)
+            templates.add(template("__cmp(\"@{$.status}@ == " + (200 + i) + "\")"));
+        PredicateIndex<RequestTemplate> index = PredicateIndex.build(templates, RequestTemplate::getPredicate);
+
+        DocumentContext context = context("{\"status\": 203}");
+        Predicate<String> evaluator = predicate -> evaluate(predicate, context);
+        assertEquals(chooseLinear(templates, evaluator), call(() -> index.choose(context, evaluator)));
+        assertTrue(call(() -> index.choose(context, evaluator)) == NumberFormatException.class);
+    }
+
+    @Test
+    public void choose__missingPath() {
+        List<RequestTemplate> templates = new ArrayList<>();
+        for(int i = 0; i < 8; i++)
+            templates.add(template("__cmp(\"@{$.original.type}@ == " + i + "\")"));
+        PredicateIndex<RequestTemplate> index = PredicateIndex.build(templates, RequestTemplate::getPredicate);
+
+        DocumentContext context = context("{\"original\": {}}");
+        Predicate<String> evaluator = predicate -> evaluate(predicate, context);
+        assertEquals(chooseLinear(templates, evaluator), call(() -> index.choose(context, evaluator)));
+    }
+
+    @Test
+    public void isValidFor() {
+        List<RequestTemplate> templates = new ArrayList<>();
+        for(int i = 0; i < 8; i++)
+            templates.add(template("__cmp(\"@{$.type}@ == " + i + "\")"));
+        PredicateIndex<RequestTemplate> index = PredicateIndex.build(templates, RequestTemplate::getPredicate);
+        assertTrue(index.isValidFor(templates, RequestTemplate::getPredicate));
+
+        templates.get(3).setPredicate("__cmp(\"@{$.type}@ == 30\")");
+        assertFalse(index.isValidFor(templates, RequestTemplate::getPredicate));
+        templates.remove(3);
+        assertFalse(index.isValidFor(templates, RequestTemplate::getPredicate));
+        assertNull(PredicateIndex.build(templates, RequestTemplate::getPredicate).choose(context("{\"type\": 3}"), predicate -> false));
+    }
+
+    private Object call(Callable<Object> callable) {
+        try {
+            return callable.call();
+        }
+        catch (Exception ex) {
+            // exceptions of both ways must be the same kind
+            return ex.getClass();
+        }
+    }
+
+    private Object chooseLinear(List<RequestTemplate> templates, Predicate<String> evaluator) {
+        return call(() -> {
+            for(RequestTemplate template : templates) {
+                if(template.getPredicate() == null || evaluator.test(template.getPredicate()))
+                    return template;
+            }
+            return null;
+        });
+    }
+
+    private boolean evaluate(String predicate, DocumentContext context) {
+        return MathUtils.toBoolean(jsonBuilder.build(predicate, context));
+    }
+
+    private DocumentContext context(String json) {
+        return JsonPath.using(configuration).parse(json);
+    }
+
+    private RequestTemplate template(String predicate) {
+        RequestTemplate template = new RequestTemplate();
+        template.setPredicate(predicate);
+        return template;
+    }
+
+}
@@ -0,0 +1,49 @@
+package com.rey.jsonbatch;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class StringTemplateTest {
+
+    @Test
+    public void parse() {
+        StringTemplate template = StringTemplate.parse("https://host/posts/@{$.responses[0].body[0].id}@?q=@url{$.query}@");
+        assertFalse(template.isConstant());
+        assertArrayEquals(new String[] {"$.responses[0].body[0].id", "$.query"}, template.getSchemas());
+        assertTrue(StringTemplate.parse("https://host/posts").isConstant());
+        assertTrue(StringTemplate.parse("@{ not closed").isConstant());
+    }
+
+    @Test
+    public void render() {
+        Map<String, Object> values = new HashMap<>();
+        values.put("$.id", 10);
+        values.put("$.name", "a b/c?d=é€😀");
+        values.put("$.empty", null);
+        StringTemplate template = StringTemplate.parse("/items/@{$.id}@/@url{$.name}@?name=@{$.name}@&id=@url{$.id}@&none=@{$.empty}@");
+        String expected = "/items/10/a%20b%2Fc%3Fd%3D%C3%A9%E2%82%AC%F0%9F%98%80?name=a b/c?d=é€😀&id=10&none=null";
+        assertEquals(expected, template.render(values::get));
+        assertEquals(expected, template.render(new Object[] {10, "a b/c?d=é€😀", "a b/c?d=é€😀", 10, null}));
+        assertEquals("-._~AZaz09", StringTemplate.parse("@url{$.value}@").render(schema -> "-._~AZaz09"));
+    }
+
+    @Test
+    public void render__nested() {
+        StringTemplate inner = StringTemplate.parse("<@{$.value}@>");
+        StringTemplate outer = StringTemplate.parse("[@{$.inner}@|@{$.inner}@]");
+        StringBuilder huge = new StringBuilder();
+        for (int i = 0; i < 20000; i++)
+            huge.append('x');
+        assertEquals("[<1>|<1>]", outer.render(schema -> inner.render(value -> 1)));
+        assertEquals(40007, outer.render(schema -> inner.render(value -> huge)).length());
+        assertEquals("[<2>|<2>]", outer.render(schema -> inner.render(value -> 2)));
+    }
+
+}
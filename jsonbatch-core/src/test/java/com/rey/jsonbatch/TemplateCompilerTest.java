@@ -0,0 +1,285 @@
+package com.rey.jsonbatch;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jayway.jsonpath.Configuration;
+import com.jayway.jsonpath.DocumentContext;
+import com.jayway.jsonpath.JsonPath;
+import com.jayway.jsonpath.spi.json.JacksonJsonProvider;
+import com.jayway.jsonpath.spi.mapper.JacksonMappingProvider;
+import com.rey.jsonbatch.JsonBuilder.Type;
+import com.rey.jsonbatch.convert.NumberMode;
+import com.rey.jsonbatch.function.Functions;
+import com.rey.jsonbatch.json.CompactJsonProvider;
+import com.rey.jsonbatch.json.JsonObject;
+import com.rey.jsonbatch.model.BatchTemplate;
+import com.rey.jsonbatch.model.Request;
+import com.rey.jsonbatch.model.RequestTemplate;
+import com.rey.jsonbatch.model.Response;
+import com.rey.jsonbatch.model.ResponseTemplate;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+@SuppressWarnings("unchecked")
+public class TemplateCompilerTest {
+
+    private static final String DATA = "{\"items\": [" +
+            "{\"first\": \"str1\", \"second\": 1, \"third\": 1.5, \"fourth\": true, \"fifth\": 2}," +
+            "{\"first\": \"str2\", \"second\": 2, \"third\": 2.5, \"fourth\": false, \"fifth\": \"abc2\"}," +
+            "{\"first\": \"str3\", \"second\": 3, \"third\": 3.5, \"fourth\": null, \"fifth\": true}," +
+            "{\"first\": \"str4\", \"second\": 4, \"third\": 4.5, \"fourth\": null, \"fifth\": \"5\"}," +
+            "{\"first\": \"str5\", \"second\": 0, \"third\": 5.5, \"fourth\": false, \"fifth\": \"True\"}" +
+            "], \"name\": \"batch\"}";
+
+    private JsonBuilder jsonBuilder;
+
+    private TemplateCompiler templateCompiler;
+
+    private DocumentContext documentContext;
+
+    @Before
+    public void setUp() {
+        ObjectMapper objectMapper = new ObjectMapper();
+        Configuration conf = Configuration.builder()
+                .jsonProvider(new JacksonJsonProvider(objectMapper))
+                .mappingProvider(new JacksonMappingProvider(objectMapper))
+                .build();
+        jsonBuilder = new JsonBuilder(Functions.basic());
+        templateCompiler = new TemplateCompiler(jsonBuilder);
+        documentContext = JsonPath.using(conf).parse(DATA);
+    }
+
+    @Test
+    public void compile__nodes() {
+        String[] schemas = {
+                "str $.items[0].first",
+                "str $.items[1].third",
+                "str $.items[*].fourth",
+                "int $.items[0].second",
+                "int $.items[3].fifth",
+                "int $.items[0].third",
+                "num $.items[0].third",
+                "num $.items[3].fifth",
+                "bool $.items[4].second",
+                "bool $.items[4].fifth",
+                "obj $.items[1]",
+                "$.items[1].second",
+                "$.items[*].first",
+                "str[] $.items[*].second",
+                "num[] $.items[*].third",
+                "int __sum(\"$.items[*].second\")",
+                "num __average(\"$.items[*].third\")",
+                "int __min(\"$.items[*].second\")",
+                "num __max(\"$.items[*].third\")",
+                "str __regex(\"$.items[0].first\", \"^str(\\\\d)$\", 1)",
+                "__cmp(\"@{$.items[0].third}@ > @{$.items[1].third}@\")",
+                "__and(__cmp(\"@{$.items[0].third}@ <= @{$.items[1].third}@\"), __cmp(\"@{$.items[0].fourth}@ == true\"))",
+                "__or(__cmp(\"@{$.items[1].fourth}@ == true\"), __cmp(\"@{$.name}@ == batch\"))",
+                "__cmp(\"@{$.items[0].second}@ == 1 && !(@{$.name}@ != batch || @{$.items[2].fourth}@ == true)\")",
+                "int __sum(1, 2.5, \"$.items[*].second\")",
+                "str asd @{$.items[0].first}@ qwe @{int __sum(\"$.items[*].second\")}@ zxc",
+                "https://localhost/@{$.name}@/items/@{$.items[2].second}@",
+                "https://localhost/search?q=@url{__regex(\"$.items[0].first\", \"^(s)tr\", 0)}@ x&page=@url{$.items[1].second}@",
+                "no variables",
+                "int 1",
+                "num 2.5",
+                "bool false",
+                "obj {\"key\": 1}",
+                "int[] [ 1, 2 ]",
+        };
+        for (String schema : schemas) {
+            CompiledSchema compiledSchema = templateCompiler.compile(schema);
+            assertEquals(schema, jsonBuilder.build(schema, documentContext), compiledSchema.build(documentContext));
+            assertEquals(schema, 0, compiledSchema.getInterpretedNodes());
+        }
+    }
+
+    @Test
+    public void compile__objectAndList() {
+        Map<String, Object> item = new LinkedHashMap<>();
+        item.put("__array_path", "$.items[?(@.second > 1)]");
+        item.put("id", "int $.second");
+        item.put("label", "item-@{$.first}@");
+        item.put("flags", Arrays.asList("bool $.fourth", "str $.fifth"));
+
+        Map<String, Object> schema = new LinkedHashMap<>();
+        schema.put("name", "str $.name");
+        schema.put("total", "int __sum(\"$.items[*].second\")");
+        schema.put("items", Collections.singletonList(item));
+        schema.put("firsts", Arrays.asList("str[] $.items[*].first", "constant", Collections.singletonList("$.items[0].second")));
+        schema.put("nested", Collections.singletonMap("deep", Collections.singletonMap("value", "num $.items[4].third")));
+        schema.put("ignored", 1);
+
+        CompiledSchema compiledSchema = templateCompiler.compile(schema);
+        assertEquals(0, compiledSchema.getInterpretedNodes());
+        assertEquals(jsonBuilder.build(schema, documentContext), compiledSchema.build(documentContext));
+    }
+
+    @Test
+    public void compile__compactNumbers() {
+        jsonBuilder = new JsonBuilder(NumberMode.COMPACT, Functions.basic());
+        templateCompiler = new TemplateCompiler(jsonBuilder);
+        Map<String, Object> schema = new LinkedHashMap<>();
+        schema.put("id", "int $.items[0].second");
+        schema.put("price", "num $.items[0].third");
+        schema.put("ids", "int[] $.items[*].second");
+        schema.put("prices", "num[] $.items[*].third");
+        schema.put("constant", "num 2.5");
+
+        CompiledSchema compiledSchema = templateCompiler.compile(schema);
+        assertEquals(0, compiledSchema.getInterpretedNodes());
+        Map<String, Object> result = (Map<String, Object>) compiledSchema.build(documentContext);
+        assertEquals(jsonBuilder.build(schema, documentContext), result);
+        assertEquals(1L, result.get("id"));
+        assertEquals(1.5D, result.get("price"));
+        assertEquals(Arrays.asList(1L, 2L, 3L, 4L, 0L), result.get("ids"));
+        assertEquals(2.5D, result.get("constant"));
+    }
+
+    @Test
+    public void compile__wideObject() {
+        Map<String, Object> schema = new LinkedHashMap<>();
+        for (int i = 0; i < 300; i++)
+            schema.put("key_" + i, "int __sum(" + i + ", \"$.items[*].second\")");
+
+        CompiledSchema compiledSchema = templateCompiler.compile(schema);
+        assertEquals(0, compiledSchema.getInterpretedNodes());
+        assertEquals(jsonBuilder.build(schema, documentContext), compiledSchema.build(documentContext));
+    }
+
+    @Test
+    public void compile__fallbackToInterpreter() {
+        Map<String, Object> schema = new LinkedHashMap<>();
+        schema.put("unknown", "__unknown(\"$.name\")");
+        schema.put("name", "str $.name");
+
+        CompiledSchema compiledSchema = templateCompiler.compile(schema);
+        assertEquals(1, compiledSchema.getInterpretedNodes());
+        assertEquals(exceptionOf(() -> jsonBuilder.build(schema, documentContext)), exceptionOf(() -> compiledSchema.build(documentContext)));
+
+        CompiledSchema invalidInteger = templateCompiler.compile("int abc");
+        assertEquals(1, invalidInteger.getInterpretedNodes());
+        assertEquals(exceptionOf(() -> jsonBuilder.build("int abc", documentContext)), exceptionOf(() -> invalidInteger.build(documentContext)));
+
+        Object missingArrayPath = Collections.singletonList(Collections.singletonMap("id", "$.second"));
+        CompiledSchema list = templateCompiler.compile(missingArrayPath);
+        assertEquals(1, list.getInterpretedNodes());
+        assertEquals(IllegalArgumentException.class, exceptionOf(() -> list.build(documentContext)));
+    }
+
+    @Test
+    public void build__allocatesLittleMoreThanOutput() {
+        Map<String, Object> schema = new LinkedHashMap<>();
+        schema.put("name", "$.name");
+        schema.put("first", "str $.items[0].first");
+        schema.put("fourth", "bool $.items[1].fourth");
+        schema.put("items", "$.items[2]");
+        schema.put("seconds", "int[] $.items[*].second");
+        schema.put("predicate", "__cmp(\"@{$.items[0].first}@ == str1\")");
+        CompiledSchema compiledSchema = templateCompiler.compile(schema);
+        Map<String, Object> expected = (Map<String, Object>) compiledSchema.build(documentContext);
+        assertEquals(jsonBuilder.build(schema, documentContext), expected);
+
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threadMXBean.isThreadAllocatedMemorySupported() && threadMXBean.isThreadAllocatedMemoryEnabled());
+        List<Object> seconds = documentContext.read("$.items[*].second");
+        long threadId = Thread.currentThread().getId();
+        long compiled = Long.MAX_VALUE;
+        long output = Long.MAX_VALUE;
+        // best of a few rounds, the first ones run before the JIT has compiled the handles
+        for (int round = 0; round < 20; round++) {
+            long before = threadMXBean.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < 1000; i++)
+                compiledSchema.build(documentContext);
+            compiled = Math.min(compiled, (threadMXBean.getThreadAllocatedBytes(threadId) - before) / 1000);
+            before = threadMXBean.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < 1000; i++)
+                copy(expected, seconds);
+            output = Math.min(output, (threadMXBean.getThreadAllocatedBytes(threadId) - before) / 1000);
+        }
+        // json path reads and evaluation state don't allocate, only the wildcard list handed to the converter
+        // and the __cmp variable resolver do, about 96 bytes
+        assertTrue("Allocated " + compiled + " bytes per build for " + output + " bytes of output", compiled <= output + 128);
+    }
+
+    // the objects a build has to create for this schema: the map and the converted int[] list
+    private Map<String, Object> copy(Map<String, Object> result, List<Object> seconds) {
+        Map<String, Object> copy = new LinkedHashMap<>(JsonBuilder.capacityFor(result.size()));
+        for (Map.Entry<String, Object> entry : result.entrySet())
+            copy.put(entry.getKey(), entry.getKey().equals("seconds") ? jsonBuilder.getTypeConverter().convert(Type.INTEGER_ARRAY, seconds) : entry.getValue());
+        return copy;
+    }
+
+    @Test
+    public void build__compactProvider() {
+        Configuration conf = Configuration.builder().jsonProvider(new CompactJsonProvider()).build();
+        DocumentContext context = JsonPath.using(conf).parse(DATA);
+        Map<String, Object> schema = Collections.singletonMap("name", "str $.name");
+
+        Object result = templateCompiler.build(schema, context);
+        assertTrue(result instanceof JsonObject);
+        assertEquals(jsonBuilder.build(schema, context), result);
+    }
+
+    @Test
+    public void execute__sameAsInterpreter() throws Exception {
+        RequestTemplate requestTemplate = new RequestTemplate();
+        requestTemplate.setHttpMethod("POST");
+        requestTemplate.setUrl("https://localhost/@{$.original.body.name}@");
+        requestTemplate.setBody(Collections.singletonMap("ids", "int[] $.original.body.items[*].second"));
+        ResponseTemplate responseTemplate = new ResponseTemplate();
+        responseTemplate.setPredicate("__cmp(\"@{$.responses[0].status}@ == 200\")");
+        responseTemplate.setStatus("$.responses[0].status");
+        responseTemplate.setBody(Collections.singletonMap("echo", "$.responses[0].body"));
+        BatchTemplate template = new BatchTemplate();
+        template.setRequests(Collections.singletonList(requestTemplate));
+        template.setResponses(Collections.singletonList(responseTemplate));
+
+        Request original = new Request();
+        original.setHttpMethod("POST");
+        original.setUrl("https://localhost/batch");
+        original.setHeaders(Collections.emptyMap());
+        original.setBody(documentContext.json());
+        RequestDispatcher requestDispatcher = (request, jsonProvider, options) -> {
+            Response response = new Response();
+            response.setStatus(200);
+            response.setBody(Collections.singletonMap("url", request.getUrl() + " " + request.getBody()));
+            return response;
+        };
+        Configuration conf = documentContext.configuration();
+        BatchEngine interpreted = new BatchEngine(conf, jsonBuilder, requestDispatcher);
+        BatchEngine compiled = BatchEngine.builder(conf, jsonBuilder, requestDispatcher)
+                .templateCompiler(templateCompiler)
+                .build();
+
+        Response expected = interpreted.execute(original, template);
+        for (int i = 0; i < 3; i++) {
+            Response response = compiled.execute(original, template);
+            assertEquals(expected.getStatus(), response.getStatus());
+            assertEquals(expected.getBody(), response.getBody());
+        }
+        assertEquals("https://localhost/batch {ids=[1, 2, 3, 4, 0]}", ((Map) ((Map) expected.getBody()).get("echo")).get("url"));
+    }
+
+    private Class<?> exceptionOf(Runnable runnable) {
+        try {
+            runnable.run();
+        }
+        catch (RuntimeException ex) {
+            return ex.getClass();
+        }
+        return null;
+    }
+
+}
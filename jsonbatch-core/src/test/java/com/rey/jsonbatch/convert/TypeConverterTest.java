@@ -0,0 +1,161 @@
+package com.rey.jsonbatch.convert;
+
+import com.rey.jsonbatch.JsonBuilder.Type;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+public class TypeConverterTest {
+
+    private static final int SIZE = 100000;
+
+    private TypeConverter big = TypeConverter.of(NumberMode.BIG);
+
+    private TypeConverter compact = TypeConverter.of(NumberMode.COMPACT);
+
+    @Test
+    public void numbers__parse() {
+        assertEquals(new BigInteger("-12"), Numbers.parseInteger("-12"));
+        assertEquals(new BigInteger("+12"), Numbers.parseInteger("+12"));
+        assertEquals(new BigInteger("123456789012345678901234567890"), Numbers.parseInteger("123456789012345678901234567890"));
+        assertNull(Numbers.parseInteger("1.5"));
+        assertNull(Numbers.parseInteger("-"));
+        assertNull(Numbers.parseInteger(""));
+        assertNull(Numbers.parseInteger(" 1"));
+
+        assertEquals(new BigDecimal("1.50"), Numbers.parseDecimal("1.50"));
+        assertEquals(new BigDecimal(".5"), Numbers.parseDecimal(".5"));
+        assertEquals(new BigDecimal("5."), Numbers.parseDecimal("5."));
+        assertEquals(new BigDecimal("-1.5E+3"), Numbers.parseDecimal("-1.5E+3"));
+        assertNull(Numbers.parseDecimal("."));
+        assertNull(Numbers.parseDecimal("1e"));
+        assertNull(Numbers.parseDecimal("1e99999999999"));
+        assertNull(Numbers.parseDecimal("abc"));
+        assertNull(Numbers.parseDecimal("1.5.5"));
+
+        assertEquals(Long.valueOf(Long.MAX_VALUE), Numbers.parseLong(String.valueOf(Long.MAX_VALUE)));
+        assertEquals(Long.valueOf(Long.MIN_VALUE), Numbers.parseLong(String.valueOf(Long.MIN_VALUE)));
+        assertNull(Numbers.parseLong("9223372036854775808"));
+    }
+
+    @Test
+    public void cast__big() {
+        assertEquals(new BigInteger("5"), big.cast(5, Type.INTEGER));
+        assertEquals(new BigInteger("5"), big.cast(5L, Type.INTEGER));
+        assertEquals(new BigInteger("5"), big.cast("5", Type.INTEGER));
+        assertEquals(new BigInteger("2"), big.cast(1.5D, Type.INTEGER));
+        assertEquals(new BigInteger("2"), big.cast(1.5F, Type.INTEGER));
+        assertEquals(new BigInteger("1"), big.cast(new BigDecimal("1.9"), Type.INTEGER));
+
+        assertEquals(new BigDecimal("1.5"), big.cast(1.5D, Type.NUMBER));
+        assertEquals(new BigDecimal("1.1"), big.cast(1.1F, Type.NUMBER));
+        assertEquals(new BigDecimal("5"), big.cast(5, Type.NUMBER));
+        assertEquals(new BigDecimal("5"), big.cast(new BigInteger("5"), Type.NUMBER));
+        assertEquals(new BigDecimal("2.50"), big.cast("2.50", Type.NUMBER));
+
+        assertEquals(true, big.cast("TRUE", Type.BOOLEAN));
+        assertEquals(false, big.cast(0, Type.BOOLEAN));
+        assertEquals(true, big.cast(2.5D, Type.BOOLEAN));
+        assertEquals("1.5", big.cast(1.5D, Type.STRING));
+        assertNull(big.cast(null, Type.INTEGER));
+
+        assertCannotCast(big, "abc", Type.INTEGER);
+        assertCannotCast(big, "1.5", Type.INTEGER);
+        assertCannotCast(big, Double.NaN, Type.NUMBER);
+        assertCannotCast(big, true, Type.NUMBER);
+        assertCannotCast(big, new Object(), Type.BOOLEAN);
+    }
+
+    @Test
+    public void cast__compact() {
+        assertEquals(5L, compact.cast(5, Type.INTEGER));
+        assertEquals(5L, compact.cast("5", Type.INTEGER));
+        assertEquals(2L, compact.cast(1.5D, Type.INTEGER));
+        assertEquals(5L, compact.cast(new BigInteger("5"), Type.INTEGER));
+        assertEquals(new BigInteger("123456789012345678901234567890"), compact.cast("123456789012345678901234567890", Type.INTEGER));
+
+        assertEquals(1.5D, compact.cast(1.5D, Type.NUMBER));
+        assertEquals(1.1D, compact.cast(1.1F, Type.NUMBER));
+        assertEquals(0.1D, compact.cast("0.1", Type.NUMBER));
+        assertEquals(5D, compact.cast(5, Type.NUMBER));
+        assertEquals(new BigDecimal("0.10000000000000001"), compact.cast("0.10000000000000001", Type.NUMBER));
+        assertEquals(new BigDecimal(1L << 60), compact.cast(1L << 60, Type.NUMBER));
+        assertEquals(new BigDecimal("1E+400"), compact.cast(new BigDecimal("1E+400"), Type.NUMBER));
+
+        assertCannotCast(compact, "abc", Type.NUMBER);
+        assertCannotCast(compact, "Infinity", Type.NUMBER);
+    }
+
+    @Test
+    public void convert__arrays() {
+        assertEquals(Arrays.asList(new BigInteger("1"), new BigInteger("2"), null, new BigInteger("4")),
+                big.convert(Type.INTEGER_ARRAY, Arrays.asList(1, "2", null, 3.5D)));
+        assertEquals(Arrays.asList(new BigInteger("7")), big.convert(Type.INTEGER_ARRAY, 7));
+        assertEquals(Arrays.asList("1", "true"), big.convert(Type.STRING_ARRAY, Arrays.asList(1, true)));
+        assertEquals(new BigInteger("1"), big.convert(Type.INTEGER, Arrays.asList(1, 2)));
+
+        Object longs = compact.convert(Type.INTEGER_ARRAY, Arrays.asList(1, 2L, "3", 4.4D, new BigInteger("5")));
+        assertTrue(longs instanceof LongList);
+        assertEquals(Arrays.asList(1L, 2L, 3L, 4L, 5L), longs);
+        Object doubles = compact.convert(Type.NUMBER_ARRAY, Arrays.asList(1.5D, 2, "3.25"));
+        assertTrue(doubles instanceof DoubleList);
+        assertEquals(Arrays.asList(1.5D, 2D, 3.25D), doubles);
+
+        // items that don't fit keep the array boxed
+        Object mixed = compact.convert(Type.INTEGER_ARRAY, Arrays.asList(1, "123456789012345678901234567890", null));
+        assertFalse(mixed instanceof LongList);
+        assertEquals(Arrays.asList(1L, new BigInteger("123456789012345678901234567890"), null), mixed);
+    }
+
+    @Test
+    public void convert__largeArray() {
+        List<Object> values = new ArrayList<>(SIZE);
+        for(int i = 0; i < SIZE; i++)
+            values.add((long) i * 1000);
+
+        List<?> integers = (List<?>) big.convert(Type.INTEGER_ARRAY, values);
+        List<?> numbers = (List<?>) big.convert(Type.NUMBER_ARRAY, values);
+        LongList longs = (LongList) compact.convert(Type.INTEGER_ARRAY, values);
+        DoubleList doubles = (DoubleList) compact.convert(Type.NUMBER_ARRAY, values);
+        assertEquals(SIZE, longs.size());
+        for(int i = 0; i < SIZE; i++) {
+            assertEquals(BigInteger.valueOf(i * 1000L), integers.get(i));
+            assertEquals(BigDecimal.valueOf(i * 1000L), numbers.get(i));
+            assertEquals(i * 1000L, longs.getLong(i));
+            assertEquals(i * 1000D, doubles.getDouble(i), 0);
+        }
+
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threadMXBean.isThreadAllocatedMemorySupported() && threadMXBean.isThreadAllocatedMemoryEnabled());
+        long threadId = Thread.currentThread().getId();
+        long before = threadMXBean.getThreadAllocatedBytes(threadId);
+        compact.convert(Type.INTEGER_ARRAY, values);
+        long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - before;
+        // the long[] only, no object per item
+        assertTrue("Allocated " + allocated + " bytes", allocated < SIZE * 12L);
+    }
+
+    private void assertCannotCast(TypeConverter converter, Object value, Type type) {
+        try {
+            converter.cast(value, type);
+            fail("Cast " + value + " to " + type);
+        }
+        catch (IllegalArgumentException ex) {
+            assertTrue(ex.getMessage().startsWith("Cannot cast"));
+        }
+    }
+
+}
@@ -0,0 +1,67 @@
+package com.rey.jsonbatch.dispatcher;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CircuitBreakerTest {
+
+    private CircuitBreaker circuitBreaker;
+
+    @Before
+    public void setUp() {
+        CircuitBreakerConfig config = new CircuitBreakerConfig();
+        config.setWindowSize(4);
+        config.setMinimumCalls(4);
+        config.setFailureRateThreshold(50);
+        config.setSlowCallRateThreshold(100);
+        config.setSlowCallDuration(1000);
+        config.setOpenDuration(50);
+        config.setHalfOpenCalls(1);
+        circuitBreaker = new CircuitBreaker("localhost", config);
+    }
+
+    @Test
+    public void onFailure__opensAboveThreshold() {
+        circuitBreaker.onSuccess(10);
+        circuitBreaker.onSuccess(10);
+        circuitBreaker.onFailure(10);
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        circuitBreaker.onFailure(10);
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        assertFalse(circuitBreaker.tryAcquire());
+    }
+
+    @Test
+    public void onSuccess__opensOnSlowCalls() {
+        for (int i = 0; i < 4; i++)
+            circuitBreaker.onSuccess(2000);
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+    }
+
+    @Test
+    public void tryAcquire__halfOpenProbe() throws Exception {
+        for (int i = 0; i < 4; i++)
+            circuitBreaker.onFailure(10);
+        Thread.sleep(100);
+        assertTrue(circuitBreaker.tryAcquire());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+        assertFalse(circuitBreaker.tryAcquire());
+        circuitBreaker.onSuccess(10);
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    }
+
+    @Test
+    public void tryAcquire__halfOpenProbeFails() throws Exception {
+        for (int i = 0; i < 4; i++)
+            circuitBreaker.onFailure(10);
+        Thread.sleep(100);
+        assertTrue(circuitBreaker.tryAcquire());
+        circuitBreaker.onFailure(10);
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+    }
+
+}
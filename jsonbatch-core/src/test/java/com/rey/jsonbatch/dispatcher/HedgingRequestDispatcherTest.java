@@ -0,0 +1,125 @@
+package com.rey.jsonbatch.dispatcher;
+
+import com.rey.jsonbatch.RequestDispatcher;
+import com.rey.jsonbatch.model.DispatchOptions;
+import com.rey.jsonbatch.model.Request;
+import com.rey.jsonbatch.model.Response;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class HedgingRequestDispatcherTest {
+
+    private ScheduledExecutorService scheduler;
+
+    private ExecutorService executor;
+
+    private AtomicInteger callCount;
+
+    private HedgingRequestDispatcher dispatcher;
+
+    @Before
+    public void setUp() {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        executor = Executors.newCachedThreadPool();
+        callCount = new AtomicInteger();
+        RequestDispatcher slowFirstCall = (request, jsonProvider, options) -> {
+            int call = callCount.incrementAndGet();
+            if (call == 1)
+                Thread.sleep(1000);
+            Response response = new Response();
+            response.setStatus(200);
+            response.setBody(call);
+            return response;
+        };
+        dispatcher = new HedgingRequestDispatcher(slowFirstCall, scheduler, executor);
+        dispatcher.setDelay(50);
+        dispatcher.setBudgetPercent(100);
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void dispatch__hedgeWins() throws Exception {
+        Response response = dispatcher.dispatch(request("GET"), null, new DispatchOptions());
+        assertEquals(2, response.getBody());
+        assertEquals(1, dispatcher.getHedgeCount());
+        assertEquals(1, dispatcher.getHedgeWinCount());
+    }
+
+    @Test
+    public void dispatch__notIdempotent() throws Exception {
+        Response response = dispatcher.dispatch(request("POST"), null, new DispatchOptions());
+        assertEquals(1, response.getBody());
+        assertEquals(0, dispatcher.getHedgeCount());
+    }
+
+    @Test
+    public void dispatch__budgetExhausted() throws Exception {
+        dispatcher.setBudgetPercent(0);
+        Response response = dispatcher.dispatch(request("GET"), null, new DispatchOptions());
+        assertEquals(1, response.getBody());
+        assertEquals(0, dispatcher.getHedgeCount());
+    }
+
+    @Test
+    public void dispatch__partialBudgetWithBurst() throws Exception {
+        AtomicBoolean slow = new AtomicBoolean();
+        RequestDispatcher backend = (request, jsonProvider, options) -> {
+            if (slow.get())
+                Thread.sleep(100);
+            Response response = new Response();
+            response.setStatus(200);
+            return response;
+        };
+        HedgingRequestDispatcher hedgingDispatcher = new HedgingRequestDispatcher(backend, scheduler, executor);
+        hedgingDispatcher.setDelay(10);
+        hedgingDispatcher.setBudgetPercent(50);
+        hedgingDispatcher.setBudgetBurst(2);
+
+        // a healthy period saves at most 2 hedges
+        for (int i = 0; i < 20; i++)
+            hedgingDispatcher.dispatch(request("GET"), null, new DispatchOptions());
+        assertEquals(0, hedgingDispatcher.getHedgeCount());
+
+        // the full bucket is spent on the first slow requests, then every other request hedges
+        slow.set(true);
+        for (int i = 0; i < 8; i++)
+            hedgingDispatcher.dispatch(request("GET"), null, new DispatchOptions());
+        assertEquals(28, hedgingDispatcher.getRequestCount());
+        assertEquals(5, hedgingDispatcher.getHedgeCount());
+    }
+
+    @Test
+    public void latencyTracker__boundedKeys() {
+        LatencyTracker tracker = new LatencyTracker(4, 2);
+        tracker.record("a", 10);
+        tracker.record("b", 20);
+        assertEquals(Long.valueOf(10), tracker.percentile("a", 50, 1));
+        tracker.record("c", 30);
+        assertEquals(2, tracker.size());
+        assertNull(tracker.percentile("b", 50, 1));
+        assertEquals(Long.valueOf(10), tracker.percentile("a", 50, 1));
+    }
+
+    private Request request(String httpMethod) {
+        Request request = new Request();
+        request.setHttpMethod(httpMethod);
+        request.setUrl("https://localhost.com/posts?id=1");
+        return request;
+    }
+
+}
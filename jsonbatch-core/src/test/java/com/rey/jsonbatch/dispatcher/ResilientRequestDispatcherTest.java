@@ -0,0 +1,102 @@
+package com.rey.jsonbatch.dispatcher;
+
+import com.rey.jsonbatch.BudgetExceededException;
+import com.rey.jsonbatch.model.DispatchOptions;
+import com.rey.jsonbatch.model.Request;
+import com.rey.jsonbatch.model.Response;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class ResilientRequestDispatcherTest {
+
+    private ScheduledExecutorService scheduler;
+
+    private ExecutorService executor;
+
+    private AtomicInteger callCount;
+
+    private ResilientRequestDispatcher dispatcher;
+
+    @Before
+    public void setUp() {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        executor = Executors.newCachedThreadPool();
+        callCount = new AtomicInteger();
+        CircuitBreakerConfig config = new CircuitBreakerConfig();
+        config.setWindowSize(2);
+        config.setMinimumCalls(2);
+        dispatcher = new ResilientRequestDispatcher((request, jsonProvider, options) -> {
+            callCount.incrementAndGet();
+            Response response = new Response();
+            response.setStatus(503);
+            return response;
+        }, scheduler, executor, config);
+        dispatcher.setMaxRetries(1);
+        dispatcher.setBaseBackoff(10);
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void dispatch__retryIdempotent() throws Exception {
+        Response response = dispatcher.dispatch(request("GET"), null, new DispatchOptions());
+        assertEquals(503, (int) response.getStatus());
+        assertEquals(2, callCount.get());
+    }
+
+    @Test
+    public void dispatch__noRetryNotIdempotent() throws Exception {
+        dispatcher.dispatch(request("POST"), null, new DispatchOptions());
+        assertEquals(1, callCount.get());
+    }
+
+    @Test
+    public void dispatch__failFastWhenOpen() throws Exception {
+        dispatcher.dispatch(request("GET"), null, new DispatchOptions());
+        Response response = dispatcher.dispatch(request("GET"), null, new DispatchOptions());
+        assertEquals(2, callCount.get());
+        assertEquals(ResilientRequestDispatcher.STATUS_CIRCUIT_OPEN, (int) response.getStatus());
+        assertEquals("circuit_open", ((Map) response.getBody()).get("error"));
+    }
+
+    @Test
+    public void dispatch__noRetryOverBudget() throws Exception {
+        Response headers = new Response();
+        headers.setStatus(200);
+        ResilientRequestDispatcher overBudgetDispatcher = new ResilientRequestDispatcher((request, jsonProvider, options) -> {
+            callCount.incrementAndGet();
+            throw new BudgetExceededException(BudgetExceededException.SCOPE_RESPONSE, 16, 32, headers);
+        }, scheduler, executor, new CircuitBreakerConfig());
+        overBudgetDispatcher.setMaxRetries(1);
+        try {
+            overBudgetDispatcher.dispatch(request("GET"), null, new DispatchOptions());
+            fail("Read response over budget");
+        }
+        catch (BudgetExceededException ex) {
+            assertEquals(1, callCount.get());
+            assertEquals(CircuitBreaker.State.CLOSED, overBudgetDispatcher.getCircuitBreaker("localhost.com:8080").getState());
+        }
+    }
+
+    private Request request(String httpMethod) {
+        Request request = new Request();
+        request.setHttpMethod(httpMethod);
+        request.setUrl("https://localhost.com:8080/posts");
+        return request;
+    }
+
+}
@@ -2,7 +2,14 @@ package com.rey.jsonbatch.function;
 
 import org.junit.Test;
 
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
 
 import static org.junit.Assert.*;
 
@@ -37,4 +44,71 @@ public class CompareFunctionTest {
         assertFalse((Boolean)function.invoke(null, Collections.singletonList("abc == qwe")));
     }
 
-}
\ No newline at end of file
+    @Test
+    public void expression__sameAsText() {
+        List<Object> values = Arrays.asList(1, 1L, 1.0D, 1.5F, 1e10D, Double.NaN, new BigInteger("1"), new BigDecimal("1.50"),
+                true, false, "1", " 1.5 ", "TRUE", "abc", "", null, Collections.singletonMap("a", 1));
+        List<String> expressions = Arrays.asList("@{a}@ == @{b}@", "@{a}@ != @{b}@", "@{a}@ >= @{b}@", " @{a}@  <  @{b}@ ",
+                "@{a}@ == 1", "1.0 == @{a}@", "@{a}@ == true", "@{a}@ == abc", "x@{a}@ == x@{b}@", "@{a}@ == @{b}@ && b");
+        for(Object a : values) {
+            for(Object b : values) {
+                Map<String, Object> variables = new HashMap<>();
+                variables.put("a", a);
+                variables.put("b", b);
+                for(String expression : expressions) {
+                    String text = expression.replace("@{a}@", String.valueOf(a)).replace("@{b}@", String.valueOf(b));
+                    assertEquals(expression + " with " + variables,
+                            call(() -> function.invoke(null, Collections.singletonList(text))),
+                            call(() -> function.expression(expression).evaluate(null, variables::get)));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void expression__logical() {
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("status", 200);
+        variables.put("type", "order");
+        variables.put("flag", false);
+        assertTrue(evaluate("@{status}@ == 200 && @{type}@ == order", variables));
+        assertFalse(evaluate("@{status}@ == 200 && @{type}@ != order", variables));
+        assertTrue(evaluate("@{status}@ >= 500 || @{type}@ == order", variables));
+        assertTrue(evaluate("!(@{flag}@ == true)", variables));
+        assertTrue(evaluate("!@{flag}@ == true", variables));
+        assertTrue(evaluate("@{status}@ < 300 && (@{type}@ == invoice || !(@{flag}@ != false))", variables));
+        assertFalse(evaluate("(@{status}@ < 300 && @{type}@ == invoice) || @{flag}@ == true", variables));
+
+        // the right side isn't resolved once the result is known
+        assertFalse(evaluate("@{status}@ == 404 && @{missing}@ == 1", variables));
+        assertTrue(evaluate("@{status}@ == 200 || @{missing}@ == 1", variables));
+    }
+
+    @Test
+    public void expression__operatorInValue() {
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("expression", "2 > 1");
+        variables.put("name", "a<b");
+        assertTrue(evaluate("@{expression}@", variables));
+        assertTrue(evaluate("@{name}@ == a<b", variables));
+        assertSame(function.expression("@{name}@ == a<b"), function.expression("@{name}@ == a<b"));
+    }
+
+    private boolean evaluate(String expression, Map<String, Object> variables) {
+        return (Boolean) function.expression(expression).evaluate(null, schema -> {
+            if(!variables.containsKey(schema))
+                throw new IllegalStateException("Resolved " + schema);
+            return variables.get(schema);
+        });
+    }
+
+    private Object call(Callable<Object> callable) {
+        try {
+            return callable.call();
+        }
+        catch (Exception ex) {
+            return ex.getClass();
+        }
+    }
+
+}
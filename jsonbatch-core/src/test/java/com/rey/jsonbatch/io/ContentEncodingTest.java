@@ -0,0 +1,101 @@
+package com.rey.jsonbatch.io;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ContentEncodingTest {
+
+    private static final String DATA = "{\"items\": [" + repeat("{\"id\": 1, \"name\": \"item\"},", 100) + "{}]}";
+
+    @Test
+    public void decode__gzip() throws Exception {
+        byte[] compressed = ContentEncoding.encode("gzip", bytes(DATA), 0, bytes(DATA).length);
+        assertTrue(compressed.length < DATA.length());
+        assertEquals(DATA, read(ContentEncoding.decode("GZIP", new ByteArrayInputStream(compressed))));
+    }
+
+    @Test
+    public void decode__deflate() throws Exception {
+        byte[] zlib = ContentEncoding.encode("deflate", bytes(DATA), 0, bytes(DATA).length);
+        assertEquals(DATA, read(ContentEncoding.decode("deflate", new ByteArrayInputStream(zlib))));
+
+        ByteArrayOutputStream raw = new ByteArrayOutputStream();
+        try (DeflaterOutputStream outputStream = new DeflaterOutputStream(raw, new Deflater(Deflater.DEFAULT_COMPRESSION, true))) {
+            outputStream.write(bytes(DATA));
+        }
+        assertEquals(DATA, read(ContentEncoding.decode("deflate", new ByteArrayInputStream(raw.toByteArray()))));
+    }
+
+    @Test
+    public void decode__multipleCodings() throws Exception {
+        byte[] deflated = ContentEncoding.encode("deflate", bytes(DATA), 0, bytes(DATA).length);
+        byte[] gzipped = ContentEncoding.encode("gzip", deflated, 0, deflated.length);
+        assertEquals(DATA, read(ContentEncoding.decode("deflate, gzip", new ByteArrayInputStream(gzipped))));
+    }
+
+    @Test
+    public void decode__identity() throws Exception {
+        InputStream inputStream = new ByteArrayInputStream(bytes(DATA));
+        assertTrue(inputStream == ContentEncoding.decode(null, inputStream));
+        assertTrue(inputStream == ContentEncoding.decode("identity", inputStream));
+    }
+
+    @Test(expected = IOException.class)
+    public void decode__unsupported() throws Exception {
+        ContentEncoding.decode("compress", new ByteArrayInputStream(bytes(DATA)));
+    }
+
+    @Test
+    public void acceptEncoding() {
+        assertFalse(ContentEncoding.isBrotliSupported());
+        assertEquals("gzip, deflate", ContentEncoding.acceptEncoding());
+    }
+
+    @Test
+    public void compressionStats() throws Exception {
+        CompressionStats stats = new CompressionStats();
+        byte[] compressed = ContentEncoding.encode("gzip", bytes(DATA), 0, bytes(DATA).length);
+        assertEquals(DATA, read(stats.decode("gzip", new ByteArrayInputStream(compressed))));
+        assertEquals("{}", read(stats.decode(null, new ByteArrayInputStream(bytes("{}")))));
+        stats.recordRequest(1000, 100, true);
+
+        assertEquals(2, stats.getResponseCount());
+        assertEquals(1, stats.getCompressedResponseCount());
+        assertEquals(DATA.length() + 2, stats.getResponseBodyBytes());
+        assertEquals(compressed.length + 2, stats.getResponseWireBytes());
+        assertEquals(1, stats.getCompressedRequestCount());
+        assertEquals(DATA.length() - compressed.length + 900, stats.getSavedBytes());
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String read(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        byte[] buffer = new byte[256];
+        int count;
+        while((count = inputStream.read(buffer)) != -1)
+            outputStream.write(buffer, 0, count);
+        return new String(outputStream.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static String repeat(String value, int times) {
+        StringBuilder builder = new StringBuilder();
+        for(int i = 0; i < times; i++)
+            builder.append(value);
+        return builder.toString();
+    }
+
+}
@@ -0,0 +1,88 @@
+package com.rey.jsonbatch.io;
+
+import com.jayway.jsonpath.spi.json.JacksonJsonNodeJsonProvider;
+import com.jayway.jsonpath.spi.json.JacksonJsonProvider;
+import com.jayway.jsonpath.spi.json.JsonProvider;
+import com.jayway.jsonpath.spi.json.JsonSmartJsonProvider;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class JsonWriterTest {
+
+    @Test
+    public void write__jackson() throws Exception {
+        assertSameAsProvider(new JacksonJsonProvider(), buildData());
+    }
+
+    @Test
+    public void write__jsonSmart() throws Exception {
+        assertSameAsProvider(new JsonSmartJsonProvider(), buildData());
+    }
+
+    @Test
+    public void write__jsonNode() throws Exception {
+        JsonProvider jsonProvider = new JacksonJsonNodeJsonProvider();
+        Object node = jsonProvider.parse(new JacksonJsonProvider().toJson(buildData()));
+        assertSameAsProvider(jsonProvider, node);
+    }
+
+    @Test
+    public void write__escape() {
+        JsonProvider jsonProvider = new JacksonJsonProvider();
+        String value = "quote \" slash \\ tab \t newline \n bell \u0007 é 中 😀";
+        byte[] bytes = JsonWriter.toBytes(jsonProvider, value);
+        assertEquals("\"quote \\\" slash \\\\ tab \\t newline \\n bell \\u0007 é 中 😀\"", new String(bytes, StandardCharsets.UTF_8));
+        assertEquals(value, jsonProvider.parse(new String(bytes, StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void write__smallBuffer() throws Exception {
+        JsonProvider jsonProvider = new JacksonJsonProvider();
+        Map<String, Object> data = buildData();
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        JsonWriter writer = new JsonWriter(jsonProvider, outputStream, 16);
+        writer.write(data);
+        writer.flush();
+        assertArrayEquals(JsonWriter.toBytes(jsonProvider, data), outputStream.toByteArray());
+    }
+
+    @Test
+    public void length() {
+        JsonProvider jsonProvider = new JacksonJsonProvider();
+        Map<String, Object> data = buildData();
+        assertEquals(JsonWriter.toBytes(jsonProvider, data).length, JsonWriter.length(jsonProvider, data));
+    }
+
+    private void assertSameAsProvider(JsonProvider jsonProvider, Object node) {
+        String json = new String(JsonWriter.toBytes(jsonProvider, node), StandardCharsets.UTF_8);
+        assertEquals(jsonProvider.parse(jsonProvider.toJson(node)), jsonProvider.parse(json));
+    }
+
+    private Map<String, Object> buildData() {
+        Map<String, Object> nested = new LinkedHashMap<>();
+        nested.put("name", "Ünïcödé \"name\"");
+        nested.put("empty", new LinkedHashMap<>());
+        nested.put("nothing", null);
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("int", 1);
+        data.put("long", Long.MAX_VALUE);
+        data.put("big_integer", new BigInteger("123456789012345678901234567890"));
+        data.put("decimal", 1.5);
+        data.put("big_decimal", new BigDecimal("0.1234567890123456789"));
+        data.put("bool", true);
+        data.put("array", Arrays.asList(1, "two", false, null, Arrays.asList()));
+        data.put("nested", nested);
+        return data;
+    }
+
+}
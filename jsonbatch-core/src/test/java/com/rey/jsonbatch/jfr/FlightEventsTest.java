@@ -0,0 +1,168 @@
+package com.rey.jsonbatch.jfr;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jayway.jsonpath.Configuration;
+import com.jayway.jsonpath.spi.json.JacksonJsonProvider;
+import com.jayway.jsonpath.spi.mapper.JacksonMappingProvider;
+import com.rey.jsonbatch.BatchEngine;
+import com.rey.jsonbatch.JsonBuilder;
+import com.rey.jsonbatch.RequestDispatcher;
+import com.rey.jsonbatch.TemplateCompiler;
+import com.rey.jsonbatch.function.Functions;
+import com.rey.jsonbatch.model.Request;
+import com.rey.jsonbatch.model.Response;
+import com.rey.jsonbatch.template.JsonTemplateParser;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+public class FlightEventsTest {
+
+    private static final String TEMPLATE = "{" +
+            "\"id\": \"orders\"," +
+            "\"requests\": [{" +
+            "  \"http_method\": \"GET\"," +
+            "  \"url\": \"str https://localhost/orders/@{$.original.body.id}@\"," +
+            "  \"responses\": [{\"predicate\": \"__cmp(\\\"@{$.responses[0].status}@ >= 500\\\")\", \"status\": \"int 502\"}]" +
+            "}]," +
+            "\"responses\": [{\"status\": \"$.responses[0].status\", \"body\": {\"sum\": \"int __sum(\\\"$.responses[0].body.items[*]\\\")\"}}]" +
+            "}";
+
+    private Configuration conf;
+
+    private JsonBuilder jsonBuilder;
+
+    private RequestDispatcher requestDispatcher;
+
+    @Before
+    public void setUp() {
+        assumeTrue(FlightEvents.isSupported());
+        ObjectMapper objectMapper = new ObjectMapper();
+        conf = Configuration.builder()
+                .jsonProvider(new JacksonJsonProvider(objectMapper))
+                .mappingProvider(new JacksonMappingProvider(objectMapper))
+                .build();
+        jsonBuilder = new JsonBuilder(Functions.basic());
+        requestDispatcher = (request, jsonProvider, options) -> {
+            Response response = new Response();
+            response.setStatus(200);
+            response.setHeaders(Collections.emptyMap());
+            response.setBody(Collections.singletonMap("items", Arrays.asList(1, 2, 3)));
+            response.setBodySize(18L);
+            return response;
+        };
+    }
+
+    @Test
+    public void execute__recordsEvents() throws Exception {
+        List<RecordedEvent> events = record(new BatchEngine(conf, jsonBuilder, requestDispatcher));
+
+        RecordedEvent batch = single(events, "com.rey.jsonbatch.BatchExecuted");
+        assertEquals("orders", batch.getString("templateId"));
+        assertEquals("POST", batch.getString("method"));
+        assertEquals("https://localhost/batch", batch.getString("url"));
+        assertEquals(200, batch.getInt("status"));
+
+        RecordedEvent built = single(events, "com.rey.jsonbatch.RequestBuilt");
+        assertEquals(0, built.getInt("index"));
+        assertEquals("https://localhost/orders/7", built.getString("url"));
+
+        RecordedEvent dispatched = single(events, "com.rey.jsonbatch.RequestDispatched");
+        assertEquals(200, dispatched.getInt("status"));
+        assertEquals(18, dispatched.getLong("responseBytes"));
+
+        List<RecordedEvent> rebuilds = filter(events, "com.rey.jsonbatch.ContextRebuilt");
+        assertEquals(2, rebuilds.size());
+        assertEquals(1, rebuilds.get(1).getInt("responses"));
+        assertTrue(rebuilds.get(1).getLong("bytes") > rebuilds.get(0).getLong("bytes"));
+
+        assertEquals(3, filter(events, "com.rey.jsonbatch.TemplateChosen").size());
+        List<RecordedEvent> functions = filter(events, "com.rey.jsonbatch.FunctionInvoked");
+        assertTrue(functions.stream().anyMatch(event -> "sum".equals(event.getString("function")) && !event.getBoolean("compiled")));
+    }
+
+    @Test
+    public void execute__recordsCompiledFunctions() throws Exception {
+        BatchEngine batchEngine = BatchEngine.builder(conf, jsonBuilder, requestDispatcher)
+                .templateCompiler(new TemplateCompiler(jsonBuilder))
+                .build();
+        List<RecordedEvent> events = record(batchEngine);
+
+        List<RecordedEvent> functions = filter(events, "com.rey.jsonbatch.FunctionInvoked");
+        assertTrue(functions.stream().anyMatch(event -> "sum".equals(event.getString("function")) && event.getBoolean("compiled")));
+        assertTrue(functions.stream().anyMatch(event -> "cmp".equals(event.getString("function")) && event.getBoolean("compiled")));
+    }
+
+    @Test
+    public void execute__recordsRebuildOnBudgetExceeded() throws Exception {
+        BatchEngine batchEngine = new BatchEngine(conf, jsonBuilder, requestDispatcher);
+        long originalBytes = filter(record(batchEngine), "com.rey.jsonbatch.ContextRebuilt").get(0).getLong("bytes");
+
+        List<RecordedEvent> rebuilds = filter(record(batchEngine, withMaxBatchBytes(originalBytes - 1), BatchEngine.STATUS_BUDGET_EXCEEDED), "com.rey.jsonbatch.ContextRebuilt");
+        assertEquals(1, rebuilds.size());
+        assertEquals(0, rebuilds.get(0).getInt("responses"));
+        assertEquals(originalBytes, rebuilds.get(0).getLong("bytes"));
+
+        rebuilds = filter(record(batchEngine, withMaxBatchBytes(originalBytes), BatchEngine.STATUS_BUDGET_EXCEEDED), "com.rey.jsonbatch.ContextRebuilt");
+        assertEquals(2, rebuilds.size());
+        assertEquals(1, rebuilds.get(1).getInt("responses"));
+        assertTrue(rebuilds.get(1).getLong("bytes") > originalBytes);
+    }
+
+    private static String withMaxBatchBytes(long maxBatchBytes) {
+        return TEMPLATE.substring(0, TEMPLATE.length() - 1) + ", \"dispatch_options\": {\"max_batch_bytes\": " + maxBatchBytes + "}}";
+    }
+
+    private List<RecordedEvent> record(BatchEngine batchEngine) throws Exception {
+        return record(batchEngine, TEMPLATE, 200);
+    }
+
+    private List<RecordedEvent> record(BatchEngine batchEngine, String template, int status) throws Exception {
+        Request request = new Request();
+        request.setHttpMethod("POST");
+        request.setUrl("https://localhost/batch");
+        request.setHeaders(Collections.emptyMap());
+        request.setBody(Collections.singletonMap("id", 7));
+        Path file = Files.createTempFile("jsonbatch", ".jfr");
+        try (Recording recording = new Recording()) {
+            for (String name : new String[]{"BatchExecuted", "TemplateChosen", "RequestBuilt", "RequestDispatched", "ContextRebuilt", "FunctionInvoked"})
+                recording.enable("com.rey.jsonbatch." + name).withoutThreshold();
+            recording.start();
+            Response response = batchEngine.execute(request, new JsonTemplateParser(conf.jsonProvider()).parse(template));
+            assertEquals(status, (int) response.getStatus());
+            recording.stop();
+            recording.dump(file);
+            return RecordingFile.readAllEvents(file);
+        }
+        finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static List<RecordedEvent> filter(List<RecordedEvent> events, String name) {
+        return events.stream()
+                .filter(event -> event.getEventType().getName().equals(name))
+                .sorted((a, b) -> a.getStartTime().compareTo(b.getStartTime()))
+                .collect(Collectors.toList());
+    }
+
+    private static RecordedEvent single(List<RecordedEvent> events, String name) {
+        List<RecordedEvent> result = filter(events, name);
+        assertEquals(1, result.size());
+        return result.get(0);
+    }
+
+}
@@ -0,0 +1,154 @@
+package com.rey.jsonbatch.json;
+
+import com.jayway.jsonpath.Configuration;
+import com.jayway.jsonpath.DocumentContext;
+import com.jayway.jsonpath.InvalidJsonException;
+import com.jayway.jsonpath.JsonPath;
+import com.jayway.jsonpath.spi.json.JacksonJsonProvider;
+import com.rey.jsonbatch.JsonBuilder;
+import com.rey.jsonbatch.function.Functions;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.rey.jsonbatch.TestUtils.assertArray;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@SuppressWarnings("unchecked")
+public class CompactJsonProviderTest {
+
+    private static final String DATA = "{\"id\": 7, \"name\": \"Zo\\u00eb \\\"q\\\"\", \"price\": 2.5, \"active\": true, \"tag\": null,"
+            + " \"big\": 123456789012345678901234567890, \"long\": 9876543210,"
+            + " \"items\": [{\"id\": 1, \"qty\": 3}, {\"id\": 2, \"qty\": 0}, {\"id\": 3, \"qty\": 5}], \"empty\": {}, \"none\": []}";
+
+    private CompactJsonProvider jsonProvider = new CompactJsonProvider();
+
+    @Test
+    public void parse__values() {
+        Map<String, Object> object = (Map<String, Object>) jsonProvider.parse(DATA);
+        assertTrue(object instanceof JsonObject);
+        assertEquals(7, object.get("id"));
+        assertEquals("Zoë \"q\"", object.get("name"));
+        assertEquals(2.5, object.get("price"));
+        assertEquals(true, object.get("active"));
+        assertNull(object.get("tag"));
+        assertTrue(object.containsKey("tag"));
+        assertEquals(new BigInteger("123456789012345678901234567890"), object.get("big"));
+        assertEquals(9876543210L, object.get("long"));
+        assertEquals(Collections.emptyMap(), object.get("empty"));
+        assertEquals(Collections.emptyList(), object.get("none"));
+        assertArray(Arrays.asList(object.keySet().toArray()), "id", "name", "price", "active", "tag", "big", "long", "items", "empty", "none");
+    }
+
+    @Test
+    public void parse__sameAsJackson() {
+        Object expected = new JacksonJsonProvider().parse(DATA);
+        assertEquals(expected, jsonProvider.parse(DATA));
+        assertEquals(expected, jsonProvider.parse(new ByteArrayInputStream(DATA.getBytes(StandardCharsets.UTF_8)), "UTF-8"));
+    }
+
+    @Test
+    public void parse__internKeys() {
+        Map<String, Object> first = (Map<String, Object>) jsonProvider.parse("{\"status\": 1}");
+        Map<String, Object> second = (Map<String, Object>) jsonProvider.parse("{\"status\": 2}");
+        assertSame(first.keySet().iterator().next(), second.keySet().iterator().next());
+        assertEquals(1, jsonProvider.getPooledKeyCount());
+    }
+
+    @Test
+    public void parse__largeObject() {
+        StringBuilder builder = new StringBuilder("{");
+        for(int i = 0; i < 50; i++)
+            builder.append("\"key").append(i).append("\": ").append(i).append(", ");
+        builder.append("\"key7\": \"dup\"}");
+        Map<String, Object> object = (Map<String, Object>) jsonProvider.parse(builder.toString());
+        assertEquals(50, object.size());
+        assertEquals(42, object.get("key42"));
+        assertEquals("dup", object.get("key7"));
+        assertFalse(object.containsKey("key50"));
+    }
+
+    @Test(expected = InvalidJsonException.class)
+    public void parse__invalid() {
+        jsonProvider.parse("{\"id\": 1,}");
+    }
+
+    @Test(expected = InvalidJsonException.class)
+    public void parse__truncated() {
+        jsonProvider.parse("{\"id\": [1, 2");
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void parse__immutable() {
+        ((Map<String, Object>) jsonProvider.parse(DATA)).put("id", 8);
+    }
+
+    @Test
+    public void jsonPath() {
+        DocumentContext context = JsonPath.using(configuration()).parse(DATA);
+        assertEquals(7, (int) context.read("$.id"));
+        assertArray(context.read("$.items[*].id"), 1, 2, 3);
+        assertArray(context.read("$.items[?(@.qty > 0)].id"), 1, 3);
+        assertArray(context.read("$..qty"), 3, 0, 5);
+        assertEquals(3, (int) context.read("$.items.length()"));
+    }
+
+    @Test
+    public void toJson() {
+        Object node = jsonProvider.parse(DATA);
+        assertEquals(node, jsonProvider.parse(jsonProvider.toJson(node)));
+        assertEquals("{\"price\":2.5,\"tags\":[\"a\",1]}", jsonProvider.toJson(jsonProvider.parse("{\"price\": 2.5, \"tags\": [\"a\", 1]}")));
+    }
+
+    @Test
+    public void compact() {
+        Map<String, Object> value = new LinkedHashMap<>();
+        value.put("id", 1L);
+        value.put("ratio", 0.5F);
+        value.put("rate", 0.1F);
+        value.put("total", new BigDecimal("10.25"));
+        value.put("ids", Arrays.asList(1, 2));
+        Object node = jsonProvider.compact(value);
+        assertTrue(node instanceof JsonObject);
+        assertTrue(((Map) node).get("ids") instanceof JsonArray);
+        assertEquals(1, ((Map) node).get("id"));
+        assertEquals(0.5, ((Map) node).get("ratio"));
+        assertEquals(0.1, ((Map) node).get("rate"));
+        assertEquals(new BigDecimal("10.25"), ((Map) node).get("total"));
+        assertSame(node, jsonProvider.compact(node));
+    }
+
+    @Test
+    public void jsonBuilder() {
+        JsonBuilder jsonBuilder = new JsonBuilder(Functions.basic());
+        DocumentContext context = JsonPath.using(configuration()).parse(DATA);
+        Map<String, Object> schema = new LinkedHashMap<>();
+        schema.put("name", "$.name");
+        schema.put("ids", "int[] $.items[*].id");
+        schema.put("total", "int __sum(\"$.items[*].qty\")");
+
+        Object result = jsonBuilder.build(schema, context);
+        assertTrue(result instanceof JsonObject);
+        List<Object> ids = (List<Object>) ((Map) result).get("ids");
+        assertTrue(ids instanceof JsonArray);
+        assertArray(ids, BigInteger.valueOf(1), BigInteger.valueOf(2), BigInteger.valueOf(3));
+        assertEquals(BigInteger.valueOf(8), ((Map) result).get("total"));
+    }
+
+    private Configuration configuration() {
+        return Configuration.builder().jsonProvider(jsonProvider).build();
+    }
+
+}
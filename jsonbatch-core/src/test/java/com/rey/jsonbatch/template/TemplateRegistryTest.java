@@ -0,0 +1,161 @@
+package com.rey.jsonbatch.template;
+
+import com.jayway.jsonpath.Configuration;
+import com.rey.jsonbatch.model.BatchTemplate;
+import com.rey.jsonbatch.model.RequestTemplate;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TemplateRegistryTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private TemplateRegistry registry;
+
+    @Before
+    public void setUp() {
+        registry = new TemplateRegistry(Configuration.builder().build());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        registry.close();
+    }
+
+    @Test
+    public void loadClasspath() throws Exception {
+        registry.loadClasspath("templates");
+
+        assertEquals(2, registry.getIds().size());
+        BatchTemplate template = registry.get("orders/get");
+        assertEquals("orders/get", template.getId());
+        RequestTemplate requestTemplate = template.getRequests().get(0);
+        assertEquals("GET", requestTemplate.getHttpMethod());
+        assertEquals("@{$.original.body.host}@/orders/@{$.original.body.id}@", requestTemplate.getUrl());
+        assertEquals(Long.valueOf(500), requestTemplate.getTimeout());
+        assertEquals("$.responses[0].status", template.getResponses().get(0).getStatus());
+        assertTrue(template.getDispatchOptions().getFailBackAsString());
+        assertFalse(template.getDispatchOptions().getIgnoreParsingError());
+        assertEquals(Long.valueOf(2000), template.getDispatchOptions().getBatchTimeout());
+
+        BatchTemplate ping = registry.get("ping");
+        assertEquals("health-check", ping.getId());
+        assertNull(ping.getDispatchOptions());
+    }
+
+    @Test
+    public void register__sameContent() throws Exception {
+        BatchTemplate template = registry.register("test", template("https://localhost/a"));
+        String hash = registry.getContentHash("test");
+
+        assertSame(template, registry.register("test", template("https://localhost/a")));
+        assertEquals(hash, registry.getContentHash("test"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void register__missingUrl() throws Exception {
+        registry.register("test", "{\"requests\": [{\"http_method\": \"GET\"}]}");
+    }
+
+    @Test(expected = IOException.class)
+    public void register__invalidJson() throws Exception {
+        registry.register("test", "{\"requests\": [");
+    }
+
+    @Test
+    public void reload() throws Exception {
+        Path file = write("a.json", template("https://localhost/a"));
+        write("b.json", template("https://localhost/b"));
+        registry.loadDirectory(folder.getRoot().toPath());
+        BatchTemplate inFlight = registry.get("a");
+        BatchTemplate unchanged = registry.get("b");
+
+        write("a.json", template("https://localhost/a2"));
+        registry.reload();
+
+        assertNotSame(inFlight, registry.get("a"));
+        assertEquals("https://localhost/a2", registry.get("a").getRequests().get(0).getUrl());
+        assertEquals("https://localhost/a", inFlight.getRequests().get(0).getUrl());
+        assertSame(unchanged, registry.get("b"));
+
+        Files.delete(file);
+        registry.reload();
+        assertNull(registry.get("a"));
+        assertSame(unchanged, registry.get("b"));
+    }
+
+    @Test
+    public void reload__invalidContent() throws Exception {
+        write("a.json", template("https://localhost/a"));
+        registry.loadDirectory(folder.getRoot().toPath());
+        BatchTemplate template = registry.get("a");
+
+        write("a.json", "{\"requests\": [");
+        registry.reload();
+
+        assertSame(template, registry.get("a"));
+    }
+
+    @Test
+    public void watch() throws Exception {
+        folder.newFolder("nested");
+        write("nested/a.json", template("https://localhost/a"));
+        registry.loadDirectory(folder.getRoot().toPath());
+        registry.watch();
+
+        write("nested/a.json", template("https://localhost/a2"));
+        write("b.json", template("https://localhost/b"));
+
+        long deadline = System.currentTimeMillis() + 20000;
+        while(System.currentTimeMillis() < deadline && (registry.get("b") == null
+                || !"https://localhost/a2".equals(registry.get("nested/a").getRequests().get(0).getUrl())))
+            Thread.sleep(50);
+        assertEquals("https://localhost/a2", registry.get("nested/a").getRequests().get(0).getUrl());
+        assertEquals("https://localhost/b", registry.get("b").getRequests().get(0).getUrl());
+
+        // a renamed directory only sends events for the directory itself
+        Files.move(folder.getRoot().toPath().resolve("nested"), folder.getRoot().toPath().resolve("moved"));
+        deadline = System.currentTimeMillis() + 20000;
+        while(System.currentTimeMillis() < deadline && (registry.get("nested/a") != null || registry.get("moved/a") == null))
+            Thread.sleep(50);
+        assertNull(registry.get("nested/a"));
+        assertEquals("https://localhost/a2", registry.get("moved/a").getRequests().get(0).getUrl());
+    }
+
+    @Test
+    public void customParser() throws Exception {
+        TemplateRegistry customRegistry = new TemplateRegistry(content -> {
+            BatchTemplate template = new BatchTemplate();
+            template.setId(content);
+            return template;
+        });
+        assertEquals("content", customRegistry.register("test", "content").getId());
+        assertNull(customRegistry.get("test").getDispatchOptions());
+    }
+
+    private Path write(String name, String content) throws IOException {
+        return Files.write(folder.getRoot().toPath().resolve(name), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String template(String url) {
+        return "{\"requests\": [{\"http_method\": \"GET\", \"url\": \"" + url + "\", \"headers\": {\"accept\": \"application/json\"}}]}";
+    }
+
+}
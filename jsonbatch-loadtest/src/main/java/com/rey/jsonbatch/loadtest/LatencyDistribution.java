@@ -0,0 +1,56 @@
+package com.rey.jsonbatch.loadtest;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Delay of the stub backend, parsed from specs like "fixed:5", "uniform:1:20", "exponential:5" or "lognormal:5:0.5"
+// (milliseconds, lognormal takes the median and the sigma of the underlying normal distribution)
+public interface LatencyDistribution {
+
+    long nextNanos(Random random);
+
+    static LatencyDistribution parse(String spec) {
+        String[] parts = spec.trim().split(":");
+        switch (parts[0]) {
+            case "none":
+                checkArguments(spec, parts, 0);
+                return random -> 0;
+            case "fixed": {
+                checkArguments(spec, parts, 1);
+                long nanos = toNanos(parts[1]);
+                return random -> nanos;
+            }
+            case "uniform": {
+                checkArguments(spec, parts, 2);
+                long min = toNanos(parts[1]);
+                long max = toNanos(parts[2]);
+                if (max < min)
+                    throw new IllegalArgumentException("Uniform latency needs min <= max: " + spec);
+                return random -> min + (long) (random.nextDouble() * (max - min));
+            }
+            case "exponential": {
+                checkArguments(spec, parts, 1);
+                long mean = toNanos(parts[1]);
+                return random -> (long) (-Math.log(1 - random.nextDouble()) * mean);
+            }
+            case "lognormal": {
+                checkArguments(spec, parts, 2);
+                long median = toNanos(parts[1]);
+                double sigma = Double.parseDouble(parts[2]);
+                return random -> (long) (median * Math.exp(sigma * random.nextGaussian()));
+            }
+            default:
+                throw new IllegalArgumentException("Unsupported latency distribution: " + spec);
+        }
+    }
+
+    static void checkArguments(String spec, String[] parts, int count) {
+        if (parts.length != count + 1)
+            throw new IllegalArgumentException("Expected " + count + " arguments for latency distribution: " + spec);
+    }
+
+    static long toNanos(String millis) {
+        return (long) (Double.parseDouble(millis) * TimeUnit.MILLISECONDS.toNanos(1));
+    }
+
+}
@@ -0,0 +1,266 @@
+package com.rey.jsonbatch.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jayway.jsonpath.Configuration;
+import com.jayway.jsonpath.spi.json.JacksonJsonProvider;
+import com.jayway.jsonpath.spi.mapper.JacksonMappingProvider;
+import com.rey.jsonbatch.BatchEngine;
+import com.rey.jsonbatch.JsonBuilder;
+import com.rey.jsonbatch.TemplateCompiler;
+import com.rey.jsonbatch.apachehttpclient.ApacheHttpClientRequestDispatcher;
+import com.rey.jsonbatch.function.Functions;
+import com.rey.jsonbatch.model.BatchTemplate;
+import com.rey.jsonbatch.model.Request;
+import com.rey.jsonbatch.server.JsonBatchServer;
+import com.rey.jsonbatch.server.ServerConfig;
+import com.rey.jsonbatch.template.JsonTemplateParser;
+import com.rey.jsonbatch.template.TemplateRegistry;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.util.EntityUtils;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Drives concurrent batches through BatchEngine and ApacheHttpClientRequestDispatcher against an in-process StubBackend,
+// either by calling the engine or by posting them to a JsonBatchServer in front of it.
+// Every thread runs one batch after another (closed loop), so throughput is bounded by latency x threads.
+public class LoadTest implements AutoCloseable {
+
+    private static final long POOL_SAMPLE_MILLIS = 10;
+
+    private static final String TEMPLATE_ID = "chain";
+
+    private static final byte[] ORIGINAL_BODY = "{\"id\": 0}".getBytes(StandardCharsets.UTF_8);
+
+    private final LoadTestConfig config;
+    private final StubBackend backend;
+    private final ApacheHttpClientRequestDispatcher requestDispatcher;
+    private final BatchEngine batchEngine;
+    private final BatchTemplate template;
+    private final TemplateRegistry templateRegistry;
+    private final JsonBatchServer server;
+    private final CloseableHttpClient serverClient;
+
+    public LoadTest(LoadTestConfig config) throws IOException {
+        this.config = config;
+        backend = new StubBackend(config.getServerThreads(), LatencyDistribution.parse(config.getLatency()),
+                config.getPayloadItems(), config.getErrorRate());
+        requestDispatcher = ApacheHttpClientRequestDispatcher.builder()
+                .maxTotal(config.getMaxConnections())
+                .defaultMaxPerRoute(config.getMaxConnections())
+                .build();
+        ObjectMapper objectMapper = new ObjectMapper();
+        Configuration conf = Configuration.builder()
+                .jsonProvider(new JacksonJsonProvider(objectMapper))
+                .mappingProvider(new JacksonMappingProvider(objectMapper))
+                .build();
+        JsonBuilder jsonBuilder = new JsonBuilder(Functions.basic());
+        batchEngine = BatchEngine.builder(conf, jsonBuilder, requestDispatcher)
+                .templateCompiler(new TemplateCompiler(jsonBuilder))
+                .build();
+        template = new JsonTemplateParser(conf.jsonProvider()).parse(template(backend.getBaseUrl(), config.getChainLength())).freeze();
+        if (!LoadTestConfig.MODE_SERVER.equals(config.getMode())) {
+            templateRegistry = null;
+            server = null;
+            serverClient = null;
+            return;
+        }
+        templateRegistry = new TemplateRegistry(conf);
+        templateRegistry.register(TEMPLATE_ID, template(backend.getBaseUrl(), config.getChainLength()));
+        ServerConfig serverConfig = new ServerConfig();
+        serverConfig.setHost("localhost");
+        serverConfig.setPort(0);
+        serverConfig.setDrainSeconds(0);
+        server = new JsonBatchServer(serverConfig, conf, batchEngine, templateRegistry);
+        server.start();
+        serverClient = HttpClients.custom()
+                .setMaxConnTotal(config.getThreads())
+                .setMaxConnPerRoute(config.getThreads())
+                .build();
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestConfig config = LoadTestConfig.parse(args);
+        System.out.println("Load test with " + config);
+        try (LoadTest loadTest = new LoadTest(config)) {
+            if (config.getWarmupBatches() > 0)
+                loadTest.run(config.getWarmupBatches());
+            loadTest.run(config.getBatches()).print(System.out);
+        }
+    }
+
+    public LoadTestReport run(int batches) throws Exception {
+        ExecutorService workers = Executors.newFixedThreadPool(config.getThreads());
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+        AtomicInteger maxLeased = new AtomicInteger();
+        AtomicInteger maxPending = new AtomicInteger();
+        sampler.scheduleAtFixedRate(() -> {
+            PoolStats stats = requestDispatcher.getTotalPoolStats();
+            maxLeased.accumulateAndGet(stats.getLeased(), Math::max);
+            maxPending.accumulateAndGet(stats.getPending(), Math::max);
+        }, 0, POOL_SAMPLE_MILLIS, TimeUnit.MILLISECONDS);
+
+        AtomicInteger remaining = new AtomicInteger(batches);
+        Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+        LongAdder failures = new LongAdder();
+        LongAdder allocatedBytes = new LongAdder();
+        LatencyHistogram latency = new LatencyHistogram();
+        long requestCount = backend.getRequestCount();
+        long gcCount = gcCount();
+        long gcTime = gcTime();
+        long start = System.nanoTime();
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < config.getThreads(); i++) {
+                futures.add(workers.submit(() -> {
+                    long allocated = allocatedBytes();
+                    while (remaining.getAndDecrement() > 0) {
+                        long batchStart = System.nanoTime();
+                        try {
+                            statuses.computeIfAbsent(execute(), key -> new LongAdder()).increment();
+                        }
+                        catch (Exception ex) {
+                            failures.increment();
+                        }
+                        latency.record(System.nanoTime() - batchStart);
+                    }
+                    allocatedBytes.add(allocatedBytes() - allocated);
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures)
+                future.get();
+        }
+        finally {
+            workers.shutdownNow();
+            sampler.shutdownNow();
+        }
+
+        LoadTestReport report = new LoadTestReport();
+        report.setBatches(batches);
+        report.setDurationNanos(System.nanoTime() - start);
+        report.setRequests(backend.getRequestCount() - requestCount);
+        statuses.forEach((status, count) -> report.getStatuses().put(status, count.sum()));
+        report.setFailures(failures.sum());
+        report.setLatency(latency);
+        report.setPayloadSize(backend.getPayloadSize());
+        report.setBackendConnections(backend.getConnectionCount());
+        report.setMaxActiveRequests(backend.getMaxActiveRequests());
+        report.setMaxLeasedConnections(maxLeased.get());
+        report.setMaxPendingConnections(maxPending.get());
+        report.setGcCount(gcCount() - gcCount);
+        report.setGcTimeMillis(gcTime() - gcTime);
+        // batches run on server threads in server mode, the workers only send them
+        report.setAllocatedBytes(isAllocationSupported() && server == null ? allocatedBytes.sum() : -1);
+        return report;
+    }
+
+    private int execute() throws Exception {
+        if (server == null)
+            return batchEngine.execute(originalRequest(), template).getStatus();
+        HttpPost post = new HttpPost("http://localhost:" + server.getPort() + "/batch/" + TEMPLATE_ID);
+        post.setEntity(new ByteArrayEntity(ORIGINAL_BODY, ContentType.APPLICATION_JSON));
+        try (CloseableHttpResponse response = serverClient.execute(post)) {
+            EntityUtils.consume(response.getEntity());
+            return response.getStatusLine().getStatusCode();
+        }
+    }
+
+    public StubBackend getBackend() {
+        return backend;
+    }
+
+    public ApacheHttpClientRequestDispatcher getRequestDispatcher() {
+        return requestDispatcher;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (server != null) {
+            serverClient.close();
+            server.close();
+            templateRegistry.close();
+        }
+        requestDispatcher.close();
+        backend.close();
+    }
+
+    // a chain of GETs, each one uses the id of the previous response and a server error ends the batch
+    static String template(String baseUrl, int chainLength) {
+        StringBuilder builder = new StringBuilder("{\"requests\": [");
+        for (int i = 0; i < chainLength; i++) {
+            String id = i == 0 ? "$.original.body.id" : "$.responses[" + (i - 1) + "].body.id";
+            builder.append("{\"http_method\": \"GET\", \"url\": \"str ").append(baseUrl).append("/items/@{").append(id).append("}@\", ")
+                    .append("\"headers\": {\"Accept\": \"str application/json\"}, ")
+                    .append("\"responses\": [{\"predicate\": \"__cmp(\\\"@{$.responses[").append(i).append("].status}@ >= 500\\\")\", ")
+                    .append("\"status\": \"$.responses[").append(i).append("].status\", ")
+                    .append("\"body\": \"$.responses[").append(i).append("].body\"}]");
+            if (i < chainLength - 1)
+                builder.append(", \"requests\": [");
+        }
+        for (int i = 0; i < chainLength; i++)
+            builder.append(i < chainLength - 1 ? "}]" : "}");
+        return builder.append("], \"responses\": [{")
+                .append("\"status\": \"$.responses[").append(chainLength - 1).append("].status\", ")
+                .append("\"body\": {\"ids\": \"int[] $.responses[*].body.id\", ")
+                .append("\"items\": \"int $.responses[").append(chainLength - 1).append("].body.total\"}}]}")
+                .toString();
+    }
+
+    private static Request originalRequest() {
+        Request request = new Request();
+        request.setHttpMethod("POST");
+        request.setUrl("http://localhost/batch");
+        request.setHeaders(Collections.emptyMap());
+        request.setBody(Collections.singletonMap("id", 0));
+        return request;
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans())
+            count += Math.max(0, bean.getCollectionCount());
+        return count;
+    }
+
+    private static long gcTime() {
+        long time = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans())
+            time += Math.max(0, bean.getCollectionTime());
+        return time;
+    }
+
+    private static boolean isAllocationSupported() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        return bean instanceof com.sun.management.ThreadMXBean && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported();
+    }
+
+    // bytes allocated by the current thread so far, the stub backend threads aren't counted
+    private static long allocatedBytes() {
+        if (!isAllocationSupported())
+            return 0;
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+}
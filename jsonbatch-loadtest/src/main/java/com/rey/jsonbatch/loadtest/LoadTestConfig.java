@@ -0,0 +1,168 @@
+package com.rey.jsonbatch.loadtest;
+
+public class LoadTestConfig {
+
+    public static final String MODE_ENGINE = "engine";
+    public static final String MODE_SERVER = "server";
+
+    // engine calls BatchEngine directly, server posts batches to a JsonBatchServer over HTTP
+    private String mode = MODE_ENGINE;
+
+    // concurrent batches, each thread runs its batches one after another
+    private int threads = 32;
+
+    private int batches = 10000;
+
+    private int warmupBatches = 1000;
+
+    // requests per batch, each one uses the id of the previous response
+    private int chainLength = 3;
+
+    private int payloadItems = 10;
+
+    private String latency = "lognormal:5:0.5";
+
+    private double errorRate = 0;
+
+    private int maxConnections = 64;
+
+    private int serverThreads = 256;
+
+    // --threads=64 --latency=uniform:1:20 ...
+    public static LoadTestConfig parse(String[] args) {
+        LoadTestConfig config = new LoadTestConfig();
+        for (String arg : args) {
+            int index = arg.indexOf('=');
+            if (!arg.startsWith("--") || index < 0)
+                throw new IllegalArgumentException("Expected --key=value argument but got: " + arg);
+            String key = arg.substring(2, index);
+            String value = arg.substring(index + 1);
+            switch (key) {
+                case "mode":
+                    config.setMode(value);
+                    break;
+                case "threads":
+                    config.setThreads(Integer.parseInt(value));
+                    break;
+                case "batches":
+                    config.setBatches(Integer.parseInt(value));
+                    break;
+                case "warmup-batches":
+                    config.setWarmupBatches(Integer.parseInt(value));
+                    break;
+                case "chain-length":
+                    config.setChainLength(Integer.parseInt(value));
+                    break;
+                case "payload-items":
+                    config.setPayloadItems(Integer.parseInt(value));
+                    break;
+                case "latency":
+                    config.setLatency(value);
+                    break;
+                case "error-rate":
+                    config.setErrorRate(Double.parseDouble(value));
+                    break;
+                case "max-connections":
+                    config.setMaxConnections(Integer.parseInt(value));
+                    break;
+                case "server-threads":
+                    config.setServerThreads(Integer.parseInt(value));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown argument: " + arg);
+            }
+        }
+        LatencyDistribution.parse(config.getLatency());
+        return config;
+    }
+
+    public String getMode() {
+        return mode;
+    }
+
+    public void setMode(String mode) {
+        if (!MODE_ENGINE.equals(mode) && !MODE_SERVER.equals(mode))
+            throw new IllegalArgumentException("Unknown mode: " + mode);
+        this.mode = mode;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public int getBatches() {
+        return batches;
+    }
+
+    public void setBatches(int batches) {
+        this.batches = batches;
+    }
+
+    public int getWarmupBatches() {
+        return warmupBatches;
+    }
+
+    public void setWarmupBatches(int warmupBatches) {
+        this.warmupBatches = warmupBatches;
+    }
+
+    public int getChainLength() {
+        return chainLength;
+    }
+
+    public void setChainLength(int chainLength) {
+        this.chainLength = chainLength;
+    }
+
+    public int getPayloadItems() {
+        return payloadItems;
+    }
+
+    public void setPayloadItems(int payloadItems) {
+        this.payloadItems = payloadItems;
+    }
+
+    public String getLatency() {
+        return latency;
+    }
+
+    public void setLatency(String latency) {
+        this.latency = latency;
+    }
+
+    public double getErrorRate() {
+        return errorRate;
+    }
+
+    public void setErrorRate(double errorRate) {
+        this.errorRate = errorRate;
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    public int getServerThreads() {
+        return serverThreads;
+    }
+
+    public void setServerThreads(int serverThreads) {
+        this.serverThreads = serverThreads;
+    }
+
+    @Override
+    public String toString() {
+        return "mode=" + mode + ", threads=" + threads + ", batches=" + batches + ", warmup-batches=" + warmupBatches
+                + ", chain-length=" + chainLength + ", payload-items=" + payloadItems + ", latency=" + latency
+                + ", error-rate=" + errorRate + ", max-connections=" + maxConnections + ", server-threads=" + serverThreads;
+    }
+
+}
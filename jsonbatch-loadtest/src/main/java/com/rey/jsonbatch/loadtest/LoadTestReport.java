@@ -0,0 +1,195 @@
+package com.rey.jsonbatch.loadtest;
+
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.TreeMap;
+
+public class LoadTestReport {
+
+    private int batches;
+
+    private long durationNanos;
+
+    // sub-requests received by the stub backend
+    private long requests;
+
+    private Map<Integer, Long> statuses = new TreeMap<>();
+
+    // batches that threw instead of returning a response
+    private long failures;
+
+    private LatencyHistogram latency;
+
+    private int payloadSize;
+
+    private int backendConnections;
+
+    private int maxActiveRequests;
+
+    private int maxLeasedConnections;
+
+    private int maxPendingConnections;
+
+    private long gcCount;
+
+    private long gcTimeMillis;
+
+    // -1 when the JVM can't count allocations per thread
+    private long allocatedBytes;
+
+    public double getBatchesPerSecond() {
+        return batches * 1e9 / durationNanos;
+    }
+
+    public double getRequestsPerSecond() {
+        return requests * 1e9 / durationNanos;
+    }
+
+    public void print(PrintStream out) {
+        out.printf("Batches: %d in %.2f s, %.1f batches/s, %.1f requests/s%n",
+                batches, durationNanos / 1e9, getBatchesPerSecond(), getRequestsPerSecond());
+        StringBuilder builder = new StringBuilder();
+        statuses.forEach((status, count) -> builder.append(' ').append(status).append('=').append(count));
+        out.printf("Statuses:%s, failures: %d%n", builder, failures);
+        out.printf("Latency (ms): mean %.2f, p50 %.2f, p90 %.2f, p99 %.2f, p99.9 %.2f, max %.2f%n",
+                latency.getMean() / 1e6, millis(latency.getPercentile(50)), millis(latency.getPercentile(90)),
+                millis(latency.getPercentile(99)), millis(latency.getPercentile(99.9)), millis(latency.getMax()));
+        long total = latency.getCount();
+        for (long[] range : latency.getRanges()) {
+            int width = (int) Math.round(40.0 * range[2] / total);
+            out.printf("  %9.2f - %9.2f ms | %-40s %d%n", millis(range[0]), millis(range[1]), repeat('#', width), range[2]);
+        }
+        out.printf("Connections: %d opened to the backend, %d requests in flight at most; pool leased %d, pending %d at most%n",
+                backendConnections, maxActiveRequests, maxLeasedConnections, maxPendingConnections);
+        out.printf("Payload: %d bytes per response%n", payloadSize);
+        if (allocatedBytes < 0)
+            out.printf("GC: %d collections, %d ms%n", gcCount, gcTimeMillis);
+        else
+            out.printf("GC: %d collections, %d ms; %.1f MB allocated by batch threads, %d bytes per batch%n",
+                    gcCount, gcTimeMillis, allocatedBytes / 1e6, allocatedBytes / Math.max(1, batches));
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    private static String repeat(char c, int count) {
+        StringBuilder builder = new StringBuilder(count);
+        for (int i = 0; i < count; i++)
+            builder.append(c);
+        return builder.toString();
+    }
+
+    public int getBatches() {
+        return batches;
+    }
+
+    public void setBatches(int batches) {
+        this.batches = batches;
+    }
+
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    public void setDurationNanos(long durationNanos) {
+        this.durationNanos = durationNanos;
+    }
+
+    public long getRequests() {
+        return requests;
+    }
+
+    public void setRequests(long requests) {
+        this.requests = requests;
+    }
+
+    public Map<Integer, Long> getStatuses() {
+        return statuses;
+    }
+
+    public void setStatuses(Map<Integer, Long> statuses) {
+        this.statuses = statuses;
+    }
+
+    public long getFailures() {
+        return failures;
+    }
+
+    public void setFailures(long failures) {
+        this.failures = failures;
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    public void setLatency(LatencyHistogram latency) {
+        this.latency = latency;
+    }
+
+    public int getPayloadSize() {
+        return payloadSize;
+    }
+
+    public void setPayloadSize(int payloadSize) {
+        this.payloadSize = payloadSize;
+    }
+
+    public int getBackendConnections() {
+        return backendConnections;
+    }
+
+    public void setBackendConnections(int backendConnections) {
+        this.backendConnections = backendConnections;
+    }
+
+    public int getMaxActiveRequests() {
+        return maxActiveRequests;
+    }
+
+    public void setMaxActiveRequests(int maxActiveRequests) {
+        this.maxActiveRequests = maxActiveRequests;
+    }
+
+    public int getMaxLeasedConnections() {
+        return maxLeasedConnections;
+    }
+
+    public void setMaxLeasedConnections(int maxLeasedConnections) {
+        this.maxLeasedConnections = maxLeasedConnections;
+    }
+
+    public int getMaxPendingConnections() {
+        return maxPendingConnections;
+    }
+
+    public void setMaxPendingConnections(int maxPendingConnections) {
+        this.maxPendingConnections = maxPendingConnections;
+    }
+
+    public long getGcCount() {
+        return gcCount;
+    }
+
+    public void setGcCount(long gcCount) {
+        this.gcCount = gcCount;
+    }
+
+    public long getGcTimeMillis() {
+        return gcTimeMillis;
+    }
+
+    public void setGcTimeMillis(long gcTimeMillis) {
+        this.gcTimeMillis = gcTimeMillis;
+    }
+
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    public void setAllocatedBytes(long allocatedBytes) {
+        this.allocatedBytes = allocatedBytes;
+    }
+
+}
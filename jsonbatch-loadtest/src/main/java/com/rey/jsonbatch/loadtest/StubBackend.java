@@ -0,0 +1,143 @@
+package com.rey.jsonbatch.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// In-process backend for load tests. GET /items/{id} answers {"id": id + 1, ...} after a delay drawn from the latency
+// distribution, with a page of items as payload, or a 500 error at the configured rate.
+public class StubBackend implements AutoCloseable {
+
+    private static final byte[] ERROR_BODY = "{\"error\": \"stub_error\"}".getBytes(StandardCharsets.UTF_8);
+
+    static {
+        // headers and body are separate writes, with Nagle the body waits for the client's delayed ACK (~40 ms)
+        if (System.getProperty("sun.net.httpserver.nodelay") == null)
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final LatencyDistribution latency;
+    private final double errorRate;
+    private final byte[] payload;
+
+    private final LongAdder requestCount = new LongAdder();
+    private final LongAdder errorCount = new LongAdder();
+    private final Set<InetSocketAddress> connections = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger activeRequests = new AtomicInteger();
+    private final AtomicInteger maxActiveRequests = new AtomicInteger();
+
+    public StubBackend(int threads, LatencyDistribution latency, int payloadItems, double errorRate) throws IOException {
+        this.latency = latency;
+        this.errorRate = errorRate;
+        this.payload = payload(payloadItems).getBytes(StandardCharsets.UTF_8);
+        executor = Executors.newFixedThreadPool(threads);
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 1024);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requestCount.increment();
+        connections.add(exchange.getRemoteAddress());
+        try {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            delay(latency.nextNanos(random));
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            if (errorRate > 0 && random.nextDouble() < errorRate) {
+                errorCount.increment();
+                exchange.sendResponseHeaders(500, ERROR_BODY.length);
+                try (OutputStream outputStream = exchange.getResponseBody()) {
+                    outputStream.write(ERROR_BODY);
+                }
+                return;
+            }
+            String path = exchange.getRequestURI().getPath();
+            String id = path.substring(path.lastIndexOf('/') + 1);
+            byte[] head = ("{\"id\": " + (id.matches("\\d{1,9}") ? Integer.parseInt(id) + 1 : 1) + ", ").getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, head.length + payload.length);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(head);
+                outputStream.write(payload);
+            }
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        finally {
+            exchange.close();
+        }
+    }
+
+    // counted only while delayed, the client may read the response and send its next request before the exchange is closed
+    private void delay(long nanos) throws InterruptedException {
+        maxActiveRequests.accumulateAndGet(activeRequests.incrementAndGet(), Math::max);
+        try {
+            if (nanos > 0)
+                TimeUnit.NANOSECONDS.sleep(nanos);
+        }
+        finally {
+            activeRequests.decrementAndGet();
+        }
+    }
+
+    // the rest of the JSON object after the id: paging info and a page of small records
+    private static String payload(int items) {
+        StringBuilder builder = new StringBuilder("\"page\": 1, \"total\": ").append(items).append(", \"items\": [");
+        for (int i = 0; i < items; i++) {
+            if (i > 0)
+                builder.append(", ");
+            builder.append("{\"id\": ").append(1000 + i)
+                    .append(", \"name\": \"item-").append(i).append('"')
+                    .append(", \"price\": ").append(i % 50).append(".25")
+                    .append(", \"tags\": [\"a\", \"b\"]}");
+        }
+        return builder.append("]}").toString();
+    }
+
+    public String getBaseUrl() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    public int getPayloadSize() {
+        return payload.length;
+    }
+
+    public long getRequestCount() {
+        return requestCount.sum();
+    }
+
+    public long getErrorCount() {
+        return errorCount.sum();
+    }
+
+    // distinct client addresses, i.e. connections opened by the dispatcher
+    public int getConnectionCount() {
+        return connections.size();
+    }
+
+    public int getMaxActiveRequests() {
+        return maxActiveRequests.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+}
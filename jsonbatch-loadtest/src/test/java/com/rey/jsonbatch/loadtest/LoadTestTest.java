@@ -0,0 +1,88 @@
+package com.rey.jsonbatch.loadtest;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LoadTestTest {
+
+    @Test
+    public void run__countsEveryBatch() throws Exception {
+        LoadTestConfig config = LoadTestConfig.parse(new String[]{"--threads=4", "--batches=200", "--latency=fixed:1",
+                "--error-rate=0.1", "--max-connections=2", "--server-threads=8"});
+        try (LoadTest loadTest = new LoadTest(config)) {
+            LoadTestReport report = loadTest.run(config.getBatches());
+
+            long statuses = report.getStatuses().values().stream().mapToLong(Long::longValue).sum();
+            assertEquals(0, report.getFailures());
+            assertEquals(200, statuses);
+            assertTrue(report.getStatuses().get(200) > 0 && report.getStatuses().get(500) > 0);
+            assertEquals(200, report.getLatency().getCount());
+            assertTrue(report.getLatency().getPercentile(50) >= 1_000_000);
+            assertTrue(report.getRequests() >= 200 && report.getRequests() <= 600);
+            assertTrue(report.getBackendConnections() <= 2);
+            assertTrue(report.getMaxActiveRequests() <= 2);
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            report.print(new PrintStream(out, true, "UTF-8"));
+            assertTrue(out.toString("UTF-8").contains("Statuses: 200="));
+        }
+    }
+
+    @Test
+    public void run__throughServer() throws Exception {
+        LoadTestConfig config = LoadTestConfig.parse(new String[]{"--mode=server", "--threads=4", "--batches=100",
+                "--latency=none", "--max-connections=4", "--server-threads=8"});
+        try (LoadTest loadTest = new LoadTest(config)) {
+            LoadTestReport report = loadTest.run(config.getBatches());
+
+            assertEquals(0, report.getFailures());
+            assertEquals(100, (long) report.getStatuses().get(200));
+            assertEquals(300, report.getRequests());
+            assertEquals(-1, report.getAllocatedBytes());
+        }
+    }
+
+    @Test
+    public void histogram__percentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 100_000; value++)
+            histogram.record(value * 1000);
+        assertEquals(100_000_000, histogram.getMax());
+        assertEquals(50_000_500, histogram.getMean(), 1);
+        assertEquals(50_000_000, histogram.getPercentile(50), 50_000_000 / 16);
+        assertEquals(99_000_000, histogram.getPercentile(99), 99_000_000 / 16);
+        assertEquals(100_000_000, histogram.getPercentile(100));
+        long total = histogram.getRanges().stream().mapToLong(range -> range[2]).sum();
+        assertEquals(100_000, total);
+
+        for (long value : new long[]{0, 15, 16, 17, 1000, 123456789, Long.MAX_VALUE}) {
+            int index = LatencyHistogram.indexOf(value);
+            assertTrue(LatencyHistogram.lowerBound(index) <= value && value <= LatencyHistogram.upperBound(index));
+        }
+    }
+
+    @Test
+    public void latency__parse() {
+        Random random = new Random(42);
+        assertEquals(0, LatencyDistribution.parse("none").nextNanos(random));
+        assertEquals(5_000_000, LatencyDistribution.parse("fixed:5").nextNanos(random));
+        for (int i = 0; i < 100; i++) {
+            long value = LatencyDistribution.parse("uniform:1:2").nextNanos(random);
+            assertTrue(value >= 1_000_000 && value <= 2_000_000);
+            assertTrue(LatencyDistribution.parse("exponential:5").nextNanos(random) >= 0);
+            assertTrue(LatencyDistribution.parse("lognormal:5:0.5").nextNanos(random) > 0);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void latency__parseUnknown() {
+        LatencyDistribution.parse("pareto:5");
+    }
+
+}
@@ -0,0 +1,184 @@
+package com.rey.jsonbatch.netty;
+
+import com.jayway.jsonpath.spi.json.JsonProvider;
+import com.rey.jsonbatch.BudgetExceededException;
+import com.rey.jsonbatch.codec.BodyCodec;
+import com.rey.jsonbatch.codec.BodyCodecs;
+import com.rey.jsonbatch.io.CompressionStats;
+import com.rey.jsonbatch.io.ContentEncoding;
+import com.rey.jsonbatch.io.LimitedInputStream;
+import com.rey.jsonbatch.model.DispatchOptions;
+import com.rey.jsonbatch.model.Response;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+final class Exchange {
+
+    private static final Logger logger = LoggerFactory.getLogger(Exchange.class);
+
+    private final CompletableFuture<Response> future;
+    private final JsonProvider jsonProvider;
+    private final DispatchOptions options;
+    private final CompressionStats compressionStats;
+    private final AtomicBoolean done = new AtomicBoolean();
+    private final AtomicReference<Consumer<Boolean>> releaser = new AtomicReference<>();
+    private volatile ScheduledFuture<?> timeoutFuture;
+
+    Exchange(CompletableFuture<Response> future, JsonProvider jsonProvider, DispatchOptions options, CompressionStats compressionStats) {
+        this.future = future;
+        this.jsonProvider = jsonProvider;
+        this.options = options;
+        this.compressionStats = compressionStats;
+    }
+
+    void setTimeoutFuture(ScheduledFuture<?> timeoutFuture) {
+        this.timeoutFuture = timeoutFuture;
+        if(done.get())
+            timeoutFuture.cancel(false);
+    }
+
+    boolean isDone() {
+        return done.get();
+    }
+
+    // channelReleaser receives true when the connection can be reused, it's called right away if the exchange already finished
+    boolean attach(Consumer<Boolean> channelReleaser) {
+        releaser.set(channelReleaser);
+        if(done.get()) {
+            release(false);
+            return false;
+        }
+        return true;
+    }
+
+    void complete(FullHttpResponse httpResponse) {
+        if(!done.compareAndSet(false, true))
+            return;
+        Response response;
+        try {
+            response = buildResponse(httpResponse);
+        }
+        catch (Exception ex) {
+            finish(false);
+            future.completeExceptionally(ex);
+            return;
+        }
+        finish(HttpUtil.isKeepAlive(httpResponse));
+        future.complete(response);
+    }
+
+    void fail(Throwable cause) {
+        if(!done.compareAndSet(false, true))
+            return;
+        finish(false);
+        future.completeExceptionally(cause);
+    }
+
+    private void finish(boolean reusable) {
+        ScheduledFuture<?> timeout = timeoutFuture;
+        if(timeout != null)
+            timeout.cancel(false);
+        release(reusable);
+    }
+
+    private void release(boolean reusable) {
+        Consumer<Boolean> channelReleaser = releaser.getAndSet(null);
+        if(channelReleaser != null)
+            channelReleaser.accept(reusable);
+    }
+
+    private Response buildResponse(FullHttpResponse httpResponse) throws BudgetExceededException {
+        Response response = new Response();
+        Map<String, List<String>> headerMap = new HashMap<>();
+        httpResponse.headers().forEach(entry -> headerMap.computeIfAbsent(entry.getKey(), key -> new ArrayList<>()).add(entry.getValue()));
+        response.setStatus(httpResponse.status().code());
+        response.setHeaders(headerMap);
+
+        ByteBuf content = httpResponse.content();
+        if(!content.isReadable())
+            return response;
+        if(options.getMaxResponseBytes() != null && content.readableBytes() > options.getMaxResponseBytes())
+            throw new BudgetExceededException(BudgetExceededException.SCOPE_RESPONSE, options.getMaxResponseBytes(), content.readableBytes(), response);
+
+        Charset charset = HttpUtil.getCharset(httpResponse, StandardCharsets.UTF_8);
+        String contentEncoding = httpResponse.headers().get(HttpHeaderNames.CONTENT_ENCODING);
+        BodyCodec codec = BodyCodecs.forContentType(httpResponse.headers().get(HttpHeaderNames.CONTENT_TYPE));
+        if(codec != null) {
+            LimitedInputStream inputStream = null;
+            try {
+                inputStream = new LimitedInputStream(compressionStats.decode(contentEncoding, new ByteBufInputStream(content.duplicate())), options.getMaxResponseBytes());
+                response.setBody(codec.read(jsonProvider, inputStream));
+                response.setBodySize(inputStream.getCount());
+            }
+            catch (Exception ex) {
+                checkLimit(inputStream, response);
+                logger.warn("Cannot parse response body as {}", codec.getFormat(), ex);
+                if(!options.getIgnoreParsingError())
+                    throw new IllegalStateException("Cannot parse response body as " + codec.getFormat(), ex);
+            }
+            return response;
+        }
+        LimitedInputStream inputStream = null;
+        try {
+            // parse straight from the pooled buffer, the duplicate keeps reader index intact for the fallback below
+            inputStream = new LimitedInputStream(compressionStats.decode(contentEncoding, new ByteBufInputStream(content.duplicate())), options.getMaxResponseBytes());
+            response.setBody(jsonProvider.parse(inputStream, charset.name()));
+            response.setBodySize(inputStream.getCount());
+        }
+        catch (Exception ex) {
+            checkLimit(inputStream, response);
+            logger.warn("Cannot parse response body as JSON", ex);
+            if(options.getFailBackAsString())
+                response.setBody(readString(content, contentEncoding, charset));
+            else if(!options.getIgnoreParsingError())
+                throw new IllegalStateException("Cannot parse response body as JSON", ex);
+        }
+        return response;
+    }
+
+    // parsers wrap the exception of the limited stream, a body over budget isn't a parsing error
+    private void checkLimit(LimitedInputStream inputStream, Response response) throws BudgetExceededException {
+        if(inputStream != null && inputStream.isExceeded())
+            throw new BudgetExceededException(BudgetExceededException.SCOPE_RESPONSE, options.getMaxResponseBytes(), inputStream.getCount(), response);
+    }
+
+    private String readString(ByteBuf content, String contentEncoding, Charset charset) throws BudgetExceededException {
+        if(ContentEncoding.isIdentity(contentEncoding))
+            return content.toString(charset);
+        try (InputStream inputStream = new LimitedInputStream(ContentEncoding.decode(contentEncoding, new ByteBufInputStream(content.duplicate())), options.getMaxResponseBytes())) {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream(content.readableBytes() * 4);
+            byte[] buffer = new byte[4096];
+            int count;
+            while((count = inputStream.read(buffer)) != -1)
+                outputStream.write(buffer, 0, count);
+            return new String(outputStream.toByteArray(), charset);
+        }
+        catch (BudgetExceededException ex) {
+            throw ex;
+        }
+        catch (IOException ex) {
+            throw new IllegalStateException("Cannot decode response body with content encoding " + contentEncoding, ex);
+        }
+    }
+
+}
@@ -0,0 +1,74 @@
+package com.rey.jsonbatch.netty;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.Objects;
+
+final class HostKey {
+
+    private final String host;
+    private final int port;
+    private final boolean secure;
+
+    HostKey(String host, int port, boolean secure) {
+        this.host = host;
+        this.port = port;
+        this.secure = secure;
+    }
+
+    static HostKey of(URI uri) {
+        String scheme = uri.getScheme() == null ? "http" : uri.getScheme().toLowerCase();
+        if(!"http".equals(scheme) && !"https".equals(scheme))
+            throw new IllegalArgumentException("Unsupported scheme: " + uri.getScheme());
+        if(uri.getHost() == null)
+            throw new IllegalArgumentException("Missing host in url: " + uri);
+        boolean secure = "https".equals(scheme);
+        int port = uri.getPort() > 0 ? uri.getPort() : (secure ? 443 : 80);
+        return new HostKey(uri.getHost(), port, secure);
+    }
+
+    String getHost() {
+        return host;
+    }
+
+    int getPort() {
+        return port;
+    }
+
+    boolean isSecure() {
+        return secure;
+    }
+
+    String getScheme() {
+        return secure ? "https" : "http";
+    }
+
+    String getAuthority() {
+        return (secure && port == 443) || (!secure && port == 80) ? host : host + ":" + port;
+    }
+
+    InetSocketAddress toAddress() {
+        return InetSocketAddress.createUnresolved(host, port);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof HostKey))
+            return false;
+        HostKey hostKey = (HostKey) o;
+        return port == hostKey.port && secure == hostKey.secure && host.equals(hostKey.host);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(host, port, secure);
+    }
+
+    @Override
+    public String toString() {
+        return getScheme() + "://" + getAuthority();
+    }
+
+}
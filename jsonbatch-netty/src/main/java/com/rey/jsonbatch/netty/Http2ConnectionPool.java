@@ -0,0 +1,181 @@
+package com.rey.jsonbatch.netty;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelPipeline;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http2.Http2FrameCodecBuilder;
+import io.netty.handler.codec.http2.Http2MultiplexHandler;
+import io.netty.handler.codec.http2.Http2StreamChannel;
+import io.netty.handler.codec.http2.Http2StreamChannelBootstrap;
+import io.netty.handler.codec.http2.Http2StreamFrameToHttpObjectCodec;
+import io.netty.handler.ssl.ApplicationProtocolNames;
+import io.netty.handler.ssl.ApplicationProtocolNegotiationHandler;
+import io.netty.handler.ssl.SslContext;
+import io.netty.util.concurrent.FutureListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+// One multiplexed connection per host, each request runs on its own stream channel.
+// Hosts that don't negotiate h2 through ALPN are remembered and go straight to the HTTP/1.1 pool afterwards.
+final class Http2ConnectionPool implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(Http2ConnectionPool.class);
+
+    private final Bootstrap bootstrap;
+    private final SslContext sslContext;
+    private final boolean priorKnowledge;
+    private final int maxContentLength;
+
+    private final Map<HostKey, CompletableFuture<Channel>> connections = new ConcurrentHashMap<>();
+    private final Set<HostKey> http1Hosts = ConcurrentHashMap.newKeySet();
+
+    Http2ConnectionPool(Bootstrap bootstrap, SslContext sslContext, boolean priorKnowledge, int maxContentLength) {
+        this.bootstrap = bootstrap;
+        this.sslContext = sslContext;
+        this.priorKnowledge = priorKnowledge;
+        this.maxContentLength = maxContentLength;
+    }
+
+    boolean accepts(HostKey hostKey) {
+        return (hostKey.isSecure() || priorKnowledge) && !http1Hosts.contains(hostKey);
+    }
+
+    int getConnectionCount() {
+        return (int) connections.values().stream().filter(connection -> !isStale(connection)).count();
+    }
+
+    CompletableFuture<Http2StreamChannel> openStream(HostKey hostKey) {
+        return connection(hostKey).thenCompose(this::openStream);
+    }
+
+    private CompletableFuture<Http2StreamChannel> openStream(Channel parent) {
+        CompletableFuture<Http2StreamChannel> future = new CompletableFuture<>();
+        new Http2StreamChannelBootstrap(parent)
+                .handler(new ChannelInitializer<Http2StreamChannel>() {
+                    @Override
+                    protected void initChannel(Http2StreamChannel channel) {
+                        channel.pipeline().addLast(new Http2StreamFrameToHttpObjectCodec(false),
+                                new HttpObjectAggregator(maxContentLength),
+                                ResponseHandler.INSTANCE);
+                    }
+                })
+                .open()
+                .addListener((FutureListener<Http2StreamChannel>) opened -> {
+                    if(opened.isSuccess())
+                        future.complete(opened.getNow());
+                    else
+                        future.completeExceptionally(opened.cause());
+                });
+        return future;
+    }
+
+    private CompletableFuture<Channel> connection(HostKey hostKey) {
+        CompletableFuture<Channel> connection = connections.get(hostKey);
+        if(connection != null && !isStale(connection))
+            return connection;
+        synchronized (connections) {
+            connection = connections.get(hostKey);
+            if(connection == null || isStale(connection)) {
+                connection = new CompletableFuture<>();
+                connections.put(hostKey, connection);
+                connect(hostKey, connection);
+            }
+            return connection;
+        }
+    }
+
+    private boolean isStale(CompletableFuture<Channel> connection) {
+        return connection.isDone() && (connection.isCompletedExceptionally() || !connection.join().isActive());
+    }
+
+    private void connect(HostKey hostKey, CompletableFuture<Channel> connection) {
+        logger.debug("Open HTTP/2 connection to {}", hostKey);
+        Bootstrap connectBootstrap = bootstrap.clone().handler(new ChannelInitializer<Channel>() {
+            @Override
+            protected void initChannel(Channel channel) {
+                if(!hostKey.isSecure()) {
+                    configureHttp2(channel.pipeline());
+                    // the connect promise fires before channelActive, wait until the codec has written the preface
+                    channel.pipeline().addLast(new ChannelInboundHandlerAdapter() {
+                        @Override
+                        public void channelActive(ChannelHandlerContext ctx) {
+                            connection.complete(ctx.channel());
+                            ctx.fireChannelActive();
+                            ctx.pipeline().remove(this);
+                        }
+                    });
+                    return;
+                }
+                channel.pipeline().addLast(sslContext.newHandler(channel.alloc(), hostKey.getHost(), hostKey.getPort()));
+                channel.pipeline().addLast(new ApplicationProtocolNegotiationHandler(ApplicationProtocolNames.HTTP_1_1) {
+                    @Override
+                    protected void configurePipeline(ChannelHandlerContext ctx, String protocol) {
+                        if(ApplicationProtocolNames.HTTP_2.equals(protocol)) {
+                            configureHttp2(ctx.pipeline());
+                            connection.complete(ctx.channel());
+                        }
+                        else {
+                            logger.debug("{} negotiated {}, fall back to HTTP/1.1 pool", hostKey, protocol);
+                            http1Hosts.add(hostKey);
+                            connection.completeExceptionally(new Http1FallbackException(hostKey));
+                            ctx.close();
+                        }
+                    }
+
+                    @Override
+                    protected void handshakeFailure(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+                        connection.completeExceptionally(cause);
+                        super.handshakeFailure(ctx, cause);
+                    }
+                });
+            }
+        });
+        connectBootstrap.connect(hostKey.toAddress()).addListener((ChannelFutureListener) connected -> {
+            if(!connected.isSuccess()) {
+                connection.completeExceptionally(connected.cause());
+                return;
+            }
+            connected.channel().closeFuture().addListener((ChannelFutureListener) closed -> {
+                connection.completeExceptionally(new ClosedChannelException());
+                connections.remove(hostKey, connection);
+            });
+        });
+    }
+
+    private void configureHttp2(ChannelPipeline pipeline) {
+        pipeline.addLast(Http2FrameCodecBuilder.forClient()
+                        .encoderEnforceMaxConcurrentStreams(true)
+                        .build(),
+                new Http2MultiplexHandler(new ChannelInboundHandlerAdapter()));
+    }
+
+    @Override
+    public void close() {
+        synchronized (connections) {
+            connections.values().forEach(connection -> connection.thenAccept(Channel::close));
+            connections.clear();
+        }
+    }
+
+    static final class Http1FallbackException extends IOException {
+
+        Http1FallbackException(HostKey hostKey) {
+            super(hostKey + " does not support HTTP/2");
+        }
+
+    }
+
+}
@@ -0,0 +1,338 @@
+package com.rey.jsonbatch.netty;
+
+import com.jayway.jsonpath.spi.json.JsonProvider;
+import com.rey.jsonbatch.RequestDispatcher;
+import com.rey.jsonbatch.codec.BodyCodec;
+import com.rey.jsonbatch.codec.BodyCodecs;
+import com.rey.jsonbatch.io.CompressionStats;
+import com.rey.jsonbatch.io.ContentEncoding;
+import com.rey.jsonbatch.io.JsonWriter;
+import com.rey.jsonbatch.model.DispatchOptions;
+import com.rey.jsonbatch.model.Request;
+import com.rey.jsonbatch.model.Response;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.pool.AbstractChannelPoolHandler;
+import io.netty.channel.pool.AbstractChannelPoolMap;
+import io.netty.channel.pool.ChannelHealthChecker;
+import io.netty.channel.pool.FixedChannelPool;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpClientCodec;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.ssl.SslContext;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.FutureListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.zip.DeflaterOutputStream;
+
+public class NettyRequestDispatcher implements RequestDispatcher, Closeable {
+
+    private Logger logger = LoggerFactory.getLogger(NettyRequestDispatcher.class);
+
+    private final EventLoopGroup eventLoopGroup;
+    private final boolean shutdownEventLoopGroup;
+    private final ByteBufAllocator allocator;
+    private final AbstractChannelPoolMap<HostKey, FixedChannelPool> pools;
+    private final Http2ConnectionPool http2ConnectionPool;
+
+    private boolean acceptCompressedResponse = true;
+
+    private long requestCompressionThreshold = -1;
+
+    private String requestCompression = ContentEncoding.GZIP;
+
+    private CompressionStats compressionStats = new CompressionStats();
+
+    NettyRequestDispatcher(EventLoopGroup eventLoopGroup,
+                           boolean shutdownEventLoopGroup,
+                           Bootstrap bootstrap,
+                           ByteBufAllocator allocator,
+                           SslContext sslContext,
+                           Http2ConnectionPool http2ConnectionPool,
+                           int maxConnectionsPerHost,
+                           int maxPendingAcquires,
+                           long acquireTimeout,
+                           int maxContentLength) {
+        this.eventLoopGroup = eventLoopGroup;
+        this.shutdownEventLoopGroup = shutdownEventLoopGroup;
+        this.allocator = allocator;
+        this.http2ConnectionPool = http2ConnectionPool;
+        this.pools = new AbstractChannelPoolMap<HostKey, FixedChannelPool>() {
+            @Override
+            protected FixedChannelPool newPool(HostKey hostKey) {
+                logger.debug("Create connection pool for {}", hostKey);
+                return new FixedChannelPool(bootstrap.clone().remoteAddress(hostKey.toAddress()),
+                        new AbstractChannelPoolHandler() {
+                            @Override
+                            public void channelCreated(Channel channel) {
+                                if(hostKey.isSecure())
+                                    channel.pipeline().addLast(sslContext.newHandler(channel.alloc(), hostKey.getHost(), hostKey.getPort()));
+                                channel.pipeline().addLast(new HttpClientCodec(),
+                                        new HttpObjectAggregator(maxContentLength),
+                                        ResponseHandler.INSTANCE);
+                            }
+                        },
+                        ChannelHealthChecker.ACTIVE,
+                        FixedChannelPool.AcquireTimeoutAction.FAIL,
+                        acquireTimeout,
+                        maxConnectionsPerHost,
+                        maxPendingAcquires);
+            }
+        };
+    }
+
+    public static NettyRequestDispatcherBuilder builder() {
+        return new NettyRequestDispatcherBuilder();
+    }
+
+    public boolean isAcceptCompressedResponse() {
+        return acceptCompressedResponse;
+    }
+
+    public void setAcceptCompressedResponse(boolean acceptCompressedResponse) {
+        this.acceptCompressedResponse = acceptCompressedResponse;
+    }
+
+    public long getRequestCompressionThreshold() {
+        return requestCompressionThreshold;
+    }
+
+    public void setRequestCompressionThreshold(long requestCompressionThreshold) {
+        this.requestCompressionThreshold = requestCompressionThreshold;
+    }
+
+    public String getRequestCompression() {
+        return requestCompression;
+    }
+
+    public void setRequestCompression(String requestCompression) {
+        this.requestCompression = requestCompression;
+    }
+
+    public CompressionStats getCompressionStats() {
+        return compressionStats;
+    }
+
+    @Override
+    public Response dispatch(Request request, JsonProvider jsonProvider, DispatchOptions options) throws Exception {
+        try {
+            return dispatchAsync(request, jsonProvider, options, null).get();
+        }
+        catch (ExecutionException ex) {
+            if(ex.getCause() instanceof Exception)
+                throw (Exception)ex.getCause();
+            throw ex;
+        }
+    }
+
+    @Override
+    public CompletableFuture<Response> dispatchAsync(Request request, JsonProvider jsonProvider, DispatchOptions options, Executor executor) {
+        CompletableFuture<Response> future = new CompletableFuture<>();
+        HostKey hostKey;
+        FullHttpRequest httpRequest;
+        try {
+            URI uri = new URI(request.getUrl());
+            hostKey = HostKey.of(uri);
+            httpRequest = buildHttpRequest(uri, hostKey, request, jsonProvider, options);
+        }
+        catch (Exception ex) {
+            future.completeExceptionally(ex);
+            return future;
+        }
+
+        Exchange exchange = new Exchange(future, jsonProvider, options, compressionStats);
+        if(options.getTimeout() != null) {
+            long timeout = options.getTimeout();
+            exchange.setTimeoutFuture(eventLoopGroup.schedule(
+                    () -> exchange.fail(new TimeoutException("Request " + request.getUrl() + " timed out after " + timeout + "ms")),
+                    timeout, TimeUnit.MILLISECONDS));
+        }
+        future.whenComplete((response, throwable) -> {
+            if(future.isCancelled() && !exchange.isDone()) {
+                logger.debug("Cancel request {}: {}", request.getHttpMethod(), request.getUrl());
+                exchange.fail(new CancellationException());
+            }
+        });
+
+        if(http2ConnectionPool != null && http2ConnectionPool.accepts(hostKey))
+            sendHttp2(hostKey, httpRequest, exchange);
+        else
+            sendHttp1(hostKey, httpRequest, exchange);
+        return future;
+    }
+
+    private void sendHttp1(HostKey hostKey, FullHttpRequest httpRequest, Exchange exchange) {
+        FixedChannelPool pool = pools.get(hostKey);
+        pool.acquire().addListener((FutureListener<Channel>) acquired -> {
+            if(!acquired.isSuccess()) {
+                ReferenceCountUtil.release(httpRequest);
+                exchange.fail(acquired.cause());
+                return;
+            }
+            Channel channel = acquired.getNow();
+            write(channel, httpRequest, exchange, reusable -> {
+                if(!reusable)
+                    channel.close();
+                pool.release(channel);
+            });
+        });
+    }
+
+    private void sendHttp2(HostKey hostKey, FullHttpRequest httpRequest, Exchange exchange) {
+        http2ConnectionPool.openStream(hostKey).whenComplete((streamChannel, throwable) -> {
+            if(throwable == null) {
+                write(streamChannel, httpRequest, exchange, reusable -> streamChannel.close());
+                return;
+            }
+            Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+            if(cause instanceof Http2ConnectionPool.Http1FallbackException)
+                sendHttp1(hostKey, httpRequest, exchange);
+            else {
+                ReferenceCountUtil.release(httpRequest);
+                exchange.fail(cause);
+            }
+        });
+    }
+
+    private void write(Channel channel, FullHttpRequest httpRequest, Exchange exchange, Consumer<Boolean> releaser) {
+        if(!exchange.attach(releaser)) {
+            ReferenceCountUtil.release(httpRequest);
+            return;
+        }
+        channel.attr(ResponseHandler.EXCHANGE).set(exchange);
+        channel.writeAndFlush(httpRequest).addListener(written -> {
+            if(!written.isSuccess())
+                exchange.fail(written.cause());
+        });
+    }
+
+    private FullHttpRequest buildHttpRequest(URI uri, HostKey hostKey, Request request, JsonProvider jsonProvider, DispatchOptions options) throws IOException {
+        String path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+        if(uri.getRawQuery() != null)
+            path = path + "?" + uri.getRawQuery();
+        logger.debug("Request {}: {}", request.getHttpMethod(), request.getUrl());
+
+        BodyCodec codec = BodyCodecs.get(options.getFormat());
+        ByteBuf content = Unpooled.EMPTY_BUFFER;
+        boolean compressed = false;
+        if(request.getBody() != null) {
+            if(logger.isDebugEnabled())
+                logger.debug("Request body: {}", jsonProvider.toJson(request.getBody()));
+            ByteBuf body = allocator.buffer();
+            try {
+                if(codec == null)
+                    JsonWriter.write(jsonProvider, request.getBody(), new ByteBufOutputStream(body));
+                else
+                    codec.write(jsonProvider, request.getBody(), new ByteBufOutputStream(body));
+            }
+            catch (IOException | RuntimeException ex) {
+                body.release();
+                throw ex;
+            }
+            content = compress(body);
+            compressed = content != body;
+        }
+
+        try {
+            return newHttpRequest(path, hostKey, request, codec, content, compressed);
+        }
+        catch (RuntimeException ex) {
+            // e.g. an invalid method or header built by a template
+            content.release();
+            throw ex;
+        }
+    }
+
+    private FullHttpRequest newHttpRequest(String path, HostKey hostKey, Request request, BodyCodec codec, ByteBuf content, boolean compressed) {
+        FullHttpRequest httpRequest = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1,
+                HttpMethod.valueOf(request.getHttpMethod().toUpperCase()), path, content);
+        HttpHeaders headers = httpRequest.headers();
+        request.getHeaders().forEach((key, values) -> values.forEach(value -> headers.add(key, value)));
+        if(!headers.contains(HttpHeaderNames.HOST))
+            headers.set(HttpHeaderNames.HOST, hostKey.getAuthority());
+        headers.remove(HttpHeaderNames.CONTENT_LENGTH);
+        headers.remove(HttpHeaderNames.TRANSFER_ENCODING);
+        if(acceptCompressedResponse && !headers.contains(HttpHeaderNames.ACCEPT_ENCODING))
+            headers.set(HttpHeaderNames.ACCEPT_ENCODING, ContentEncoding.acceptEncoding());
+        if(codec != null && !headers.contains(HttpHeaderNames.ACCEPT))
+            headers.set(HttpHeaderNames.ACCEPT, BodyCodecs.accept(codec));
+        if(request.getBody() != null) {
+            if(compressed)
+                headers.set(HttpHeaderNames.CONTENT_ENCODING, requestCompression);
+            if(!headers.contains(HttpHeaderNames.CONTENT_TYPE))
+                headers.set(HttpHeaderNames.CONTENT_TYPE, codec == null ? HttpHeaderValues.APPLICATION_JSON + "; charset=UTF-8" : codec.getContentType());
+            headers.setInt(HttpHeaderNames.CONTENT_LENGTH, content.readableBytes());
+        }
+        return httpRequest;
+    }
+
+    // releases the given buffer when it gets replaced by a compressed one
+    private ByteBuf compress(ByteBuf body) throws IOException {
+        int bodyBytes = body.readableBytes();
+        if(requestCompressionThreshold < 0 || bodyBytes <= requestCompressionThreshold) {
+            compressionStats.recordRequest(bodyBytes, bodyBytes, false);
+            return body;
+        }
+        ByteBuf compressed = allocator.buffer(Math.max(bodyBytes / 4, 64));
+        try {
+            DeflaterOutputStream outputStream = ContentEncoding.encode(requestCompression, new ByteBufOutputStream(compressed));
+            body.readBytes(outputStream, bodyBytes);
+            outputStream.finish();
+        }
+        catch (IOException | RuntimeException ex) {
+            compressed.release();
+            throw ex;
+        }
+        finally {
+            body.release();
+        }
+        compressionStats.recordRequest(bodyBytes, compressed.readableBytes(), true);
+        return compressed;
+    }
+
+    public Map<String, Integer> getAcquiredConnections() {
+        Map<String, Integer> result = new HashMap<>();
+        pools.forEach(entry -> result.put(entry.getKey().toString(), entry.getValue().acquiredChannelCount()));
+        return result;
+    }
+
+    public int getHttp2ConnectionCount() {
+        return http2ConnectionPool == null ? 0 : http2ConnectionPool.getConnectionCount();
+    }
+
+    @Override
+    public void close() {
+        pools.close();
+        if(http2ConnectionPool != null)
+            http2ConnectionPool.close();
+        if(shutdownEventLoopGroup)
+            eventLoopGroup.shutdownGracefully(0, 5, TimeUnit.SECONDS).syncUninterruptibly();
+    }
+
+}
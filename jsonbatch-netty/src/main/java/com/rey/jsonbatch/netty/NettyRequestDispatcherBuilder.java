@@ -0,0 +1,164 @@
+package com.rey.jsonbatch.netty;
+
+import com.rey.jsonbatch.io.ContentEncoding;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.http2.Http2SecurityUtil;
+import io.netty.handler.ssl.ApplicationProtocolConfig;
+import io.netty.handler.ssl.ApplicationProtocolNames;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.handler.ssl.SslProvider;
+import io.netty.handler.ssl.SupportedCipherSuiteFilter;
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+import javax.net.ssl.SSLException;
+import javax.net.ssl.TrustManagerFactory;
+
+public class NettyRequestDispatcherBuilder {
+
+    private EventLoopGroup eventLoopGroup;
+    private int eventLoopThreads = Runtime.getRuntime().availableProcessors();
+    private ByteBufAllocator allocator = PooledByteBufAllocator.DEFAULT;
+    private int maxConnectionsPerHost = 200;
+    private int maxPendingAcquires = Integer.MAX_VALUE;
+    private long acquireTimeout = 10000;
+    private int connectTimeout = 3000;
+    private int maxContentLength = 10 * 1024 * 1024;
+    private boolean http2 = true;
+    private boolean http2PriorKnowledge = false;
+    private TrustManagerFactory trustManagerFactory;
+    private boolean acceptCompressedResponse = true;
+    private long requestCompressionThreshold = -1;
+    private String requestCompression = ContentEncoding.GZIP;
+
+    NettyRequestDispatcherBuilder() {
+    }
+
+    public NettyRequestDispatcherBuilder eventLoopGroup(EventLoopGroup eventLoopGroup) {
+        this.eventLoopGroup = eventLoopGroup;
+        return this;
+    }
+
+    public NettyRequestDispatcherBuilder eventLoopThreads(int eventLoopThreads) {
+        this.eventLoopThreads = eventLoopThreads;
+        return this;
+    }
+
+    public NettyRequestDispatcherBuilder allocator(ByteBufAllocator allocator) {
+        this.allocator = allocator;
+        return this;
+    }
+
+    public NettyRequestDispatcherBuilder maxConnectionsPerHost(int maxConnectionsPerHost) {
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+        return this;
+    }
+
+    public NettyRequestDispatcherBuilder maxPendingAcquires(int maxPendingAcquires) {
+        this.maxPendingAcquires = maxPendingAcquires;
+        return this;
+    }
+
+    public NettyRequestDispatcherBuilder acquireTimeout(long acquireTimeout) {
+        this.acquireTimeout = acquireTimeout;
+        return this;
+    }
+
+    public NettyRequestDispatcherBuilder connectTimeout(int connectTimeout) {
+        this.connectTimeout = connectTimeout;
+        return this;
+    }
+
+    public NettyRequestDispatcherBuilder maxContentLength(int maxContentLength) {
+        this.maxContentLength = maxContentLength;
+        return this;
+    }
+
+    public NettyRequestDispatcherBuilder http2(boolean http2) {
+        this.http2 = http2;
+        return this;
+    }
+
+    public NettyRequestDispatcherBuilder http2PriorKnowledge(boolean http2PriorKnowledge) {
+        this.http2PriorKnowledge = http2PriorKnowledge;
+        return this;
+    }
+
+    public NettyRequestDispatcherBuilder trustManager(TrustManagerFactory trustManagerFactory) {
+        this.trustManagerFactory = trustManagerFactory;
+        return this;
+    }
+
+    public NettyRequestDispatcherBuilder acceptCompressedResponse(boolean acceptCompressedResponse) {
+        this.acceptCompressedResponse = acceptCompressedResponse;
+        return this;
+    }
+
+    public NettyRequestDispatcherBuilder requestCompressionThreshold(long requestCompressionThreshold) {
+        this.requestCompressionThreshold = requestCompressionThreshold;
+        return this;
+    }
+
+    public NettyRequestDispatcherBuilder requestCompression(String requestCompression) {
+        this.requestCompression = requestCompression;
+        return this;
+    }
+
+    public NettyRequestDispatcher build() {
+        boolean shutdownEventLoopGroup = eventLoopGroup == null;
+        EventLoopGroup group = eventLoopGroup != null ? eventLoopGroup : new NioEventLoopGroup(eventLoopThreads, new DefaultThreadFactory("jsonbatch-netty", true));
+
+        Bootstrap bootstrap = new Bootstrap()
+                .group(group)
+                .channel(NioSocketChannel.class)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeout)
+                .option(ChannelOption.TCP_NODELAY, true)
+                .option(ChannelOption.SO_KEEPALIVE, true)
+                .option(ChannelOption.ALLOCATOR, allocator);
+
+        Http2ConnectionPool http2ConnectionPool = null;
+        SslContext sslContext;
+        try {
+            sslContext = newSslContextBuilder().build();
+            if(http2) {
+                SslContext http2SslContext = newSslContextBuilder()
+                        .sslProvider(SslProvider.JDK)
+                        .ciphers(Http2SecurityUtil.CIPHERS, SupportedCipherSuiteFilter.INSTANCE)
+                        .applicationProtocolConfig(new ApplicationProtocolConfig(
+                                ApplicationProtocolConfig.Protocol.ALPN,
+                                ApplicationProtocolConfig.SelectorFailureBehavior.NO_ADVERTISE,
+                                ApplicationProtocolConfig.SelectedListenerFailureBehavior.ACCEPT,
+                                ApplicationProtocolNames.HTTP_2,
+                                ApplicationProtocolNames.HTTP_1_1))
+                        .build();
+                http2ConnectionPool = new Http2ConnectionPool(bootstrap, http2SslContext, http2PriorKnowledge, maxContentLength);
+            }
+        }
+        catch (SSLException ex) {
+            if(shutdownEventLoopGroup)
+                group.shutdownGracefully();
+            throw new IllegalArgumentException("Cannot create SSL context", ex);
+        }
+
+        NettyRequestDispatcher requestDispatcher = new NettyRequestDispatcher(group, shutdownEventLoopGroup, bootstrap, allocator, sslContext, http2ConnectionPool,
+                maxConnectionsPerHost, maxPendingAcquires, acquireTimeout, maxContentLength);
+        requestDispatcher.setAcceptCompressedResponse(acceptCompressedResponse);
+        requestDispatcher.setRequestCompressionThreshold(requestCompressionThreshold);
+        requestDispatcher.setRequestCompression(requestCompression);
+        return requestDispatcher;
+    }
+
+    private SslContextBuilder newSslContextBuilder() {
+        SslContextBuilder builder = SslContextBuilder.forClient();
+        if(trustManagerFactory != null)
+            builder.trustManager(trustManagerFactory);
+        return builder;
+    }
+
+}
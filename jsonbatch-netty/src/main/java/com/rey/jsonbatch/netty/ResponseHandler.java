@@ -0,0 +1,52 @@
+package com.rey.jsonbatch.netty;
+
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.util.AttributeKey;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.channels.ClosedChannelException;
+
+@ChannelHandler.Sharable
+final class ResponseHandler extends SimpleChannelInboundHandler<FullHttpResponse> {
+
+    static final AttributeKey<Exchange> EXCHANGE = AttributeKey.valueOf("jsonbatch.exchange");
+
+    static final ResponseHandler INSTANCE = new ResponseHandler();
+
+    private static final Logger logger = LoggerFactory.getLogger(ResponseHandler.class);
+
+    private ResponseHandler() {
+    }
+
+    @Override
+    protected void channelRead0(ChannelHandlerContext ctx, FullHttpResponse response) {
+        Exchange exchange = ctx.channel().attr(EXCHANGE).getAndSet(null);
+        if(exchange != null)
+            exchange.complete(response);
+        else
+            logger.debug("Discard unexpected response on {}", ctx.channel());
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+        Exchange exchange = ctx.channel().attr(EXCHANGE).getAndSet(null);
+        if(exchange != null)
+            exchange.fail(cause);
+        else
+            logger.debug("Error on idle channel {}", ctx.channel(), cause);
+        ctx.close();
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        Exchange exchange = ctx.channel().attr(EXCHANGE).getAndSet(null);
+        if(exchange != null)
+            exchange.fail(new ClosedChannelException());
+        super.channelInactive(ctx);
+    }
+
+}
@@ -0,0 +1,304 @@
+package com.rey.jsonbatch.netty;
+
+import com.jayway.jsonpath.spi.json.JacksonJsonProvider;
+import com.jayway.jsonpath.spi.json.JsonProvider;
+import com.rey.jsonbatch.BudgetExceededException;
+import com.rey.jsonbatch.io.CompressionStats;
+import com.rey.jsonbatch.io.ContentEncoding;
+import com.rey.jsonbatch.model.DispatchOptions;
+import com.rey.jsonbatch.model.Request;
+import com.rey.jsonbatch.model.Response;
+import com.sun.net.httpserver.HttpServer;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http2.Http2FrameCodecBuilder;
+import io.netty.handler.codec.http2.Http2MultiplexHandler;
+import io.netty.handler.codec.http2.Http2StreamFrameToHttpObjectCodec;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class NettyRequestDispatcherTest {
+
+    private HttpServer server;
+
+    private NettyRequestDispatcher dispatcher;
+
+    private JsonProvider jsonProvider = new JacksonJsonProvider();
+
+    private Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+
+    @Before
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/json", exchange -> {
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+            byte[] body = "{\"id\": 1, \"tags\": [\"a\", \"b\"]}".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(body);
+            }
+        });
+        server.createContext("/echo", exchange -> {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            try (InputStream inputStream = exchange.getRequestBody()) {
+                byte[] buffer = new byte[1024];
+                int count;
+                while ((count = inputStream.read(buffer)) > 0)
+                    body.write(buffer, 0, count);
+            }
+            exchange.getResponseHeaders().add("Content-Type", exchange.getRequestHeaders().getFirst("Content-Type"));
+            exchange.sendResponseHeaders(201, body.size());
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(body.toByteArray());
+            }
+        });
+        server.createContext("/gzip", exchange -> {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            try (InputStream inputStream = ContentEncoding.decode(exchange.getRequestHeaders().getFirst("Content-Encoding"), exchange.getRequestBody())) {
+                byte[] buffer = new byte[1024];
+                int count;
+                while ((count = inputStream.read(buffer)) > 0)
+                    body.write(buffer, 0, count);
+            }
+            byte[] compressed = ContentEncoding.encode("gzip", body.toByteArray(), 0, body.size());
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+            exchange.sendResponseHeaders(200, compressed.length);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(compressed);
+            }
+        });
+        server.createContext("/text", exchange -> {
+            byte[] body = "not a json".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(500, body.length);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(body);
+            }
+        });
+        server.createContext("/slow", exchange -> {
+            try {
+                Thread.sleep(2000);
+            }
+            catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.sendResponseHeaders(204, -1);
+            exchange.close();
+        });
+        server.start();
+        dispatcher = NettyRequestDispatcher.builder()
+                .eventLoopThreads(1)
+                .build();
+    }
+
+    @After
+    public void tearDown() {
+        dispatcher.close();
+        server.stop(0);
+    }
+
+    @Test
+    public void dispatch__json() throws Exception {
+        Response response = dispatcher.dispatch(request("GET", "/json", null), jsonProvider, new DispatchOptions());
+        assertEquals(200, (int) response.getStatus());
+        assertEquals(1, ((Map) response.getBody()).get("id"));
+    }
+
+    @Test
+    public void dispatch__responseOverBudget() throws Exception {
+        DispatchOptions options = new DispatchOptions();
+        options.setMaxResponseBytes(16L);
+        try {
+            dispatcher.dispatch(request("GET", "/json", null), jsonProvider, options);
+            fail("Read response over budget");
+        }
+        catch (BudgetExceededException ex) {
+            assertEquals(16L, ex.getLimit());
+            assertEquals(200, (int) ex.getResponse().getStatus());
+            assertNull(ex.getResponse().getBody());
+        }
+
+        options.setMaxResponseBytes(1024L);
+        Response response = dispatcher.dispatch(request("GET", "/json", null), jsonProvider, options);
+        assertEquals(Long.valueOf(29), response.getBodySize());
+    }
+
+    @Test
+    public void dispatch__body() throws Exception {
+        Response response = dispatcher.dispatch(request("POST", "/echo", Collections.singletonMap("name", "netty")), jsonProvider, new DispatchOptions());
+        assertEquals(201, (int) response.getStatus());
+        assertEquals("netty", ((Map) response.getBody()).get("name"));
+    }
+
+    @Test
+    public void dispatch__compression() throws Exception {
+        dispatcher.setRequestCompressionThreshold(64);
+        Object body = jsonProvider.parse("{\"items\": [" + String.join(",", Collections.nCopies(50, "{\"id\": 1}")) + "]}");
+        Response response = dispatcher.dispatch(request("POST", "/gzip", body), jsonProvider, new DispatchOptions());
+        assertEquals(200, (int) response.getStatus());
+        assertEquals(body, response.getBody());
+
+        CompressionStats stats = dispatcher.getCompressionStats();
+        assertEquals(1, stats.getCompressedRequestCount());
+        assertEquals(1, stats.getCompressedResponseCount());
+        assertTrue(stats.getRequestWireBytes() < stats.getRequestBodyBytes());
+        assertEquals(stats.getRequestBodyBytes(), stats.getResponseBodyBytes());
+    }
+
+    @Test
+    public void dispatch__invalidMethodReleasesBody() throws Exception {
+        UnpooledByteBufAllocator allocator = new UnpooledByteBufAllocator(false);
+        NettyRequestDispatcher unpooledDispatcher = NettyRequestDispatcher.builder()
+                .eventLoopThreads(1)
+                .allocator(allocator)
+                .build();
+        try {
+            unpooledDispatcher.dispatch(request("NOT VALID", "/echo", Collections.singletonMap("name", "netty")), jsonProvider, new DispatchOptions());
+            fail("Sent request with invalid method");
+        }
+        catch (IllegalArgumentException ex) {
+            assertEquals(0, allocator.metric().usedHeapMemory());
+        }
+        finally {
+            unpooledDispatcher.close();
+        }
+    }
+
+    @Test
+    public void dispatch__failBackAsString() throws Exception {
+        DispatchOptions options = new DispatchOptions();
+        options.setFailBackAsString(true);
+        Response response = dispatcher.dispatch(request("GET", "/text", null), jsonProvider, options);
+        assertEquals(500, (int) response.getStatus());
+        assertEquals("not a json", response.getBody());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void dispatch__parsingError() throws Exception {
+        dispatcher.dispatch(request("GET", "/text", null), jsonProvider, new DispatchOptions());
+    }
+
+    @Test
+    public void dispatch__keepAlive() throws Exception {
+        for (int i = 0; i < 5; i++)
+            dispatcher.dispatch(request("GET", "/json", null), jsonProvider, new DispatchOptions());
+        assertEquals(1, clientPorts.size());
+        assertEquals(Integer.valueOf(0), dispatcher.getAcquiredConnections().values().iterator().next());
+    }
+
+    @Test(expected = TimeoutException.class)
+    public void dispatch__timeout() throws Exception {
+        DispatchOptions options = new DispatchOptions();
+        options.setTimeout(100L);
+        dispatcher.dispatch(request("GET", "/slow", null), jsonProvider, options);
+    }
+
+    @Test
+    public void dispatchAsync__cancel() throws Exception {
+        CompletableFuture<Response> future = dispatcher.dispatchAsync(request("GET", "/slow", null), jsonProvider, new DispatchOptions(), null);
+        Thread.sleep(100);
+        future.cancel(true);
+        Thread.sleep(100);
+        assertEquals(Integer.valueOf(0), dispatcher.getAcquiredConnections().values().iterator().next());
+    }
+
+    @Test
+    public void dispatch__http2PriorKnowledge() throws Exception {
+        NioEventLoopGroup group = new NioEventLoopGroup(1);
+        NettyRequestDispatcher http2Dispatcher = NettyRequestDispatcher.builder()
+                .eventLoopGroup(group)
+                .http2PriorKnowledge(true)
+                .build();
+        try {
+            Channel h2cServer = new ServerBootstrap()
+                    .group(group)
+                    .channel(NioServerSocketChannel.class)
+                    .childHandler(new ChannelInitializer<Channel>() {
+                        @Override
+                        protected void initChannel(Channel channel) {
+                            channel.pipeline().addLast(Http2FrameCodecBuilder.forServer().build(),
+                                    new Http2MultiplexHandler(new ChannelInitializer<Channel>() {
+                                        @Override
+                                        protected void initChannel(Channel stream) {
+                                            stream.pipeline().addLast(new Http2StreamFrameToHttpObjectCodec(true),
+                                                    new HttpObjectAggregator(65536),
+                                                    new SimpleChannelInboundHandler<FullHttpRequest>() {
+                                                        @Override
+                                                        protected void channelRead0(ChannelHandlerContext ctx, FullHttpRequest request) {
+                                                            FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK,
+                                                                    ByteBufUtil.writeUtf8(ctx.alloc(), "{\"path\": \"" + request.uri() + "\"}"));
+                                                            response.headers().set(HttpHeaderNames.CONTENT_TYPE, "application/json");
+                                                            ctx.writeAndFlush(response);
+                                                        }
+                                                    });
+                                        }
+                                    }));
+                        }
+                    })
+                    .bind("localhost", 0).sync().channel();
+            int port = ((InetSocketAddress) h2cServer.localAddress()).getPort();
+
+            CompletableFuture<?>[] futures = new CompletableFuture[10];
+            for (int i = 0; i < futures.length; i++) {
+                Request request = request("GET", "/items/" + i, null);
+                request.setUrl("http://localhost:" + port + "/items/" + i);
+                futures[i] = http2Dispatcher.dispatchAsync(request, jsonProvider, new DispatchOptions(), null);
+            }
+            for (int i = 0; i < futures.length; i++) {
+                Response response = (Response) futures[i].get();
+                assertEquals(200, (int) response.getStatus());
+                assertEquals("/items/" + i, ((Map) response.getBody()).get("path"));
+            }
+            assertEquals(1, http2Dispatcher.getHttp2ConnectionCount());
+            assertTrue(http2Dispatcher.getAcquiredConnections().isEmpty());
+            h2cServer.close().sync();
+        }
+        finally {
+            http2Dispatcher.close();
+            group.shutdownGracefully().sync();
+        }
+    }
+
+    private Request request(String method, String path, Object body) {
+        Request request = new Request();
+        request.setHttpMethod(method);
+        request.setUrl("http://localhost:" + server.getAddress().getPort() + path);
+        request.setHeaders(Collections.emptyMap());
+        request.setBody(body);
+        return request;
+    }
+
+}
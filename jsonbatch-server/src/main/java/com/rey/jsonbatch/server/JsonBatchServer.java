@@ -0,0 +1,349 @@
+package com.rey.jsonbatch.server;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jayway.jsonpath.Configuration;
+import com.jayway.jsonpath.spi.json.JacksonJsonProvider;
+import com.jayway.jsonpath.spi.json.JsonProvider;
+import com.jayway.jsonpath.spi.mapper.JacksonMappingProvider;
+import com.rey.jsonbatch.BatchEngine;
+import com.rey.jsonbatch.BatchResultCache;
+import com.rey.jsonbatch.BudgetExceededException;
+import com.rey.jsonbatch.JsonBuilder;
+import com.rey.jsonbatch.RequestDispatcher;
+import com.rey.jsonbatch.TemplateCompiler;
+import com.rey.jsonbatch.apachehttpclient.ApacheHttpClientRequestDispatcher;
+import com.rey.jsonbatch.apachehttpclient5.ApacheHttpClient5RequestDispatcher;
+import com.rey.jsonbatch.concurrent.BatchExecutors;
+import com.rey.jsonbatch.function.Functions;
+import com.rey.jsonbatch.io.JsonWriter;
+import com.rey.jsonbatch.io.LimitedInputStream;
+import com.rey.jsonbatch.model.BatchTemplate;
+import com.rey.jsonbatch.model.Request;
+import com.rey.jsonbatch.model.Response;
+import com.rey.jsonbatch.netty.NettyRequestDispatcher;
+import com.rey.jsonbatch.template.TemplateRegistry;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// HTTP gateway in front of BatchEngine: POST /batch/{templateId} runs the template with the request as original request,
+// GET /health and GET /metrics report on the server. Handler threads only parse the request, batches run on the
+// engine's executor and write their response when they complete, so slow backends don't hold server threads.
+public class JsonBatchServer implements AutoCloseable {
+
+    private Logger logger = LoggerFactory.getLogger(JsonBatchServer.class);
+
+    static {
+        // headers and body are separate writes, with Nagle the body waits for the client's delayed ACK (~40 ms)
+        if (System.getProperty("sun.net.httpserver.nodelay") == null)
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private static final String BATCH_PATH = "/batch/";
+    private static final String CONTENT_TYPE_JSON = "application/json";
+    private static final String CONTENT_TYPE_METRICS = "text/plain; version=0.0.4; charset=utf-8";
+
+    // set by the server for the streamed JSON body
+    private static final Set<String> SKIPPED_HEADERS = new HashSet<>(Arrays.asList(
+            "content-length", "content-type", "content-encoding", "transfer-encoding", "connection", "keep-alive"));
+
+    private final ServerConfig config;
+    private final JsonProvider jsonProvider;
+    private final BatchEngine batchEngine;
+    private final TemplateRegistry templateRegistry;
+    private final ServerMetrics metrics = new ServerMetrics();
+
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private volatile boolean closing;
+
+    public JsonBatchServer(ServerConfig config, Configuration configuration, BatchEngine batchEngine, TemplateRegistry templateRegistry) {
+        this.config = config;
+        this.jsonProvider = configuration.jsonProvider();
+        this.batchEngine = batchEngine;
+        this.templateRegistry = templateRegistry;
+    }
+
+    public static void main(String[] args) throws Exception {
+        ServerConfig config = ServerConfig.parse(args);
+        if (config.getTemplates() == null)
+            throw new IllegalArgumentException("Missing --templates argument");
+        ObjectMapper objectMapper = new ObjectMapper();
+        Configuration configuration = Configuration.builder()
+                .jsonProvider(new JacksonJsonProvider(objectMapper))
+                .mappingProvider(new JacksonMappingProvider(objectMapper))
+                .build();
+        RequestDispatcher requestDispatcher = createDispatcher(config);
+        ExecutorService executor = createExecutor(config);
+        JsonBuilder jsonBuilder = new JsonBuilder(Functions.basic());
+        BatchEngine batchEngine = BatchEngine.builder(configuration, jsonBuilder, requestDispatcher)
+                .executor(executor)
+                .templateCompiler(new TemplateCompiler(jsonBuilder))
+                .resultCache(config.getCacheEntries() > 0 ? new BatchResultCache(config.getCacheEntries()) : null)
+                .build();
+        TemplateRegistry templateRegistry = new TemplateRegistry(configuration);
+        templateRegistry.loadDirectory(Paths.get(config.getTemplates()));
+        if (config.isWatch())
+            templateRegistry.watch();
+
+        JsonBatchServer server = new JsonBatchServer(config, configuration, batchEngine, templateRegistry);
+        server.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.close();
+            try {
+                templateRegistry.close();
+                ((Closeable) requestDispatcher).close();
+            }
+            catch (IOException ex) {
+                server.logger.warn("Cannot close server resources", ex);
+            }
+            executor.shutdown();
+        }, "jsonbatch-server-shutdown"));
+    }
+
+    public static RequestDispatcher createDispatcher(ServerConfig config) {
+        switch (config.getDispatcher()) {
+            case ServerConfig.DISPATCHER_APACHE:
+                return ApacheHttpClientRequestDispatcher.builder()
+                        .maxTotal(config.getMaxConnections())
+                        .defaultMaxPerRoute(config.getMaxConnectionsPerHost())
+                        .build();
+            case ServerConfig.DISPATCHER_NETTY:
+                return NettyRequestDispatcher.builder()
+                        .maxConnectionsPerHost(config.getMaxConnectionsPerHost())
+                        .build();
+            default:
+                return ApacheHttpClient5RequestDispatcher.builder()
+                        .maxTotal(config.getMaxConnections())
+                        .maxPerRoute(config.getMaxConnectionsPerHost())
+                        .build();
+        }
+    }
+
+    public static ExecutorService createExecutor(ServerConfig config) {
+        switch (config.getExecutor()) {
+            case ServerConfig.EXECUTOR_PLATFORM:
+                return BatchExecutors.platform();
+            case ServerConfig.EXECUTOR_VIRTUAL:
+                return BatchExecutors.virtual();
+            default:
+                return BatchExecutors.defaultExecutor();
+        }
+    }
+
+    public synchronized void start() throws IOException {
+        if (server != null)
+            return;
+        AtomicInteger count = new AtomicInteger();
+        serverExecutor = Executors.newFixedThreadPool(config.getServerThreads(), runnable -> {
+            Thread thread = new Thread(runnable, "jsonbatch-server-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        server = HttpServer.create(new InetSocketAddress(config.getHost(), config.getPort()), config.getBacklog());
+        server.createContext(BATCH_PATH, this::handleBatch);
+        server.createContext("/health", this::handleHealth);
+        server.createContext("/metrics", this::handleMetrics);
+        server.setExecutor(serverExecutor);
+        server.start();
+        logger.info("Started server on [{}] port with {}", getPort(), config);
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public ServerMetrics getMetrics() {
+        return metrics;
+    }
+
+    // stops accepting batches and waits up to drain-seconds for the running ones
+    @Override
+    public synchronized void close() {
+        if (server == null)
+            return;
+        closing = true;
+        logger.info("Stopping server, waiting up to [{}] seconds for [{}] batches", config.getDrainSeconds(), metrics.getInFlight());
+        server.stop(config.getDrainSeconds());
+        serverExecutor.shutdownNow();
+        server = null;
+    }
+
+    private void handleBatch(HttpExchange exchange) {
+        long start = metrics.begin();
+        try {
+            if (closing) {
+                respondError(exchange, null, 503, "shutting_down", "Server is shutting down", start);
+                return;
+            }
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Allow", "POST");
+                respondError(exchange, null, 405, "method_not_allowed", "Use POST to execute a batch", start);
+                return;
+            }
+            String templateId = exchange.getRequestURI().getPath().substring(BATCH_PATH.length());
+            BatchTemplate template = templateRegistry.get(templateId);
+            if (template == null) {
+                respondError(exchange, null, 404, "template_not_found", "Template not found: " + templateId, start);
+                return;
+            }
+            long contentLength;
+            try {
+                contentLength = contentLength(exchange);
+            }
+            catch (NumberFormatException ex) {
+                respondError(exchange, templateId, 400, "invalid_content_length", "Content-Length header is not a number", start);
+                return;
+            }
+            Request request;
+            try {
+                request = readRequest(exchange, contentLength);
+            }
+            catch (BudgetExceededException ex) {
+                respondError(exchange, templateId, 413, "request_too_large", "Request body is over " + ex.getLimit() + " bytes", start);
+                return;
+            }
+            catch (RuntimeException ex) {
+                respondError(exchange, templateId, 400, "invalid_json", "Request body is not valid JSON", start);
+                return;
+            }
+            batchEngine.executeAsync(request, template).whenComplete((response, ex) -> {
+                if (ex != null) {
+                    logger.error("Cannot execute [{}] template", templateId, ex);
+                    respondError(exchange, templateId, 500, "batch_failed", String.valueOf(ex.getMessage()), start);
+                }
+                else
+                    respond(exchange, templateId, response.getStatus() == null ? 200 : response.getStatus(), response.getHeaders(), response.getBody(), start);
+            });
+        }
+        catch (Exception ex) {
+            logger.error("Cannot handle batch request", ex);
+            respondError(exchange, null, 500, "internal_error", String.valueOf(ex.getMessage()), start);
+        }
+    }
+
+    // -1 when the header is missing
+    private static long contentLength(HttpExchange exchange) {
+        String contentLength = exchange.getRequestHeaders().getFirst("Content-Length");
+        return contentLength == null ? -1 : Long.parseLong(contentLength.trim());
+    }
+
+    private Request readRequest(HttpExchange exchange, long contentLength) throws IOException {
+        Request request = new Request();
+        request.setHttpMethod(exchange.getRequestMethod());
+        request.setUrl(exchange.getRequestURI().toString());
+        Map<String, List<String>> headers = new LinkedHashMap<>();
+        exchange.getRequestHeaders().forEach((name, values) -> headers.put(name.toLowerCase(), values));
+        request.setHeaders(headers);
+
+        if (contentLength > config.getMaxRequestBytes())
+            throw new BudgetExceededException(BudgetExceededException.SCOPE_BATCH, config.getMaxRequestBytes(), contentLength);
+        LimitedInputStream limitedInputStream = new LimitedInputStream(exchange.getRequestBody(), config.getMaxRequestBytes());
+        InputStream inputStream = new BufferedInputStream(limitedInputStream);
+        inputStream.mark(1);
+        if (inputStream.read() < 0)
+            return request;
+        inputStream.reset();
+        try {
+            request.setBody(jsonProvider.parse(inputStream, StandardCharsets.UTF_8.name()));
+        }
+        catch (RuntimeException ex) {
+            // the parser may wrap the limit exception
+            if (limitedInputStream.isExceeded())
+                throw new BudgetExceededException(BudgetExceededException.SCOPE_BATCH, config.getMaxRequestBytes(), limitedInputStream.getCount());
+            throw ex;
+        }
+        return request;
+    }
+
+    private void respondError(HttpExchange exchange, String templateId, int status, String error, String message, long start) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("error", error);
+        body.put("message", message);
+        respond(exchange, templateId, status, null, body, start);
+    }
+
+    private void respond(HttpExchange exchange, String templateId, int status, Map<String, List<String>> headers, Object body, long start) {
+        try {
+            Headers responseHeaders = exchange.getResponseHeaders();
+            if (headers != null) {
+                headers.forEach((name, values) -> {
+                    if (values != null && !SKIPPED_HEADERS.contains(name.toLowerCase()))
+                        responseHeaders.put(name, new ArrayList<>(values));
+                });
+            }
+            if (body == null) {
+                exchange.sendResponseHeaders(status, -1);
+                return;
+            }
+            responseHeaders.set("Content-Type", CONTENT_TYPE_JSON);
+            // chunked, the body is written as it's serialized instead of being held as a whole
+            exchange.sendResponseHeaders(status, 0);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                JsonWriter.write(jsonProvider, body, outputStream);
+            }
+        }
+        catch (IOException ex) {
+            logger.debug("Cannot write response, client may have gone", ex);
+        }
+        finally {
+            exchange.close();
+            metrics.end(templateId, status, start);
+        }
+    }
+
+    private void handleHealth(HttpExchange exchange) throws IOException {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("status", closing ? "DRAINING" : "UP");
+        body.put("templates", templateRegistry.getIds().size());
+        body.put("in_flight", metrics.getInFlight());
+        send(exchange, closing ? 503 : 200, CONTENT_TYPE_JSON, JsonWriter.toBytes(jsonProvider, body));
+    }
+
+    private void handleMetrics(HttpExchange exchange) throws IOException {
+        StringWriter writer = new StringWriter();
+        try (PrintWriter printWriter = new PrintWriter(writer)) {
+            metrics.write(printWriter, templateRegistry.getIds().size());
+            if (batchEngine.getResultCache() != null)
+                metrics.writeCache(printWriter, batchEngine.getResultCache());
+        }
+        send(exchange, 200, CONTENT_TYPE_METRICS, writer.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+        try {
+            exchange.getResponseHeaders().set("Content-Type", contentType);
+            exchange.sendResponseHeaders(status, body.length);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(body);
+            }
+        }
+        finally {
+            exchange.close();
+        }
+    }
+
+}
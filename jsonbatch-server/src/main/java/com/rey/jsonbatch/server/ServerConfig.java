@@ -0,0 +1,219 @@
+package com.rey.jsonbatch.server;
+
+public class ServerConfig {
+
+    public static final String DISPATCHER_APACHE = "apache";
+    public static final String DISPATCHER_APACHE5 = "apache5";
+    public static final String DISPATCHER_NETTY = "netty";
+
+    public static final String EXECUTOR_DEFAULT = "default";
+    public static final String EXECUTOR_PLATFORM = "platform";
+    public static final String EXECUTOR_VIRTUAL = "virtual";
+
+    private String host = "0.0.0.0";
+
+    // 0 picks a free port
+    private int port = 8080;
+
+    // directory of template files, ids are file paths relative to it without .json
+    private String templates;
+
+    // reload templates when their files change
+    private boolean watch = true;
+
+    private String dispatcher = DISPATCHER_APACHE5;
+
+    private int maxConnections = 1000;
+
+    private int maxConnectionsPerHost = 200;
+
+    // runs batches, default is virtual threads on Java 21+ and a cached pool before
+    private String executor = EXECUTOR_DEFAULT;
+
+    // threads of the HTTP server, they only parse requests and hand them to the batch executor
+    private int serverThreads = Runtime.getRuntime().availableProcessors() * 2;
+
+    private int backlog = 1024;
+
+    private long maxRequestBytes = 10 * 1024 * 1024;
+
+    // on close, in-flight batches get this long to finish
+    private int drainSeconds = 10;
+
+    // results kept for templates with cache options, 0 disables the cache
+    private int cacheEntries = 0;
+
+    // --templates=/etc/jsonbatch --port=8080 ...
+    public static ServerConfig parse(String[] args) {
+        ServerConfig config = new ServerConfig();
+        for (String arg : args) {
+            int index = arg.indexOf('=');
+            if (!arg.startsWith("--") || index < 0)
+                throw new IllegalArgumentException("Expected --key=value argument but got: " + arg);
+            String key = arg.substring(2, index);
+            String value = arg.substring(index + 1);
+            switch (key) {
+                case "host":
+                    config.setHost(value);
+                    break;
+                case "port":
+                    config.setPort(Integer.parseInt(value));
+                    break;
+                case "templates":
+                    config.setTemplates(value);
+                    break;
+                case "watch":
+                    config.setWatch(Boolean.parseBoolean(value));
+                    break;
+                case "dispatcher":
+                    config.setDispatcher(value);
+                    break;
+                case "max-connections":
+                    config.setMaxConnections(Integer.parseInt(value));
+                    break;
+                case "max-connections-per-host":
+                    config.setMaxConnectionsPerHost(Integer.parseInt(value));
+                    break;
+                case "executor":
+                    config.setExecutor(value);
+                    break;
+                case "server-threads":
+                    config.setServerThreads(Integer.parseInt(value));
+                    break;
+                case "backlog":
+                    config.setBacklog(Integer.parseInt(value));
+                    break;
+                case "max-request-bytes":
+                    config.setMaxRequestBytes(Long.parseLong(value));
+                    break;
+                case "drain-seconds":
+                    config.setDrainSeconds(Integer.parseInt(value));
+                    break;
+                case "cache-entries":
+                    config.setCacheEntries(Integer.parseInt(value));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown argument: " + arg);
+            }
+        }
+        return config;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public void setHost(String host) {
+        this.host = host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public void setPort(int port) {
+        this.port = port;
+    }
+
+    public String getTemplates() {
+        return templates;
+    }
+
+    public void setTemplates(String templates) {
+        this.templates = templates;
+    }
+
+    public boolean isWatch() {
+        return watch;
+    }
+
+    public void setWatch(boolean watch) {
+        this.watch = watch;
+    }
+
+    public String getDispatcher() {
+        return dispatcher;
+    }
+
+    public void setDispatcher(String dispatcher) {
+        if (!DISPATCHER_APACHE.equals(dispatcher) && !DISPATCHER_APACHE5.equals(dispatcher) && !DISPATCHER_NETTY.equals(dispatcher))
+            throw new IllegalArgumentException("Unknown dispatcher: " + dispatcher);
+        this.dispatcher = dispatcher;
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    public int getMaxConnectionsPerHost() {
+        return maxConnectionsPerHost;
+    }
+
+    public void setMaxConnectionsPerHost(int maxConnectionsPerHost) {
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+    }
+
+    public String getExecutor() {
+        return executor;
+    }
+
+    public void setExecutor(String executor) {
+        if (!EXECUTOR_DEFAULT.equals(executor) && !EXECUTOR_PLATFORM.equals(executor) && !EXECUTOR_VIRTUAL.equals(executor))
+            throw new IllegalArgumentException("Unknown executor: " + executor);
+        this.executor = executor;
+    }
+
+    public int getServerThreads() {
+        return serverThreads;
+    }
+
+    public void setServerThreads(int serverThreads) {
+        this.serverThreads = serverThreads;
+    }
+
+    public int getBacklog() {
+        return backlog;
+    }
+
+    public void setBacklog(int backlog) {
+        this.backlog = backlog;
+    }
+
+    public long getMaxRequestBytes() {
+        return maxRequestBytes;
+    }
+
+    public void setMaxRequestBytes(long maxRequestBytes) {
+        this.maxRequestBytes = maxRequestBytes;
+    }
+
+    public int getDrainSeconds() {
+        return drainSeconds;
+    }
+
+    public void setDrainSeconds(int drainSeconds) {
+        this.drainSeconds = drainSeconds;
+    }
+
+    public int getCacheEntries() {
+        return cacheEntries;
+    }
+
+    public void setCacheEntries(int cacheEntries) {
+        this.cacheEntries = cacheEntries;
+    }
+
+    @Override
+    public String toString() {
+        return "host=" + host + ", port=" + port + ", templates=" + templates + ", watch=" + watch
+                + ", dispatcher=" + dispatcher + ", max-connections=" + maxConnections
+                + ", max-connections-per-host=" + maxConnectionsPerHost + ", executor=" + executor
+                + ", server-threads=" + serverThreads + ", backlog=" + backlog
+                + ", max-request-bytes=" + maxRequestBytes + ", drain-seconds=" + drainSeconds + ", cache-entries=" + cacheEntries;
+    }
+
+}
@@ -0,0 +1,112 @@
+package com.rey.jsonbatch.server;
+
+import com.rey.jsonbatch.BatchResultCache;
+
+import java.io.PrintWriter;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Counters of the batch endpoint, written in the Prometheus text format. Updates are lock free, the endpoint is hot.
+public class ServerMetrics {
+
+    // upper bounds of the latency histogram, in seconds
+    private static final double[] BUCKETS = {0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10};
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder[] buckets = new LongAdder[BUCKETS.length + 1];
+    private final LongAdder durationNanos = new LongAdder();
+    // template id and status separated by a space, ids of unknown templates aren't used as labels
+    private final Map<String, LongAdder> batches = new ConcurrentHashMap<>();
+
+    public ServerMetrics() {
+        for (int i = 0; i < buckets.length; i++)
+            buckets[i] = new LongAdder();
+    }
+
+    // returns the start time to pass to end
+    public long begin() {
+        inFlight.incrementAndGet();
+        return System.nanoTime();
+    }
+
+    public void end(String templateId, int status, long start) {
+        long nanos = System.nanoTime() - start;
+        inFlight.decrementAndGet();
+        durationNanos.add(nanos);
+        double seconds = nanos / 1e9;
+        int index = 0;
+        while (index < BUCKETS.length && seconds > BUCKETS[index])
+            index++;
+        buckets[index].increment();
+        batches.computeIfAbsent((templateId == null ? "" : templateId) + " " + status, key -> new LongAdder()).increment();
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getCount(String templateId, int status) {
+        LongAdder count = batches.get(templateId + " " + status);
+        return count == null ? 0 : count.sum();
+    }
+
+    public void write(PrintWriter writer, int templates) {
+        writer.println("# HELP jsonbatch_batches_total Batches answered, by template and status.");
+        writer.println("# TYPE jsonbatch_batches_total counter");
+        new TreeMap<>(batches).forEach((key, count) -> {
+            int index = key.lastIndexOf(' ');
+            writer.println("jsonbatch_batches_total{template=\"" + escape(key.substring(0, index)) + "\",status=\""
+                    + key.substring(index + 1) + "\"} " + count.sum());
+        });
+
+        writer.println("# HELP jsonbatch_batches_in_flight Batches being executed.");
+        writer.println("# TYPE jsonbatch_batches_in_flight gauge");
+        writer.println("jsonbatch_batches_in_flight " + inFlight.get());
+
+        writer.println("# HELP jsonbatch_batch_duration_seconds Time from reading a batch request to writing its response.");
+        writer.println("# TYPE jsonbatch_batch_duration_seconds histogram");
+        long count = 0;
+        for (int i = 0; i < BUCKETS.length; i++) {
+            count += buckets[i].sum();
+            writer.println("jsonbatch_batch_duration_seconds_bucket{le=\"" + BUCKETS[i] + "\"} " + count);
+        }
+        count += buckets[BUCKETS.length].sum();
+        writer.println("jsonbatch_batch_duration_seconds_bucket{le=\"+Inf\"} " + count);
+        writer.println("jsonbatch_batch_duration_seconds_sum " + durationNanos.sum() / 1e9);
+        writer.println("jsonbatch_batch_duration_seconds_count " + count);
+
+        writer.println("# HELP jsonbatch_templates Templates loaded.");
+        writer.println("# TYPE jsonbatch_templates gauge");
+        writer.println("jsonbatch_templates " + templates);
+    }
+
+    public void writeCache(PrintWriter writer, BatchResultCache cache) {
+        writer.println("# HELP jsonbatch_cache_requests_total Batches of cached templates, by result.");
+        writer.println("# TYPE jsonbatch_cache_requests_total counter");
+        writer.println("jsonbatch_cache_requests_total{result=\"hit\"} " + cache.getHits());
+        writer.println("jsonbatch_cache_requests_total{result=\"stale\"} " + cache.getStaleHits());
+        writer.println("jsonbatch_cache_requests_total{result=\"miss\"} " + cache.getMisses());
+        writer.println("jsonbatch_cache_requests_total{result=\"coalesced\"} " + cache.getCoalescedMisses());
+
+        writer.println("# HELP jsonbatch_cache_refreshes_total Background refreshes of stale results, by result.");
+        writer.println("# TYPE jsonbatch_cache_refreshes_total counter");
+        writer.println("jsonbatch_cache_refreshes_total{result=\"started\"} " + cache.getRefreshes());
+        writer.println("jsonbatch_cache_refreshes_total{result=\"failed\"} " + cache.getRefreshFailures());
+
+        writer.println("# HELP jsonbatch_cache_evictions_total Results dropped to stay within the entry bound.");
+        writer.println("# TYPE jsonbatch_cache_evictions_total counter");
+        writer.println("jsonbatch_cache_evictions_total " + cache.getEvictions());
+
+        writer.println("# HELP jsonbatch_cache_entries Results cached.");
+        writer.println("# TYPE jsonbatch_cache_entries gauge");
+        writer.println("jsonbatch_cache_entries " + cache.size());
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+}
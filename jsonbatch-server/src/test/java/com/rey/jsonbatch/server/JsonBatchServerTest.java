@@ -0,0 +1,185 @@
+package com.rey.jsonbatch.server;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jayway.jsonpath.Configuration;
+import com.jayway.jsonpath.spi.json.JacksonJsonProvider;
+import com.jayway.jsonpath.spi.mapper.JacksonMappingProvider;
+import com.rey.jsonbatch.BatchEngine;
+import com.rey.jsonbatch.BatchResultCache;
+import com.rey.jsonbatch.JsonBuilder;
+import com.rey.jsonbatch.RequestDispatcher;
+import com.rey.jsonbatch.function.Functions;
+import com.rey.jsonbatch.model.Response;
+import com.rey.jsonbatch.template.TemplateRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@SuppressWarnings("unchecked")
+public class JsonBatchServerTest {
+
+    private static final String TEMPLATE = "{" +
+            "\"requests\": [{" +
+            "  \"http_method\": \"GET\"," +
+            "  \"url\": \"str https://localhost/items/@{$.original.body.id}@\"," +
+            "  \"headers\": {\"X-Trace\": \"str[] $.original.headers.x-trace\"}" +
+            "}]," +
+            "\"responses\": [{\"status\": \"$.responses[0].status\", \"headers\": {\"X-Backend\": \"str[] $.responses[0].headers.X-Backend\"}," +
+            "  \"body\": {\"id\": \"$.responses[0].body.id\", \"trace\": \"$.requests[0].headers.X-Trace[0]\"}}]" +
+            "}";
+
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    private Path directory;
+
+    private TemplateRegistry templateRegistry;
+
+    private JsonBatchServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        Configuration conf = Configuration.builder()
+                .jsonProvider(new JacksonJsonProvider(objectMapper))
+                .mappingProvider(new JacksonMappingProvider(objectMapper))
+                .build();
+        RequestDispatcher requestDispatcher = (request, jsonProvider, options) -> {
+            Response response = new Response();
+            response.setStatus(201);
+            response.setHeaders(Collections.singletonMap("X-Backend", Collections.singletonList("stub")));
+            String url = request.getUrl();
+            response.setBody(Collections.singletonMap("id", Integer.parseInt(url.substring(url.lastIndexOf('/') + 1)) + 1));
+            return response;
+        };
+        directory = Files.createTempDirectory("jsonbatch-server");
+        Files.write(directory.resolve("items.json"), TEMPLATE.getBytes(StandardCharsets.UTF_8));
+        templateRegistry = new TemplateRegistry(conf);
+        templateRegistry.loadDirectory(directory);
+
+        ServerConfig config = ServerConfig.parse(new String[]{"--host=localhost", "--port=0", "--max-request-bytes=1024", "--drain-seconds=1"});
+        BatchEngine batchEngine = BatchEngine.builder(conf, new JsonBuilder(Functions.basic()), requestDispatcher)
+                .resultCache(new BatchResultCache(16))
+                .build();
+        server = new JsonBatchServer(config, conf, batchEngine, templateRegistry);
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.close();
+        Files.deleteIfExists(directory.resolve("items.json"));
+        Files.deleteIfExists(directory);
+    }
+
+    @Test
+    public void batch__executesTemplate() throws Exception {
+        HttpURLConnection connection = post("/batch/items", "{\"id\": 41}");
+        assertEquals(201, connection.getResponseCode());
+        assertEquals("stub", connection.getHeaderField("X-Backend"));
+        assertTrue(connection.getContentType().startsWith("application/json"));
+        Map<String, Object> body = objectMapper.readValue(read(connection.getInputStream()), Map.class);
+        assertEquals(42, body.get("id"));
+        assertEquals("abc", body.get("trace"));
+        awaitRecorded("items", 201);
+        assertEquals(1, server.getMetrics().getCount("items", 201));
+        assertEquals(0, server.getMetrics().getInFlight());
+    }
+
+    @Test
+    public void batch__errors() throws Exception {
+        HttpURLConnection connection = post("/batch/unknown", "{}");
+        assertEquals(404, connection.getResponseCode());
+        assertEquals("template_not_found", error(connection));
+
+        connection = post("/batch/items", "{\"id\": ");
+        assertEquals(400, connection.getResponseCode());
+        assertEquals("invalid_json", error(connection));
+
+        StringBuilder builder = new StringBuilder("{\"id\": 1, \"padding\": \"");
+        for (int i = 0; i < 2048; i++)
+            builder.append('x');
+        connection = post("/batch/items", builder.append("\"}").toString());
+        assertEquals(413, connection.getResponseCode());
+        assertEquals("request_too_large", error(connection));
+
+        connection = (HttpURLConnection) url("/batch/items").openConnection();
+        assertEquals(405, connection.getResponseCode());
+        assertEquals("POST", connection.getHeaderField("Allow"));
+        awaitRecorded("", 405);
+        assertEquals(1, server.getMetrics().getCount("", 404));
+        assertEquals(1, server.getMetrics().getCount("items", 400));
+    }
+
+    @Test
+    public void healthAndMetrics() throws Exception {
+        assertEquals(201, post("/batch/items", "{\"id\": 1}").getResponseCode());
+        awaitRecorded("items", 201);
+
+        HttpURLConnection connection = (HttpURLConnection) url("/health").openConnection();
+        assertEquals(200, connection.getResponseCode());
+        Map<String, Object> health = objectMapper.readValue(read(connection.getInputStream()), Map.class);
+        assertEquals("UP", health.get("status"));
+        assertEquals(1, health.get("templates"));
+
+        connection = (HttpURLConnection) url("/metrics").openConnection();
+        assertEquals(200, connection.getResponseCode());
+        String metrics = new String(read(connection.getInputStream()), StandardCharsets.UTF_8);
+        assertTrue(metrics.contains("jsonbatch_batches_total{template=\"items\",status=\"201\"} 1"));
+        assertTrue(metrics.contains("jsonbatch_batch_duration_seconds_count 1"));
+        assertTrue(metrics.contains("jsonbatch_batches_in_flight 0"));
+        assertTrue(metrics.contains("jsonbatch_cache_requests_total{result=\"miss\"} 0"));
+    }
+
+    // batches are recorded once the response is closed, which the client may see first
+    private void awaitRecorded(String templateId, int status) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (server.getMetrics().getCount(templateId, status) == 0 && System.nanoTime() < deadline)
+            Thread.sleep(1);
+    }
+
+    private URL url(String path) throws IOException {
+        return new URL("http://localhost:" + server.getPort() + path);
+    }
+
+    private HttpURLConnection post(String path, String body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) url(path).openConnection();
+        connection.setRequestMethod("POST");
+        connection.setRequestProperty("Content-Type", "application/json");
+        connection.setRequestProperty("X-Trace", "abc");
+        connection.setDoOutput(true);
+        try (OutputStream outputStream = connection.getOutputStream()) {
+            outputStream.write(body.getBytes(StandardCharsets.UTF_8));
+        }
+        return connection;
+    }
+
+    private String error(HttpURLConnection connection) throws IOException {
+        return (String) objectMapper.readValue(read(connection.getErrorStream()), Map.class).get("error");
+    }
+
+    private static byte[] read(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int count;
+        while ((count = inputStream.read(buffer)) > 0)
+            outputStream.write(buffer, 0, count);
+        inputStream.close();
+        return outputStream.toByteArray();
+    }
+
+}